@@ -0,0 +1,127 @@
+package benchmark;
+
+import codec.JsonCodec;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import entity.Node;
+import entity.actuator.Actuator;
+import entity.actuator.AirCondition;
+import entity.actuator.CO2Supply;
+import entity.actuator.DeHumidifier;
+import entity.actuator.Heater;
+import entity.actuator.Humidifier;
+import entity.actuator.LampBrightning;
+import entity.actuator.LampDimming;
+import entity.actuator.Ventilation;
+import entity.sensor.CO2Sensor;
+import entity.sensor.HumiditySensor;
+import entity.sensor.LightSensor;
+import entity.sensor.Sensor;
+import entity.sensor.TemperatureSensor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import network.MessageHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-message cost of decoding a node snapshot (control panel side) and of forwarding one
+ * (server side), before and after the shared codec. Run with {@code -prof gc} to see the bytes
+ * allocated per message ({@code gc.alloc.rate.norm}).
+ *
+ * <p>The snapshot is a node with the four standard sensors and eight actuators, as sent on every
+ * tick.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+  private String snapshot;
+
+  /**
+   * Build the snapshot line once.
+   */
+  @Setup
+  public void setup() {
+    List<Sensor> sensors = new ArrayList<>();
+    List<Actuator> actuators = new ArrayList<>();
+    Node node = new Node("01", "greenhouse1", sensors, actuators);
+    node.addSensor(new TemperatureSensor("s1", 15, 30));
+    node.addSensor(new LightSensor("s2", 1000, 20000));
+    node.addSensor(new HumiditySensor("s3", 50, 85));
+    node.addSensor(new CO2Sensor("s4", 800, 1500));
+    node.addActuator(new Heater("s1_heater"));
+    node.addActuator(new AirCondition("s1_ac"));
+    node.addActuator(new LampBrightning("s2_bright"));
+    node.addActuator(new LampDimming("s2_dim"));
+    node.addActuator(new Humidifier("s3_humid"));
+    node.addActuator(new DeHumidifier("s3_dehumid"));
+    node.addActuator(new CO2Supply("s4_co2"));
+    node.addActuator(new Ventilation("s4_vent"));
+    snapshot = JsonCodec.gson().toJson(node);
+  }
+
+  /**
+   * Control panel decode before: new builder and tree deserializers per message.
+   */
+  @Benchmark
+  public Node decodeLegacy() {
+    return LegacyCodec.nodeFromJson(snapshot);
+  }
+
+  /**
+   * Control panel decode after: shared Gson with compiled adapters.
+   */
+  @Benchmark
+  public Node decodeShared() {
+    return Node.nodeFromJson(snapshot);
+  }
+
+  /**
+   * Server forward before: new Gson, DOM parse and re-serialize per line.
+   */
+  @Benchmark
+  public String forwardLegacy() {
+    Gson gson = new Gson();
+    JsonObject obj = gson.fromJson(snapshot, JsonObject.class);
+    if (!obj.has("messageType")) {
+      obj.addProperty("messageType", "SENSOR_DATA_FROM_NODE");
+    }
+    return gson.toJson(obj);
+  }
+
+  /**
+   * Server forward with only the shared Gson: DOM parse and re-serialize per line.
+   */
+  @Benchmark
+  public String forwardShared() {
+    JsonObject obj = JsonCodec.gson().fromJson(snapshot, JsonObject.class);
+    if (!obj.has("messageType")) {
+      obj.addProperty("messageType", "SENSOR_DATA_FROM_NODE");
+    }
+    return JsonCodec.gson().toJson(obj);
+  }
+
+  /**
+   * Server forward as it is now: streaming header read, line spliced instead of re-serialized.
+   */
+  @Benchmark
+  public String forwardHeader() {
+    MessageHeader header = MessageHeader.parse(snapshot);
+    return header.getMessageType() == null
+        ? MessageHeader.withMessageType(snapshot, "SENSOR_DATA_FROM_NODE") : snapshot;
+  }
+}
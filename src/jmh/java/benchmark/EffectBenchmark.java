@@ -0,0 +1,117 @@
+package benchmark;
+
+import entity.Node;
+import entity.actuator.Actuator;
+import entity.actuator.ActuatorKind;
+import entity.actuator.AirCondition;
+import entity.actuator.CO2Supply;
+import entity.actuator.DeHumidifier;
+import entity.actuator.Heater;
+import entity.actuator.Humidifier;
+import entity.actuator.LampBrightning;
+import entity.actuator.LampDimming;
+import entity.actuator.Ventilation;
+import entity.sensor.CO2Sensor;
+import entity.sensor.HumiditySensor;
+import entity.sensor.LightSensor;
+import entity.sensor.TemperatureSensor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of one tick of actuator effects on nodes with hundreds of sensors: every switched-on
+ * actuator handed the whole sensor list, as before the node kept a per-kind sensor index, against
+ * each actuator handed only the sensors of the kind it affects, and the full
+ * {@link Node#applyActuatorEffects()} tick including the limit checks.
+ *
+ * <p>A node has {@code sensors} sensors (the four kinds in turn) and {@code actuatorPairs}
+ * opposing actuator pairs per kind, all switched on, so values stay in range. Run with
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="EffectBenchmark"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EffectBenchmark {
+
+  @Param({"16", "256", "1024"})
+  public int sensors;
+
+  @Param({"1", "8"})
+  public int actuatorPairs;
+
+  private Node node;
+
+  /**
+   * Build the node.
+   */
+  @Setup
+  public void setup() {
+    node = new Node("01", "greenhouse1", new ArrayList<>(), new ArrayList<>());
+    for (int i = 0; i < sensors; i++) {
+      String id = "s" + i;
+      switch (i % 4) {
+        case 0 -> node.addSensor(new TemperatureSensor(id, 15, 30));
+        case 1 -> node.addSensor(new LightSensor(id, 1000, 20000));
+        case 2 -> node.addSensor(new HumiditySensor(id, 50, 85));
+        default -> node.addSensor(new CO2Sensor(id, 800, 1500));
+      }
+    }
+    for (int p = 0; p < actuatorPairs; p++) {
+      node.addActuator(new Heater("heater" + p));
+      node.addActuator(new AirCondition("ac" + p));
+      node.addActuator(new LampBrightning("bright" + p));
+      node.addActuator(new LampDimming("dim" + p));
+      node.addActuator(new Humidifier("humid" + p));
+      node.addActuator(new DeHumidifier("dehumid" + p));
+      node.addActuator(new CO2Supply("co2" + p));
+      node.addActuator(new Ventilation("vent" + p));
+    }
+    for (Actuator a : node.getActuators()) {
+      a.setOn(true);
+    }
+  }
+
+  /**
+   * Every actuator scans every sensor for the ones it affects.
+   */
+  @Benchmark
+  public void fullScanEffects() {
+    for (Actuator a : node.getActuators()) {
+      a.applyEffect(node.getSensors());
+    }
+  }
+
+  /**
+   * Every actuator is handed only the sensors of the kind it affects.
+   */
+  @Benchmark
+  public void indexedEffects() {
+    for (Actuator a : node.getActuators()) {
+      ActuatorKind kind = a.getKind();
+      a.applyEffect(node.getSensorsOfKind(kind.getAffects()));
+    }
+  }
+
+  /**
+   * One full node tick: indexed effects and the limit and threshold checks.
+   */
+  @Benchmark
+  public List<String> applyActuatorEffects() {
+    return node.applyActuatorEffects();
+  }
+}
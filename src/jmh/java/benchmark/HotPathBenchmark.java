@@ -0,0 +1,149 @@
+package benchmark;
+
+import codec.JsonCodec;
+import controlpanel.ControlPanelLogic;
+import entity.Node;
+import entity.actuator.Actuator;
+import entity.actuator.AirCondition;
+import entity.actuator.CO2Supply;
+import entity.actuator.DeHumidifier;
+import entity.actuator.Heater;
+import entity.actuator.Humidifier;
+import entity.actuator.LampBrightning;
+import entity.actuator.LampDimming;
+import entity.actuator.Ventilation;
+import entity.sensor.CO2Sensor;
+import entity.sensor.HumiditySensor;
+import entity.sensor.LightSensor;
+import entity.sensor.Sensor;
+import entity.sensor.TemperatureSensor;
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import network.NodeClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-message cost of the node and control panel hot paths, by node size: serializing a snapshot
+ * in {@link NodeClient#sendNode(Node)}, decoding it with {@link Node#nodeFromJson(String)},
+ * one tick of {@link Node#applyActuatorEffects()} and a control panel handling the snapshot in
+ * {@link ControlPanelLogic#handleIncomingJson(String)}. Server routing is measured by
+ * {@code network.RoutingBenchmark}.
+ *
+ * <p>A node has {@code sensors} sensors (the four types in turn) and two actuators per sensor,
+ * all switched on; each pair pushes its sensor in opposite directions so values stay in range.
+ * Run with {@code -prof gc} for the bytes allocated per operation:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.args="HotPathBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+  @Param({"1", "4", "16", "64"})
+  public int sensors;
+
+  private Node node;
+  private String snapshot;
+  private NodeClient client;
+  private ControlPanelLogic panel;
+
+  /**
+   * Build the node, its snapshot line, a client that writes to nowhere and a control panel.
+   */
+  @Setup
+  public void setup() {
+    node = newNode(sensors);
+    snapshot = "{\"messageType\":\"SENSOR_DATA_FROM_NODE\","
+        + JsonCodec.gson().toJson(node).substring(1);
+    client = new NodeClient(node, null, new PrintWriter(Writer.nullWriter()),
+        new BufferedReader(new StringReader("")), JsonCodec.gson());
+    client.setEcho(false);
+    panel = new ControlPanelLogic("bench-cp");
+    panel.setShowNodeUpdates(false);
+  }
+
+  static Node newNode(int sensorCount) {
+    List<Sensor> sensorList = new ArrayList<>();
+    List<Actuator> actuatorList = new ArrayList<>();
+    Node n = new Node("01", "greenhouse1", sensorList, actuatorList);
+    for (int i = 0; i < sensorCount; i++) {
+      String id = "s" + i;
+      switch (i % 4) {
+        case 0 -> {
+          n.addSensor(new TemperatureSensor(id, 15, 30));
+          n.addActuator(new Heater(id + "_heater"));
+          n.addActuator(new AirCondition(id + "_ac"));
+        }
+        case 1 -> {
+          n.addSensor(new LightSensor(id, 1000, 20000));
+          n.addActuator(new LampBrightning(id + "_bright"));
+          n.addActuator(new LampDimming(id + "_dim"));
+        }
+        case 2 -> {
+          n.addSensor(new HumiditySensor(id, 50, 85));
+          n.addActuator(new Humidifier(id + "_humid"));
+          n.addActuator(new DeHumidifier(id + "_dehumid"));
+        }
+        default -> {
+          n.addSensor(new CO2Sensor(id, 800, 1500));
+          n.addActuator(new CO2Supply(id + "_co2"));
+          n.addActuator(new Ventilation(id + "_vent"));
+        }
+      }
+    }
+    for (Actuator a : n.getActuators()) {
+      a.setOn(true);
+    }
+    return n;
+  }
+
+  /**
+   * Node side: serialize a full snapshot and queue it for the client's writer thread.
+   */
+  @Benchmark
+  public void sendNode() {
+    client.sendNode(node);
+  }
+
+  /**
+   * Control panel side: decode a snapshot into a node.
+   */
+  @Benchmark
+  public Node nodeFromJson() {
+    return Node.nodeFromJson(snapshot);
+  }
+
+  /**
+   * Node side: apply one tick of actuator effects and check the limits.
+   */
+  @Benchmark
+  public List<String> applyActuatorEffects() {
+    return node.applyActuatorEffects();
+  }
+
+  /**
+   * Control panel side: handle an incoming snapshot and update the cached node state.
+   */
+  @Benchmark
+  public void handleIncomingJson() {
+    panel.handleIncomingJson(snapshot);
+  }
+}
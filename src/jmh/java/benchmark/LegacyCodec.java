@@ -0,0 +1,76 @@
+package benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import entity.Node;
+import entity.actuator.Actuator;
+import entity.actuator.AirCondition;
+import entity.actuator.CO2Supply;
+import entity.actuator.DeHumidifier;
+import entity.actuator.Heater;
+import entity.actuator.Humidifier;
+import entity.actuator.LampBrightning;
+import entity.actuator.LampDimming;
+import entity.actuator.Ventilation;
+import entity.sensor.CO2Sensor;
+import entity.sensor.HumiditySensor;
+import entity.sensor.LightSensor;
+import entity.sensor.Sensor;
+import entity.sensor.TemperatureSensor;
+import java.time.LocalDateTime;
+
+/**
+ * The decoding path used before the shared codec, kept as the baseline for the benchmarks: a new
+ * {@link GsonBuilder} per call, tree-based {@code JsonDeserializer}s that switch on the type field
+ * and then deserialize the same tree a second time.
+ */
+final class LegacyCodec {
+
+  private LegacyCodec() {
+  }
+
+  static Node nodeFromJson(String json) {
+    return gsonWithLocalDateTime().fromJson(json, Node.class);
+  }
+
+  static Gson gsonWithLocalDateTime() {
+    return new GsonBuilder()
+        .registerTypeAdapter(LocalDateTime.class,
+            (JsonSerializer<LocalDateTime>) (src, t, c) -> new JsonPrimitive(src.toString()))
+        .registerTypeAdapter(LocalDateTime.class,
+            (JsonDeserializer<LocalDateTime>) (json, t, c) -> LocalDateTime.parse(json.getAsString()))
+        .registerTypeAdapter(Sensor.class, (JsonDeserializer<Sensor>) (json, t, context) -> {
+          JsonObject obj = json.getAsJsonObject();
+          if (!obj.has("sensorType")) {
+            return null;
+          }
+          return switch (obj.get("sensorType").getAsString()) {
+            case "LIGHT" -> context.deserialize(json, LightSensor.class);
+            case "HUMIDITY" -> context.deserialize(json, HumiditySensor.class);
+            case "CO2" -> context.deserialize(json, CO2Sensor.class);
+            default -> context.deserialize(json, TemperatureSensor.class);
+          };
+        })
+        .registerTypeAdapter(Actuator.class, (JsonDeserializer<Actuator>) (json, t, context) -> {
+          JsonObject obj = json.getAsJsonObject();
+          if (!obj.has("actuatorType")) {
+            return null;
+          }
+          return switch (obj.get("actuatorType").getAsString().toUpperCase()) {
+            case "HEATER" -> context.deserialize(json, Heater.class);
+            case "HUMIDIFIER" -> context.deserialize(json, Humidifier.class);
+            case "DEHUMIDIFIER" -> context.deserialize(json, DeHumidifier.class);
+            case "AIRCON" -> context.deserialize(json, AirCondition.class);
+            case "LAMP_DIMMING" -> context.deserialize(json, LampDimming.class);
+            case "LAMP_BRIGHTNING" -> context.deserialize(json, LampBrightning.class);
+            case "CO2_SUPPLY" -> context.deserialize(json, CO2Supply.class);
+            default -> context.deserialize(json, Ventilation.class);
+          };
+        })
+        .create();
+  }
+}
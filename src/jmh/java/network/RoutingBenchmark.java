@@ -0,0 +1,110 @@
+package network;
+
+import codec.JsonCodec;
+import entity.Node;
+import entity.actuator.Actuator;
+import entity.actuator.Heater;
+import entity.sensor.CO2Sensor;
+import entity.sensor.Sensor;
+import entity.sensor.TemperatureSensor;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-message cost of the server's routing of a node snapshot: header extraction with
+ * {@link MessageHeader}, topic computation and the subscriber lookup that picks the control
+ * panels to broadcast to. Queueing on the panels' {@link ConnectionWriter}s is left out, as it
+ * needs live sockets.
+ *
+ * <p>Lives in package {@code network} to reach the package-private routing methods of
+ * {@link Server}. Every panel subscribes to the node id and to either the snapshot's location or
+ * one of its sensor types, so each panel is found through two topics and de-duplicated. Run
+ * with {@code -prof gc}: {@code mvn -Pjmh test-compile exec:exec -Djmh.args="RoutingBenchmark -prof gc"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+  @Param({"1", "4", "16", "64"})
+  public int sensors;
+
+  @Param({"1", "16", "256"})
+  public int panels;
+
+  private String snapshot;
+  private final List<Socket> panelSockets = new ArrayList<>();
+
+  /**
+   * Build the snapshot line and register the panels in the routing index.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    List<Sensor> sensorList = new ArrayList<>();
+    List<Actuator> actuatorList = new ArrayList<>();
+    Node node = new Node("bench-node", "greenhouse1", sensorList, actuatorList);
+    for (int i = 0; i < sensors; i++) {
+      node.addSensor(i % 2 == 0 ? new TemperatureSensor("s" + i, 15, 30)
+          : new CO2Sensor("s" + i, 800, 1500));
+      node.addActuator(new Heater("s" + i + "_heater"));
+    }
+    snapshot = JsonCodec.gson().toJson(node);
+    for (int i = 0; i < panels; i++) {
+      Socket socket = new Socket();
+      panelSockets.add(socket);
+      Server.subscribe(socket, i % 2 == 0 ? Server.topic("location", "greenhouse1")
+          : Server.topic("sensorType", "TEMPERATURE"));
+      Server.subscribe(socket, Server.topic("nodeID", "bench-node"));
+    }
+    Server.recordTopics("bench-node", MessageHeader.parse(snapshot));
+  }
+
+  /**
+   * Remove the panels from the routing index.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    for (Socket socket : panelSockets) {
+      Server.unsubscribeAll(socket);
+    }
+  }
+
+  /**
+   * Extract the routing fields of a snapshot without messageType and splice one in.
+   */
+  @Benchmark
+  public String extractHeader() {
+    MessageHeader header = MessageHeader.parse(snapshot);
+    return header.getMessageType() == null
+        ? MessageHeader.withMessageType(snapshot, "SENSOR_DATA_FROM_NODE") : snapshot;
+  }
+
+  /**
+   * Extract the header, record the snapshot's topics and find the panels to broadcast to.
+   */
+  @Benchmark
+  public Collection<Socket> route() {
+    MessageHeader header = MessageHeader.parse(snapshot);
+    Server.recordTopics(header.getNodeId(), header);
+    return Server.subscribersFor(header.getNodeId());
+  }
+}
@@ -0,0 +1,108 @@
+package codec;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import entity.actuator.Actuator;
+import entity.actuator.ActuatorKind;
+import entity.actuator.AirCondition;
+import entity.actuator.CO2Supply;
+import entity.actuator.DeHumidifier;
+import entity.actuator.Heater;
+import entity.actuator.Humidifier;
+import entity.actuator.LampBrightning;
+import entity.actuator.LampDimming;
+import entity.actuator.Ventilation;
+import java.io.IOException;
+
+/**
+ * Reads an {@link Actuator} as the concrete subclass named by its {@code actuatorType} and writes
+ * any actuator with the adapter of its runtime class.
+ *
+ * <p>Like {@link SensorAdapter}, reading collects the fields in one pass over the token stream,
+ * wherever {@code actuatorType} appears, and constructs the actuator when the object ends.
+ */
+class ActuatorAdapter extends TypeAdapter<Actuator> {
+
+  private final Gson gson;
+
+  ActuatorAdapter(Gson gson) {
+    this.gson = gson;
+  }
+
+  /**
+   * Create the actuator subclass for an actuator type (case-insensitive, including the older
+   * aliases known to {@link ActuatorKind}). Unknown types fall back to a {@link Ventilation}, the safe default.
+   *
+   * @param actuatorType value of the {@code actuatorType} field
+   * @param actuatorId   actuator id
+   * @return new actuator
+   * @throws IllegalArgumentException if the id is invalid
+   */
+  static Actuator newActuator(String actuatorType, String actuatorId) {
+    ActuatorKind kind = ActuatorKind.of(actuatorType);
+    if (kind == null) {
+      return new Ventilation(actuatorId);
+    }
+    return switch (kind) {
+      case HEATER -> new Heater(actuatorId);
+      case AIRCON -> new AirCondition(actuatorId);
+      case HUMIDIFIER -> new Humidifier(actuatorId);
+      case DEHUMIDIFIER -> new DeHumidifier(actuatorId);
+      case LAMP_BRIGHTNING -> new LampBrightning(actuatorId);
+      case LAMP_DIMMING -> new LampDimming(actuatorId);
+      case CO2_SUPPLY -> new CO2Supply(actuatorId);
+      case VENTILATION -> new Ventilation(actuatorId);
+    };
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void write(JsonWriter out, Actuator value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    ((TypeAdapter<Actuator>) gson.getAdapter(value.getClass())).write(out, value);
+  }
+
+  @Override
+  public Actuator read(JsonReader in) throws IOException {
+    if (in.peek() != JsonToken.BEGIN_OBJECT) {
+      // Not an actuator object: skipped like an actuator without a type
+      in.skipValue();
+      return null;
+    }
+    String actuatorId = null;
+    String actuatorType = null;
+    boolean on = false;
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        continue;
+      }
+      switch (name) {
+        case "actuatorId" -> actuatorId = in.nextString();
+        case "actuatorType" -> actuatorType = in.nextString();
+        case "on" -> on = in.nextBoolean();
+        // per-tick deltas are fixed by each subclass
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+    if (actuatorType == null) {
+      return null;
+    }
+    try {
+      Actuator actuator = newActuator(actuatorType, actuatorId == null ? "unknown" : actuatorId);
+      actuator.setOn(on);
+      return actuator;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package codec;
+
+import entity.Node;
+import entity.actuator.Actuator;
+import entity.sensor.Sensor;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the frames written by a {@link BinaryFrameWriter} and hands every message on as a JSON
+ * line, so code behind the reader handles binary and line-delimited clients the same way.
+ *
+ * <p>String definitions are kept in the connection's table and never surface as messages.
+ * Snapshot frames are decoded to a {@link Node} and rendered with {@link JsonCodec} in the usual
+ * wire format, with {@code messageType} {@code SENSOR_DATA_FROM_NODE} and the snapshot's
+ * {@code seq} if it has one. Unknown frame types are
+ * skipped so either side can add types later.
+ *
+ * <p>A reader belongs to one connection and is not thread-safe.
+ */
+public class BinaryFrameReader {
+
+  private static final int MAX_HANDSHAKE_LINE = 8 * 1024;
+
+  private final InputStream in;
+  private final List<String> strings = new ArrayList<>();
+  private byte[] buf = new byte[256];
+  private int pos;
+  private int limit;
+
+  /**
+   * Create a reader on a connection's input stream.
+   *
+   * @param in stream to read frames from; should be buffered, lengths are read byte by byte
+   */
+  public BinaryFrameReader(InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * Read one text line without buffering past its end, so the rest of the stream can be read as
+   * frames. Used for the handshake that selects the framing mode.
+   *
+   * @param in stream to read from
+   * @return the line without its terminator, or {@code null} at end of stream
+   * @throws IOException if reading fails or the line is too long
+   */
+  public static String readHandshakeLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) != -1 && b != '\n') {
+      if (line.size() >= MAX_HANDSHAKE_LINE) {
+        throw new IOException("Handshake line too long");
+      }
+      line.write(b);
+    }
+    if (b == -1 && line.size() == 0) {
+      return null;
+    }
+    String s = line.toString(StandardCharsets.UTF_8);
+    return s.endsWith("\r") ? s.substring(0, s.length() - 1) : s;
+  }
+
+  /**
+   * Read the next message.
+   *
+   * @return the message as a JSON line, or {@code null} at end of stream
+   * @throws IOException if reading fails or the stream is not valid framing
+   */
+  public String readLine() throws IOException {
+    while (true) {
+      int first = in.read();
+      if (first == -1) {
+        return null;
+      }
+      long length = readVarLong(first);
+      if (length < 1 || length > BinaryFrameWriter.MAX_FRAME_LENGTH) {
+        throw new IOException("Invalid frame length " + length);
+      }
+      readFrame((int) length);
+      int type = buf[pos++];
+      switch (type) {
+        case BinaryFrameWriter.TEXT:
+          return new String(buf, pos, limit - pos, StandardCharsets.UTF_8);
+        case BinaryFrameWriter.STRING:
+          defineString();
+          break;
+        case BinaryFrameWriter.SNAPSHOT:
+          String json = JsonCodec.gson().toJson(readSnapshot());
+          String seq = pos < limit ? "\"seq\":" + getVarLong() + "," : "";
+          return "{\"messageType\":\"SENSOR_DATA_FROM_NODE\"," + seq + json.substring(1);
+        default:
+          // unknown frame type: skipped
+          break;
+      }
+    }
+  }
+
+  private void defineString() throws IOException {
+    long id = getVarLong();
+    if (id != strings.size()) {
+      throw new IOException("String table out of sync: got id " + id + ", expected "
+          + strings.size());
+    }
+    if (strings.size() >= BinaryFrameWriter.MAX_STRINGS) {
+      throw new IOException("String table full");
+    }
+    strings.add(new String(buf, pos, limit - pos, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decode a snapshot body. Sensors and actuators that cannot be constructed are left out, as
+   * when decoding JSON.
+   */
+  private Node readSnapshot() throws IOException {
+    String nodeId = getString();
+    String location = getString();
+    LocalDateTime timestamp = getTime(0);
+    long base = timestamp != null ? timestamp.toEpochSecond(ZoneOffset.UTC) : 0;
+    int sensorCount = getCount();
+    List<Sensor> sensors = new ArrayList<>(sensorCount);
+    for (int i = 0; i < sensorCount; i++) {
+      String sensorType = getString();
+      String sensorId = getString();
+      double value = getDouble();
+      double minThreshold = getDouble();
+      double maxThreshold = getDouble();
+      LocalDateTime sensorTime = getTime(base);
+      if (sensorType == null) {
+        continue;
+      }
+      try {
+        Sensor sensor = SensorAdapter.newSensor(sensorType, sensorId, minThreshold, maxThreshold);
+        sensor.restoreReading(value, sensorTime);
+        sensors.add(sensor);
+      } catch (IllegalArgumentException e) {
+        // invalid id or thresholds: skipped
+      }
+    }
+    int actuatorCount = getCount();
+    List<Actuator> actuators = new ArrayList<>(actuatorCount);
+    for (int i = 0; i < actuatorCount; i++) {
+      String actuatorType = getString();
+      String actuatorId = getString();
+      boolean on = getByte() != 0;
+      if (actuatorType == null) {
+        continue;
+      }
+      try {
+        Actuator actuator = ActuatorAdapter.newActuator(actuatorType, actuatorId);
+        actuator.setOn(on);
+        actuators.add(actuator);
+      } catch (IllegalArgumentException e) {
+        // invalid id: skipped
+      }
+    }
+    try {
+      return Node.fromSnapshot(nodeId, location, timestamp, sensors, actuators);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid snapshot frame: " + e.getMessage());
+    }
+  }
+
+  private void readFrame(int length) throws IOException {
+    if (buf.length < length) {
+      buf = new byte[Math.max(length, buf.length * 2)];
+    }
+    int n = in.readNBytes(buf, 0, length);
+    if (n < length) {
+      throw new EOFException("Truncated frame");
+    }
+    pos = 0;
+    limit = length;
+  }
+
+  private String getString() throws IOException {
+    long ref = getVarLong();
+    if (ref == BinaryFrameWriter.NULL_REF) {
+      return null;
+    }
+    if (ref == BinaryFrameWriter.INLINE_REF) {
+      int length = getCount();
+      String s = new String(buf, pos, length, StandardCharsets.UTF_8);
+      pos += length;
+      return s;
+    }
+    long index = ref - BinaryFrameWriter.FIRST_TABLE_REF;
+    if (index < 0 || index >= strings.size()) {
+      throw new IOException("Undefined string reference " + ref);
+    }
+    return strings.get((int) index);
+  }
+
+  private LocalDateTime getTime(long base) throws IOException {
+    long encoded = getVarLong();
+    if (encoded == 0) {
+      return null;
+    }
+    long zigzag = encoded - 1;
+    long seconds = base + ((zigzag >>> 1) ^ -(zigzag & 1));
+    long nanos = getVarLong();
+    if (nanos < 0 || nanos > 999_999_999) {
+      throw new IOException("Invalid timestamp");
+    }
+    try {
+      return LocalDateTime.ofEpochSecond(seconds, (int) nanos, ZoneOffset.UTC);
+    } catch (DateTimeException e) {
+      throw new IOException("Invalid timestamp");
+    }
+  }
+
+  /**
+   * Read an element count or length, which can never exceed the bytes left in the frame.
+   */
+  private int getCount() throws IOException {
+    long count = getVarLong();
+    if (count < 0 || count > limit - pos) {
+      throw new IOException("Invalid count " + count);
+    }
+    return (int) count;
+  }
+
+  private double getDouble() throws IOException {
+    need(8);
+    long bits = 0;
+    for (int i = 0; i < 8; i++) {
+      bits = (bits << 8) | (buf[pos++] & 0xFF);
+    }
+    return Double.longBitsToDouble(bits);
+  }
+
+  private int getByte() throws IOException {
+    need(1);
+    return buf[pos++] & 0xFF;
+  }
+
+  private long getVarLong() throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = getByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Varint too long");
+  }
+
+  private long readVarLong(int first) throws IOException {
+    long value = first & 0x7F;
+    int b = first;
+    for (int shift = 7; (b & 0x80) != 0; shift += 7) {
+      if (shift >= 64) {
+        throw new IOException("Varint too long");
+      }
+      b = in.read();
+      if (b == -1) {
+        throw new EOFException("Truncated frame length");
+      }
+      value |= (long) (b & 0x7F) << shift;
+    }
+    return value;
+  }
+
+  private void need(int bytes) throws IOException {
+    if (limit - pos < bytes) {
+      throw new IOException("Frame too short");
+    }
+  }
+}
@@ -0,0 +1,284 @@
+package codec;
+
+import com.google.gson.JsonParseException;
+import entity.Node;
+import entity.actuator.Actuator;
+import entity.sensor.Sensor;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes messages in the binary framing mode a client can select at handshake time instead of
+ * line-delimited JSON.
+ *
+ * <p>Every frame is {@code varint length, type byte, body}, where the length counts the type byte
+ * and the body. Three frame types exist:
+ * <ul>
+ *   <li>{@link #TEXT}: a UTF-8 JSON message, for everything that is not a node snapshot,</li>
+ *   <li>{@link #STRING}: defines the next entry of the connection's string table,</li>
+ *   <li>{@link #SNAPSHOT}: a node snapshot with ids, types and location as string table
+ *       references, readings as 8-byte doubles and an optional trailing sequence number.</li>
+ * </ul>
+ *
+ * <p>Strings such as sensor and actuator ids are sent once per connection in a {@code STRING}
+ * frame and referred to by a varint afterwards. A reference is {@code 0} for null, {@code 1} for
+ * a string written inline (once the table is full) or {@code 2 + index} into the table.
+ * Timestamps are varint seconds plus nanoseconds, sensor timestamps relative to the node's, so
+ * a steady-state snapshot of a node costs a few bytes per sensor beyond its three doubles.
+ *
+ * <p>A writer belongs to one connection and is not thread-safe. It does not flush; callers flush
+ * the underlying stream when a batch of frames is complete.
+ */
+public class BinaryFrameWriter {
+
+  /** Frame type of a JSON text message. */
+  public static final int TEXT = 1;
+  /** Frame type of a string table definition. */
+  public static final int STRING = 2;
+  /** Frame type of a node snapshot. */
+  public static final int SNAPSHOT = 3;
+
+  /** Largest frame either side accepts. */
+  static final int MAX_FRAME_LENGTH = 1 << 20;
+  /** Strings a connection may intern; later strings are written inline. */
+  static final int MAX_STRINGS = 4096;
+  static final int NULL_REF = 0;
+  static final int INLINE_REF = 1;
+  static final int FIRST_TABLE_REF = 2;
+
+  private final OutputStream out;
+  private final Map<String, Integer> strings = new HashMap<>();
+  private byte[] buf = new byte[256];
+  private int len;
+
+  /**
+   * Create a writer on a connection's output stream.
+   *
+   * @param out stream to write frames to, preferably buffered
+   */
+  public BinaryFrameWriter(OutputStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Write a JSON message as a text frame.
+   *
+   * @param json JSON message (without trailing newline)
+   * @throws IOException if writing fails
+   */
+  public void writeText(String json) throws IOException {
+    len = 0;
+    putByte(TEXT);
+    putUtf8(json.getBytes(StandardCharsets.UTF_8));
+    writeFrame();
+  }
+
+  /**
+   * Write a node snapshot frame without a sequence number.
+   *
+   * @param node node to write
+   * @throws IOException if writing fails
+   */
+  public void writeSnapshot(Node node) throws IOException {
+    writeSnapshot(node, -1);
+  }
+
+  /**
+   * Write a node snapshot frame. Strings the peer has not seen yet are defined first.
+   *
+   * @param node node to write
+   * @param seq  sequence number of the snapshot, or {@code -1} for none
+   * @throws IOException if writing fails
+   */
+  public void writeSnapshot(Node node, long seq) throws IOException {
+    // Copies, so a sensor added or removed concurrently cannot break the element counts
+    List<Sensor> sensors = new ArrayList<>(node.getSensors());
+    List<Actuator> actuators = new ArrayList<>(node.getActuators());
+    // Define new strings before the snapshot frame that refers to them
+    int[] sensorRefs = new int[sensors.size() * 2];
+    for (int i = 0; i < sensors.size(); i++) {
+      sensorRefs[2 * i] = intern(sensors.get(i).getSensorType());
+      sensorRefs[2 * i + 1] = intern(sensors.get(i).getSensorId());
+    }
+    int[] actuatorRefs = new int[actuators.size() * 2];
+    for (int i = 0; i < actuators.size(); i++) {
+      actuatorRefs[2 * i] = intern(actuators.get(i).getActuatorType());
+      actuatorRefs[2 * i + 1] = intern(actuators.get(i).getActuatorId());
+    }
+    int nodeRef = intern(node.getNodeID());
+    int locationRef = intern(node.getLocation());
+
+    len = 0;
+    putByte(SNAPSHOT);
+    putRef(nodeRef, node.getNodeID());
+    putRef(locationRef, node.getLocation());
+    LocalDateTime timestamp = node.getTimestamp();
+    putTime(timestamp, 0);
+    long base = timestamp != null ? timestamp.toEpochSecond(ZoneOffset.UTC) : 0;
+    putVarLong(sensors.size());
+    for (int i = 0; i < sensors.size(); i++) {
+      Sensor s = sensors.get(i);
+      putRef(sensorRefs[2 * i], s.getSensorType());
+      putRef(sensorRefs[2 * i + 1], s.getSensorId());
+      putDouble(s.getValue());
+      putDouble(s.getMinThreshold());
+      putDouble(s.getMaxThreshold());
+      putTime(s.getTimestamp(), base);
+    }
+    putVarLong(actuators.size());
+    for (int i = 0; i < actuators.size(); i++) {
+      Actuator a = actuators.get(i);
+      putRef(actuatorRefs[2 * i], a.getActuatorType());
+      putRef(actuatorRefs[2 * i + 1], a.getActuatorId());
+      putByte(a.isOn() ? 1 : 0);
+    }
+    // Optional trailing field, absent for snapshots without a sequence number
+    if (seq >= 0) {
+      putVarLong(seq);
+    }
+    writeFrame();
+  }
+
+  /**
+   * Write a JSON node snapshot as a snapshot frame. This is how the server bridges snapshots
+   * from JSON nodes to binary clients; a line that does not decode as a node is sent as a text
+   * frame instead.
+   *
+   * @param json JSON node snapshot
+   * @param seq  sequence number of the snapshot, or {@code -1} for none
+   * @throws IOException if writing fails
+   */
+  public void writeSnapshot(String json, long seq) throws IOException {
+    Node node;
+    try {
+      node = Node.nodeFromJson(json);
+    } catch (JsonParseException | IllegalArgumentException e) {
+      node = null;
+    }
+    if (node == null) {
+      writeText(json);
+    } else {
+      writeSnapshot(node, seq);
+    }
+  }
+
+  /**
+   * Flush the underlying stream.
+   *
+   * @throws IOException if flushing fails
+   */
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  /**
+   * Get the table reference of a string, defining it with a {@code STRING} frame if it is new.
+   */
+  private int intern(String s) throws IOException {
+    if (s == null) {
+      return NULL_REF;
+    }
+    Integer index = strings.get(s);
+    if (index != null) {
+      return FIRST_TABLE_REF + index;
+    }
+    if (strings.size() >= MAX_STRINGS) {
+      return INLINE_REF;
+    }
+    int id = strings.size();
+    strings.put(s, id);
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    writeVarLong(out, 1 + varLongSize(id) + bytes.length);
+    out.write(STRING);
+    writeVarLong(out, id);
+    out.write(bytes);
+    return FIRST_TABLE_REF + id;
+  }
+
+  private void writeFrame() throws IOException {
+    writeVarLong(out, len);
+    out.write(buf, 0, len);
+  }
+
+  private void putRef(int ref, String s) {
+    putVarLong(ref);
+    if (ref == INLINE_REF) {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      putVarLong(bytes.length);
+      putUtf8(bytes);
+    }
+  }
+
+  /**
+   * Write a timestamp as {@code 0} for null, or zigzag seconds relative to {@code base} plus one,
+   * followed by the nanoseconds.
+   */
+  private void putTime(LocalDateTime time, long base) {
+    if (time == null) {
+      putVarLong(0);
+      return;
+    }
+    long delta = time.toEpochSecond(ZoneOffset.UTC) - base;
+    putVarLong(((delta << 1) ^ (delta >> 63)) + 1);
+    putVarLong(time.getNano());
+  }
+
+  private void putDouble(double value) {
+    long bits = Double.doubleToLongBits(value);
+    ensure(8);
+    for (int shift = 56; shift >= 0; shift -= 8) {
+      buf[len++] = (byte) (bits >>> shift);
+    }
+  }
+
+  private void putUtf8(byte[] bytes) {
+    ensure(bytes.length);
+    System.arraycopy(bytes, 0, buf, len, bytes.length);
+    len += bytes.length;
+  }
+
+  private void putVarLong(long value) {
+    ensure(10);
+    while ((value & ~0x7FL) != 0) {
+      buf[len++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buf[len++] = (byte) value;
+  }
+
+  private void putByte(int b) {
+    ensure(1);
+    buf[len++] = (byte) b;
+  }
+
+  private void ensure(int extra) {
+    if (len + extra > buf.length) {
+      buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + extra));
+    }
+  }
+
+  private static void writeVarLong(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static int varLongSize(long value) {
+    int size = 1;
+    while ((value & ~0x7FL) != 0) {
+      value >>>= 7;
+      size++;
+    }
+    return size;
+  }
+}
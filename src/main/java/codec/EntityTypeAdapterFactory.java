@@ -0,0 +1,36 @@
+package codec;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import entity.Node;
+import entity.actuator.Actuator;
+import entity.sensor.Sensor;
+
+/**
+ * Supplies the adapters for the entity types that need more than Gson's reflection: the
+ * {@link Node} snapshot and the abstract {@link Sensor} and {@link Actuator} types, whose concrete
+ * class is picked from the {@code sensorType} / {@code actuatorType} field.
+ *
+ * <p>Gson calls the factory once per type and caches the result, so each adapter is built once
+ * for the lifetime of the {@link com.google.gson.Gson} instance.
+ */
+class EntityTypeAdapterFactory implements TypeAdapterFactory {
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+    Class<? super T> raw = type.getRawType();
+    if (raw == Node.class) {
+      return (TypeAdapter<T>) new NodeAdapter(gson);
+    }
+    if (raw == Sensor.class) {
+      return (TypeAdapter<T>) new SensorAdapter(gson);
+    }
+    if (raw == Actuator.class) {
+      return (TypeAdapter<T>) new ActuatorAdapter(gson);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,34 @@
+package codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import java.time.LocalDateTime;
+
+/**
+ * The one {@link Gson} instance shared by the server, the nodes and the control panels.
+ *
+ * <p>A {@code Gson} is thread-safe and caches the adapter of every type it has seen, so building
+ * it once and reusing it avoids rebuilding those adapters (and allocating a new builder) for
+ * every message. The instance knows how to read and write {@link entity.Node} snapshots,
+ * including the concrete {@code Sensor} and {@code Actuator} subclasses and
+ * {@link LocalDateTime} timestamps.
+ */
+public final class JsonCodec {
+
+  private static final Gson GSON = new GsonBuilder()
+      .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+      .registerTypeAdapterFactory(new EntityTypeAdapterFactory())
+      .create();
+
+  private JsonCodec() {
+  }
+
+  /**
+   * Get the shared Gson instance.
+   *
+   * @return shared, thread-safe Gson
+   */
+  public static Gson gson() {
+    return GSON;
+  }
+}
@@ -0,0 +1,33 @@
+package codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Writes a {@link LocalDateTime} as its ISO-8601 string (e.g. {@code 2025-11-20T10:15:30.123}) and
+ * reads it back.
+ */
+public class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
+
+  @Override
+  public void write(JsonWriter out, LocalDateTime value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    out.value(value.toString());
+  }
+
+  @Override
+  public LocalDateTime read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return LocalDateTime.parse(in.nextString());
+  }
+}
@@ -0,0 +1,113 @@
+package codec;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import entity.Node;
+import entity.actuator.Actuator;
+import entity.sensor.Sensor;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams a {@link Node} snapshot to and from JSON field by field.
+ *
+ * <p>The format is the one nodes have always sent: {@code nodeID}, {@code location},
+ * {@code timestamp}, {@code sensors} and {@code actuators}. Unknown fields (such as
+ * {@code messageType}) are skipped, and sensors or actuators that cannot be decoded are left out.
+ */
+class NodeAdapter extends TypeAdapter<Node> {
+
+  private final TypeAdapter<LocalDateTime> timeAdapter;
+  private final TypeAdapter<Sensor> sensorAdapter;
+  private final TypeAdapter<Actuator> actuatorAdapter;
+
+  NodeAdapter(Gson gson) {
+    this.timeAdapter = gson.getAdapter(LocalDateTime.class);
+    this.sensorAdapter = gson.getAdapter(Sensor.class);
+    this.actuatorAdapter = gson.getAdapter(Actuator.class);
+  }
+
+  @Override
+  public void write(JsonWriter out, Node node) throws IOException {
+    if (node == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("nodeID").value(node.getNodeID());
+    out.name("location").value(node.getLocation());
+    out.name("timestamp");
+    timeAdapter.write(out, node.getTimestamp());
+    out.name("sensors").beginArray();
+    for (Sensor sensor : node.getSensors()) {
+      sensorAdapter.write(out, sensor);
+    }
+    out.endArray();
+    out.name("actuators").beginArray();
+    for (Actuator actuator : node.getActuators()) {
+      actuatorAdapter.write(out, actuator);
+    }
+    out.endArray();
+    out.endObject();
+  }
+
+  @Override
+  public Node read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    String nodeId = null;
+    String location = null;
+    LocalDateTime timestamp = null;
+    List<Sensor> sensors = new ArrayList<>();
+    List<Actuator> actuators = new ArrayList<>();
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "nodeID" -> nodeId = nextStringOrNull(in);
+        case "location" -> location = nextStringOrNull(in);
+        case "timestamp" -> timestamp = timeAdapter.read(in);
+        case "sensors" -> readArray(in, sensorAdapter, sensors);
+        case "actuators" -> readArray(in, actuatorAdapter, actuators);
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+    try {
+      return Node.fromSnapshot(nodeId, location, timestamp, sensors, actuators);
+    } catch (IllegalArgumentException e) {
+      throw new JsonParseException("Invalid node snapshot: " + e.getMessage(), e);
+    }
+  }
+
+  private static String nextStringOrNull(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    return in.nextString();
+  }
+
+  private static <E> void readArray(JsonReader in, TypeAdapter<E> adapter, List<E> into)
+      throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return;
+    }
+    in.beginArray();
+    while (in.hasNext()) {
+      E element = adapter.read(in);
+      if (element != null) {
+        into.add(element);
+      }
+    }
+    in.endArray();
+  }
+}
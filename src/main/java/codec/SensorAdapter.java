@@ -0,0 +1,115 @@
+package codec;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import entity.sensor.CO2Sensor;
+import entity.sensor.HumiditySensor;
+import entity.sensor.LightSensor;
+import entity.sensor.Sensor;
+import entity.sensor.SensorKind;
+import entity.sensor.TemperatureSensor;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Reads a {@link Sensor} as the concrete subclass named by its {@code sensorType} and writes any
+ * sensor with the adapter of its runtime class.
+ *
+ * <p>Reading is a single pass over the token stream: the fields are collected into locals, so
+ * {@code sensorType} may appear anywhere in the object, and the sensor is constructed once the
+ * object ends. No intermediate JSON tree is built.
+ */
+class SensorAdapter extends TypeAdapter<Sensor> {
+
+  private final Gson gson;
+  private final TypeAdapter<LocalDateTime> timeAdapter;
+
+  SensorAdapter(Gson gson) {
+    this.gson = gson;
+    this.timeAdapter = gson.getAdapter(LocalDateTime.class);
+  }
+
+  /**
+   * Create the sensor subclass for a sensor type. Unknown types fall back to
+   * {@link TemperatureSensor}.
+   *
+   * @param sensorType   value of the {@code sensorType} field, resolved through
+   *                     {@link SensorKind#of(String)}
+   * @param sensorId     sensor id
+   * @param minThreshold minimum threshold
+   * @param maxThreshold maximum threshold
+   * @return new sensor
+   * @throws IllegalArgumentException if the id or thresholds are invalid
+   */
+  static Sensor newSensor(String sensorType, String sensorId, double minThreshold,
+      double maxThreshold) {
+    SensorKind kind = SensorKind.of(sensorType);
+    if (kind == null) {
+      return new TemperatureSensor(sensorId, minThreshold, maxThreshold);
+    }
+    return switch (kind) {
+      case TEMPERATURE -> new TemperatureSensor(sensorId, minThreshold, maxThreshold);
+      case HUMIDITY -> new HumiditySensor(sensorId, minThreshold, maxThreshold);
+      case LIGHT -> new LightSensor(sensorId, minThreshold, maxThreshold);
+      case CO2 -> new CO2Sensor(sensorId, minThreshold, maxThreshold);
+    };
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void write(JsonWriter out, Sensor value) throws IOException {
+    if (value == null) {
+      out.nullValue();
+      return;
+    }
+    ((TypeAdapter<Sensor>) gson.getAdapter(value.getClass())).write(out, value);
+  }
+
+  @Override
+  public Sensor read(JsonReader in) throws IOException {
+    if (in.peek() != JsonToken.BEGIN_OBJECT) {
+      // Not a sensor object: skipped like a sensor without a type
+      in.skipValue();
+      return null;
+    }
+    String sensorId = null;
+    String sensorType = null;
+    double value = 0;
+    double minThreshold = 0;
+    double maxThreshold = 0;
+    LocalDateTime timestamp = null;
+    in.beginObject();
+    while (in.hasNext()) {
+      String name = in.nextName();
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        continue;
+      }
+      switch (name) {
+        case "sensorId" -> sensorId = in.nextString();
+        case "sensorType" -> sensorType = in.nextString();
+        case "value" -> value = in.nextDouble();
+        case "minThreshold" -> minThreshold = in.nextDouble();
+        case "maxThreshold" -> maxThreshold = in.nextDouble();
+        case "timestamp" -> timestamp = timeAdapter.read(in);
+        // unit is implied by the subclass
+        default -> in.skipValue();
+      }
+    }
+    in.endObject();
+    if (sensorType == null) {
+      return null;
+    }
+    try {
+      Sensor sensor = newSensor(sensorType, sensorId, minThreshold, maxThreshold);
+      sensor.restoreReading(value, timestamp);
+      return sensor;
+    } catch (IllegalArgumentException e) {
+      // Invalid id or thresholds: skipped, the rest of the snapshot is still usable
+      return null;
+    }
+  }
+}
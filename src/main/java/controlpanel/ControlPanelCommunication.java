@@ -1,12 +1,20 @@
 package controlpanel;
 
+import codec.BinaryFrameReader;
+import codec.BinaryFrameWriter;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.util.function.Consumer;
 
 /**
@@ -21,13 +29,26 @@ import java.util.function.Consumer;
  * {@link #connect(String, int)}.
  * The provided {@code Gson} instance may be {@code null} if not needed by callers of this class,
  * but it is used when registering the control panel identity at connect time.</p>
+ *
+ * <p>With {@link #setBinaryFraming(boolean)} the panel asks the server for binary framing when it
+ * registers. If the server confirms, messages travel as {@link BinaryFrameWriter} frames and are
+ * still delivered to {@code onJson} as JSON strings; otherwise the connection stays line-based.</p>
  */
 public class ControlPanelCommunication {
 
+  // Reply the server sends before switching a control panel to binary framing
+  private static final String FRAMING_ACCEPTED =
+      "{\"messageType\":\"FRAMING_ACCEPTED\",\"framing\":\"binary\"}";
+  private static final int FRAMING_REPLY_TIMEOUT_MS = 2000;
+
   private final String controlPanelId;
   private Socket socket;
   private BufferedReader in;
   private PrintWriter out;
+  // Set instead of in/out when the server accepted binary framing
+  private BinaryFrameReader frameIn;
+  private BinaryFrameWriter frameOut;
+  private boolean binaryFraming = false;
   private volatile Thread readerThread;
   private final Gson gson;
   private final Consumer<String> onJson;
@@ -52,6 +73,24 @@ public class ControlPanelCommunication {
     this.controlPanelId = controlPanelId;
   }
 
+  /**
+   * Ask the server for binary framing on the next {@link #connect(String, int)}.
+   *
+   * @param binaryFraming true to request binary framing
+   */
+  public void setBinaryFraming(boolean binaryFraming) {
+    this.binaryFraming = binaryFraming;
+  }
+
+  /**
+   * Check whether the current connection uses binary framing.
+   *
+   * @return true if the server accepted binary framing
+   */
+  public boolean isBinaryFraming() {
+    return frameOut != null;
+  }
+
   /**
    * Open a TCP connection to the given server IP and port.
    *
@@ -66,8 +105,9 @@ public class ControlPanelCommunication {
    */
   public void connect(String ip, int port) throws IOException {
     socket = new Socket(ip, port);
-    in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-    out = new PrintWriter(socket.getOutputStream(), true);
+    InputStream rawIn = new BufferedInputStream(socket.getInputStream());
+    OutputStream rawOut = new BufferedOutputStream(socket.getOutputStream());
+    out = new PrintWriter(rawOut, true);
     // remember connection info
     this.connectedIp = ip;
     this.connectedPort = port;
@@ -75,11 +115,46 @@ public class ControlPanelCommunication {
     JsonObject reg = new JsonObject();
     reg.addProperty("messageType", "REGISTER_CONTROL_PANEL");
     reg.addProperty("controlPanelId", controlPanelId);
+    if (binaryFraming) {
+      reg.addProperty("framing", "binary");
+    }
     out.println(gson.toJson(reg));
 
+    String firstLine = binaryFraming ? awaitFramingReply(rawIn) : null;
+    if (FRAMING_ACCEPTED.equals(firstLine)) {
+      frameIn = new BinaryFrameReader(rawIn);
+      frameOut = new BinaryFrameWriter(rawOut);
+      out = null;
+    } else {
+      in = new BufferedReader(new InputStreamReader(rawIn, StandardCharsets.UTF_8));
+      if (firstLine != null && !firstLine.isBlank()) {
+        // An older server ignored the request and this is already a regular message
+        onJson.accept(firstLine.trim());
+      }
+    }
+
     startListenThread();
   }
 
+  /**
+   * Wait briefly for the server's reply to a binary framing request. The line is read without
+   * buffering past it, so frames that follow it are left in the stream.
+   *
+   * @param rawIn the connection's input stream
+   * @return the first line from the server, or {@code null} if none arrived in time
+   * @throws IOException when reading fails
+   */
+  private String awaitFramingReply(InputStream rawIn) throws IOException {
+    socket.setSoTimeout(FRAMING_REPLY_TIMEOUT_MS);
+    try {
+      return BinaryFrameReader.readHandshakeLine(rawIn);
+    } catch (SocketTimeoutException e) {
+      return null;
+    } finally {
+      socket.setSoTimeout(0);
+    }
+  }
+
   /**
    * Start the background thread that listens for incoming JSON messages.
    * The thread is a daemon thread named "cp-comm-reader".
@@ -91,7 +166,7 @@ public class ControlPanelCommunication {
     readerThread = new Thread(() -> {
       try {
         String line;
-        while ((line = in.readLine()) != null) {
+        while ((line = frameIn != null ? frameIn.readLine() : in.readLine()) != null) {
           line = line.trim();
             if (line.isEmpty()) {
                 continue;
@@ -116,6 +191,18 @@ public class ControlPanelCommunication {
    * @param json JSON-tekst (linjedelimited) som skal sendes til server
    */
   public void sendJson(String json) {
+    BinaryFrameWriter frames = frameOut;
+    if (frames != null) {
+      synchronized (frames) {
+        try {
+          frames.writeText(json);
+          frames.flush();
+        } catch (IOException e) {
+          System.err.println("[CP-Comm] Send failed: " + e.getMessage());
+        }
+      }
+      return;
+    }
     if (out == null) {
       System.err.println("[CP-Comm] Not connected");
       return;
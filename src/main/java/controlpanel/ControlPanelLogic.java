@@ -1,14 +1,19 @@
 package controlpanel;
 
+import codec.JsonCodec;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 
 import entity.sensor.Sensor;
+import entity.sensor.SensorKind;
 import entity.Node;
 import entity.actuator.Actuator;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -18,6 +23,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import network.NodeClient;
+import network.NodeDelta;
+import network.SensorHistory;
 //import com.google.gson.GsonBuilder;
 //import com.google.gson.JsonDeserializer;
 //import com.google.gson.JsonSerializer;
@@ -52,7 +59,7 @@ import java.net.Socket;
 public class ControlPanelLogic {
 
   private final String controlPanelId;
-  private final Gson gson = new Gson();
+  private final Gson gson = JsonCodec.gson();
   private final ControlPanelCommunication comm;
   private final Map<String, NodeState> nodes = new ConcurrentHashMap<>();
   // spawned simulated nodes created by this control panel logic (nodeId -> NodeClient)
@@ -67,6 +74,8 @@ public class ControlPanelLogic {
   // Track nodes recently requested so we only print the first response during the request window
   private final Map<String, CountDownLatch> requestLatches = new ConcurrentHashMap<>();
   private final Set<String> requestPrinted = ConcurrentHashMap.newKeySet();
+  // Nodes whose deltas could not be applied and for which a snapshot has been requested
+  private final Set<String> resyncRequested = ConcurrentHashMap.newKeySet();
 
 
   /**
@@ -233,8 +242,8 @@ public class ControlPanelLogic {
   /**
    * Handle a single line of JSON received from the server.
    *
-   * <p>Recognized message types are {@code SENSOR_DATA_FROM_NODE},
-   * {@code ACTUATOR_STATUS} and {@code ALERT}. For backward compatibility, a payload containing a
+   * <p>Recognized message types are {@code SENSOR_DATA_FROM_NODE}, {@code NODE_DELTA},
+   * {@code ACTUATOR_STATUS}, {@code ALERT} and {@code HISTORY}. For backward compatibility, a payload containing a
    * {@code nodeID} but lacking {@code messageType} will be treated as
    * {@code SENSOR_DATA_FROM_NODE}.
    *
@@ -257,7 +266,7 @@ public class ControlPanelLogic {
       // Some server responses (cached node JSON) may not include a messageType.
       // If the payload contains a nodeID we treat it as SENSOR_DATA_FROM_NODE for backward compatibility.
       if (obj.has("nodeID") && !obj.get("nodeID").isJsonNull()) {
-        updateNodeState(json);
+        updateNodeState(json, seqOf(obj));
         return;
       }
       System.out.println("[CP-Logic] Missing messageType in JSON: " + json);
@@ -266,14 +275,50 @@ public class ControlPanelLogic {
 
     String type = obj.get("messageType").getAsString();
     switch (type) {
-      case "SENSOR_DATA_FROM_NODE" -> updateNodeState(json);
+      case "SENSOR_DATA_FROM_NODE" -> updateNodeState(json, seqOf(obj));
+      case NodeDelta.MESSAGE_TYPE -> applyNodeDelta(obj);
       case "SENSOR_NODE_DISCONNECTED" -> handleNodeDisconnected(json);
       case "ACTUATOR_STATUS" -> processActuatorStatus(json);
       case "ALERT" -> handleAlert(json);
+      case SensorHistory.RESPONSE_TYPE -> handleHistory(obj);
       default -> System.out.println("[CP-Logic] Unknown type: " + type);
     }
   }
 
+  /**
+   * Print a summary of a {@code HISTORY} answer: number of points, their time span and the
+   * lowest, highest and latest reading.
+   */
+  private void handleHistory(JsonObject obj) {
+    String nodeId = obj.has("nodeID") && !obj.get("nodeID").isJsonNull()
+        ? obj.get("nodeID").getAsString() : "?";
+    String sensorId = obj.has("sensorId") && !obj.get("sensorId").isJsonNull()
+        ? obj.get("sensorId").getAsString() : "?";
+    if (obj.has("error")) {
+      System.out.println("\nHistory of " + nodeId + "/" + sensorId + " failed: "
+          + obj.get("error").getAsString());
+      return;
+    }
+    JsonArray times = obj.has("timestamps") ? obj.getAsJsonArray("timestamps") : new JsonArray();
+    JsonArray values = obj.has("values") ? obj.getAsJsonArray("values") : new JsonArray();
+    if (values.isEmpty()) {
+      System.out.println("\nNo history for " + nodeId + "/" + sensorId + " in that range.");
+      return;
+    }
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    for (JsonElement v : values) {
+      min = Math.min(min, v.getAsDouble());
+      max = Math.max(max, v.getAsDouble());
+    }
+    boolean truncated = obj.has("truncated") && obj.get("truncated").getAsBoolean();
+    System.out.printf("%nHistory of %s/%s: %d point(s)%s from %s to %s%n", nodeId, sensorId,
+        values.size(), truncated ? " (truncated)" : "", times.get(0).getAsString(),
+        times.get(times.size() - 1).getAsString());
+    System.out.printf("  min %.2f, max %.2f, latest %.2f%n", min, max,
+        values.get(values.size() - 1).getAsDouble());
+  }
+
   /**
    * Handle notification that a node disconnected from the server.
    */
@@ -290,6 +335,7 @@ public class ControlPanelLogic {
       // Also clear any request tracking for that node
       requestLatches.remove(nodeId);
       requestPrinted.remove(nodeId);
+      resyncRequested.remove(nodeId);
       if (removed != null) {
         System.out.println("\n ---- NODE REMOVED ----\nNode " + nodeId
             + " disconnected and was removed from cache.\n");
@@ -347,10 +393,21 @@ public class ControlPanelLogic {
     }
   }
 
+  /**
+   * Read the sequence number of a snapshot or delta.
+   *
+   * @return {@code seq}, or -1 if the message has none
+   */
+  private static long seqOf(JsonObject obj) {
+    JsonElement seq = obj.get("seq");
+    return seq != null && seq.isJsonPrimitive() && seq.getAsJsonPrimitive().isNumber()
+        ? seq.getAsLong() : -1;
+  }
+
   /**
    * parsing nodemessage with sesnoreadings and updates intern state
    */
-  private void updateNodeState(String json) {
+  private void updateNodeState(String json, long seq) {
     try {
       Node node = Node.nodeFromJson(json);
       if (node == null) {
@@ -358,6 +415,8 @@ public class ControlPanelLogic {
       }
 
       NodeState state = nodes.computeIfAbsent(node.getNodeID(), NodeState::new);
+      state.seq = seq;
+      resyncRequested.remove(node.getNodeID());
 
       // Store location from incoming node snapshot so the UI can show it
       try {
@@ -388,6 +447,90 @@ public class ControlPanelLogic {
     }
   }
 
+  /**
+   * Apply a {@code NODE_DELTA} onto the cached state of its node. A delta that does not directly
+   * follow the cached sequence number (or names an unknown sensor or actuator) means updates
+   * were missed, so the node's full state is requested from the server instead.
+   *
+   * @param delta the parsed delta message
+   */
+  private void applyNodeDelta(JsonObject delta) {
+    try {
+      String nodeId = delta.has("nodeID") && !delta.get("nodeID").isJsonNull()
+          ? delta.get("nodeID").getAsString() : null;
+      if (nodeId == null) {
+        return;
+      }
+      long seq = seqOf(delta);
+      NodeState state = nodes.get(nodeId);
+      if (state != null && state.seq >= 0 && seq >= 0 && seq <= state.seq) {
+        return; // already covered by a newer snapshot
+      }
+      if (state == null || state.seq < 0 || seq != state.seq + 1 || !canApply(state, delta)) {
+        requestResync(nodeId);
+        return;
+      }
+      if (delta.has("sensors")) {
+        for (JsonElement e : delta.getAsJsonArray("sensors")) {
+          JsonObject reading = e.getAsJsonObject();
+          Sensor sensor = state.sensors.get(reading.get("sensorId").getAsString());
+          sensor.restoreReading(reading.get("value").getAsDouble(),
+              NodeDelta.timestampOf(reading));
+        }
+      }
+      if (delta.has("actuators")) {
+        for (JsonElement e : delta.getAsJsonArray("actuators")) {
+          JsonObject change = e.getAsJsonObject();
+          state.actuators.get(change.get("actuatorId").getAsString())
+              .setOn(change.get("on").getAsBoolean());
+        }
+      }
+      state.seq = seq;
+      printNodeState(state);
+    } catch (Exception e) {
+      System.out.println("[CP-Logic] Error applying node delta: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Check that every sensor and actuator named in a delta is in the cached state.
+   */
+  private static boolean canApply(NodeState state, JsonObject delta) {
+    if (delta.has("sensors")) {
+      for (JsonElement e : delta.getAsJsonArray("sensors")) {
+        if (!state.sensors.containsKey(e.getAsJsonObject().get("sensorId").getAsString())) {
+          return false;
+        }
+      }
+    }
+    if (delta.has("actuators")) {
+      for (JsonElement e : delta.getAsJsonArray("actuators")) {
+        if (!state.actuators.containsKey(e.getAsJsonObject().get("actuatorId").getAsString())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Ask the server for a node's full state after missing some of its deltas. Unlike
+   * {@link #requestNode(String)} this does not wait for the answer (it runs on the reader
+   * thread that will deliver it) and only asks once until a snapshot arrives.
+   *
+   * @param nodeId node to resync
+   */
+  private void requestResync(String nodeId) {
+    if (!resyncRequested.add(nodeId)) {
+      return;
+    }
+    JsonObject obj = new JsonObject();
+    obj.addProperty("messageType", "REQUEST_NODE");
+    obj.addProperty("controlPanelId", controlPanelId);
+    obj.addProperty("nodeID", nodeId);
+    comm.sendJson(gson.toJson(obj));
+  }
+
   /**
    * parser nodemessage that reportsacutator status and updates intern acutator state
    */
@@ -482,13 +625,17 @@ public class ControlPanelLogic {
   public Map<String, List<Sensor>> getSensorsByType(String sensorType) {
     Map<String, List<Sensor>> result = new HashMap<>();
     if (sensorType == null || sensorType.isBlank()) return result;
+    // Resolved once; unknown types still match by name
+    SensorKind kind = SensorKind.of(sensorType);
     for (Map.Entry<String, NodeState> e : nodes.entrySet()) {
       NodeState ns = e.getValue();
       if (ns == null || ns.sensors == null) continue;
       List<Sensor> matches = new ArrayList<>();
       for (Sensor s : ns.sensors.values()) {
         if (s == null || s.getSensorType() == null) continue;
-        if (sensorType.equalsIgnoreCase(s.getSensorType())) matches.add(s);
+        if (kind != null ? s.getKind() == kind : sensorType.equalsIgnoreCase(s.getSensorType())) {
+          matches.add(s);
+        }
       }
       if (!matches.isEmpty()) result.put(e.getKey(), matches);
     }
@@ -516,7 +663,39 @@ public class ControlPanelLogic {
 
 
   // ---------- ControlPanel actions ----------
-  // Subscriptions removed: control panels no longer subscribe/unsubscribe to nodes.
+
+  /**
+   * Subscribe to node updates by topic. Once subscribed to at least one topic, the server only
+   * forwards messages from nodes matching one of the panel's topics; without subscriptions the
+   * panel receives updates from every node.
+   *
+   * @param key   {@code nodeID}, {@code location} or {@code sensorType}
+   * @param value node id, location name or sensor type to match
+   */
+  public void subscribe(String key, String value) {
+    sendSubscription("SUBSCRIBE", key, value);
+  }
+
+  /**
+   * Remove a subscription made with {@link #subscribe(String, String)}.
+   *
+   * @param key   {@code nodeID}, {@code location} or {@code sensorType}
+   * @param value node id, location name or sensor type
+   */
+  public void unsubscribe(String key, String value) {
+    sendSubscription("UNSUBSCRIBE", key, value);
+  }
+
+  private void sendSubscription(String messageType, String key, String value) {
+    if (!"nodeID".equals(key) && !"location".equals(key) && !"sensorType".equals(key)) {
+      throw new IllegalArgumentException("Unknown subscription key: " + key);
+    }
+    JsonObject obj = new JsonObject();
+    obj.addProperty("messageType", messageType);
+    obj.addProperty("controlPanelId", controlPanelId);
+    obj.addProperty(key, value);
+    comm.sendJson(gson.toJson(obj));
+  }
 
   /**
    * Request the current state of a specific node from the server.
@@ -552,6 +731,26 @@ public class ControlPanelLogic {
     }
   }
 
+  /**
+   * Ask the server for the stored readings of a sensor within a time range. The answer arrives
+   * asynchronously as a {@code HISTORY} message and is summarized on the console.
+   *
+   * @param nodeId   node the sensor belongs to
+   * @param sensorId sensor id
+   * @param from     start of the range, inclusive
+   * @param to       end of the range, inclusive
+   */
+  public void queryHistory(String nodeId, String sensorId, LocalDateTime from, LocalDateTime to) {
+    JsonObject obj = new JsonObject();
+    obj.addProperty("messageType", SensorHistory.QUERY_TYPE);
+    obj.addProperty("controlPanelId", controlPanelId);
+    obj.addProperty("nodeID", nodeId);
+    obj.addProperty("sensorId", sensorId);
+    obj.addProperty("from", from.toString());
+    obj.addProperty("to", to.toString());
+    comm.sendJson(gson.toJson(obj));
+  }
+
   /**
    * Request that a node adds a sensor at runtime. The control panel sends an {@code ADD_SENSOR}
    * message containing the type, id and threshold values.
@@ -663,6 +862,8 @@ public class ControlPanelLogic {
 
     public final String nodeId;
     public String location = "";
+    // Sequence number of the last applied snapshot or delta, -1 if unknown
+    public long seq = -1;
     public final Map<String, Sensor> sensors = new HashMap<>();
     public final Map<String, Actuator> actuators = new HashMap<>();
 
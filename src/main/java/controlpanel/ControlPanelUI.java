@@ -89,6 +89,9 @@ public class ControlPanelUI {
     System.out.println(" - CheckNode <nodeId>");
     System.out.println(" - ToggleActuator <nodeId> <actuatorId> <on|off>");
     System.out.println(" - CheckAllSensorsOfType");
+    System.out.println(" - Subscribe <node|location|type> <value>");
+    System.out.println(" - Unsubscribe <node|location|type> <value>");
+    System.out.println(" - History <nodeId> <sensorId> [minutes]");
     System.out.println(" - Exit\n");
   }
 
@@ -414,6 +417,54 @@ public class ControlPanelUI {
           }
         }
 
+        case "subscribe", "unsubscribe" -> {
+          String usage = "Usage: " + (cmd.equals("subscribe") ? "Subscribe" : "Unsubscribe")
+              + " <node|location|type> <value>";
+          if (!validateArgs(parts, 3, usage)) {
+            return;
+          }
+          String key = switch (parts[1].toLowerCase()) {
+            case "node" -> "nodeID";
+            case "location" -> "location";
+            case "type" -> "sensorType";
+            default -> null;
+          };
+          if (key == null) {
+            System.out.println("Invalid topic: " + parts[1] + ". Use node, location or type.");
+            System.out.println(usage);
+            break;
+          }
+          if (cmd.equals("subscribe")) {
+            logic.subscribe(key, parts[2]);
+            System.out.println("\nSubscribed to " + parts[1].toLowerCase() + " " + parts[2]);
+          } else {
+            logic.unsubscribe(key, parts[2]);
+            System.out.println("\nUnsubscribed from " + parts[1].toLowerCase() + " " + parts[2]);
+          }
+        }
+
+        case "history" -> {
+          String usage = "Usage: History <nodeId> <sensorId> [minutes]";
+          if (!validateArgs(parts, 3, usage)) {
+            return;
+          }
+          long minutes = 60;
+          if (parts.length > 3) {
+            try {
+              minutes = Long.parseLong(parts[3]);
+            } catch (NumberFormatException e) {
+              minutes = -1;
+            }
+            if (minutes <= 0) {
+              System.out.println("Minutes must be a positive number: " + parts[3]);
+              System.out.println(usage);
+              break;
+            }
+          }
+          java.time.LocalDateTime now = java.time.LocalDateTime.now();
+          logic.queryHistory(parts[1], parts[2], now.minusMinutes(minutes), now);
+        }
+
         case "exit" -> {
           System.out.println("Exiting...");
           running = false;
@@ -428,6 +479,9 @@ public class ControlPanelUI {
           System.out.println(" - RemoveSensor <nodeId> <sensorId>");
           System.out.println(" - CheckNode <nodeId>");
           System.out.println(" - ToggleActuator <nodeId> <actuatorId> <on|off>");
+          System.out.println(" - Subscribe <node|location|type> <value>");
+          System.out.println(" - Unsubscribe <node|location|type> <value>");
+          System.out.println(" - History <nodeId> <sensorId> [minutes]");
           System.out.println(" - Exit");
         }
       }
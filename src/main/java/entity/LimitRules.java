@@ -0,0 +1,174 @@
+package entity;
+
+import entity.actuator.Actuator;
+import entity.actuator.ActuatorKind;
+import entity.sensor.Sensor;
+import entity.sensor.SensorKind;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The absolute safety limits and user thresholds of a node, compiled into one rule per sensor.
+ *
+ * <p>Compiling takes each sensor's {@link SensorKind} with its safety limits and binds the
+ * actuators whose {@link ActuatorKind} drives the sensor further towards a limit, which are
+ * switched off when the sensor reaches it, so {@link #check(String)} is a single pass over the
+ * rules without string handling. It reports a breach for every sensor, not just the first one,
+ * and allocates only when something is breached. A sensor reaching a safety limit is reported
+ * for that limit only, not also for the user threshold it passed on the way.
+ *
+ * <p>A table is bound to the exact sensor and actuator objects it was compiled from and is kept
+ * in the node's {@link SensorIndex}, which is rebuilt when they change.
+ */
+final class LimitRules {
+
+  // Tolerance when comparing a reading to a limit or threshold
+  private static final double EPS = 0.01;
+
+  /**
+   * The alert of a sensor reaching one of its safety limits.
+   *
+   * @param code         alert code
+   * @param actuatorName name of the actuator kind switched off, for the alert text
+   */
+  private record Limit(String code, String actuatorName) {
+  }
+
+  /**
+   * The alert texts of a sensor kind.
+   *
+   * @param thresholdPrefix prefix of the user threshold alerts
+   * @param atMin           alert at the lower safety limit
+   * @param atMax           alert at the upper safety limit
+   */
+  private record Alerts(String thresholdPrefix, Limit atMin, Limit atMax) {
+  }
+
+  // Indexed by SensorKind ordinal
+  private static final Alerts[] ALERTS = new Alerts[SensorKind.COUNT];
+
+  static {
+    ALERTS[SensorKind.TEMPERATURE.ordinal()] = new Alerts("TEMP",
+        new Limit("REACHING_COLD_LIMIT", "AirCondition"),
+        new Limit("REACHING_WARM_LIMIT", "Heater"));
+    ALERTS[SensorKind.HUMIDITY.ordinal()] = new Alerts("HUMIDITY",
+        new Limit("HUMIDITY_MIN_REACHED", "DeHumidifier"),
+        new Limit("HUMIDITY_MAX_REACHED", "Humidifier"));
+    ALERTS[SensorKind.LIGHT.ordinal()] = new Alerts("LIGHT",
+        new Limit("LIGHT_OFF", "Dimmer"),
+        new Limit("LIGHT_FULL_BRIGHT", "Brightener"));
+    ALERTS[SensorKind.CO2.ordinal()] = new Alerts("CO2",
+        new Limit("CO2_MIN_REACHED", "Ventilation"),
+        new Limit("CO2_MAX_REACHED", "CO2Supply"));
+  }
+
+  /**
+   * The compiled checks of one sensor.
+   */
+  private static final class Rule {
+    final Sensor sensor;
+    final SensorKind kind;
+    final Alerts alerts;
+    final double min;
+    final double max;
+    final Actuator[] offAtMin;
+    final Actuator[] offAtMax;
+
+    Rule(Sensor sensor, SensorKind kind, Actuator[] actuators) {
+      this.sensor = sensor;
+      this.kind = kind;
+      this.alerts = ALERTS[kind.ordinal()];
+      this.min = sensor.getMinThreshold();
+      this.max = sensor.getMaxThreshold();
+      this.offAtMin = bind(kind, false, actuators);
+      this.offAtMax = bind(kind, true, actuators);
+    }
+
+    /**
+     * Find the actuators that drive a sensor of this kind further in one direction.
+     */
+    private static Actuator[] bind(SensorKind kind, boolean raising, Actuator[] actuators) {
+      List<Actuator> bound = new ArrayList<>();
+      for (Actuator a : actuators) {
+        ActuatorKind k = a == null ? null : a.getKind();
+        if (k != null && k.getAffects() == kind && k.raises() == raising) {
+          bound.add(a);
+        }
+      }
+      return bound.toArray(new Actuator[0]);
+    }
+  }
+
+  private final Rule[] rules;
+
+  private LimitRules(Rule[] rules) {
+    this.rules = rules;
+  }
+
+  /**
+   * Compile the rules for a node's sensors and actuators.
+   *
+   * @param sensors   the node's sensors
+   * @param actuators the node's actuators
+   * @return rule table bound to these sensors and actuators
+   */
+  static LimitRules compile(Sensor[] sensors, Actuator[] actuators) {
+    List<Rule> rules = new ArrayList<>();
+    for (Sensor s : sensors) {
+      SensorKind kind = s == null ? null : s.getKind();
+      if (kind != null) {
+        rules.add(new Rule(s, kind, actuators));
+      }
+    }
+    return new LimitRules(rules.toArray(new Rule[0]));
+  }
+
+  /**
+   * Check every sensor against its safety limits and user thresholds. Reaching a safety limit
+   * switches off the actuators that drive the sensor further that way.
+   *
+   * @param nodeId node id for the alert text
+   * @return one alert per breaching sensor, in sensor order; empty if nothing is breached
+   */
+  List<String> check(String nodeId) {
+    List<String> alerts = null;
+    for (Rule r : rules) {
+      String alert = check(r, nodeId);
+      if (alert != null) {
+        if (alerts == null) {
+          alerts = new ArrayList<>(2);
+        }
+        alerts.add(alert);
+      }
+    }
+    return alerts != null ? alerts : List.of();
+  }
+
+  private static String check(Rule r, String nodeId) {
+    double v = r.sensor.getValue();
+    if (v <= r.kind.getMinLimit() + EPS) {
+      return limitReached(r.alerts.atMin(), r.offAtMin, nodeId, r.sensor, v);
+    }
+    if (v >= r.kind.getMaxLimit() - EPS) {
+      return limitReached(r.alerts.atMax(), r.offAtMax, nodeId, r.sensor, v);
+    }
+    if (v > r.max + EPS) {
+      return String.format("%s_OVER_MAX node=%s sensor=%s value=%.2f max=%.2f",
+          r.alerts.thresholdPrefix(), nodeId, r.sensor.getSensorId(), v, r.max);
+    }
+    if (v < r.min - EPS) {
+      return String.format("%s_BELOW_MIN node=%s sensor=%s value=%.2f min=%.2f",
+          r.alerts.thresholdPrefix(), nodeId, r.sensor.getSensorId(), v, r.min);
+    }
+    return null;
+  }
+
+  private static String limitReached(Limit limit, Actuator[] offs, String nodeId, Sensor sensor,
+      double v) {
+    for (Actuator a : offs) {
+      a.setOn(false);
+    }
+    return String.format("%s node=%s sensor=%s value=%.2f — %s auto-OFF", limit.code(), nodeId,
+        sensor.getSensorId(), v, limit.actuatorName());
+  }
+}
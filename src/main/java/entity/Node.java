@@ -1,26 +1,18 @@
 package entity;
 
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-
+import codec.JsonCodec;
 import entity.sensor.Sensor;
-import entity.sensor.TemperatureSensor;
-import entity.sensor.LightSensor;
-import entity.sensor.HumiditySensor;
+import entity.sensor.SensorKind;
 import entity.actuator.Actuator;
-import entity.sensor.CO2Sensor;
-import com.google.gson.JsonObject;
-import java.lang.reflect.Type;
+import entity.actuator.ActuatorKind;
+import entity.actuator.ConflictGroups;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import com.google.gson.Gson;
+import java.util.Set;
+import logging.Log;
 
 /**
  * Represents a Node in the network, containing sensors and actuators.
@@ -35,6 +27,14 @@ public class Node {
   private LocalDateTime timestamp;
   private List<Sensor> sensors;
   private List<Actuator> actuators;
+  // Local publishing rules of a running node; not part of the node's state on the wire
+  private transient PublishPolicy publishPolicy = PublishPolicy.EVERY_CHANGE;
+  // Actuator kinds that must not run together; local to a running node like the publish policy
+  private transient ConflictGroups conflictGroups = ConflictGroups.DEFAULT;
+  // Sensors by kind, actuator bindings and limit rules; rebuilt when the sensors or actuators change
+  private transient SensorIndex sensorIndex;
+  // Sensors and actuators by id and actuators by sensor and kind; kept up to date in place
+  private transient NodeLookup lookup;
 
 
 
@@ -83,16 +83,13 @@ public class Node {
   }
 
   /**
-   * for (Sensor s : sensors) {
+   * Set list of sensors. The node keeps its own copy of the list.
    *
    * @param sensors List of sensors associated with the node
    */
   public void setSensors(List<Sensor> sensors) {
-    if (sensors == null) {
-      this.sensors = new java.util.ArrayList<>();
-    } else {
-      this.sensors = sensors;
-    }
+    this.sensors = new TrackedList<>(sensors == null ? List.of() : sensors);
+    this.lookup = null;
   }
 
   /**
@@ -104,15 +101,12 @@ public class Node {
   }
 
   /**
-   * Set list of actuators
+   * Set list of actuators. The node keeps its own copy of the list.
    * @param actuators List of actuators associated with the node
    */
   public void setActuators(List<Actuator> actuators) {
-    if (actuators == null) {
-      this.actuators = new java.util.ArrayList<>();
-    } else {
-      this.actuators = actuators;
-    }
+    this.actuators = new TrackedList<>(actuators == null ? List.of() : actuators);
+    this.lookup = null;
   }
 
   /**
@@ -140,8 +134,104 @@ public class Node {
     return this.location;
   }
 
+  /**
+   * Get the time of the last sensor update
+   * @return time the sensors were last updated
+   */
+  public LocalDateTime getTimestamp() {
+    return this.timestamp;
+  }
+
+  /**
+   * Set the rules for when this node publishes sensor readings
+   *
+   * @param publishPolicy deadbands and heartbeat to apply
+   */
+  public void setPublishPolicy(PublishPolicy publishPolicy) {
+    if (publishPolicy == null) {
+      throw new IllegalArgumentException("Publish policy cannot be null");
+    }
+    this.publishPolicy = publishPolicy;
+  }
+
+  /**
+   * Get the rules for when this node publishes sensor readings
+   * @return publish policy, {@link PublishPolicy#EVERY_CHANGE} unless set
+   */
+  public PublishPolicy getPublishPolicy() {
+    // null when the node was created reflectively, without running the field initializer
+    return this.publishPolicy != null ? this.publishPolicy : PublishPolicy.EVERY_CHANGE;
+  }
+
+  /**
+   * Set the groups of actuator kinds that must not run at the same time
+   *
+   * @param conflictGroups conflict groups to apply when switching actuators on
+   */
+  public void setConflictGroups(ConflictGroups conflictGroups) {
+    if (conflictGroups == null) {
+      throw new IllegalArgumentException("Conflict groups cannot be null");
+    }
+    this.conflictGroups = conflictGroups;
+  }
+
+  /**
+   * Get the groups of actuator kinds that must not run at the same time
+   * @return conflict groups, {@link ConflictGroups#DEFAULT} unless set
+   */
+  public ConflictGroups getConflictGroups() {
+    // null when the node was created reflectively, without running the field initializer
+    return this.conflictGroups != null ? this.conflictGroups : ConflictGroups.DEFAULT;
+  }
+
 
 
+  /**
+   * Get the sensors of one kind
+   * @param kind sensor kind
+   * @return unmodifiable list of the node's sensors of that kind, in node order
+   */
+  public List<Sensor> getSensorsOfKind(SensorKind kind) {
+    return index().sensorsOf(kind);
+  }
+
+  /**
+   * Find a sensor by id
+   * @param sensorId sensor id
+   * @return the sensor, or null if the node has none with that id
+   */
+  public Sensor getSensor(String sensorId) {
+    return lookup().sensor(sensorId);
+  }
+
+  /**
+   * Find an actuator by id
+   * @param actuatorId actuator id
+   * @return the actuator, or null if the node has none with that id
+   */
+  public Actuator getActuator(String actuatorId) {
+    return lookup().actuator(actuatorId);
+  }
+
+  /**
+   * Get the actuators belonging to a sensor, i.e. those whose id is the sensor id followed by an
+   * underscore
+   * @param sensorId sensor id
+   * @return unmodifiable list of the sensor's actuators, empty if it has none
+   */
+  public List<Actuator> getActuatorsOfSensor(String sensorId) {
+    return lookup().actuatorsOf(sensorId);
+  }
+
+  /**
+   * Get the actuators of one kind
+   * @param kind actuator kind
+   * @return unmodifiable list of the node's actuators of that kind
+   */
+  public List<Actuator> getActuatorsOfKind(ActuatorKind kind) {
+    return lookup().actuatorsOf(kind);
+  }
+
   //-------------------------------------------------
 
   /**
@@ -150,7 +240,10 @@ public class Node {
    * @param sensor Sensor to be added
    */
   public void addSensor(Sensor sensor) {
+    NodeLookup l = lookup();
     this.sensors.add(sensor);
+    l.sensorAdded(sensor);
+    l.sync(trackedSensors(), trackedActuators());
   }
 
   /**
@@ -159,381 +252,216 @@ public class Node {
    * @param actuator Actuator to be added
    */
   public void addActuator(Actuator actuator) {
+    NodeLookup l = lookup();
     this.actuators.add(actuator);
+    l.actuatorAdded(actuator);
+    l.sync(trackedSensors(), trackedActuators());
   }
 
-
-
   /**
-   * Create a Node object from its JSON representation.
-   * @param json JSON string representing the Node
-   * @return Node object deserialized from JSON
+   * Remove a sensor and the actuators belonging to it
+   *
+   * @param sensorId id of the sensor to remove
+   * @return true if a sensor or actuator was removed
    */
-  public static Node nodeFromJson(String json) {
-    return gsonWithLocalDateTime().fromJson(json, Node.class);
+  public boolean removeSensor(String sensorId) {
+    NodeLookup l = lookup();
+    boolean removed = false;
+    if (l.sensor(sensorId) != null) {
+      removed = this.sensors.removeIf(s -> s != null && sensorId.equals(s.getSensorId()));
+      l.sensorRemoved(sensorId);
+    }
+    List<Actuator> owned = l.actuatorsOf(sensorId);
+    if (!owned.isEmpty()) {
+      Set<Actuator> gone = Collections.newSetFromMap(new IdentityHashMap<>());
+      gone.addAll(owned);
+      this.actuators.removeIf(gone::contains);
+      for (Actuator a : gone) {
+        l.actuatorRemoved(a);
+      }
+      removed = true;
+    }
+    l.sync(trackedSensors(), trackedActuators());
+    return removed;
   }
 
-
   /**
-   * Convert the Node object to its JSON representation.
-   * @return JSON string representing the Node
+   * Switch one of the node's actuators on or off. Switching it on first switches off the
+   * actuators of the other kinds in its {@link #getConflictGroups() conflict group} that drive the
+   * same sensor. Switches on one node are serialized, so concurrent commands cannot leave two
+   * conflicting actuators on.
+   *
+   * @param actuator the actuator to switch
+   * @param on       true to switch it on, false to switch it off
+   * @return the actuators switched off because of the conflict, empty if none
+   * @throws IllegalArgumentException if the actuator does not belong to this node
    */
-  private static Gson gsonWithLocalDateTime() {
-    return new GsonBuilder()
-        .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeSerializer())
-        .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeDeserializer())
-        // Custom deserializer for Sensor to handle polymorphic concrete types
-        .registerTypeAdapter(Sensor.class, new JsonDeserializer<Sensor>() {
-          @Override
-          public Sensor deserialize(JsonElement json, Type typeOfT,
-              JsonDeserializationContext context) {
-            try {
-              JsonObject obj = json.getAsJsonObject();
-              if (obj.has("sensorType") && !obj.get("sensorType").isJsonNull()) {
-                String st = obj.get("sensorType").getAsString();
-                switch (st) {
-                  case "TEMPERATURE":
-                    return context.deserialize(json, TemperatureSensor.class);
-                  case "LIGHT":
-                    return context.deserialize(json, LightSensor.class);
-                  case "HUMIDITY":
-                    return context.deserialize(json, HumiditySensor.class);
-                  case "CO2":
-                    return context.deserialize(json, CO2Sensor.class);
-                  default:
-                    // Fallback: try TemperatureSensor
-                    return context.deserialize(json, TemperatureSensor.class);
-                }
-              }
-            } catch (Exception ignored) {
-            }
-            return null;
-          }
-        })
-        // Custom deserializer for Actuator to instantiate concrete actuator subclasses
-        .registerTypeAdapter(Actuator.class, new JsonDeserializer<Actuator>() {
-          @Override
-          public Actuator deserialize(JsonElement json, Type typeOfT,
-              JsonDeserializationContext context) {
-            try {
-              JsonObject obj = json.getAsJsonObject();
-              if (obj.has("actuatorType") && !obj.get("actuatorType").isJsonNull()) {
-                String at = obj.get("actuatorType").getAsString();
-                switch (at.toUpperCase()) {
-                  case "HEATER":
-                    return context.deserialize(json, entity.actuator.Heater.class);
-                  case "FAN":
-                  case "VENTILATION":
-                    return context.deserialize(json, entity.actuator.Ventilation.class);
-                  case "HUMIDIFIER":
-                    return context.deserialize(json, entity.actuator.Humidifier.class);
-                  case "DEHUMIDIFIER":
-                    return context.deserialize(json, entity.actuator.DeHumidifier.class);
-                  case "AIRCON":
-                  case "AIRCONDITION":
-                    return context.deserialize(json, entity.actuator.AirCondition.class);
-                  case "LAMP_DIMMING":
-                  case "LAMP_DIM":
-                    return context.deserialize(json, entity.actuator.LampDimming.class);
-                  case "LAMP_BRIGHTNING":
-                  case "LAMP_BRIGHTENING":
-                  case "LAMP_BRIGHT":
-                    return context.deserialize(json, entity.actuator.LampBrightning.class);
-                  case "CO2_SUPPLY":
-                  case "CO2SUPPLY":
-                  case "CO2":
-                    return context.deserialize(json, entity.actuator.CO2Supply.class);
-                  default:
-                    // fallback: try to create a simple Ventilation with given id (safe default)
-                    try {
-                      String id =
-                          obj.has("actuatorId") ? obj.get("actuatorId").getAsString() : "unknown";
-                      return new entity.actuator.Ventilation(id);
-                    } catch (Exception e) {
-                      return null;
-                    }
-                }
-              }
-            } catch (Exception ignored) {
-            }
-            return null;
-          }
-        })
-        .create();
+  public synchronized List<Actuator> switchActuator(Actuator actuator, boolean on) {
+    NodeLookup l = lookup();
+    if (actuator == null || l.actuator(actuator.getActuatorId()) != actuator) {
+      throw new IllegalArgumentException("Actuator does not belong to node " + nodeID);
+    }
+    List<Actuator> switchedOff = List.of();
+    if (on) {
+      switchedOff = l.conflictsOf(actuator, getConflictGroups());
+      for (Actuator a : switchedOff) {
+        a.setOn(false);
+      }
+    }
+    actuator.setOn(on);
+    return switchedOff;
   }
 
   /**
-   * Convert the Node object to its JSON representation.
-   * @return JSON string representing the Node
+   * Remove an actuator
    *
+   * @param actuatorId id of the actuator to remove
+   * @return true if it was removed
    */
-  public void updateAllSensors() {
-    for (Sensor sensor : sensors) {
-      sensor.updateValue();
+  public boolean removeActuator(String actuatorId) {
+    NodeLookup l = lookup();
+    Actuator actuator = l.actuator(actuatorId);
+    if (actuator == null) {
+      return false;
     }
-    this.timestamp = LocalDateTime.now();
+    this.actuators.remove(actuator);
+    l.actuatorRemoved(actuator);
+    l.sync(trackedSensors(), trackedActuators());
+    return true;
   }
 
+
+
   /**
-   * Custom serializer for LocalDateTime to JSON.
-   * Returns the string representation of LocalDateTime.
-   *
+   * Create a Node object from its JSON representation.
+   * @param json JSON string representing the Node
+   * @return Node object deserialized from JSON
    */
-  private static class LocalDateTimeSerializer implements JsonSerializer<LocalDateTime> {
-
-    /**
-     * Serialize LocalDateTime to JsonElement.
-     * @param src the object that needs to be converted to Json.
-     * @param typeOfSrc the actual type (fully genericized version) of the source object.
-     * @param context context for serialization that is passed to a custom serializer during invocation.
-     * @return JsonElement representing the LocalDateTime
-     */
-    @Override
-    public JsonElement serialize(LocalDateTime src, Type typeOfSrc,
-        JsonSerializationContext context) {
-      return new JsonPrimitive(src.toString());
-    }
+  public static Node nodeFromJson(String json) {
+    return JsonCodec.gson().fromJson(json, Node.class);
   }
 
   /**
-   * Custom deserializer for LocalDateTime from JSON.
-   * Parses the string representation of LocalDateTime.
+   * Rebuild a node from a received snapshot.
    *
+   * <p>Unlike the constructor this accepts a missing location, since partial messages such as
+   * {@code ACTUATOR_STATUS} only carry the node id and the parts that changed.
+   *
+   * @param nodeID    Unique identifier for the node
+   * @param location  Physical location of the node (may be null)
+   * @param timestamp Time the snapshot was taken (null keeps the current time)
+   * @param sensors   List of sensors associated with the node
+   * @param actuators List of actuators associated with the node
+   * @return the rebuilt node
+   * @throws IllegalArgumentException if the node id is missing
    */
-  private static class LocalDateTimeDeserializer implements JsonDeserializer<LocalDateTime> {
-
-    /**
-     * Deserialize JsonElement to LocalDateTime.
-     * @param json The Json data being deserialized
-     * @param typeOfT The type of the Object to deserialize to
-     * @param context Context for deserialization that is passed to a custom deserializer during invocation
-     * @return LocalDateTime object deserialized from JsonElement
-     * @throws JsonParseException if the JSON is not in the expected format
-     */
-    @Override
-    public LocalDateTime deserialize(JsonElement json, Type typeOfT,
-        JsonDeserializationContext context)
-        throws JsonParseException {
-      return LocalDateTime.parse(json.getAsString());
+  public static Node fromSnapshot(String nodeID, String location, LocalDateTime timestamp,
+      List<Sensor> sensors, List<Actuator> actuators) {
+    Node node = new Node(nodeID, "unknown", sensors, actuators);
+    node.location = location;
+    if (timestamp != null) {
+      node.timestamp = timestamp;
     }
+    return node;
   }
 
 
+  /**
+   * Convert the Node object to its JSON representation.
+   * @return JSON string representing the Node
+   *
+   */
+  public void updateAllSensors() {
+    for (Sensor sensor : sensors) {
+      sensor.updateValue();
+    }
+    this.timestamp = LocalDateTime.now();
+  }
 
   /**
    * Applies the effects of all active actuators to the sensors and checks for any limit or threshold
-   * @return Alert string if any limit or threshold is breached, otherwise null
+   * @return one alert string per sensor that breaches a limit or threshold, empty if none does
    */
-  public String applyActuatorEffects() {
+  public List<String> applyActuatorEffects() {
     // apply actuator effects, then check limits / thresholds
     applyPerTickEffects();
     return checkLimitsAndThresholds();
   }
 
   /**
-   * Apply the effects of all active actuators to the sensors.
+   * Apply the effects of all active actuators to the sensors. Each actuator is handed only the
+   * sensors of the kind it affects.
    *
    */
   private void applyPerTickEffects() {
     if (sensors == null || actuators == null) {
       return;
     }
-    for (entity.actuator.Actuator act : actuators) {
+    SensorIndex index = index();
+    Actuator[] acts = index.actuators();
+    for (int i = 0; i < acts.length; i++) {
+      Actuator act = acts[i];
       if (act == null || !act.isOn()) {
         continue;
       }
       try {
-        act.applyEffect(sensors);
+        act.applyEffect(index.targetsOf(i));
       } catch (Exception e) {
-        System.out.println("[Node] actuator.applyEffect failed for " + act.getActuatorId() + ": "
-            + e.getMessage());
+        Log.warn("Node", "actuator.applyEffect failed for %s: %s", act.getActuatorId(),
+            e.getMessage());
       }
     }
   }
 
   /**
    * Check sensors against absolute limits and user-defined thresholds.
-   * @return Alert string if any limit or threshold is breached, otherwise null
+   * @return one alert per breaching sensor, empty if nothing is breached
    */
-  private String checkLimitsAndThresholds() {
-    final double EPS = 0.01;
+  private List<String> checkLimitsAndThresholds() {
     if (sensors == null || actuators == null) {
-      return null;
+      return List.of();
     }
-    // Absolute safety limits (extract to fields if you want per-node config)
-    final double TEMP_MIN_LIMIT = 10.0;
-    final double TEMP_MAX_LIMIT = 40.0;
-    final double HUMIDITY_MIN_LIMIT = 0.0;
-    final double HUMIDITY_MAX_LIMIT = 100.0;
-    final double LIGHT_MIN_LIMIT = 600.0;
-    final double LIGHT_MAX_LIMIT = 25000.0;
-    final double CO2_MIN_LIMIT = 500.0;
-    final double CO2_MAX_LIMIT = 2000.0;
-
-    for (Sensor s : sensors) {
-      String type = s.getSensorType() == null ? "" : s.getSensorType().toUpperCase();
-      double v = s.getValue();
-      double max = s.getMaxThreshold();
-      double min = s.getMinThreshold();
-
-      // Absolute limits + auto-shutdown
-      if ("TEMPERATURE".equals(type)) {
-        if (v <= TEMP_MIN_LIMIT + EPS) {
-          for (entity.actuator.Actuator a : actuators) {
-            if (a == null) {
-              continue;
-
-            }
-            String t = a.getActuatorType() == null ? "" : a.getActuatorType().toUpperCase();
-            if (t.contains("AIRCON") || t.contains("AC")) {
-              a.setOn(false);
-            }
-          }
-          return String.format(
-              "REACHING_COLD_LIMIT node=%s sensor=%s value=%.2f — AirCondition auto-OFF",
-              getNodeID(), s.getSensorId(), v);
-        }
-        if (v >= TEMP_MAX_LIMIT - EPS) {
-          for (entity.actuator.Actuator a : actuators) {
-            if (a == null) {
-              continue;
-            }
-            String t = a.getActuatorType() == null ? "" : a.getActuatorType().toUpperCase();
-            if (t.contains("HEATER")) {
-              a.setOn(false);
-            }
-          }
-          return String.format("REACHING_WARM_LIMIT node=%s sensor=%s value=%.2f — Heater auto-OFF",
-              getNodeID(), s.getSensorId(), v);
-        }
-      } else if ("HUMIDITY".equals(type)) {
-        if (v <= HUMIDITY_MIN_LIMIT + EPS) {
-          for (entity.actuator.Actuator a : actuators) {
-            if (a == null) {
-              continue;
-            }
-            String t = a.getActuatorType() == null ? "" : a.getActuatorType().toUpperCase();
-            if (t.contains("DEHUMIDIF") || t.contains("DEHUMIDIFIER")) {
-              a.setOn(false);
-            }
-          }
-          return String.format(
-              "HUMIDITY_MIN_REACHED node=%s sensor=%s value=%.2f — DeHumidifier auto-OFF",
-              getNodeID(), s.getSensorId(), v);
-        }
-        if (v >= HUMIDITY_MAX_LIMIT - EPS) {
-          for (entity.actuator.Actuator a : actuators) {
-            if (a == null) {
-              continue;
-            }
-            String t = a.getActuatorType() == null ? "" : a.getActuatorType().toUpperCase();
-            if (t.contains("HUMIDIF") || t.contains("HUMIDIFIER")) {
-              a.setOn(false);
-            }
-          }
-          return String.format(
-              "HUMIDITY_MAX_REACHED node=%s sensor=%s value=%.2f — Humidifier auto-OFF",
-              getNodeID(), s.getSensorId(), v);
-        }
-      } else if ("LIGHT".equals(type) || "LUMINANCE".equals(type)) {
-        if (v <= LIGHT_MIN_LIMIT + EPS) {
-          for (entity.actuator.Actuator a : actuators) {
-            if (a == null) {
-              continue;
-            }
-            String t = a.getActuatorType() == null ? "" : a.getActuatorType().toUpperCase();
-            if (t.contains("DIM") || t.contains("DIMMER")) {
-              a.setOn(false);
-            }
-          }
-          return String.format("LIGHT_OFF node=%s sensor=%s value=%.2f — Dimmer auto-OFF",
-              getNodeID(), s.getSensorId(), v);
-        }
-        if (v >= LIGHT_MAX_LIMIT - EPS) {
-          for (entity.actuator.Actuator a : actuators) {
-            if (a == null) {
-              continue;
-            }
-            String t = a.getActuatorType() == null ? "" : a.getActuatorType().toUpperCase();
-            if (t.contains("BRIGHT") || t.contains("BRIGHTENER")) {
-              a.setOn(false);
-            }
-          }
-          return String.format(
-              "LIGHT_FULL_BRIGHT node=%s sensor=%s value=%.2f — Brightener auto-OFF",
-              getNodeID(), s.getSensorId(), v);
-        }
-      } else if ("CO2".equals(type)) {
-        if (v <= CO2_MIN_LIMIT + EPS) {
-          for (entity.actuator.Actuator a : actuators) {
-            if (a == null) {
-              continue;
-            }
-            String t = a.getActuatorType() == null ? "" : a.getActuatorType().toUpperCase();
-            if (t.contains("VENTIL") || t.contains("VENTILATION")) {
-              a.setOn(false);
-            }
-          }
-          return String.format(
-              "CO2_MIN_REACHED node=%s sensor=%s value=%.2f — Ventilation auto-OFF",
-              getNodeID(), s.getSensorId(), v);
-        }
-        if (v >= CO2_MAX_LIMIT - EPS) {
-          for (entity.actuator.Actuator a : actuators) {
-            if (a == null) {
-              continue;
-            }
-            String t = a.getActuatorType() == null ? "" : a.getActuatorType().toUpperCase();
-            if (t.contains("CO2") || t.contains("SUPPLY")) {
-              a.setOn(false);
-            }
-          }
-          return String.format("CO2_MAX_REACHED node=%s sensor=%s value=%.2f — CO2Supply auto-OFF",
-              getNodeID(), s.getSensorId(), v);
-        }
-      }
+    return index().limitRules().check(getNodeID());
+  }
 
-      // user thresholds alerts (same as before)
-      if ("TEMPERATURE".equals(type)) {
-        if (v > max + EPS) {
-          return String.format("TEMP_OVER_MAX node=%s sensor=%s value=%.2f max=%.2f",
-              getNodeID(), s.getSensorId(), v, max);
-        }
-        if (v < min - EPS) {
-          return String.format("TEMP_BELOW_MIN node=%s sensor=%s value=%.2f min=%.2f",
-              getNodeID(), s.getSensorId(), v, min);
-        }
-      } else if ("HUMIDITY".equals(type)) {
-        if (v > max + EPS) {
-          return String.format("HUMIDITY_OVER_MAX node=%s sensor=%s value=%.2f max=%.2f",
-              getNodeID(), s.getSensorId(), v, max);
-        }
-        if (v < min - EPS) {
-          return String.format("HUMIDITY_BELOW_MIN node=%s sensor=%s value=%.2f min=%.2f",
-              getNodeID(), s.getSensorId(), v, min);
-        }
-      } else if ("LIGHT".equals(type) || "LUMINANCE".equals(type)) {
-        if (v > max + EPS) {
-          return String.format("LIGHT_OVER_MAX node=%s sensor=%s value=%.2f max=%.2f",
-              getNodeID(), s.getSensorId(), v, max);
-        }
-        if (v < min - EPS) {
-          return String.format("LIGHT_BELOW_MIN node=%s sensor=%s value=%.2f min=%.2f",
-              getNodeID(), s.getSensorId(), v, min);
-        }
-      } else if ("CO2".equals(type)) {
-        if (v > max + EPS) {
-          return String.format("CO2_OVER_MAX node=%s sensor=%s value=%.2f max=%.2f",
-              getNodeID(), s.getSensorId(), v, max);
-        }
-        if (v < min - EPS) {
-          return String.format("CO2_BELOW_MIN node=%s sensor=%s value=%.2f min=%.2f",
-              getNodeID(), s.getSensorId(), v, min);
-        }
-      }
+  /**
+   * Get the index of the current sensors and actuators, rebuilding it if they changed since it
+   * was built.
+   */
+  private SensorIndex index() {
+    SensorIndex index = sensorIndex;
+    if (index == null || !index.matches(sensors, actuators)) {
+      index = SensorIndex.build(sensors, actuators);
+      sensorIndex = index;
     }
+    return index;
+  }
+
+  /**
+   * Get the lookup maps of the current sensors and actuators, rebuilding them if the lists were
+   * changed other than through this node.
+   */
+  private NodeLookup lookup() {
+    if (!(sensors instanceof TrackedList) || !(actuators instanceof TrackedList)) {
+      // lists set reflectively, without the setters
+      setSensors(sensors);
+      setActuators(actuators);
+    }
+    NodeLookup l = lookup;
+    if (l == null || !l.matches(trackedSensors(), trackedActuators())) {
+      l = NodeLookup.build(sensors, actuators);
+      l.sync(trackedSensors(), trackedActuators());
+      lookup = l;
+    }
+    return l;
+  }
+
+  private TrackedList<Sensor> trackedSensors() {
+    return (TrackedList<Sensor>) sensors;
+  }
 
-    return null;
+  private TrackedList<Actuator> trackedActuators() {
+    return (TrackedList<Actuator>) actuators;
   }
 
 
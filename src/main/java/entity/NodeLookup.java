@@ -0,0 +1,254 @@
+package entity;
+
+import entity.actuator.Actuator;
+import entity.actuator.ActuatorKind;
+import entity.actuator.ConflictGroups;
+import entity.sensor.Sensor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A node's sensors and actuators keyed by id, its actuators grouped by {@link ActuatorKind}, and
+ * the actuators belonging to each sensor.
+ *
+ * <p>An actuator belongs to a sensor when its id is the sensor id followed by an underscore, the
+ * way actuators are named when a sensor is added together with them (for example
+ * {@code t1_heater} for sensor {@code t1}). The association is kept by id prefix, so it holds
+ * whether the actuator was added before or after its sensor.
+ *
+ * <p>Unlike {@link SensorIndex} the maps are updated in place as the node adds and removes
+ * sensors and actuators. They remember the modification counts of the node's lists they were
+ * last synced with; see {@link #matches(TrackedList, TrackedList)}. Ids are expected to be
+ * unique; with duplicates the last one added is the one found by id.
+ */
+final class NodeLookup {
+
+  private final Map<String, Sensor> sensorsById = new HashMap<>();
+  private final Map<String, Actuator> actuatorsById = new HashMap<>();
+  // Keyed by every prefix of an actuator id that ends before an underscore
+  private final Map<String, List<Actuator>> actuatorsBySensor = new HashMap<>();
+  // Indexed by ActuatorKind ordinal
+  private final List<Actuator>[] actuatorsByKind;
+  // Modification counts of the node's lists when the maps were last synced with them
+  private int sensorModifications = -1;
+  private int actuatorModifications = -1;
+
+  private NodeLookup() {
+    actuatorsByKind = newLists(ActuatorKind.COUNT);
+    for (int k = 0; k < actuatorsByKind.length; k++) {
+      actuatorsByKind[k] = new ArrayList<>();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Actuator>[] newLists(int length) {
+    return (List<Actuator>[]) new List<?>[length];
+  }
+
+  /**
+   * Build the lookup maps of a node's sensors and actuators.
+   *
+   * @param sensors   the node's sensors
+   * @param actuators the node's actuators
+   * @return lookup covering these sensors and actuators
+   */
+  static NodeLookup build(List<Sensor> sensors, List<Actuator> actuators) {
+    NodeLookup lookup = new NodeLookup();
+    for (Sensor s : sensors) {
+      lookup.sensorAdded(s);
+    }
+    for (Actuator a : actuators) {
+      lookup.actuatorAdded(a);
+    }
+    return lookup;
+  }
+
+  /**
+   * Check whether this lookup still covers the node's lists. Compares modification counts only,
+   * so it is constant-time and notices every change made through {@link Node#getSensors()} or
+   * {@link Node#getActuators()}, including elements replaced in place.
+   *
+   * @param sensors   the node's sensors
+   * @param actuators the node's actuators
+   * @return true if the lookup is still valid
+   */
+  boolean matches(TrackedList<Sensor> sensors, TrackedList<Actuator> actuators) {
+    return sensors.modifications() == sensorModifications
+        && actuators.modifications() == actuatorModifications;
+  }
+
+  /**
+   * Record that the maps now cover the node's lists as they are, after the node changed them
+   * and updated the maps to match.
+   *
+   * @param sensors   the node's sensors
+   * @param actuators the node's actuators
+   */
+  void sync(TrackedList<Sensor> sensors, TrackedList<Actuator> actuators) {
+    sensorModifications = sensors.modifications();
+    actuatorModifications = actuators.modifications();
+  }
+
+  /**
+   * Record a sensor appended to the node.
+   *
+   * @param sensor the added sensor (may be null)
+   */
+  void sensorAdded(Sensor sensor) {
+    if (sensor != null && sensor.getSensorId() != null) {
+      sensorsById.put(sensor.getSensorId(), sensor);
+    }
+  }
+
+  /**
+   * Record an actuator appended to the node.
+   *
+   * @param actuator the added actuator (may be null)
+   */
+  void actuatorAdded(Actuator actuator) {
+    if (actuator == null || actuator.getActuatorId() == null) {
+      return;
+    }
+    String id = actuator.getActuatorId();
+    actuatorsById.put(id, actuator);
+    for (int i = id.indexOf('_'); i > 0; i = id.indexOf('_', i + 1)) {
+      actuatorsBySensor.computeIfAbsent(id.substring(0, i), k -> new ArrayList<>()).add(actuator);
+    }
+    ActuatorKind kind = actuator.getKind();
+    if (kind != null) {
+      actuatorsByKind[kind.ordinal()].add(actuator);
+    }
+  }
+
+  /**
+   * Record the sensors with an id removed from the node.
+   *
+   * @param sensorId id of the removed sensors
+   */
+  void sensorRemoved(String sensorId) {
+    sensorsById.remove(sensorId);
+  }
+
+  /**
+   * Record an actuator removed from the node.
+   *
+   * @param actuator the removed actuator
+   */
+  void actuatorRemoved(Actuator actuator) {
+    String id = actuator.getActuatorId();
+    if (actuatorsById.get(id) == actuator) {
+      actuatorsById.remove(id);
+    }
+    for (int i = id.indexOf('_'); i > 0; i = id.indexOf('_', i + 1)) {
+      String sensorId = id.substring(0, i);
+      List<Actuator> owned = actuatorsBySensor.get(sensorId);
+      if (owned != null) {
+        owned.remove(actuator);
+        if (owned.isEmpty()) {
+          actuatorsBySensor.remove(sensorId);
+        }
+      }
+    }
+    ActuatorKind kind = actuator.getKind();
+    if (kind != null) {
+      actuatorsByKind[kind.ordinal()].remove(actuator);
+    }
+  }
+
+  /**
+   * Find a sensor by id.
+   *
+   * @param sensorId sensor id
+   * @return the sensor, or null if there is none with that id
+   */
+  Sensor sensor(String sensorId) {
+    return sensorsById.get(sensorId);
+  }
+
+  /**
+   * Find an actuator by id.
+   *
+   * @param actuatorId actuator id
+   * @return the actuator, or null if there is none with that id
+   */
+  Actuator actuator(String actuatorId) {
+    return actuatorsById.get(actuatorId);
+  }
+
+  /**
+   * Get the actuators belonging to a sensor.
+   *
+   * @param sensorId sensor id
+   * @return unmodifiable list of the actuators whose id starts with the sensor id and an
+   *     underscore, in the order they were added
+   */
+  List<Actuator> actuatorsOf(String sensorId) {
+    List<Actuator> owned = actuatorsBySensor.get(sensorId);
+    return owned != null ? Collections.unmodifiableList(owned) : List.of();
+  }
+
+  /**
+   * Get the actuators of one kind.
+   *
+   * @param kind actuator kind
+   * @return unmodifiable list of the actuators of that kind, in the order they were added
+   */
+  List<Actuator> actuatorsOf(ActuatorKind kind) {
+    return Collections.unmodifiableList(actuatorsByKind[kind.ordinal()]);
+  }
+
+  /**
+   * Find the sensor an actuator drives: the longest prefix of its id, up to an underscore, that
+   * is the id of one of the node's sensors.
+   *
+   * @param actuator the actuator
+   * @return id of its sensor, or null if it belongs to none
+   */
+  String sensorOf(Actuator actuator) {
+    String id = actuator.getActuatorId();
+    for (int i = id.lastIndexOf('_'); i > 0; i = id.lastIndexOf('_', i - 1)) {
+      String sensorId = id.substring(0, i);
+      if (sensorsById.containsKey(sensorId)) {
+        return sensorId;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Find the actuators that must be switched off when one is switched on: those of the other
+   * kinds in its conflict group that drive the same sensor. Actuators that belong to no sensor
+   * conflict with each other across the node.
+   *
+   * @param target the actuator being switched on
+   * @param groups conflict groups to apply
+   * @return the conflicting actuators that are on, empty if there are none
+   */
+  List<Actuator> conflictsOf(Actuator target, ConflictGroups groups) {
+    ActuatorKind kind = target.getKind();
+    if (kind == null || groups.peersOf(kind).length == 0) {
+      return List.of();
+    }
+    String sensorId = sensorOf(target);
+    List<Actuator> conflicts = new ArrayList<>(1);
+    if (sensorId != null) {
+      for (Actuator a : actuatorsBySensor.get(sensorId)) {
+        if (a.isOn() && groups.conflict(kind, a.getKind()) && sensorId.equals(sensorOf(a))) {
+          conflicts.add(a);
+        }
+      }
+    } else {
+      for (ActuatorKind peer : groups.peersOf(kind)) {
+        for (Actuator a : actuatorsByKind[peer.ordinal()]) {
+          if (a.isOn() && sensorOf(a) == null) {
+            conflicts.add(a);
+          }
+        }
+      }
+    }
+    return conflicts;
+  }
+}
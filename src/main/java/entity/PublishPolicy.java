@@ -0,0 +1,148 @@
+package entity;
+
+import entity.sensor.Sensor;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import logging.Log;
+
+/**
+ * Decides when a node publishes a sensor reading (report by exception).
+ *
+ * <p>A reading is published only when it has moved past its sensor type's deadband since it was
+ * last published, when it crossed the sensor's min or max threshold, or when it has not been
+ * published for the heartbeat interval. Deadbands are absolute ({@code 0.1}) or a percentage of
+ * the last published value ({@code 2%}); a type without a deadband publishes every change.
+ *
+ * <p>{@link #fromSystemProperties()} reads {@code node.deadband.<SENSOR_TYPE>} (e.g.
+ * {@code -Dnode.deadband.CO2=2%}) and {@code node.heartbeatMillis}, on top of defaults that
+ * filter the simulated sensor noise.
+ */
+public class PublishPolicy {
+
+  /**
+   * Policy that publishes every change and never sends heartbeats on its own.
+   */
+  public static final PublishPolicy EVERY_CHANGE = new PublishPolicy(Map.of(), 0);
+
+  // Default per-type deadbands, well above the noise the simulated sensors add each tick
+  private static final Map<String, String> DEFAULT_DEADBANDS = Map.of(
+      "TEMPERATURE", "0.1",
+      "HUMIDITY", "0.5",
+      "LIGHT", "1%",
+      "CO2", "1%");
+  private static final long DEFAULT_HEARTBEAT_MILLIS = 30_000;
+
+  // Per sensor type: {absolute band, percent band}; one of them is 0
+  private final Map<String, double[]> deadbands;
+  private final long heartbeatMillis;
+
+  /**
+   * Create a policy.
+   *
+   * @param deadbands       deadband per sensor type, as {@code "0.1"} or {@code "2%"}
+   * @param heartbeatMillis longest time a reading may go unpublished, or 0 for no heartbeat
+   * @throws IllegalArgumentException if a deadband is not a non-negative number or percentage, or
+   *                                  the heartbeat is negative
+   */
+  public PublishPolicy(Map<String, String> deadbands, long heartbeatMillis) {
+    if (heartbeatMillis < 0) {
+      throw new IllegalArgumentException("Heartbeat interval cannot be negative");
+    }
+    this.deadbands = new HashMap<>();
+    for (Map.Entry<String, String> e : deadbands.entrySet()) {
+      this.deadbands.put(e.getKey().toUpperCase(Locale.ROOT), parseDeadband(e.getValue()));
+    }
+    this.heartbeatMillis = heartbeatMillis;
+  }
+
+  /**
+   * Build the policy from the default deadbands, overridden by the {@code node.deadband.*} and
+   * {@code node.heartbeatMillis} system properties. Invalid values keep the default.
+   *
+   * @return the configured policy
+   */
+  public static PublishPolicy fromSystemProperties() {
+    Map<String, String> bands = new HashMap<>(DEFAULT_DEADBANDS);
+    String prefix = "node.deadband.";
+    for (String name : System.getProperties().stringPropertyNames()) {
+      if (name.startsWith(prefix)) {
+        String value = System.getProperty(name);
+        try {
+          parseDeadband(value);
+          bands.put(name.substring(prefix.length()).toUpperCase(Locale.ROOT), value);
+        } catch (IllegalArgumentException e) {
+          Log.warn("PublishPolicy", "Ignoring invalid %s=%s", name, value);
+        }
+      }
+    }
+    long heartbeat = Long.getLong("node.heartbeatMillis", DEFAULT_HEARTBEAT_MILLIS);
+    return new PublishPolicy(bands, Math.max(0, heartbeat));
+  }
+
+  /**
+   * Get the longest time a reading may go unpublished.
+   *
+   * @return heartbeat interval in milliseconds, 0 if there is none
+   */
+  public long getHeartbeatMillis() {
+    return heartbeatMillis;
+  }
+
+  /**
+   * Decide whether a sensor's current reading should be published.
+   *
+   * @param sensor          the sensor, for its type and thresholds
+   * @param value           its current reading
+   * @param lastPublished   value that was last published for it
+   * @param millisSinceLast time since that value was published
+   * @return true if the reading should be published now
+   */
+  public boolean shouldPublish(Sensor sensor, double value, double lastPublished,
+      long millisSinceLast) {
+    if (Double.compare(value, lastPublished) == 0) {
+      return heartbeatExpired(millisSinceLast);
+    }
+    if (heartbeatExpired(millisSinceLast)
+        || inRange(sensor, value) != inRange(sensor, lastPublished)) {
+      return true;
+    }
+    String type = sensor.getSensorType() == null ? ""
+        : sensor.getSensorType().toUpperCase(Locale.ROOT);
+    double[] band = deadbands.get(type);
+    if (band == null) {
+      return true;
+    }
+    double limit = band[0] + band[1] / 100.0 * Math.abs(lastPublished);
+    return Math.abs(value - lastPublished) > limit;
+  }
+
+  private boolean heartbeatExpired(long millisSinceLast) {
+    return heartbeatMillis > 0 && millisSinceLast >= heartbeatMillis;
+  }
+
+  private static boolean inRange(Sensor sensor, double value) {
+    return value >= sensor.getMinThreshold() && value <= sensor.getMaxThreshold();
+  }
+
+  /**
+   * Parse {@code "0.1"} to {@code {0.1, 0}} and {@code "2%"} to {@code {0, 2}}.
+   */
+  private static double[] parseDeadband(String s) {
+    if (s == null || s.isBlank()) {
+      throw new IllegalArgumentException("Deadband cannot be empty");
+    }
+    String t = s.trim();
+    boolean percent = t.endsWith("%");
+    double band;
+    try {
+      band = Double.parseDouble(percent ? t.substring(0, t.length() - 1).trim() : t);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid deadband: " + s);
+    }
+    if (!(band >= 0) || Double.isInfinite(band)) {
+      throw new IllegalArgumentException("Deadband must be a non-negative number: " + s);
+    }
+    return percent ? new double[] {0, band} : new double[] {band, 0};
+  }
+}
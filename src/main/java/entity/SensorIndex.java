@@ -0,0 +1,142 @@
+package entity;
+
+import entity.actuator.Actuator;
+import entity.actuator.ActuatorKind;
+import entity.sensor.Sensor;
+import entity.sensor.SensorKind;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node's sensors grouped by {@link SensorKind}, each actuator bound to the sensors it drives,
+ * and the {@link LimitRules} compiled for them.
+ *
+ * <p>Built once for a set of sensors and actuators, so a tick hands each actuator only the
+ * sensors of the kind it affects instead of every sensor of the node. An actuator without a known
+ * kind is handed every sensor, as before.
+ *
+ * <p>An index is bound to the exact sensor and actuator objects it was built from; see
+ * {@link #matches(List, List)}.
+ */
+final class SensorIndex {
+
+  private final Sensor[] sensors;
+  private final Actuator[] actuators;
+  // Indexed by SensorKind ordinal
+  private final List<Sensor>[] byKind;
+  // Indexed like actuators
+  private final List<Sensor>[] targets;
+  private final LimitRules limitRules;
+
+  private SensorIndex(Sensor[] sensors, Actuator[] actuators, List<Sensor>[] byKind,
+      List<Sensor>[] targets) {
+    this.sensors = sensors;
+    this.actuators = actuators;
+    this.byKind = byKind;
+    this.targets = targets;
+    this.limitRules = LimitRules.compile(sensors, actuators);
+  }
+
+  /**
+   * Build the index of a node's sensors and actuators.
+   *
+   * @param sensors   the node's sensors
+   * @param actuators the node's actuators
+   * @return index bound to these sensors and actuators
+   */
+  static SensorIndex build(List<Sensor> sensors, List<Actuator> actuators) {
+    Sensor[] sensorArray = sensors.toArray(new Sensor[0]);
+    Actuator[] actuatorArray = actuators.toArray(new Actuator[0]);
+    List<Sensor>[] byKind = newLists(SensorKind.COUNT);
+    for (int k = 0; k < byKind.length; k++) {
+      byKind[k] = new ArrayList<>();
+    }
+    for (Sensor s : sensorArray) {
+      SensorKind kind = s == null ? null : s.getKind();
+      if (kind != null) {
+        byKind[kind.ordinal()].add(s);
+      }
+    }
+    for (int k = 0; k < byKind.length; k++) {
+      byKind[k] = Collections.unmodifiableList(byKind[k]);
+    }
+    List<Sensor> all = Collections.unmodifiableList(Arrays.asList(sensorArray));
+    List<Sensor>[] targets = newLists(actuatorArray.length);
+    for (int i = 0; i < actuatorArray.length; i++) {
+      ActuatorKind kind = actuatorArray[i] == null ? null : actuatorArray[i].getKind();
+      targets[i] = kind != null ? byKind[kind.getAffects().ordinal()] : all;
+    }
+    return new SensorIndex(sensorArray, actuatorArray, byKind, targets);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Sensor>[] newLists(int length) {
+    return (List<Sensor>[]) new List<?>[length];
+  }
+
+  /**
+   * Check whether this index was built from exactly these sensors and actuators, in this
+   * order. Compares references only, so it is cheap enough to run on every tick and notices
+   * lists changed through {@link Node#getSensors()} or {@link Node#getActuators()}.
+   *
+   * @param sensors   the node's sensors
+   * @param actuators the node's actuators
+   * @return true if the index is still valid
+   */
+  boolean matches(List<Sensor> sensors, List<Actuator> actuators) {
+    if (sensors.size() != this.sensors.length || actuators.size() != this.actuators.length) {
+      return false;
+    }
+    for (int i = 0; i < this.sensors.length; i++) {
+      if (sensors.get(i) != this.sensors[i]) {
+        return false;
+      }
+    }
+    for (int i = 0; i < this.actuators.length; i++) {
+      if (actuators.get(i) != this.actuators[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Get the sensors of one kind, in node order.
+   *
+   * @param kind sensor kind
+   * @return unmodifiable list of the sensors of that kind
+   */
+  List<Sensor> sensorsOf(SensorKind kind) {
+    return byKind[kind.ordinal()];
+  }
+
+  /**
+   * Get the actuators the index was built from.
+   *
+   * @return actuators in node order; not to be modified
+   */
+  Actuator[] actuators() {
+    return actuators;
+  }
+
+  /**
+   * Get the sensors an actuator drives.
+   *
+   * @param actuatorIndex position of the actuator in {@link #actuators()}
+   * @return unmodifiable list of the sensors to hand to its {@code applyEffect}
+   */
+  List<Sensor> targetsOf(int actuatorIndex) {
+    return targets[actuatorIndex];
+  }
+
+  /**
+   * Get the limit and threshold rules of the indexed sensors.
+   *
+   * @return compiled rules
+   */
+  LimitRules limitRules() {
+    return limitRules;
+  }
+}
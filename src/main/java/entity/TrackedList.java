@@ -0,0 +1,104 @@
+package entity;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * An array-backed list that counts its modifications, including elements replaced with
+ * {@link #set(int, Object)}.
+ *
+ * <p>A node hands these out from {@link Node#getSensors()} and {@link Node#getActuators()}, so
+ * its {@link NodeLookup} can tell in constant time whether the lists were changed behind its back.
+ *
+ * @param <E> element type
+ */
+final class TrackedList<E> extends AbstractList<E> implements RandomAccess {
+
+  private final ArrayList<E> elements;
+  private int modifications;
+
+  /**
+   * Create a list holding a copy of the given elements.
+   *
+   * @param elements initial elements
+   */
+  TrackedList(Collection<? extends E> elements) {
+    this.elements = new ArrayList<>(elements);
+  }
+
+  /**
+   * Get the number of changes made to the list so far.
+   *
+   * @return modification count; changes whenever an element is added, removed or replaced
+   */
+  int modifications() {
+    return modifications;
+  }
+
+  @Override
+  public E get(int index) {
+    return elements.get(index);
+  }
+
+  @Override
+  public int size() {
+    return elements.size();
+  }
+
+  @Override
+  public E set(int index, E element) {
+    E previous = elements.set(index, element);
+    modifications++;
+    return previous;
+  }
+
+  @Override
+  public void add(int index, E element) {
+    elements.add(index, element);
+    modifications++;
+    modCount++;
+  }
+
+  @Override
+  public E remove(int index) {
+    E removed = elements.remove(index);
+    modifications++;
+    modCount++;
+    return removed;
+  }
+
+  @Override
+  public boolean removeIf(Predicate<? super E> filter) {
+    if (!elements.removeIf(filter)) {
+      return false;
+    }
+    modifications++;
+    modCount++;
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    elements.clear();
+    modifications++;
+    modCount++;
+  }
+
+  @Override
+  public void replaceAll(UnaryOperator<E> operator) {
+    elements.replaceAll(operator);
+    modifications++;
+  }
+
+  @Override
+  public void sort(Comparator<? super E> c) {
+    elements.sort(c);
+    modifications++;
+    modCount++;
+  }
+}
@@ -12,6 +12,8 @@ public abstract class Actuator {
   private String actuatorId;
   private String actuatorType;
   private boolean on = false;
+  // Resolved from actuatorType; not part of the wire format
+  private transient ActuatorKind kind;
 
   /**
    * Constructor for Actuator.
@@ -49,6 +51,7 @@ public abstract class Actuator {
       throw new IllegalArgumentException("Actuator type cannot be null");
     }
     this.actuatorType = actuatorType;
+    this.kind = ActuatorKind.of(actuatorType);
   }
 
   /**
@@ -78,6 +81,21 @@ public abstract class Actuator {
     return actuatorType;
   }
 
+  /**
+   * Gets the actuator kind, resolved from the actuator type.
+   *
+   * @return the actuator kind, or null if the type is not a known kind
+   */
+  public ActuatorKind getKind() {
+    ActuatorKind k = kind;
+    if (k == null && actuatorType != null) {
+      // not set when the actuator was created reflectively, without its constructor
+      k = ActuatorKind.of(actuatorType);
+      kind = k;
+    }
+    return k;
+  }
+
   /**
    * Checks if the actuator is on.
    * @return true if the actuator is on, false otherwise
@@ -0,0 +1,92 @@
+package entity.actuator;
+
+import entity.sensor.SensorKind;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The kinds of actuator a node can carry: which sensor kind each one drives and in which
+ * direction. Which kinds must not run together is decided by {@link ConflictGroups}.
+ *
+ * <p>On the wire an actuator's kind is still its {@code actuatorType} string; {@link #of(String)}
+ * maps that string, including the older aliases, to the kind once.
+ */
+public enum ActuatorKind {
+  HEATER(SensorKind.TEMPERATURE, 1),
+  AIRCON(SensorKind.TEMPERATURE, -1),
+  HUMIDIFIER(SensorKind.HUMIDITY, 1),
+  DEHUMIDIFIER(SensorKind.HUMIDITY, -1),
+  LAMP_BRIGHTNING(SensorKind.LIGHT, 1),
+  LAMP_DIMMING(SensorKind.LIGHT, -1),
+  CO2_SUPPLY(SensorKind.CO2, 1),
+  VENTILATION(SensorKind.CO2, -1);
+
+  /**
+   * Number of kinds, for arrays indexed by {@link #ordinal()}.
+   */
+  public static final int COUNT = values().length;
+
+  // Wire names and their older aliases, upper case
+  private static final Map<String, ActuatorKind> BY_NAME = new HashMap<>();
+
+  static {
+    for (ActuatorKind kind : values()) {
+      BY_NAME.put(kind.name(), kind);
+    }
+    BY_NAME.put("AIRCONDITION", AIRCON);
+    BY_NAME.put("LAMP_BRIGHTENING", LAMP_BRIGHTNING);
+    BY_NAME.put("LAMP_BRIGHT", LAMP_BRIGHTNING);
+    BY_NAME.put("LAMP_DIM", LAMP_DIMMING);
+    BY_NAME.put("CO2SUPPLY", CO2_SUPPLY);
+    BY_NAME.put("CO2", CO2_SUPPLY);
+    BY_NAME.put("FAN", VENTILATION);
+  }
+
+  private final SensorKind affects;
+  private final int direction;
+
+  ActuatorKind(SensorKind affects, int direction) {
+    this.affects = affects;
+    this.direction = direction;
+  }
+
+  /**
+   * Find the kind named by an {@code actuatorType} value, ignoring case.
+   *
+   * @param actuatorType actuator type as sent on the wire
+   * @return the kind, or null if the type is null or unknown
+   */
+  public static ActuatorKind of(String actuatorType) {
+    if (actuatorType == null) {
+      return null;
+    }
+    ActuatorKind kind = BY_NAME.get(actuatorType);
+    return kind != null ? kind : BY_NAME.get(actuatorType.toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Get the kind of sensor this actuator drives
+   * @return affected sensor kind
+   */
+  public SensorKind getAffects() {
+    return affects;
+  }
+
+  /**
+   * Check whether this actuator raises the readings it drives
+   * @return true if it raises them, false if it lowers them
+   */
+  public boolean raises() {
+    return direction > 0;
+  }
+
+  /**
+   * Check whether two kinds are in the same {@link ConflictGroups#DEFAULT default} conflict group
+   * @param other the other kind (may be null)
+   * @return true if switching this one on must switch the other off
+   */
+  public boolean conflictsWith(ActuatorKind other) {
+    return ConflictGroups.DEFAULT.conflict(this, other);
+  }
+}
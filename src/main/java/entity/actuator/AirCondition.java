@@ -1,7 +1,9 @@
 package entity.actuator;
 
 import entity.sensor.Sensor;
+import entity.sensor.SensorKind;
 import java.util.List;
+import logging.Log;
 
 /**
  * AirCondition actuator that lowers temperature sensor readings while enabled.
@@ -35,11 +37,11 @@ public class AirCondition extends Actuator {
     }
 
     for (Sensor s : sensors) {
-      if ("TEMPERATURE".equalsIgnoreCase(s.getSensorType())) {
+      if (s.getKind() == SensorKind.TEMPERATURE) {
         s.adjustValue(-1.0);
       }
     }
-    System.out.println("[AirCondition] applied temp effect: -1.0");
+    Log.debug("AirCondition", "applied temp effect: -1.0");
   }
 
 
@@ -1,6 +1,8 @@
 package entity.actuator;
 
+import entity.sensor.SensorKind;
 import java.util.List;
+import logging.Log;
 
 /**
  * CO2 Supply actuator that increases CO2 sensor readings while enabled.
@@ -37,11 +39,11 @@ public class CO2Supply extends Actuator {
       return;
     }
     for (entity.sensor.Sensor s : sensors) {
-      if ("CO2".equalsIgnoreCase(s.getSensorType())) {
+      if (s.getKind() == SensorKind.CO2) {
         s.adjustValue(co2Delta);
       }
     }
-    System.out.println("[CO2_SUPPLY] applied CO2 effect: +" + co2Delta);
+    Log.debug("CO2_SUPPLY", "applied CO2 effect: +%s", co2Delta);
   }
 
 }
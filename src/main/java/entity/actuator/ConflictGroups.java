@@ -0,0 +1,139 @@
+package entity.actuator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import logging.Log;
+
+/**
+ * Groups of actuator kinds that must not run at the same time, such as heating and cooling.
+ *
+ * <p>Each kind belongs to at most one group. Switching an actuator on switches off the other
+ * actuators of its group that drive the same sensor; see
+ * {@link entity.Node#switchActuator(Actuator, boolean)}. Kinds of the same group never conflict
+ * with themselves, so two heaters may run together.
+ *
+ * <p>Groups are written as {@code HEATER,AIRCON;HUMIDIFIER,DEHUMIDIFIER}: kinds separated by
+ * commas, groups by semicolons, using any name {@link ActuatorKind#of(String)} accepts.
+ * {@link #fromSystemProperties()} reads them from {@code node.conflictGroups}.
+ */
+public final class ConflictGroups {
+
+  // Declared before DEFAULT, which uses it while it is built
+  private static final ActuatorKind[] NO_PEERS = new ActuatorKind[0];
+
+  /**
+   * Heat/cool, humidify/dehumidify and brighten/dim. Ventilation and CO2 supply may run
+   * together: fresh air is let in while CO2 is dosed.
+   */
+  public static final ConflictGroups DEFAULT =
+      parse("HEATER,AIRCON;HUMIDIFIER,DEHUMIDIFIER;LAMP_BRIGHTNING,LAMP_DIMMING");
+
+  // Per kind ordinal: group number, or -1 if the kind is in no group
+  private final int[] groupOf = new int[ActuatorKind.COUNT];
+  // Per kind ordinal: the other kinds of its group
+  private final ActuatorKind[][] peers = new ActuatorKind[ActuatorKind.COUNT][];
+  private final String spec;
+
+  private ConflictGroups(List<List<ActuatorKind>> groups) {
+    Arrays.fill(groupOf, -1);
+    Arrays.fill(peers, NO_PEERS);
+    StringBuilder sb = new StringBuilder();
+    for (int g = 0; g < groups.size(); g++) {
+      List<ActuatorKind> group = groups.get(g);
+      for (ActuatorKind kind : group) {
+        if (groupOf[kind.ordinal()] >= 0) {
+          throw new IllegalArgumentException("Actuator kind in more than one group: " + kind);
+        }
+        groupOf[kind.ordinal()] = g;
+      }
+      for (ActuatorKind kind : group) {
+        peers[kind.ordinal()] = group.stream().filter(k -> k != kind).toArray(ActuatorKind[]::new);
+      }
+      if (g > 0) {
+        sb.append(';');
+      }
+      for (int i = 0; i < group.size(); i++) {
+        sb.append(i > 0 ? "," : "").append(group.get(i).name());
+      }
+    }
+    this.spec = sb.toString();
+  }
+
+  /**
+   * Parse conflict groups.
+   *
+   * @param spec groups as {@code KIND,KIND;KIND,KIND}; blank for no groups
+   * @return the parsed groups
+   * @throws IllegalArgumentException if a kind is unknown or named in more than one group
+   */
+  public static ConflictGroups parse(String spec) {
+    List<List<ActuatorKind>> groups = new ArrayList<>();
+    if (spec != null) {
+      for (String group : spec.split(";")) {
+        List<ActuatorKind> kinds = new ArrayList<>();
+        for (String name : group.split(",")) {
+          if (name.isBlank()) {
+            continue;
+          }
+          ActuatorKind kind = ActuatorKind.of(name.trim());
+          if (kind == null) {
+            throw new IllegalArgumentException("Unknown actuator kind: " + name.trim());
+          }
+          if (!kinds.contains(kind)) {
+            kinds.add(kind);
+          }
+        }
+        if (kinds.size() > 1) {
+          groups.add(kinds);
+        }
+      }
+    }
+    return new ConflictGroups(groups);
+  }
+
+  /**
+   * Read the groups from the {@code node.conflictGroups} system property. An invalid value keeps
+   * the defaults.
+   *
+   * @return the configured groups, {@link #DEFAULT} if the property is not set
+   */
+  public static ConflictGroups fromSystemProperties() {
+    String value = System.getProperty("node.conflictGroups");
+    if (value == null) {
+      return DEFAULT;
+    }
+    try {
+      return parse(value);
+    } catch (IllegalArgumentException e) {
+      Log.warn("ConflictGroups", "Ignoring invalid node.conflictGroups=%s: %s", value,
+          e.getMessage());
+      return DEFAULT;
+    }
+  }
+
+  /**
+   * Check whether two kinds are in the same group
+   * @param a one kind (may be null)
+   * @param b the other kind (may be null)
+   * @return true if switching one of them on must switch the other off
+   */
+  public boolean conflict(ActuatorKind a, ActuatorKind b) {
+    return a != null && b != null && a != b && groupOf[a.ordinal()] >= 0
+        && groupOf[a.ordinal()] == groupOf[b.ordinal()];
+  }
+
+  /**
+   * Get the other kinds of a kind's group
+   * @param kind actuator kind
+   * @return kinds that conflict with it, empty if it is in no group; not to be modified
+   */
+  public ActuatorKind[] peersOf(ActuatorKind kind) {
+    return peers[kind.ordinal()];
+  }
+
+  @Override
+  public String toString() {
+    return spec;
+  }
+}
@@ -2,6 +2,8 @@ package entity.actuator;
 
 import java.util.List;
 import entity.sensor.Sensor;
+import entity.sensor.SensorKind;
+import logging.Log;
 
 /**
  * Dehumidifier actuator that lowers humidity sensor readings while enabled.
@@ -48,10 +50,10 @@ public class DeHumidifier extends Actuator {
       return;
     }
     for (Sensor s : sensors) {
-      if ("HUMIDITY".equalsIgnoreCase(s.getSensorType())) {
+      if (s.getKind() == SensorKind.HUMIDITY) {
         s.adjustValue(-dryDelta);
       }
     }
-    System.out.println("[DeHumidifier] applied humidity effect: -" + dryDelta);
+    Log.debug("DeHumidifier", "applied humidity effect: -%s", dryDelta);
   }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package entity.actuator;
 
 import java.util.List;
 import entity.sensor.Sensor;
+import entity.sensor.SensorKind;
+import logging.Log;
 
 /**
  * Heater actuator that increases temperature sensor readings while enabled.
@@ -55,10 +57,10 @@ public class Heater extends Actuator {
     }
     
     for (Sensor s : sensors) {
-      if ("TEMPERATURE".equalsIgnoreCase(s.getSensorType())) {
+      if (s.getKind() == SensorKind.TEMPERATURE) {
         s.adjustValue(heatDelta);
       }
     }
-    System.out.println("[Heater] applied temp effect: +" + heatDelta);
+    Log.debug("Heater", "applied temp effect: +%s", heatDelta);
   }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package entity.actuator;
 
 import java.util.List;
 import entity.sensor.Sensor;
+import entity.sensor.SensorKind;
+import logging.Log;
 
 /**
  * Humidifier actuator that increases humidity sensor readings while it is turned on.
@@ -53,10 +55,10 @@ public class Humidifier extends Actuator {
           return;
       }
     for (Sensor s : sensors) {
-      if ("HUMIDITY".equalsIgnoreCase(s.getSensorType())) {
+      if (s.getKind() == SensorKind.HUMIDITY) {
         s.adjustValue(humidDelta);
       }
     }
-    System.out.println("[Humidifier] applied humidity effect: +" + humidDelta);
+    Log.debug("Humidifier", "applied humidity effect: +%s", humidDelta);
   }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package entity.actuator;
 
+import entity.sensor.SensorKind;
+import logging.Log;
 
 /**
  * Actuator that increases measured light values while it is turned on.
@@ -48,11 +50,11 @@ public class LampBrightning extends Actuator {
       return;
     }
     for (entity.sensor.Sensor s : sensors) {
-      if ("LIGHT".equalsIgnoreCase(s.getSensorType())) {
+      if (s.getKind() == SensorKind.LIGHT) {
         s.adjustValue(brightDelta);
       }
     }
-    System.out.println("[LAMP_BRIGHTNING] applied light effect: +" + brightDelta);
+    Log.debug("LAMP_BRIGHTNING", "applied light effect: +%s", brightDelta);
   }
 
 }
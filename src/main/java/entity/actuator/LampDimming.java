@@ -1,6 +1,7 @@
 package entity.actuator;
 
-
+import entity.sensor.SensorKind;
+import logging.Log;
 
 /**
  * Actuator that gradually reduces measured light values while it is turned on.
@@ -46,11 +47,11 @@ public class LampDimming extends Actuator {
       return;
     }
     for (entity.sensor.Sensor s : sensors) {
-      if ("LIGHT".equalsIgnoreCase(s.getSensorType())) {
+      if (s.getKind() == SensorKind.LIGHT) {
         s.adjustValue(-dimDelta);
       }
     }
-    System.out.println("[LAMP_DIMMING] applied light effect: -" + dimDelta);
+    Log.debug("LAMP_DIMMING", "applied light effect: -%s", dimDelta);
   }
 
 
@@ -2,6 +2,8 @@ package entity.actuator;
 
 import java.util.List;
 import entity.sensor.Sensor;
+import entity.sensor.SensorKind;
+import logging.Log;
 
 /**
  * Ventilation actuator that lowers CO2 sensor readings while it is turned on.
@@ -52,11 +54,11 @@ public class Ventilation extends Actuator {
       return;
     }
     for (Sensor s : sensors) {
-      if ("CO2".equalsIgnoreCase(s.getSensorType())) {
+      if (s.getKind() == SensorKind.CO2) {
         s.adjustValue(-co2Delta);
       }
     }
-    System.out.println("[VENTILATION] applied CO2 effect: -" + co2Delta);
+    Log.debug("VENTILATION", "applied CO2 effect: -%s", co2Delta);
   }
 }
 
@@ -17,6 +17,8 @@ public abstract class Sensor {
   protected double minThreshold;
   protected double maxThreshold;
   protected LocalDateTime timestamp;
+  // Resolved from sensorType; not part of the wire format
+  private transient SensorKind kind;
 
   /**
    * Constructor for Sensor
@@ -66,6 +68,7 @@ public abstract class Sensor {
       throw new IllegalArgumentException("entity.Sensor type cannot be null");
     }
     this.sensorType = sensorType;
+    this.kind = SensorKind.of(sensorType);
   }
 
   /**
@@ -115,6 +118,20 @@ public abstract class Sensor {
     return sensorType;
   }
 
+  /**
+   * Get sensor kind, resolved from the sensor type
+   * @return sensor kind, or null if the type is not a known kind
+   */
+  public SensorKind getKind() {
+    SensorKind k = kind;
+    if (k == null && sensorType != null) {
+      // not set when the sensor was created reflectively, without its constructor
+      k = SensorKind.of(sensorType);
+      kind = k;
+    }
+    return k;
+  }
+
   /**
    * Get current sensor value
    * @return current sensor value
@@ -132,6 +149,19 @@ public abstract class Sensor {
     this.timestamp = LocalDateTime.now();
   }
 
+  /**
+   * Restore a reading taken elsewhere, e.g. from a received snapshot, keeping its original
+   * timestamp instead of stamping it with the current time.
+   * @param value     the sensor value
+   * @param timestamp when the value was measured (null keeps the current timestamp)
+   */
+  public synchronized void restoreReading(double value, LocalDateTime timestamp) {
+    this.value = value;
+    if (timestamp != null) {
+      this.timestamp = timestamp;
+    }
+  }
+
   /**
    * Adjust the sensor value by a delta.
    * @param delta the amount to adjust the sensor value by
@@ -0,0 +1,82 @@
+package entity.sensor;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The kinds of sensor a node can carry, with their unit and absolute safety limits.
+ *
+ * <p>On the wire a sensor's kind is still its {@code sensorType} string; {@link #of(String)}
+ * maps that string to the kind once, so hot paths compare enum constants or index arrays by
+ * {@link #ordinal()} instead of comparing strings.
+ */
+public enum SensorKind {
+  TEMPERATURE("°C", 10.0, 40.0),
+  HUMIDITY("%", 0.0, 100.0),
+  LIGHT("lux", 600.0, 25000.0),
+  CO2("ppm", 500.0, 2000.0);
+
+  /**
+   * Number of kinds, for arrays indexed by {@link #ordinal()}.
+   */
+  public static final int COUNT = values().length;
+
+  // Wire names and their older aliases, upper case
+  private static final Map<String, SensorKind> BY_NAME = new HashMap<>();
+
+  static {
+    for (SensorKind kind : values()) {
+      BY_NAME.put(kind.name(), kind);
+    }
+    BY_NAME.put("LUMINANCE", LIGHT);
+  }
+
+  private final String unit;
+  private final double minLimit;
+  private final double maxLimit;
+
+  SensorKind(String unit, double minLimit, double maxLimit) {
+    this.unit = unit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+  }
+
+  /**
+   * Find the kind named by a {@code sensorType} value, ignoring case.
+   *
+   * @param sensorType sensor type as sent on the wire
+   * @return the kind, or null if the type is null or unknown
+   */
+  public static SensorKind of(String sensorType) {
+    if (sensorType == null) {
+      return null;
+    }
+    SensorKind kind = BY_NAME.get(sensorType);
+    return kind != null ? kind : BY_NAME.get(sensorType.toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Get the unit of measurement
+   * @return unit of the readings
+   */
+  public String getUnit() {
+    return unit;
+  }
+
+  /**
+   * Get the lowest safe reading; reaching it switches off the actuators that lower it
+   * @return absolute lower limit
+   */
+  public double getMinLimit() {
+    return minLimit;
+  }
+
+  /**
+   * Get the highest safe reading; reaching it switches off the actuators that raise it
+   * @return absolute upper limit
+   */
+  public double getMaxLimit() {
+    return maxLimit;
+  }
+}
@@ -0,0 +1,52 @@
+package logging;
+
+/**
+ * Severity of a log message. Messages below the level set with {@link Log#setLevel(Level)} are
+ * dropped before their arguments are formatted.
+ */
+public enum Level {
+
+  /**
+   * Per-message traffic and simulation details, such as every line a server receives.
+   */
+  DEBUG,
+
+  /**
+   * Connections, registrations and other events worth seeing on a normal run.
+   */
+  INFO,
+
+  /**
+   * Something went wrong but the program carries on, such as a failed send.
+   */
+  WARN,
+
+  /**
+   * Something failed that the program cannot recover from by itself.
+   */
+  ERROR,
+
+  /**
+   * Used as a threshold only: no messages are logged.
+   */
+  OFF;
+
+  /**
+   * Parse a level name, falling back to a default for {@code null} or unknown values.
+   *
+   * @param name     level name (case-insensitive)
+   * @param fallback level to use if {@code name} is not recognised
+   * @return the matching level or {@code fallback}
+   */
+  public static Level parse(String name, Level fallback) {
+    if (name == null) {
+      return fallback;
+    }
+    for (Level l : values()) {
+      if (l.name().equalsIgnoreCase(name.trim())) {
+        return l;
+      }
+    }
+    return fallback;
+  }
+}
@@ -0,0 +1,190 @@
+package logging;
+
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Asynchronous console log shared by the server, the nodes and the entities.
+ *
+ * <p>Logging a message only checks the level, takes a slot in a lock-free ring buffer and
+ * returns; a background appender formats the messages and writes them to {@code System.out} in
+ * batches. Network threads therefore no longer format strings or queue up on the
+ * {@code System.out} lock for every line they handle. Messages below the current level are
+ * discarded before anything is formatted, and each category can be limited to a number of
+ * messages per second; the appender reports how many were suppressed or dropped.
+ *
+ * <p>Configured with system properties:
+ * <ul>
+ *   <li>{@code log.level}: {@code DEBUG}, {@code INFO} (default), {@code WARN}, {@code ERROR} or
+ *       {@code OFF},</li>
+ *   <li>{@code log.bufferSize}: messages the ring holds before new ones are dropped (default
+ *       8192),</li>
+ *   <li>{@code log.rate.<category>}: messages per second let through for a category, e.g.
+ *       {@code -Dlog.rate.Node=20}.</li>
+ * </ul>
+ *
+ * <p>Arguments are formatted later on the appender thread, so pass values that do not change
+ * afterwards (strings, numbers, ids), not live mutable objects.
+ */
+public final class Log {
+
+  private static final LogRing RING = new LogRing(Integer.getInteger("log.bufferSize", 8192),
+      Log::writeToConsole, "Log-Appender");
+  // Categories without a limit map to UNLIMITED, so the property is read once per category
+  private static final RateLimiter UNLIMITED = new RateLimiter(Integer.MAX_VALUE);
+  private static final ConcurrentMap<String, RateLimiter> LIMITERS = new ConcurrentHashMap<>();
+  private static volatile Level threshold = Level.parse(System.getProperty("log.level"),
+      Level.INFO);
+
+  static {
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> RING.flush(1000), "Log-Flush"));
+  }
+
+  private Log() {
+  }
+
+  /**
+   * Set the lowest level that is logged.
+   *
+   * @param level new threshold; {@link Level#OFF} disables logging
+   * @throws IllegalArgumentException if {@code level} is {@code null}
+   */
+  public static void setLevel(Level level) {
+    if (level == null) {
+      throw new IllegalArgumentException("Level cannot be null");
+    }
+    threshold = level;
+  }
+
+  /**
+   * Get the lowest level that is logged.
+   *
+   * @return current threshold
+   */
+  public static Level getLevel() {
+    return threshold;
+  }
+
+  /**
+   * Check whether messages of a level are logged. Use it to skip building expensive arguments.
+   *
+   * @param level level to check
+   * @return true if messages of {@code level} are logged
+   */
+  public static boolean isEnabled(Level level) {
+    return level != Level.OFF && level.compareTo(threshold) >= 0;
+  }
+
+  /**
+   * Limit how many messages of a category are logged per second, overriding
+   * {@code log.rate.<category>}.
+   *
+   * @param category  category to limit
+   * @param perSecond messages let through per second, or 0 for no limit
+   * @throws IllegalArgumentException if {@code perSecond} is negative
+   */
+  public static void setRateLimit(String category, int perSecond) {
+    if (perSecond < 0) {
+      throw new IllegalArgumentException("Rate limit cannot be negative: " + perSecond);
+    }
+    LIMITERS.put(category, perSecond == 0 ? UNLIMITED : new RateLimiter(perSecond));
+  }
+
+  /**
+   * Log a message at {@link Level#DEBUG}.
+   *
+   * @param category category shown in front of the message, such as "Server" or "Node"
+   * @param format   {@link String#format} pattern, used as is when there are no arguments
+   * @param args     format arguments
+   */
+  public static void debug(String category, String format, Object... args) {
+    log(Level.DEBUG, category, format, args);
+  }
+
+  /**
+   * Log a message at {@link Level#INFO}.
+   *
+   * @param category category shown in front of the message, such as "Server" or "Node"
+   * @param format   {@link String#format} pattern, used as is when there are no arguments
+   * @param args     format arguments
+   */
+  public static void info(String category, String format, Object... args) {
+    log(Level.INFO, category, format, args);
+  }
+
+  /**
+   * Log a message at {@link Level#WARN}.
+   *
+   * @param category category shown in front of the message, such as "Server" or "Node"
+   * @param format   {@link String#format} pattern, used as is when there are no arguments
+   * @param args     format arguments
+   */
+  public static void warn(String category, String format, Object... args) {
+    log(Level.WARN, category, format, args);
+  }
+
+  /**
+   * Log a message at {@link Level#ERROR}.
+   *
+   * @param category category shown in front of the message, such as "Server" or "Node"
+   * @param format   {@link String#format} pattern, used as is when there are no arguments
+   * @param args     format arguments
+   */
+  public static void error(String category, String format, Object... args) {
+    log(Level.ERROR, category, format, args);
+  }
+
+  /**
+   * Log a message. Returns at once; the message is formatted and written by the appender.
+   *
+   * @param level    level of the message
+   * @param category category shown in front of the message
+   * @param format   {@link String#format} pattern, used as is when there are no arguments
+   * @param args     format arguments
+   */
+  public static void log(Level level, String category, String format, Object... args) {
+    if (!isEnabled(level)) {
+      return;
+    }
+    if (category == null) {
+      category = "";
+    }
+    long now = System.currentTimeMillis();
+    RateLimiter limiter = LIMITERS.computeIfAbsent(category, Log::limiterFromProperty);
+    if (limiter != UNLIMITED) {
+      if (!limiter.tryAcquire(now)) {
+        return;
+      }
+      int suppressed = limiter.takeSuppressed();
+      if (suppressed > 0) {
+        RING.offer(now, Level.WARN, category, "%d messages suppressed by rate limit",
+            new Object[] {suppressed});
+      }
+    }
+    RING.offer(now, level, category, format, args);
+  }
+
+  /**
+   * Wait until the messages logged so far have been written, e.g. before exiting or before
+   * printing something directly to the console.
+   *
+   * @param timeoutMillis longest time to wait
+   * @return false if the timeout expired first
+   */
+  public static boolean flush(long timeoutMillis) {
+    return RING.flush(timeoutMillis);
+  }
+
+  private static RateLimiter limiterFromProperty(String category) {
+    Integer perSecond = Integer.getInteger("log.rate." + category);
+    return perSecond == null || perSecond < 1 ? UNLIMITED : new RateLimiter(perSecond);
+  }
+
+  private static void writeToConsole(CharSequence text) {
+    // Looked up per batch so a redirected System.out is honoured
+    PrintStream out = System.out;
+    out.append(text);
+    out.flush();
+  }
+}
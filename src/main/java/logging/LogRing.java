@@ -0,0 +1,246 @@
+package logging;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded ring of log messages filled by any number of threads and emptied by one appender
+ * thread, which formats them and hands them to a sink in batches.
+ *
+ * <p>Producers claim a slot with a compare-and-set on the tail and publish it through the slot's
+ * sequence number, so logging never takes a lock and never waits for the console. The slots are
+ * allocated once and reused. When the ring is full the message is dropped and counted; the
+ * appender reports the count with its next batch. Formatting with {@link String#format} and the
+ * timestamp conversion happen on the appender thread, which is why message arguments must not be
+ * changed after they are logged.
+ *
+ * <p>The appender is a platform thread: a virtual thread writing to a synchronized stream would
+ * pin its carrier.
+ */
+class LogRing {
+
+  private static final DateTimeFormatter LOG_TIME = DateTimeFormatter.ofPattern(
+      "yyyy-MM-dd HH:mm:ss");
+  private static final int BATCH = 256;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+  /**
+   * One reusable slot. {@code sequence} equals the slot's claim number while it is free, and the
+   * claim number plus one once the message is published.
+   */
+  private static final class Entry {
+    volatile long sequence;
+    long millis;
+    Level level;
+    String category;
+    String format;
+    Object[] args;
+  }
+
+  private final Entry[] entries;
+  private final int mask;
+  private final AtomicLong tail = new AtomicLong();
+  // Written by the appender only
+  private volatile long head;
+  // Messages the appender has handed to the sink
+  private volatile long written;
+  private volatile boolean idle;
+  private final AtomicLong dropped = new AtomicLong();
+  private final Consumer<CharSequence> sink;
+  private final Thread appender;
+  private final StringBuilder batch = new StringBuilder(8192);
+  private final ZoneId zone = ZoneId.systemDefault();
+  private long stampSecond = Long.MIN_VALUE;
+  private String stamp;
+
+  /**
+   * Create a ring and start its appender thread.
+   *
+   * @param capacity number of messages it can hold, rounded up to a power of two
+   * @param sink     receives the formatted text of each batch, on the appender thread
+   * @param name     name of the appender thread
+   * @throws IllegalArgumentException if {@code capacity} is less than 2 or above 2^30
+   */
+  LogRing(int capacity, Consumer<CharSequence> sink, String name) {
+    if (capacity < 2 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Log buffer capacity out of range: " + capacity);
+    }
+    int size = Integer.highestOneBit(capacity - 1) << 1;
+    this.entries = new Entry[size];
+    for (int i = 0; i < size; i++) {
+      entries[i] = new Entry();
+      entries[i].sequence = i;
+    }
+    this.mask = size - 1;
+    this.sink = sink;
+    this.appender = new Thread(this::run, name);
+    appender.setDaemon(true);
+    appender.start();
+  }
+
+  /**
+   * Get the number of messages the ring can hold.
+   *
+   * @return capacity, a power of two
+   */
+  int capacity() {
+    return entries.length;
+  }
+
+  /**
+   * Add a message without blocking.
+   *
+   * @param millis   time of the message in milliseconds since the epoch
+   * @param level    level of the message
+   * @param category category shown in front of the message
+   * @param format   format string, used as is when there are no arguments
+   * @param args     format arguments
+   * @return false if the ring was full and the message was dropped
+   */
+  boolean offer(long millis, Level level, String category, String format, Object[] args) {
+    Entry e;
+    long t;
+    while (true) {
+      t = tail.get();
+      e = entries[(int) t & mask];
+      long seq = e.sequence;
+      if (seq == t) {
+        if (tail.compareAndSet(t, t + 1)) {
+          break;
+        }
+      } else if (seq < t) {
+        // The appender has not freed this slot yet: full
+        dropped.incrementAndGet();
+        return false;
+      }
+      // Another producer claimed the slot first; retry with the new tail
+    }
+    e.millis = millis;
+    e.level = level;
+    e.category = category;
+    e.format = format;
+    e.args = args;
+    e.sequence = t + 1;
+    if (idle) {
+      LockSupport.unpark(appender);
+    }
+    return true;
+  }
+
+  /**
+   * Wait until every message added before this call has been handed to the sink.
+   *
+   * @param timeoutMillis longest time to wait
+   * @return false if the timeout expired first
+   */
+  boolean flush(long timeoutMillis) {
+    long target = tail.get();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (written < target) {
+      if (Thread.currentThread() == appender || System.nanoTime() - deadline > 0) {
+        return false;
+      }
+      LockSupport.unpark(appender);
+      LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(200));
+    }
+    return true;
+  }
+
+  /**
+   * Get the number of messages dropped because the ring was full and not reported yet.
+   *
+   * @return dropped messages
+   */
+  long dropped() {
+    return dropped.get();
+  }
+
+  private void run() {
+    while (true) {
+      batch.setLength(0);
+      long lost = dropped.get() > 0 ? dropped.getAndSet(0) : 0;
+      if (lost > 0) {
+        appendLine(System.currentTimeMillis(), Level.WARN, "Log",
+            lost + " messages dropped, log buffer full");
+      }
+      int n = drain();
+      if (batch.length() > 0) {
+        try {
+          sink.accept(batch);
+        } catch (RuntimeException ignored) {
+          // Nowhere left to report it
+        }
+      }
+      written = head;
+      if (n == 0 && lost == 0) {
+        idle = true;
+        if (entries[(int) head & mask].sequence != head + 1) {
+          LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+        }
+        idle = false;
+      }
+    }
+  }
+
+  /**
+   * Format up to one batch of published messages into {@code batch} and free their slots.
+   *
+   * @return number of messages taken
+   */
+  private int drain() {
+    int n = 0;
+    long h = head;
+    while (n < BATCH) {
+      Entry e = entries[(int) h & mask];
+      if (e.sequence != h + 1) {
+        break;
+      }
+      appendLine(e.millis, e.level, e.category, format(e.format, e.args));
+      e.level = null;
+      e.category = null;
+      e.format = null;
+      e.args = null;
+      e.sequence = h + entries.length;
+      h++;
+      n++;
+    }
+    head = h;
+    return n;
+  }
+
+  private void appendLine(long millis, Level level, String category, String message) {
+    long second = Math.floorDiv(millis, 1000);
+    if (second != stampSecond) {
+      stampSecond = second;
+      stamp = LOG_TIME.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone));
+    }
+    batch.append("\n[").append(stamp).append("] ");
+    if (level != Level.INFO) {
+      batch.append(level).append(' ');
+    }
+    batch.append(category).append(": ").append(message).append(System.lineSeparator());
+  }
+
+  private static String format(String format, Object[] args) {
+    if (args == null || args.length == 0) {
+      return format;
+    }
+    try {
+      return String.format(format, args);
+    } catch (RuntimeException e) {
+      // A bad format string or a failing toString() must not stop the appender
+      try {
+        return format + " " + Arrays.toString(args);
+      } catch (RuntimeException again) {
+        return format;
+      }
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package logging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets through at most a fixed number of messages per one-second window and counts the rest.
+ *
+ * <p>The window is fixed rather than sliding: a burst at the end of one second and the start of
+ * the next may pass up to twice the limit, which is fine for keeping a chatty category from
+ * flooding the console. Lock-free, so many threads can log through one limiter.
+ */
+class RateLimiter {
+
+  private static final long WINDOW_MILLIS = 1000;
+
+  private final int perSecond;
+  private final AtomicLong windowStart = new AtomicLong();
+  private final AtomicInteger used = new AtomicInteger();
+  private final AtomicInteger suppressed = new AtomicInteger();
+
+  /**
+   * Create a limiter.
+   *
+   * @param perSecond messages let through per second
+   * @throws IllegalArgumentException if {@code perSecond} is less than 1
+   */
+  RateLimiter(int perSecond) {
+    if (perSecond < 1) {
+      throw new IllegalArgumentException("Rate limit must be at least 1 per second: " + perSecond);
+    }
+    this.perSecond = perSecond;
+  }
+
+  /**
+   * Take one message from the current window's allowance.
+   *
+   * @param nowMillis current time in milliseconds
+   * @return true if the message may be logged, false if it is suppressed
+   */
+  boolean tryAcquire(long nowMillis) {
+    long start = windowStart.get();
+    if (nowMillis - start >= WINDOW_MILLIS && windowStart.compareAndSet(start, nowMillis)) {
+      used.set(0);
+    }
+    if (used.incrementAndGet() <= perSecond) {
+      return true;
+    }
+    suppressed.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Get and reset the number of messages suppressed since the last call.
+   *
+   * @return suppressed messages
+   */
+  int takeSuppressed() {
+    return suppressed.get() == 0 ? 0 : suppressed.getAndSet(0);
+  }
+}
@@ -0,0 +1,140 @@
+package network;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The last-known snapshot of a node as the servers cache it.
+ *
+ * <p>The snapshot line is kept as received until the first delta arrives. It is then parsed once,
+ * and deltas patch the parsed readings and actuator states in place, found by id. The line is
+ * only written again when it is asked for, typically by a {@code REQUEST_NODE}, so a node
+ * streaming deltas costs one small parse per delta instead of a parse and write of its whole
+ * snapshot.
+ *
+ * <p>Instances are safe for use by multiple threads.
+ */
+final class CachedSnapshot {
+
+  // null while the parsed state has changes that were not written out yet
+  private String line;
+  // Parsed on the first patch
+  private JsonObject state;
+  private Map<String, JsonObject> sensorsById;
+  private Map<String, JsonObject> actuatorsById;
+
+  /**
+   * Cache a snapshot line.
+   *
+   * @param line the snapshot JSON as received from the node
+   */
+  CachedSnapshot(String line) {
+    this.line = line;
+  }
+
+  /**
+   * Get the snapshot with every applied delta.
+   *
+   * @return the snapshot JSON
+   */
+  synchronized String line() {
+    if (line == null) {
+      line = state.toString();
+    }
+    return line;
+  }
+
+  /**
+   * Apply a delta: update the listed readings and actuator states, the node timestamp and
+   * {@code seq}. Sequence checks are the caller's job.
+   *
+   * @param delta parsed {@code NODE_DELTA} message
+   * @return false, leaving the snapshot unchanged, if the delta names a sensor or actuator the
+   *         snapshot does not have (the cache is out of date and needs a resync)
+   * @throws RuntimeException if the snapshot or the delta is malformed
+   */
+  synchronized boolean patch(JsonObject delta) {
+    if (state == null) {
+      JsonObject parsed = JsonParser.parseString(line).getAsJsonObject();
+      sensorsById = byId(parsed, "sensors", "sensorId");
+      actuatorsById = byId(parsed, "actuators", "actuatorId");
+      state = parsed;
+    }
+    if (!hasAll(sensorsById, delta, "sensors", "sensorId")
+        || !hasAll(actuatorsById, delta, "actuators", "actuatorId")) {
+      return false;
+    }
+    copyMembers(sensorsById, delta, "sensors", "sensorId");
+    copyMembers(actuatorsById, delta, "actuators", "actuatorId");
+    if (delta.has("timestamp")) {
+      state.add("timestamp", delta.get("timestamp"));
+    }
+    state.add("seq", delta.get("seq"));
+    line = null;
+    return true;
+  }
+
+  private static Map<String, JsonObject> byId(JsonObject snapshot, String arrayName,
+      String idName) {
+    Map<String, JsonObject> byId = new HashMap<>();
+    if (snapshot.has(arrayName) && snapshot.get(arrayName).isJsonArray()) {
+      for (JsonElement e : snapshot.getAsJsonArray(arrayName)) {
+        if (e.isJsonObject() && e.getAsJsonObject().has(idName)) {
+          byId.put(e.getAsJsonObject().get(idName).getAsString(), e.getAsJsonObject());
+        }
+      }
+    }
+    return byId;
+  }
+
+  private static boolean hasAll(Map<String, JsonObject> byId, JsonObject delta, String arrayName,
+      String idName) {
+    if (delta.has(arrayName)) {
+      for (JsonElement e : delta.getAsJsonArray(arrayName)) {
+        if (!byId.containsKey(e.getAsJsonObject().get(idName).getAsString())) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Copy the members of each element of {@code delta[arrayName]} onto the snapshot element with
+   * the same id.
+   */
+  private static void copyMembers(Map<String, JsonObject> byId, JsonObject delta,
+      String arrayName, String idName) {
+    if (!delta.has(arrayName)) {
+      return;
+    }
+    for (JsonElement e : delta.getAsJsonArray(arrayName)) {
+      JsonObject change = e.getAsJsonObject();
+      JsonObject target = byId.get(change.get(idName).getAsString());
+      for (Map.Entry<String, JsonElement> member : change.entrySet()) {
+        target.add(member.getKey(), member.getValue());
+      }
+    }
+  }
+
+  /**
+   * Two cached snapshots are equal if they write the same line.
+   */
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof CachedSnapshot other && line().equals(other.line());
+  }
+
+  @Override
+  public int hashCode() {
+    return line().hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return line();
+  }
+}
@@ -0,0 +1,554 @@
+package network;
+
+import codec.BinaryFrameWriter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import logging.Log;
+
+/**
+ * Outbound side of a single server connection.
+ *
+ * <p>Any thread may queue lines with {@link #send(String)}, {@link #sendSnapshot(String,
+ * String)} or {@link #sendDelta(String, String)}; one dedicated virtual thread drains the queue
+ * and is the only code that ever touches the socket's output stream. Lines are therefore always
+ * written whole, and everything that is queued when the writer wakes up goes out through a
+ * buffered stream with a single flush, so a burst of updates costs one or a few system calls
+ * instead of one per line.
+ *
+ * <p>The queue is bounded and sending never blocks. Without a {@link SlowConsumerPolicy} a line
+ * that does not fit is simply rejected. Control panel writers are given a policy that decides
+ * what to evict (or whether to disconnect the panel) instead, and report each decision to a
+ * shared {@link SlowConsumerStats}.
+ *
+ * <p>With {@link SlowConsumerPolicy#COALESCE_LATEST} a queued snapshot is overwritten by every
+ * newer snapshot of the same node as soon as it arrives, not only once the queue is full. At most
+ * one snapshot per node is ever pending, so a stalled panel holds at most one line per node
+ * (plus non-snapshot lines) and gets the latest state of every node as soon as it drains.
+ *
+ * <p>Deltas are kept by node as well. With {@link SlowConsumerPolicy#DROP_OLDEST} or
+ * {@link SlowConsumerPolicy#COALESCE_LATEST}, a newer snapshot of a node drops the node's queued
+ * deltas, and when the queue is full every queued delta is replaced by the current snapshot of its
+ * node, looked up through the function given to the constructor. A panel flooded with deltas is
+ * therefore held to one line per node as well, and alerts still find room.
+ *
+ * <p>After {@link #startBinaryFraming()} the writer sends {@link BinaryFrameWriter} frames
+ * instead of lines: snapshots become snapshot frames and every other line a text frame, so
+ * senders keep queueing JSON whatever the peer negotiated.
+ */
+public class ConnectionWriter {
+
+  /**
+   * Default number of lines that may wait in the queue.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+  private static final int MAX_BATCH = 256;
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  /**
+   * A queued line. {@code nodeId} is set for node snapshots and deltas, which are the only lines a
+   * policy may drop or overwrite; a delta may also be turned into a snapshot in place. An entry
+   * without a line marks the switch to binary framing.
+   */
+  private static final class Entry {
+    String line;
+    final String nodeId;
+    boolean delta;
+    final long enqueuedNanos;
+
+    Entry(String line, String nodeId, boolean delta, long enqueuedNanos) {
+      this.line = line;
+      this.nodeId = nodeId;
+      this.delta = delta;
+      this.enqueuedNanos = enqueuedNanos;
+    }
+  }
+
+  private final Socket socket;
+  private final OutputStream out;
+  private final int capacity;
+  private final SlowConsumerPolicy policy;
+  private final long maxLagNanos;
+  private final SlowConsumerStats stats;
+  // Current snapshot line of a node (null if unknown), or null if deltas cannot be replaced
+  private final Function<String, String> snapshots;
+  // Guarded by lock; a ReentrantLock (not synchronized) so virtual threads are never pinned
+  private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+  // Guarded by lock; with COALESCE_LATEST, the one pending snapshot of each node
+  private final Map<String, Entry> pendingSnapshots = new HashMap<>();
+  // Guarded by lock; number of queued deltas of each node
+  private final Map<String, Integer> pendingDeltas = new HashMap<>();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Thread writer;
+  private boolean endOfStream = false;
+  private volatile boolean closed = false;
+
+  /**
+   * Create a writer without a slow-consumer policy; lines that do not fit are rejected.
+   *
+   * @param socket   connected socket
+   * @param capacity maximum number of queued lines
+   * @throws IOException if the socket's output stream cannot be opened
+   */
+  public ConnectionWriter(Socket socket, int capacity) throws IOException {
+    this(socket, capacity, null, 0, null);
+  }
+
+  /**
+   * Create a writer that applies a slow-consumer policy when its queue is full.
+   *
+   * @param socket        connected socket
+   * @param capacity      maximum number of queued lines
+   * @param policy        overflow policy, or {@code null} to reject lines that do not fit
+   * @param maxLagMillis  for {@link SlowConsumerPolicy#DISCONNECT}: how long the oldest queued
+   *                      line may wait before the connection is closed
+   * @param stats         counters to update, or {@code null}
+   * @throws IOException if the socket's output stream cannot be opened
+   */
+  public ConnectionWriter(Socket socket, int capacity, SlowConsumerPolicy policy,
+      long maxLagMillis, SlowConsumerStats stats) throws IOException {
+    this(socket, capacity, policy, maxLagMillis, stats, null);
+  }
+
+  /**
+   * Create a writer that applies a slow-consumer policy when its queue is full and may replace
+   * queued deltas with the current snapshot of their node.
+   *
+   * @param socket        connected socket
+   * @param capacity      maximum number of queued lines
+   * @param policy        overflow policy, or {@code null} to reject lines that do not fit
+   * @param maxLagMillis  for {@link SlowConsumerPolicy#DISCONNECT}: how long the oldest queued
+   *                      line may wait before the connection is closed
+   * @param stats         counters to update, or {@code null}
+   * @param snapshots     returns the current snapshot line of a node id, including every delta
+   *                      queued so far, or null if the node has none; {@code null} to keep deltas
+   * @throws IOException if the socket's output stream cannot be opened
+   */
+  public ConnectionWriter(Socket socket, int capacity, SlowConsumerPolicy policy,
+      long maxLagMillis, SlowConsumerStats stats, Function<String, String> snapshots)
+      throws IOException {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be at least 1");
+    }
+    this.socket = socket;
+    this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    this.capacity = capacity;
+    this.policy = policy;
+    this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+    this.stats = stats != null ? stats : new SlowConsumerStats();
+    this.snapshots = snapshots;
+    this.writer = Thread.ofVirtual()
+        .name("ConnectionWriter-" + socket.getRemoteSocketAddress())
+        .start(this::drain);
+  }
+
+  /**
+   * Queue one line for sending. Never blocks.
+   *
+   * @param line line to send (without trailing newline)
+   * @return {@code true} if queued, {@code false} if the writer is closed or the line was dropped
+   */
+  public boolean send(String line) {
+    return offer(line, null, false);
+  }
+
+  /**
+   * Queue a node snapshot. Snapshots are the lines a slow-consumer policy may drop or overwrite
+   * when the queue is full.
+   *
+   * @param nodeId id of the node the snapshot belongs to
+   * @param line   snapshot line (without trailing newline)
+   * @return {@code true} if queued or merged, {@code false} if closed or dropped
+   */
+  public boolean sendSnapshot(String nodeId, String line) {
+    return offer(line, nodeId, false);
+  }
+
+  /**
+   * Queue a node delta. A policy may replace the node's queued deltas with its current snapshot
+   * when the queue is full, or drop them once a newer snapshot of the node is queued.
+   *
+   * @param nodeId id of the node the delta belongs to
+   * @param line   delta line (without trailing newline)
+   * @return {@code true} if queued or merged, {@code false} if closed or dropped
+   */
+  public boolean sendDelta(String nodeId, String line) {
+    return offer(line, nodeId, true);
+  }
+
+  /**
+   * Switch to binary framing once every line queued so far has been written as text. Used right
+   * after queueing the handshake reply that confirms the framing mode.
+   */
+  public void startBinaryFraming() {
+    lock.lock();
+    try {
+      if (!closed && !endOfStream) {
+        enqueue(new Entry(null, null, false, System.nanoTime()));
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Get the number of lines waiting to be written.
+   *
+   * @return queued line count
+   */
+  public int pending() {
+    lock.lock();
+    try {
+      return queue.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Check whether the writer has been closed.
+   *
+   * @return true once closed or after a write error
+   */
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Write everything queued so far, then stop the writer. Waits at most {@code timeoutMillis}
+   * for the queue to drain. Does not close the socket.
+   *
+   * @param timeoutMillis maximum time to wait for queued lines to be written
+   */
+  public void closeGracefully(long timeoutMillis) {
+    if (closed) {
+      return;
+    }
+    lock.lock();
+    try {
+      endOfStream = true;
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+    try {
+      writer.join(timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    close();
+  }
+
+  /**
+   * Stop the writer immediately, discarding queued lines. Does not close the socket.
+   */
+  public void close() {
+    closed = true;
+    lock.lock();
+    try {
+      queue.clear();
+      pendingSnapshots.clear();
+      pendingDeltas.clear();
+    } finally {
+      lock.unlock();
+    }
+    writer.interrupt();
+  }
+
+  private boolean offer(String line, String nodeId, boolean delta) {
+    if (closed || line == null) {
+      return false;
+    }
+    long now = System.nanoTime();
+    boolean disconnect = false;
+    lock.lock();
+    try {
+      if (closed || endOfStream) {
+        return false;
+      }
+      if (policy == SlowConsumerPolicy.DISCONNECT && !queue.isEmpty()
+          && now - queue.peekFirst().enqueuedNanos > maxLagNanos) {
+        disconnect = true;
+      } else {
+        if (nodeId != null && !delta && evicts()) {
+          // A newer snapshot makes the node's queued deltas obsolete
+          dropDeltas(nodeId);
+          if (policy == SlowConsumerPolicy.COALESCE_LATEST && coalesce(nodeId, line)) {
+            return true;
+          }
+        }
+        if (queue.size() < capacity) {
+          enqueue(new Entry(line, nodeId, delta, now));
+          return true;
+        }
+        if (applyOverflowPolicy(line, nodeId, delta, now)) {
+          return true;
+        }
+        stats.recordRejected();
+        return false;
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (disconnect) {
+      stats.recordDisconnected();
+      Log.warn("ConnectionWriter", "disconnecting slow consumer %s (%s)",
+          socket.getRemoteSocketAddress(), stats.toString());
+      close();
+      try {
+        // Closing the socket also ends the connection's reader, which runs the usual cleanup
+        socket.close();
+      } catch (IOException ignored) {
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Check whether the policy may drop or overwrite queued snapshots and deltas.
+   */
+  private boolean evicts() {
+    return policy == SlowConsumerPolicy.DROP_OLDEST || policy == SlowConsumerPolicy.COALESCE_LATEST;
+  }
+
+  /**
+   * Make room for (or merge) a line when the queue is full: first replace queued deltas with
+   * snapshots, then drop the oldest snapshot. Caller holds the lock.
+   *
+   * @return true if the line was queued or merged
+   */
+  private boolean applyOverflowPolicy(String line, String nodeId, boolean delta, long now) {
+    if (!evicts()) {
+      return false;
+    }
+    if (snapshots != null && (delta || !pendingDeltas.isEmpty())) {
+      if (collapseDeltas(delta ? nodeId : null)) {
+        stats.recordCoalesced();
+        return true;
+      }
+      if (queue.size() < capacity) {
+        enqueue(new Entry(line, nodeId, delta, now));
+        return true;
+      }
+    }
+    Entry victim = nodeId != null && !delta ? findSnapshot(nodeId) : null;
+    if (victim == null) {
+      victim = findSnapshot(null);
+    }
+    if (victim == null) {
+      return false;
+    }
+    queue.remove(victim);
+    forget(victim);
+    stats.recordDroppedOldest();
+    enqueue(new Entry(line, nodeId, delta, now));
+    return true;
+  }
+
+  /**
+   * Replace every queued delta with the current snapshot of its node. The node's last queued
+   * snapshot is overwritten, or its first delta becomes the snapshot if it has none, and its
+   * other deltas are removed; deltas of a node without a snapshot are dropped. Caller holds the
+   * lock.
+   *
+   * @param nodeId node of a delta that did not fit, brought up to date as well; may be null
+   * @return true if {@code nodeId}'s delta is covered by a queued snapshot now
+   */
+  private boolean collapseDeltas(String nodeId) {
+    // Last queued snapshot per node; a node's deltas always follow it, a newer one drops them
+    Map<String, Entry> queued = new HashMap<>();
+    Map<String, Entry> merged = new HashMap<>();
+    Iterator<Entry> it = queue.iterator();
+    while (it.hasNext()) {
+      Entry e = it.next();
+      if (e.nodeId == null) {
+        continue;
+      }
+      if (!e.delta) {
+        queued.put(e.nodeId, e);
+        continue;
+      }
+      if (!merged.containsKey(e.nodeId)) {
+        Entry target = queued.getOrDefault(e.nodeId, e);
+        // null marks a node without a current snapshot, whose deltas are all dropped
+        merged.put(e.nodeId, refresh(target) ? target : null);
+        if (target == e && !e.delta) {
+          continue;
+        }
+      }
+      it.remove();
+      stats.recordCoalesced();
+    }
+    pendingDeltas.clear();
+    if (nodeId == null) {
+      return false;
+    }
+    if (merged.containsKey(nodeId)) {
+      return merged.get(nodeId) != null;
+    }
+    Entry snapshot = queued.get(nodeId);
+    return snapshot != null && refresh(snapshot);
+  }
+
+  /**
+   * Overwrite an entry with the current snapshot of its node, turning a delta into a snapshot.
+   * Caller holds the lock.
+   *
+   * @return false if the node has no current snapshot
+   */
+  private boolean refresh(Entry entry) {
+    String current = snapshots.apply(entry.nodeId);
+    if (current == null) {
+      return false;
+    }
+    entry.line = current;
+    if (entry.delta) {
+      entry.delta = false;
+      if (policy == SlowConsumerPolicy.COALESCE_LATEST) {
+        pendingSnapshots.put(entry.nodeId, entry);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Drop the queued deltas of a node, which a newer snapshot makes obsolete. Caller holds the
+   * lock.
+   */
+  private void dropDeltas(String nodeId) {
+    if (pendingDeltas.remove(nodeId) != null) {
+      Iterator<Entry> it = queue.iterator();
+      while (it.hasNext()) {
+        Entry e = it.next();
+        if (e.delta && nodeId.equals(e.nodeId)) {
+          it.remove();
+          stats.recordCoalesced();
+        }
+      }
+    }
+  }
+
+  /**
+   * Overwrite the pending snapshot of a node in place. Caller holds the lock.
+   *
+   * @return true if a pending snapshot existed and now carries {@code line}
+   */
+  private boolean coalesce(String nodeId, String line) {
+    Entry pending = pendingSnapshots.get(nodeId);
+    if (pending == null) {
+      return false;
+    }
+    pending.line = line;
+    stats.recordCoalesced();
+    return true;
+  }
+
+  /**
+   * Append an entry and wake the writer. Caller holds the lock.
+   */
+  private void enqueue(Entry entry) {
+    queue.addLast(entry);
+    if (entry.delta) {
+      pendingDeltas.merge(entry.nodeId, 1, Integer::sum);
+    } else if (entry.nodeId != null && policy == SlowConsumerPolicy.COALESCE_LATEST) {
+      pendingSnapshots.put(entry.nodeId, entry);
+    }
+    notEmpty.signal();
+  }
+
+  /**
+   * Drop an entry that left the queue from the snapshot and delta indexes. Caller holds the lock.
+   */
+  private void forget(Entry entry) {
+    if (entry.delta) {
+      pendingDeltas.computeIfPresent(entry.nodeId, (id, n) -> n > 1 ? n - 1 : null);
+    } else if (entry.nodeId != null) {
+      pendingSnapshots.remove(entry.nodeId, entry);
+    }
+  }
+
+  /**
+   * Find the oldest queued snapshot of a node, or of any node if {@code nodeId} is null.
+   */
+  private Entry findSnapshot(String nodeId) {
+    if (nodeId != null && policy == SlowConsumerPolicy.COALESCE_LATEST) {
+      return pendingSnapshots.get(nodeId);
+    }
+    Iterator<Entry> it = queue.iterator();
+    while (it.hasNext()) {
+      Entry e = it.next();
+      if (e.nodeId != null && !e.delta && (nodeId == null || nodeId.equals(e.nodeId))) {
+        return e;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Writer loop: wait for the first line, then take whatever else is already queued and write
+   * the whole batch with one flush.
+   */
+  private void drain() {
+    List<Entry> batch = new ArrayList<>(MAX_BATCH);
+    BinaryFrameWriter frames = null;
+    try {
+      while (!closed) {
+        boolean last;
+        lock.lock();
+        try {
+          while (queue.isEmpty() && !endOfStream) {
+            notEmpty.await();
+          }
+          while (!queue.isEmpty() && batch.size() < MAX_BATCH) {
+            Entry e = queue.pollFirst();
+            forget(e);
+            batch.add(e);
+          }
+          last = endOfStream && queue.isEmpty();
+        } finally {
+          lock.unlock();
+        }
+        for (Entry e : batch) {
+          if (e.line == null) {
+            frames = new BinaryFrameWriter(out);
+          } else if (frames == null) {
+            out.write(e.line.getBytes(StandardCharsets.UTF_8));
+            out.write('\n');
+          } else if (e.nodeId != null && !e.delta) {
+            MessageHeader header = MessageHeader.parse(e.line);
+            frames.writeSnapshot(e.line, header != null ? header.getSeq() : -1);
+          } else {
+            frames.writeText(e.line);
+          }
+        }
+        out.flush();
+        batch.clear();
+        if (last) {
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      // closed
+    } catch (IOException e) {
+      if (!socket.isClosed()) {
+        Log.warn("ConnectionWriter", "write to %s failed: %s", socket.getRemoteSocketAddress(),
+            e.getMessage());
+      }
+    } finally {
+      closed = true;
+    }
+  }
+}
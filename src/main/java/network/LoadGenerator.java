@@ -0,0 +1,489 @@
+package network;
+
+import codec.JsonCodec;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import entity.Node;
+import entity.actuator.Actuator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Headless load generator: runs many simulated nodes and control panels in one JVM against a
+ * {@link Server} and reports throughput, end-to-end latency and resource use.
+ *
+ * <p>Nodes are ordinary {@link NodeClient}s on the shared {@link TickScheduler}; control panels
+ * are plain sockets that register, time every node update they receive and send random
+ * {@code ACTUATOR_COMMAND}s at the configured rate. Latency is measured from the node timestamp
+ * of a snapshot or delta (set when the node's tick read its sensors) to the moment a panel
+ * receives it.
+ *
+ * <p>Without {@code host=} the generator starts an embedded server on a free port, so the CPU and
+ * heap figures cover server and generator together; against an external server they only
+ * cover the generator.
+ *
+ * <p>Usage: {@code LoadGenerator [nodes=100] [panels=2] [tick=1000] [commands=5] [duration=30]
+ * [sensors=TEMPERATURE:1,HUMIDITY:1] [binary=false] [host=127.0.0.1] [port=5000]}, with
+ * {@code tick} in milliseconds, {@code commands} per second over all panels and
+ * {@code duration} in seconds.
+ */
+public class LoadGenerator {
+
+  /**
+   * Load settings.
+   *
+   * @param nodes             simulated nodes
+   * @param panels            simulated control panels
+   * @param tickMillis        control-loop period of each node
+   * @param commandsPerSecond actuator commands per second, summed over all panels
+   * @param durationSeconds   how long to run after everything is connected
+   * @param sensorMix         sensors per node by type
+   * @param binary            whether nodes ask for binary framing
+   * @param host              server host, or {@code null} for an embedded server
+   * @param port              server port (ignored for an embedded server)
+   */
+  public record Config(int nodes, int panels, long tickMillis, double commandsPerSecond,
+      int durationSeconds, Map<String, Integer> sensorMix, boolean binary, String host,
+      int port) {
+
+    /**
+     * Parse {@code key=value} arguments; unknown keys are rejected.
+     *
+     * @param args program arguments
+     * @return the configuration, with defaults for missing keys
+     * @throws IllegalArgumentException if an argument is malformed or out of range
+     */
+    public static Config parse(String[] args) {
+      Map<String, String> values = new LinkedHashMap<>();
+      for (String arg : args) {
+        int eq = arg.indexOf('=');
+        if (eq <= 0) {
+          throw new IllegalArgumentException("Expected key=value, got " + arg);
+        }
+        values.put(arg.substring(0, eq).trim().toLowerCase(Locale.ROOT),
+            arg.substring(eq + 1).trim());
+      }
+      Config c = new Config(
+          Integer.parseInt(values.getOrDefault("nodes", "100")),
+          Integer.parseInt(values.getOrDefault("panels", "2")),
+          Long.parseLong(values.getOrDefault("tick", "1000")),
+          Double.parseDouble(values.getOrDefault("commands", "5")),
+          Integer.parseInt(values.getOrDefault("duration", "30")),
+          parseSensorMix(values.getOrDefault("sensors", "TEMPERATURE:1,HUMIDITY:1")),
+          Boolean.parseBoolean(values.getOrDefault("binary", "false")),
+          values.get("host"),
+          Integer.parseInt(values.getOrDefault("port", "5000")));
+      values.keySet().removeAll(List.of("nodes", "panels", "tick", "commands", "duration",
+          "sensors", "binary", "host", "port"));
+      if (!values.isEmpty()) {
+        throw new IllegalArgumentException("Unknown arguments: " + values.keySet());
+      }
+      if (c.nodes < 1 || c.panels < 1 || c.tickMillis < 1 || c.commandsPerSecond < 0
+          || c.durationSeconds < 1) {
+        throw new IllegalArgumentException("nodes, panels, tick and duration must be positive");
+      }
+      return c;
+    }
+
+    private static Map<String, Integer> parseSensorMix(String spec) {
+      Map<String, Integer> mix = new LinkedHashMap<>();
+      for (String part : spec.split(",")) {
+        String[] kv = part.split(":");
+        int count = kv.length > 1 ? Integer.parseInt(kv[1].trim()) : 1;
+        if (count < 0) {
+          throw new IllegalArgumentException("Negative sensor count in " + spec);
+        }
+        mix.put(kv[0].trim().toUpperCase(Locale.ROOT), count);
+      }
+      return mix;
+    }
+  }
+
+  /**
+   * Outcome of a run.
+   *
+   * @param nodesConnected  nodes the server accepted
+   * @param messages        node updates received by all panels
+   * @param commands        actuator commands sent
+   * @param messagesPerSec  node updates received per second
+   * @param latency         end-to-end latency of the received node updates
+   */
+  public record Report(int nodesConnected, long messages, long commands, double messagesPerSec,
+      LatencyHistogram latency) {
+  }
+
+  /**
+   * Lock-free latency histogram in microseconds with about 3% precision: values below 32 have
+   * their own bucket, above that each power of two is split into 32 buckets.
+   */
+  public static final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private final AtomicLongArray counts = new AtomicLongArray(SUB + (64 - SUB_BITS) * SUB);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record one latency.
+     *
+     * @param micros latency in microseconds; negative values count as 0
+     */
+    public void record(long micros) {
+      long v = Math.max(0, micros);
+      counts.incrementAndGet(bucket(v));
+      total.incrementAndGet();
+      max.accumulateAndGet(v, Math::max);
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return count
+     */
+    public long count() {
+      return total.get();
+    }
+
+    /**
+     * Get the largest recorded value.
+     *
+     * @return maximum in microseconds, 0 if empty
+     */
+    public long max() {
+      return max.get();
+    }
+
+    /**
+     * Get a percentile.
+     *
+     * @param percentile between 0 and 100
+     * @return lower bound of the bucket holding the percentile, in microseconds; 0 if empty
+     */
+    public long percentile(double percentile) {
+      long n = total.get();
+      if (n == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+      long seen = 0;
+      for (int i = 0; i < counts.length(); i++) {
+        seen += counts.get(i);
+        if (seen >= rank) {
+          return Math.min(lowerBound(i), max.get());
+        }
+      }
+      return max.get();
+    }
+
+    /**
+     * Add another histogram's values to this one.
+     *
+     * @param other histogram to add
+     */
+    void add(LatencyHistogram other) {
+      for (int i = 0; i < counts.length(); i++) {
+        long c = other.counts.get(i);
+        if (c != 0) {
+          counts.addAndGet(i, c);
+        }
+      }
+      total.addAndGet(other.total.get());
+      max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    static int bucket(long v) {
+      if (v < SUB) {
+        return (int) v;
+      }
+      int exp = 63 - Long.numberOfLeadingZeros(v);
+      int sub = (int) ((v >>> (exp - SUB_BITS)) & (SUB - 1));
+      return SUB + (exp - SUB_BITS) * SUB + sub;
+    }
+
+    static long lowerBound(int index) {
+      if (index < SUB) {
+        return index;
+      }
+      int exp = (index - SUB) / SUB + SUB_BITS;
+      long sub = (index - SUB) % SUB;
+      return (SUB + sub) << (exp - SUB_BITS);
+    }
+  }
+
+  /**
+   * A simulated control panel connection.
+   */
+  private static final class Panel {
+    final Socket socket;
+    final PrintWriter out;
+
+    Panel(Socket socket) throws IOException {
+      this.socket = socket;
+      this.out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+    }
+  }
+
+  private final Config config;
+  private final AtomicLong commandsSent = new AtomicLong();
+  // Latencies of node updates received in the current reporting interval (one per update);
+  // folded into the run total every second
+  private volatile LatencyHistogram interval = new LatencyHistogram();
+  private final LatencyHistogram overall = new LatencyHistogram();
+
+  /**
+   * Create a generator.
+   *
+   * @param config load settings
+   */
+  public LoadGenerator(Config config) {
+    this.config = config;
+  }
+
+  /**
+   * Command line entry point.
+   *
+   * @param args {@code key=value} settings, see the class description
+   */
+  public static void main(String[] args) {
+    Config config;
+    try {
+      config = Config.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.out.println("[Load] " + e.getMessage());
+      System.out.println("[Load] Usage: LoadGenerator [nodes=100] [panels=2] [tick=1000] "
+          + "[commands=5] [duration=30] [sensors=TEMPERATURE:1,HUMIDITY:1] [binary=false] "
+          + "[host=127.0.0.1] [port=5000]");
+      return;
+    }
+    try {
+      new LoadGenerator(config).run(true);
+    } catch (IOException e) {
+      System.out.println("[Load] Failed: " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Connect the nodes and panels, run the load for the configured duration and disconnect.
+   *
+   * @param printIntervals whether to print a report line every second
+   * @return totals for the run
+   * @throws IOException          if the embedded server cannot be started
+   * @throws InterruptedException if interrupted while running
+   */
+  public Report run(boolean printIntervals) throws IOException, InterruptedException {
+    ServerSocket embedded = null;
+    ExecutorService serverExecutor = null;
+    String host = config.host();
+    int port = config.port();
+    if (host == null) {
+      embedded = new ServerSocket(0, config.nodes() + config.panels());
+      serverExecutor = Executors.newVirtualThreadPerTaskExecutor();
+      ServerSocket serverSocket = embedded;
+      ExecutorService executor = serverExecutor;
+      Thread acceptor = new Thread(() -> Server.serve(serverSocket, executor), "Load-Server");
+      acceptor.setDaemon(true);
+      acceptor.start();
+      host = "127.0.0.1";
+      port = embedded.getLocalPort();
+    }
+
+    String runId = Long.toString(System.nanoTime() & 0xFFFFFF, 36);
+    List<Panel> panels = new ArrayList<>();
+    List<NodeClient> clients = new ArrayList<>();
+    List<Node> nodes = new ArrayList<>();
+    ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread t = new Thread(r, "Load-Timer");
+      t.setDaemon(true);
+      return t;
+    });
+    try {
+      for (int i = 0; i < config.panels(); i++) {
+        panels.add(connectPanel(host, port, "load-cp-" + runId + "-" + i));
+      }
+      for (int i = 0; i < config.nodes(); i++) {
+        Node node = newNode("load-" + runId + "-" + i, "greenhouse" + (i % 10));
+        NodeClient client = NodeClient.connect(host, port, node, config.binary(),
+            JsonCodec.gson());
+        if (client == null) {
+          System.out.println("[Load] Node " + node.getNodeID() + " rejected");
+          continue;
+        }
+        client.setEcho(false);
+        client.sendCurrentNode();
+        client.startControlLoop(config.tickMillis());
+        clients.add(client);
+        nodes.add(node);
+      }
+      System.out.printf("[Load] %d nodes and %d panels connected to %s:%d%s%n", clients.size(),
+          panels.size(), host, port, embedded != null ? " (embedded server)" : "");
+
+      // Measure from here on; the connection phase is not part of the load
+      interval = new LatencyHistogram();
+      commandsSent.set(0);
+      long start = System.nanoTime();
+      if (config.commandsPerSecond() > 0 && !nodes.isEmpty()) {
+        long periodMicros = Math.max(1000, (long) (1_000_000 / config.commandsPerSecond()));
+        timers.scheduleAtFixedRate(() -> sendRandomCommand(panels, nodes, start, periodMicros),
+            periodMicros, periodMicros, TimeUnit.MICROSECONDS);
+      }
+      long lastCommands = 0;
+      for (int second = 1; second <= config.durationSeconds(); second++) {
+        Thread.sleep(1000);
+        LatencyHistogram h = interval;
+        interval = new LatencyHistogram();
+        overall.add(h);
+        long c = commandsSent.get();
+        if (printIntervals) {
+          System.out.printf("[Load] t=%3ds %s cmds=%d/s %s%n", second,
+              formatLatency(h.count(), h), c - lastCommands, resources());
+        }
+        lastCommands = c;
+      }
+      timers.shutdownNow();
+      double seconds = (System.nanoTime() - start) / 1e9;
+      Report report = new Report(clients.size(), overall.count(), commandsSent.get(),
+          overall.count() / seconds, overall);
+      System.out.printf("[Load] total: nodes=%d %s commands=%d %s%n", report.nodesConnected(),
+          formatLatency(Math.round(report.messagesPerSec()), overall), report.commands(),
+          resources());
+      return report;
+    } finally {
+      timers.shutdownNow();
+      for (NodeClient client : clients) {
+        client.close();
+      }
+      for (Panel panel : panels) {
+        try {
+          panel.socket.close();
+        } catch (IOException ignored) {
+        }
+      }
+      if (embedded != null) {
+        embedded.close();
+        serverExecutor.shutdownNow();
+        // Let the handlers finish logging their disconnects before returning
+        serverExecutor.awaitTermination(5, TimeUnit.SECONDS);
+      }
+    }
+  }
+
+  private Node newNode(String nodeId, String location) {
+    Node node = new Node(nodeId, location, new ArrayList<>(), new ArrayList<>());
+    for (Map.Entry<String, Integer> e : config.sensorMix().entrySet()) {
+      for (int i = 1; i <= e.getValue(); i++) {
+        String sensorId = e.getKey().toLowerCase(Locale.ROOT) + i;
+        if (!NodeClient.addSensorWithActuators(node, e.getKey(), sensorId, 0, 100_000)) {
+          throw new IllegalArgumentException("Unsupported sensor type " + e.getKey());
+        }
+      }
+    }
+    return node;
+  }
+
+  private Panel connectPanel(String host, int port, String panelId) throws IOException {
+    Panel panel = new Panel(new Socket(host, port));
+    JsonObject reg = new JsonObject();
+    reg.addProperty("messageType", "REGISTER_CONTROL_PANEL");
+    reg.addProperty("controlPanelId", panelId);
+    panel.out.println(reg);
+    Thread.ofVirtual().name("Load-Panel-" + panelId).start(() -> readPanel(panel));
+    return panel;
+  }
+
+  /**
+   * Count the lines a panel receives and record the latency of node updates.
+   */
+  private void readPanel(Panel panel) {
+    try (BufferedReader in = new BufferedReader(
+        new InputStreamReader(panel.socket.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!line.startsWith("{")) {
+          continue;
+        }
+        try {
+          JsonObject obj = JsonParser.parseString(line).getAsJsonObject();
+          JsonElement type = obj.get("messageType");
+          JsonElement timestamp = obj.get("timestamp");
+          boolean update = type == null
+              || "SENSOR_DATA_FROM_NODE".equals(type.getAsString())
+              || NodeDelta.MESSAGE_TYPE.equals(type.getAsString());
+          if (update && timestamp != null && timestamp.isJsonPrimitive()) {
+            LocalDateTime emitted = LocalDateTime.parse(timestamp.getAsString());
+            interval.record(Duration.between(emitted, now).toNanos() / 1000);
+          }
+        } catch (RuntimeException e) {
+          // not a node update
+        }
+      }
+    } catch (IOException e) {
+      // panel closed at the end of the run
+    }
+  }
+
+  private void sendRandomCommand(List<Panel> panels, List<Node> nodes, long start,
+      long periodMicros) {
+    // Catch up if the timer fell behind, so the command rate holds under load
+    long due = (System.nanoTime() - start) / 1000 / periodMicros;
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    while (commandsSent.get() < due) {
+      Node node = nodes.get(random.nextInt(nodes.size()));
+      List<Actuator> actuators = node.getActuators();
+      if (actuators.isEmpty()) {
+        commandsSent.incrementAndGet();
+        continue;
+      }
+      Actuator actuator = actuators.get(random.nextInt(actuators.size()));
+      Panel panel = panels.get(random.nextInt(panels.size()));
+      JsonObject cmd = new JsonObject();
+      cmd.addProperty("messageType", "ACTUATOR_COMMAND");
+      cmd.addProperty("nodeID", node.getNodeID());
+      cmd.addProperty("actuatorId", actuator.getActuatorId());
+      cmd.addProperty("command", random.nextBoolean() ? "TURN_ON" : "TURN_OFF");
+      panel.out.println(cmd);
+      commandsSent.incrementAndGet();
+    }
+  }
+
+  private static String formatLatency(long messagesPerSec, LatencyHistogram h) {
+    return String.format(Locale.ROOT,
+        "recv=%d/s latency p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms", messagesPerSec,
+        h.percentile(50) / 1000.0, h.percentile(90) / 1000.0, h.percentile(99) / 1000.0,
+        h.max() / 1000.0);
+  }
+
+  private static String resources() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    double cpu = os instanceof com.sun.management.OperatingSystemMXBean sun
+        ? sun.getProcessCpuLoad() * 100 : -1;
+    long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    return String.format(Locale.ROOT, "cpu=%.0f%% heap=%dMB threads=%d", cpu,
+        heap / (1024 * 1024), ManagementFactory.getThreadMXBean().getThreadCount());
+  }
+}
@@ -0,0 +1,192 @@
+package network;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Routing fields of a single-line JSON message, read without building a DOM.
+ *
+ * <p>{@link #parse(String)} walks the line once with a streaming {@link JsonReader}, keeps
+ * {@code messageType}, {@code nodeID}, {@code location}, {@code seq} and the {@code sensorType} of
+ * each entry in {@code sensors}, and skips every other value. The server uses it to route node messages and
+ * then forwards the original line unchanged, instead of parsing it into a {@code JsonObject} and
+ * serializing it again.
+ */
+public final class MessageHeader {
+
+  private final String messageType;
+  private final String nodeId;
+  private final String location;
+  private final List<String> sensorTypes;
+  private final long seq;
+
+  private MessageHeader(String messageType, String nodeId, String location,
+      List<String> sensorTypes, long seq) {
+    this.messageType = messageType;
+    this.nodeId = nodeId;
+    this.location = location;
+    this.sensorTypes = sensorTypes;
+    this.seq = seq;
+  }
+
+  /**
+   * Read the routing fields of a JSON object line.
+   *
+   * @param line one JSON object
+   * @return the header, or {@code null} if the line is not a well-formed JSON object
+   */
+  public static MessageHeader parse(String line) {
+    if (line == null) {
+      return null;
+    }
+    String messageType = null;
+    String nodeId = null;
+    String location = null;
+    List<String> sensorTypes = Collections.emptyList();
+    long seq = -1;
+    try (JsonReader reader = new JsonReader(new StringReader(line))) {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        return null;
+      }
+      reader.beginObject();
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "messageType" -> messageType = nextStringOrNull(reader);
+          case "nodeID" -> nodeId = nextStringOrNull(reader);
+          case "location" -> location = nextStringOrNull(reader);
+          case "sensors" -> sensorTypes = readSensorTypes(reader);
+          case "seq" -> {
+            if (reader.peek() == JsonToken.NUMBER) {
+              seq = reader.nextLong();
+            } else {
+              reader.skipValue();
+            }
+          }
+          default -> reader.skipValue();
+        }
+      }
+      reader.endObject();
+      if (reader.peek() != JsonToken.END_DOCUMENT) {
+        return null;
+      }
+    } catch (IOException | IllegalStateException | NumberFormatException e) {
+      // MalformedJsonException is an IOException; wrong token types are IllegalStateException
+      return null;
+    }
+    return new MessageHeader(messageType, nodeId, location, sensorTypes, seq);
+  }
+
+  private static String nextStringOrNull(JsonReader reader) throws IOException {
+    JsonToken token = reader.peek();
+    if (token == JsonToken.NULL) {
+      reader.nextNull();
+      return null;
+    }
+    if (token == JsonToken.BOOLEAN) {
+      return String.valueOf(reader.nextBoolean());
+    }
+    if (token == JsonToken.BEGIN_OBJECT || token == JsonToken.BEGIN_ARRAY) {
+      reader.skipValue();
+      return null;
+    }
+    return reader.nextString();
+  }
+
+  private static List<String> readSensorTypes(JsonReader reader) throws IOException {
+    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+      reader.skipValue();
+      return Collections.emptyList();
+    }
+    List<String> types = new ArrayList<>();
+    reader.beginArray();
+    while (reader.hasNext()) {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        reader.skipValue();
+        continue;
+      }
+      reader.beginObject();
+      while (reader.hasNext()) {
+        if ("sensorType".equals(reader.nextName())) {
+          String type = nextStringOrNull(reader);
+          if (type != null) {
+            types.add(type);
+          }
+        } else {
+          reader.skipValue();
+        }
+      }
+      reader.endObject();
+    }
+    reader.endArray();
+    return types;
+  }
+
+  /**
+   * Return the line with a top-level {@code messageType} property added in front of the other
+   * members. Only the first character of the line is rewritten; the rest is copied as is.
+   *
+   * @param line        a JSON object line without {@code messageType}
+   * @param messageType message type to add
+   * @return the line with {@code messageType} added
+   */
+  public static String withMessageType(String line, String messageType) {
+    int open = line.indexOf('{');
+    String member = "\"messageType\":\"" + messageType + "\"";
+    int next = open + 1;
+    while (next < line.length() && Character.isWhitespace(line.charAt(next))) {
+      next++;
+    }
+    boolean empty = next < line.length() && line.charAt(next) == '}';
+    return line.substring(0, open + 1) + member + (empty ? "" : ",") + line.substring(open + 1);
+  }
+
+  /**
+   * Get the message type.
+   *
+   * @return {@code messageType}, or {@code null} if absent
+   */
+  public String getMessageType() {
+    return messageType;
+  }
+
+  /**
+   * Get the node id.
+   *
+   * @return {@code nodeID}, or {@code null} if absent
+   */
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Get the node location.
+   *
+   * @return {@code location}, or {@code null} if absent
+   */
+  public String getLocation() {
+    return location;
+  }
+
+  /**
+   * Get the sensor types listed in {@code sensors}, in order (may contain duplicates).
+   *
+   * @return sensor types, empty if the message has no sensors
+   */
+  public List<String> getSensorTypes() {
+    return sensorTypes;
+  }
+
+  /**
+   * Get the sequence number of a node snapshot or delta.
+   *
+   * @return {@code seq}, or {@code -1} if absent
+   */
+  public long getSeq() {
+    return seq;
+  }
+}
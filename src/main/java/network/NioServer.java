@@ -0,0 +1,735 @@
+package network;
+
+import codec.JsonCodec;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import logging.Log;
+import storage.TimeSeriesStore;
+
+/**
+ * Selector-based alternative to {@link Server}.
+ *
+ * <p>Instead of one blocking thread per socket, this engine multiplexes every connection over a
+ * small, fixed number of event loops. Each loop owns a {@link Selector} and a single reusable read
+ * buffer; accepted channels are handed out round-robin so thousands of nodes and control panels
+ * can be served by a handful of threads.
+ *
+ * <p>The wire protocol is identical to {@link Server}: line-delimited JSON, the plain-text
+ * {@code SENSOR_NODE_CONNECTED <nodeId>} / {@code CONTROL_PANEL_CONNECTED} handshakes, the JSON
+ * {@code REGISTER_CONTROL_PANEL} registration, command forwarding to nodes, cached
+ * {@code REQUEST_NODE} replies and broadcasting of node updates to every control panel.
+ *
+ * <p>It has no {@link StateJournal}: the last-known node states are kept in memory only and are
+ * lost when it is restarted, and commands for a node that is not connected are dropped.
+ *
+ * <p>Run with {@code mvn --% exec:java -Dexec.mainClass=network.NioServer -Dexec.args="4"} where
+ * the optional argument is the number of event loops (defaults to the number of cores).
+ */
+public class NioServer {
+
+  private static final int PORT = 5000;
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+  // Guard against peers that never send a newline
+  private static final int MAX_LINE_LENGTH = 1024 * 1024;
+  // Peers that fall this far behind on reading are disconnected
+  private static final long MAX_PENDING_BYTES = 4L * 1024 * 1024;
+  /**
+   * Log a message at INFO through the asynchronous {@link Log}.
+   * @param role "Server", "ControlPanel", or "Node"
+   * @param fmt format string
+   * @param args format arguments
+   */
+  private static void log(String role, String fmt, Object... args) {
+    Log.info(role, fmt, args);
+  }
+
+  private final Gson gson = JsonCodec.gson();
+  private final EventLoop[] loops;
+  private final AtomicInteger nextLoop = new AtomicInteger();
+
+  // Connected control panels
+  private final Set<Connection> controlPanels = ConcurrentHashMap.newKeySet();
+  // Store last-known node snapshot per nodeID so REQUEST_NODE can be answered immediately
+  private final Map<String, CachedSnapshot> lastKnownNodeJson = new ConcurrentHashMap<>();
+  // Sequence number of each cached node JSON, so NODE_DELTA messages can be applied in order
+  private final Map<String, Long> lastKnownNodeSeq = new ConcurrentHashMap<>();
+  // Map nodeId -> connection for sensor nodes to prevent duplicate node IDs
+  private final Map<String, Connection> sensorNodes = new ConcurrentHashMap<>();
+  // Sensor readings of every node, kept for QUERY_HISTORY
+  private final TimeSeriesStore history;
+
+  private ServerSocketChannel serverChannel;
+  private volatile boolean running;
+
+  /**
+   * Create a server with the given number of event loops.
+   *
+   * @param eventLoops number of selector threads; must be at least 1
+   */
+  public NioServer(int eventLoops) {
+    this(eventLoops, TimeSeriesStore.inMemory());
+  }
+
+  /**
+   * Create a server with the given number of event loops that keeps sensor history in a store.
+   *
+   * @param eventLoops number of selector threads; must be at least 1
+   * @param history    store the sensor readings are appended to and queried from
+   */
+  public NioServer(int eventLoops, TimeSeriesStore history) {
+    if (eventLoops < 1) {
+      throw new IllegalArgumentException("At least one event loop is required");
+    }
+    this.loops = new EventLoop[eventLoops];
+    this.history = history;
+  }
+
+  /**
+   * Bind the server socket and start the event loops. The first loop also accepts new
+   * connections.
+   *
+   * @param port TCP port to listen on, or 0 for an ephemeral port
+   * @throws IOException if the port cannot be bound
+   */
+  public void start(int port) throws IOException {
+    running = true;
+    for (int i = 0; i < loops.length; i++) {
+      loops[i] = new EventLoop(i);
+    }
+    serverChannel = ServerSocketChannel.open();
+    serverChannel.bind(new InetSocketAddress(port));
+    serverChannel.configureBlocking(false);
+    loops[0].execute(() -> {
+      try {
+        serverChannel.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+      } catch (ClosedChannelException e) {
+        log("Server", "Server channel closed before accept registration");
+      }
+    });
+    for (EventLoop loop : loops) {
+      loop.thread.start();
+    }
+    log("Server", "NIO server started on port %d with %d event loop(s)", getLocalPort(),
+        loops.length);
+  }
+
+  /**
+   * Get the port the server is bound to.
+   *
+   * @return the local port, or -1 if the server is not started
+   */
+  public int getLocalPort() {
+    try {
+      SocketAddress addr = serverChannel == null ? null : serverChannel.getLocalAddress();
+      return addr instanceof InetSocketAddress ? ((InetSocketAddress) addr).getPort() : -1;
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Stop accepting connections, close every client and stop the event loops.
+   */
+  public void close() {
+    running = false;
+    try {
+      if (serverChannel != null) {
+        serverChannel.close();
+      }
+    } catch (IOException ignored) {
+    }
+    for (EventLoop loop : loops) {
+      if (loop != null) {
+        loop.selector.wakeup();
+      }
+    }
+  }
+
+  /**
+   * Main method to start the NIO server.
+   *
+   * @param args optional number of event loops
+   */
+  public static void main(String[] args) {
+    int eventLoops = Runtime.getRuntime().availableProcessors();
+    if (args.length > 0) {
+      try {
+        eventLoops = Integer.parseInt(args[0]);
+      } catch (NumberFormatException e) {
+        log("Server", "Invalid event loop count '%s', using %d", args[0], eventLoops);
+      }
+    }
+    NioServer server = new NioServer(eventLoops, SensorHistory.openStore());
+    try {
+      server.start(PORT);
+      Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * Pick the event loop for a newly accepted connection.
+   */
+  private EventLoop nextLoop() {
+    return loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+  }
+
+  // ------------------------------------------------------------------------------------------
+  // Routing (same semantics as Server.ClientHandler)
+  // ------------------------------------------------------------------------------------------
+
+  /**
+   * Handle the first line received on a connection (registration handshake).
+   */
+  private void handleHandshake(Connection conn, String initialMessage) {
+    String trimmed = initialMessage.trim();
+    if (trimmed.equals("CONTROL_PANEL_CONNECTED")) {
+      conn.role = Role.CONTROL_PANEL;
+      conn.controlPanelId = conn.remoteAddress;
+      controlPanels.add(conn);
+      log("Server", "Control panel connected: %s", conn.remoteAddress);
+    } else if (trimmed.startsWith("SENSOR_NODE_CONNECTED")) {
+      // Expect format: SENSOR_NODE_CONNECTED <nodeId>
+      String[] parts = trimmed.split(" ", 2);
+      if (parts.length < 2 || parts[1].isBlank()) {
+        conn.send("NODE_ID_REJECTED");
+        conn.closeAfterFlush();
+        return;
+      }
+      String id = parts[1].trim();
+      // Binary framing is only offered by Server; answering without "BINARY" keeps the node on JSON
+      if (id.endsWith(" " + Server.BINARY_FRAMING)) {
+        id = id.substring(0, id.length() - Server.BINARY_FRAMING.length()).trim();
+      }
+      // putIfAbsent makes the duplicate check atomic across event loops
+      if (sensorNodes.putIfAbsent(id, conn) != null) {
+        conn.send("NODE_ID_REJECTED");
+        log("Server", "Rejected duplicate nodeId '%s' from %s", id, conn.remoteAddress);
+        conn.closeAfterFlush();
+        return;
+      }
+      conn.role = Role.NODE;
+      conn.nodeId = id;
+      conn.send("NODE_ID_ACCEPTED");
+      log("Server", "Node connected: %s (id=%s)", conn.remoteAddress, id);
+    } else if (trimmed.startsWith("{")) {
+      try {
+        JsonObject obj = gson.fromJson(trimmed, JsonObject.class);
+        if (obj != null && "REGISTER_CONTROL_PANEL".equals(stringField(obj, "messageType"))) {
+          String panelId = stringField(obj, "controlPanelId");
+          conn.role = Role.CONTROL_PANEL;
+          conn.controlPanelId = panelId != null ? panelId : conn.remoteAddress;
+          controlPanels.add(conn);
+          log("Server", "Control panel registered: %s (id=%s)", conn.remoteAddress,
+              conn.controlPanelId);
+        }
+      } catch (JsonSyntaxException ignored) {
+        // Not JSON or malformed - fall through to generic fallback
+      }
+    }
+    if (conn.role == Role.UNKNOWN) {
+      // Same fallback as the blocking server: unregistered peers are treated as node traffic
+      conn.role = Role.UNREGISTERED;
+    }
+  }
+
+  /**
+   * Handle a line received from a registered control panel.
+   */
+  private void handleControlPanelLine(Connection conn, String inputLine) {
+    Log.debug("ControlPanel", "Received -> %s", inputLine);
+    if (!inputLine.trim().startsWith("{")) {
+      log("ControlPanel", "Non-JSON message ignored: %s", inputLine);
+      return;
+    }
+    try {
+      JsonObject obj = gson.fromJson(inputLine, JsonObject.class);
+      String mt = stringField(obj, "messageType");
+      String targetNode = stringField(obj, "nodeID");
+      if ("ACTUATOR_COMMAND".equals(mt) || "TARGET_UPDATE".equals(mt)
+          || "ADD_SENSOR".equals(mt) || "REMOVE_SENSOR".equals(mt)) {
+        if (targetNode == null) {
+          log("Server", "No nodeID in control panel message: %s", inputLine);
+          return;
+        }
+        forwardToNode(targetNode, inputLine, mt);
+      } else if (SensorHistory.QUERY_TYPE.equals(mt)) {
+        conn.send(SensorHistory.answer(history, obj));
+        log("Server", "Answered history query for %s/%s", targetNode, obj.get("sensorId"));
+      } else if ("REQUEST_NODE".equals(mt)) {
+        if (targetNode == null) {
+          log("Server", "No nodeID in control panel message: %s", inputLine);
+          return;
+        }
+        CachedSnapshot cached = lastKnownNodeJson.get(targetNode);
+        if (cached != null) {
+          conn.send(cached.line());
+          log("Server", "Served cached state of %s to control panel", targetNode);
+          return;
+        }
+        JsonObject requestObj = new JsonObject();
+        requestObj.addProperty("messageType", "REQUEST_STATE");
+        if (forwardToNode(targetNode, requestObj.toString(), null)) {
+          log("Server", "Requested state of %s from node", targetNode);
+        }
+      } else {
+        log("ControlPanel", "Unknown messageType: %s", mt);
+      }
+    } catch (JsonSyntaxException e) {
+      Log.warn("ControlPanel", "Malformed JSON: %s", inputLine);
+    }
+  }
+
+  /**
+   * Read a string field that a peer may have sent with any JSON type.
+   *
+   * @return the value, or null if the field is missing or not a string or number
+   */
+  private static String stringField(JsonObject obj, String name) {
+    JsonElement value = obj.get(name);
+    return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+  }
+
+  /**
+   * Handle a line received from a node (or an unregistered peer).
+   */
+  private void handleNodeLine(Connection conn, String inputLine) {
+    Log.debug("Node", "Received -> %s", inputLine);
+    String toSend = inputLine;
+    // Streaming header read; the line itself is forwarded unchanged (null if not valid JSON)
+    MessageHeader header = inputLine.trim().startsWith("{") ? MessageHeader.parse(inputLine) : null;
+    if (header != null) {
+      if (header.getNodeId() != null) {
+        if (NodeDelta.MESSAGE_TYPE.equals(header.getMessageType())) {
+          // Patch the cached snapshot; deltas that do not follow it are not forwarded
+          NodeDelta.Result result = NodeDelta.apply(lastKnownNodeJson, lastKnownNodeSeq,
+              header.getNodeId(), header.getSeq(), inputLine);
+          if (result == NodeDelta.Result.GAP && !conn.resyncRequested) {
+            conn.resyncRequested = true;
+            conn.send("{\"messageType\":\"REQUEST_STATE\"}");
+            Log.warn("Server", "Delta gap from node %s, requested a snapshot", header.getNodeId());
+          }
+          if (result != NodeDelta.Result.APPLIED) {
+            return;
+          }
+          SensorHistory.record(history, header.getNodeId(), inputLine);
+        } else {
+          if (header.getMessageType() == null
+              || "SENSOR_DATA_FROM_NODE".equals(header.getMessageType())) {
+            // Only snapshots are the node's state; deltas are patched onto them
+            lastKnownNodeJson.put(header.getNodeId(), new CachedSnapshot(inputLine));
+            if (header.getSeq() >= 0) {
+              lastKnownNodeSeq.put(header.getNodeId(), header.getSeq());
+            } else {
+              lastKnownNodeSeq.remove(header.getNodeId());
+            }
+            conn.resyncRequested = false;
+            SensorHistory.record(history, header.getNodeId(), inputLine);
+          }
+        }
+      }
+      if (header.getMessageType() == null) {
+        toSend = MessageHeader.withMessageType(inputLine, "SENSOR_DATA_FROM_NODE");
+      }
+    }
+    broadcastToControlPanels(toSend);
+  }
+
+  /**
+   * Forward a line to a connected node.
+   *
+   * @return true if the node was connected and the line was queued
+   */
+  private boolean forwardToNode(String targetNode, String line, String messageType) {
+    Connection node = sensorNodes.get(targetNode);
+    if (node == null || !node.channel.isOpen()) {
+      log("Server", "Target node not connected: %s", targetNode);
+      return false;
+    }
+    node.send(line);
+    if (messageType != null) {
+      log("Server", "Forwarded %s to node %s", messageType, targetNode);
+    }
+    return true;
+  }
+
+  /**
+   * Queue a message on every connected control panel.
+   *
+   * @param message the message to broadcast
+   */
+  private void broadcastToControlPanels(String message) {
+    // Encode once and share the bytes; each panel gets its own read-only view
+    ByteBuffer encoded = Connection.encode(message);
+    for (Connection cp : controlPanels) {
+      cp.send(encoded.duplicate());
+    }
+  }
+
+  /**
+   * Remove a closed connection from the registries.
+   */
+  private void cleanup(Connection conn) {
+    if (conn.role == Role.CONTROL_PANEL) {
+      controlPanels.remove(conn);
+      log("Server", "Control Panel removed: %s",
+          conn.controlPanelId != null ? conn.controlPanelId : conn.remoteAddress);
+      return;
+    }
+    // Only remove the nodeId if it was *actually registered* by this connection
+    if (conn.nodeId != null && sensorNodes.remove(conn.nodeId, conn)) {
+      lastKnownNodeJson.remove(conn.nodeId);
+      lastKnownNodeSeq.remove(conn.nodeId);
+      log("Server", "Node removed: %s", conn.nodeId);
+      JsonObject outObj = new JsonObject();
+      outObj.addProperty("messageType", "SENSOR_NODE_DISCONNECTED");
+      outObj.addProperty("nodeID", conn.nodeId);
+      broadcastToControlPanels(gson.toJson(outObj));
+    }
+  }
+
+  // ------------------------------------------------------------------------------------------
+  // Event loop and connection plumbing
+  // ------------------------------------------------------------------------------------------
+
+  private enum Role { UNKNOWN, NODE, CONTROL_PANEL, UNREGISTERED }
+
+  /**
+   * A single selector thread. All I/O for the channels registered with it happens on this thread;
+   * other threads hand work over through {@link #execute(Runnable)}.
+   */
+  private final class EventLoop implements Runnable {
+
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // One read buffer per loop, reused for every readable channel
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    // Scratch array for gathering writes, reused for every flush on this loop
+    private final ByteBuffer[] writeBatch = new ByteBuffer[64];
+
+    EventLoop(int index) throws IOException {
+      this.selector = Selector.open();
+      this.thread = new Thread(this, "NioServer-EventLoop-" + index);
+      this.thread.setDaemon(true);
+    }
+
+    boolean inLoop() {
+      return Thread.currentThread() == thread;
+    }
+
+    void execute(Runnable task) {
+      tasks.add(task);
+      selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+      while (running) {
+        try {
+          selector.select();
+          Runnable task;
+          while ((task = tasks.poll()) != null) {
+            try {
+              task.run();
+            } catch (RuntimeException e) {
+              Log.warn("Server", "Event loop task failed: %s", e);
+            }
+          }
+          Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+          while (it.hasNext()) {
+            SelectionKey key = it.next();
+            it.remove();
+            if (!key.isValid()) {
+              continue;
+            }
+            if (key.isAcceptable()) {
+              accept();
+              continue;
+            }
+            Connection conn = (Connection) key.attachment();
+            try {
+              if (key.isReadable()) {
+                conn.onReadable(readBuffer);
+              }
+              if (key.isValid() && key.isWritable()) {
+                conn.flush();
+              }
+            } catch (RuntimeException e) {
+              // A bad message must not end the loop and strand every other channel on it
+              Log.warn("Server", "Closing %s after unexpected error: %s", conn.remoteAddress, e);
+              conn.close();
+            }
+          }
+        } catch (IOException e) {
+          log("Server", "Event loop error: %s", e.getMessage());
+        }
+      }
+      for (SelectionKey key : selector.keys()) {
+        if (key.attachment() instanceof Connection) {
+          ((Connection) key.attachment()).close();
+        }
+      }
+      try {
+        selector.close();
+      } catch (IOException ignored) {
+      }
+    }
+
+    private void accept() throws IOException {
+      SocketChannel ch;
+      while ((ch = serverChannel.accept()) != null) {
+        ch.configureBlocking(false);
+        ch.socket().setTcpNoDelay(true);
+        SocketChannel accepted = ch;
+        EventLoop target = nextLoop();
+        target.execute(() -> target.register(accepted));
+      }
+    }
+
+    private void register(SocketChannel ch) {
+      try {
+        Connection conn = new Connection(ch, this);
+        conn.key = ch.register(selector, SelectionKey.OP_READ, conn);
+        log("Server", "New client connected: %s", conn.remoteAddress);
+      } catch (IOException e) {
+        log("Server", "Failed to register client: %s", e.getMessage());
+        try {
+          ch.close();
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  /**
+   * Per-channel state: role, partial inbound line and outbound write queue.
+   */
+  private final class Connection {
+
+    private final SocketChannel channel;
+    private final EventLoop loop;
+    private final String remoteAddress;
+    private SelectionKey key;
+    private Role role = Role.UNKNOWN;
+    private String nodeId;
+    private String controlPanelId;
+    // Set after asking this node for a snapshot to repair a delta gap, until the snapshot arrives
+    private boolean resyncRequested;
+
+    // Bytes of an incomplete line carried over between reads; allocated only when needed
+    private byte[] partial;
+    private int partialLength;
+
+    private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private volatile boolean closeAfterFlush;
+    private volatile boolean closed;
+
+    Connection(SocketChannel channel, EventLoop loop) throws IOException {
+      this.channel = channel;
+      this.loop = loop;
+      SocketAddress addr = channel.getRemoteAddress();
+      this.remoteAddress = addr instanceof InetSocketAddress
+          ? String.valueOf(((InetSocketAddress) addr).getAddress()) : String.valueOf(addr);
+    }
+
+    static ByteBuffer encode(String line) {
+      byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+      return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    void send(String line) {
+      send(encode(line));
+    }
+
+    /**
+     * Queue bytes for writing. Safe to call from any thread; the actual write happens on the
+     * owning event loop.
+     */
+    void send(ByteBuffer bytes) {
+      if (closed) {
+        return;
+      }
+      long pending = pendingBytes.addAndGet(bytes.remaining());
+      if (pending > MAX_PENDING_BYTES) {
+        log("Server", "Disconnecting slow client %s (%d bytes pending)", remoteAddress, pending);
+        loop.execute(this::close);
+        return;
+      }
+      outbound.add(bytes);
+      if (loop.inLoop()) {
+        flush();
+      } else {
+        loop.execute(this::flush);
+      }
+    }
+
+    void closeAfterFlush() {
+      closeAfterFlush = true;
+      if (loop.inLoop()) {
+        flush();
+      } else {
+        loop.execute(this::flush);
+      }
+    }
+
+    /**
+     * Read whatever is available and dispatch every complete line.
+     */
+    void onReadable(ByteBuffer buf) {
+      try {
+        buf.clear();
+        int n = channel.read(buf);
+        if (n < 0) {
+          close();
+          return;
+        }
+        buf.flip();
+        byte[] array = buf.array();
+        int start = 0;
+        int end = buf.limit();
+        for (int i = 0; i < end && !closed; i++) {
+          if (array[i] != '\n') {
+            continue;
+          }
+          String line;
+          if (partialLength > 0) {
+            appendPartial(array, start, i - start);
+            line = decode(partial, 0, partialLength);
+            partialLength = 0;
+            if (partial.length > READ_BUFFER_SIZE) {
+              partial = null; // don't keep an oversized buffer around
+            }
+          } else {
+            line = decode(array, start, i - start);
+          }
+          start = i + 1;
+          onLine(line);
+        }
+        if (!closed && start < end) {
+          appendPartial(array, start, end - start);
+          if (partialLength > MAX_LINE_LENGTH) {
+            log("Server", "Line too long from %s, closing", remoteAddress);
+            close();
+          }
+        }
+      } catch (IOException e) {
+        log("Server", "Connection lost with %s", remoteAddress);
+        close();
+      }
+    }
+
+    private void appendPartial(byte[] src, int off, int len) {
+      if (partial == null) {
+        partial = new byte[Math.max(256, len)];
+      } else if (partialLength + len > partial.length) {
+        partial = Arrays.copyOf(partial, Math.max(partial.length * 2, partialLength + len));
+      }
+      System.arraycopy(src, off, partial, partialLength, len);
+      partialLength += len;
+    }
+
+    private String decode(byte[] src, int off, int len) {
+      if (len > 0 && src[off + len - 1] == '\r') {
+        len--;
+      }
+      return new String(src, off, len, StandardCharsets.UTF_8);
+    }
+
+    private void onLine(String line) {
+      if (closeAfterFlush) {
+        return; // rejected during handshake; ignore anything else it sends
+      }
+      switch (role) {
+        case UNKNOWN -> handleHandshake(this, line);
+        case CONTROL_PANEL -> handleControlPanelLine(this, line);
+        default -> handleNodeLine(this, line);
+      }
+    }
+
+    /**
+     * Write as much of the outbound queue as the socket accepts, using a gathering write so
+     * several queued lines go out in one system call.
+     */
+    void flush() {
+      if (closed) {
+        return;
+      }
+      try {
+        ByteBuffer[] batch = loop.writeBatch;
+        while (true) {
+          int count = 0;
+          for (ByteBuffer b : outbound) {
+            if (count == batch.length) {
+              break;
+            }
+            batch[count++] = b;
+          }
+          if (count == 0) {
+            break;
+          }
+          long written = channel.write(batch, 0, count);
+          pendingBytes.addAndGet(-written);
+          for (int i = 0; i < count; i++) {
+            if (batch[i].hasRemaining()) {
+              break;
+            }
+            outbound.poll();
+          }
+          if (batch[count - 1].hasRemaining()) {
+            // Socket buffer full: wait for OP_WRITE
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            return;
+          }
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        if (closeAfterFlush) {
+          close();
+        }
+      } catch (IOException e) {
+        Log.warn("Server", "Error writing to %s: %s", remoteAddress, e.getMessage());
+        close();
+      }
+    }
+
+    void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      outbound.clear();
+      if (key != null) {
+        key.cancel();
+      }
+      try {
+        channel.close();
+      } catch (IOException e) {
+        Log.warn("Server", "Error closing socket with %s", remoteAddress);
+      }
+      cleanup(this);
+    }
+  }
+}
@@ -1,16 +1,24 @@
 package network;
 
+import codec.BinaryFrameReader;
+import codec.BinaryFrameWriter;
+import codec.JsonCodec;
 import com.google.gson.*;
 import entity.Node;
+import entity.PublishPolicy;
 import entity.actuator.*;
 import entity.sensor.*;
 
 import java.io.*;
 import java.net.Socket;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import logging.Log;
 
 /**
  * Client class for a Node that connects to the server, sends its state, and listens for commands.
@@ -26,35 +34,52 @@ import java.util.List;
  *
  * <p>When executed as a standalone program, the {@link #main(String[])} method
  * connects to a server on {@code 127.0.0.1:5000}, registers the node id and
- * location, and begins sending state updates.
+ * location, and begins sending state updates. With {@code --binary} it asks the server for
+ * binary framing and, if accepted, sends snapshots as compact frames instead of JSON lines.
+ *
+ * <p>Sending only encodes a message and queues it. One virtual thread per client writes the
+ * queue to the connection, so a control-loop tick never waits on the socket.
  */
 public class NodeClient {
 
+  // Waiting for queued messages to be written when the client is closed
+  private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
   private Node node;
   private final PrintWriter out;
   private final BufferedReader in;
+  // Used instead of out/in when the server accepted binary framing. Frames are encoded into
+  // frameBytes and queued; guarded by sendLock
+  private final BinaryFrameWriter frameOut;
+  private final ByteArrayOutputStream frameBytes;
+  private final BinaryFrameReader frameIn;
+  private final Outbox outbox;
   private final Socket socket;
   private final Gson gson;
   private Thread listener;
+  // Periodic control-loop ticks on the shared scheduler, null until started
+  private volatile ScheduledFuture<?> controlLoop;
   private volatile boolean running = true;
+  // Log every n-th sent update (0 = none) and, unless 0, received commands
+  private volatile int echoEvery = Integer.getInteger("node.echoEvery", 1);
+  // Held while encoding and queueing, so messages are queued in sequence order; a ReentrantLock
+  // (not synchronized) so virtual threads are never pinned
+  private final ReentrantLock sendLock = new ReentrantLock();
+  // Updates sent so far, for sampling the echo; guarded by sendLock
+  private long sentUpdates;
+  // What was last sent, so ticks only send the readings that changed; guarded by sendLock
+  private final NodeDelta deltas = new NodeDelta();
+  // Reused for every JSON snapshot; guarded by sendLock
+  private final SnapshotBuffer snapshotBuffer = new SnapshotBuffer();
 
   /**
-   * DateTimeFormatter for logging timestamps.
-   * Formats timestamps as "yyyy-MM-dd HH:mm:ss".
-   *
-   */
-  private static final DateTimeFormatter LOG_TIME = DateTimeFormatter.ofPattern(
-      "yyyy-MM-dd HH:mm:ss");
-
-  /**
-   * Log a formatted message with a role prefix and timestamp.
+   * Log a message at INFO through the asynchronous {@link Log}.
    * @param role the role or source of the log message
    * @param fmt the format string
    * @param args the arguments for the format string
    */
   private static void log(String role, String fmt, Object... args) {
-    String msg = String.format(fmt, args);
-    System.out.printf("\n[%s] %s: %s%n", LOG_TIME.format(LocalDateTime.now()), role, msg);
+    Log.info(role, fmt, args);
   }
 
 
@@ -71,60 +96,134 @@ public class NodeClient {
     this.socket = socket;
     this.out = out;
     this.in = in;
+    this.frameOut = null;
+    this.frameBytes = null;
+    this.frameIn = null;
+    this.outbox = new Outbox(out, null);
+    this.gson = gson;
+    this.running = true;
+  }
+
+  /**
+   * Construct a NodeClient on a connection that negotiated binary framing.
+   *
+   * @param node the {@link entity.Node} model representing sensors and actuators
+   * @param out  the stream {@link BinaryFrameWriter} frames are sent to the server on,
+   *             preferably buffered
+   * @param in   the {@link BinaryFrameReader} used to receive messages from the server
+   * @param gson the {@link Gson} instance used for JSON serialization/deserialization
+   */
+  public NodeClient(Node node, Socket socket, OutputStream out, BinaryFrameReader in,
+      Gson gson) {
+    this.node = node;
+    this.socket = socket;
+    this.out = null;
+    this.in = null;
+    this.frameBytes = new ByteArrayOutputStream(1024);
+    this.frameOut = new BinaryFrameWriter(frameBytes);
+    this.frameIn = in;
+    this.outbox = new Outbox(null, out);
     this.gson = gson;
     this.running = true;
   }
 
+  /**
+   * Turn printing of sent updates and received commands on or off. Errors and alerts are
+   * always logged.
+   *
+   * @param echo true to print traffic (the default), false for none
+   */
+  public void setEcho(boolean echo) {
+    this.echoEvery = echo ? 1 : 0;
+  }
+
+  /**
+   * Print only every n-th sent snapshot or delta, so a fast control loop does not flood the
+   * console. Received commands are still printed unless {@code every} is 0. The default comes
+   * from the system property {@code node.echoEvery} and is 1.
+   *
+   * @param every print one in this many sent updates; 0 turns printing off
+   * @throws IllegalArgumentException when {@code every} is negative
+   */
+  public void setEchoEvery(int every) {
+    if (every < 0) {
+      throw new IllegalArgumentException("echoEvery must not be negative: " + every);
+    }
+    this.echoEvery = every;
+  }
+
+  /**
+   * Count a sent update and decide whether to print it. Called while holding {@code sendLock}.
+   */
+  private boolean sampleEcho() {
+    int every = echoEvery;
+    return every > 0 && sentUpdates++ % every == 0;
+  }
+
   /**
    * Start the client's background listener thread.
    *
-   * <p>This will spawn a daemon thread that listens for incoming JSON commands
-   * from the server and reacts to them. The method returns immediately.
+   * <p>This will spawn a virtual thread that listens for incoming JSON commands
+   * from the server and reacts to them, so many nodes in one process do not each
+   * hold a platform thread while waiting. The method returns immediately.
    */
   public void start() {
-    listener = new Thread(this::listenForCommands, "NodeClient-Listener");
-    listener.setDaemon(true);
-    listener.start();
+    listener = Thread.ofVirtual().name("NodeClient-Listener").start(this::listenForCommands);
   }
 
   /**
    * Start the control loop that periodically updates sensors and applies actuator effects.
+   * Ticks run on the {@link TickScheduler#shared() shared scheduler}.
    * @param tickMillis the interval in milliseconds between each control loop iteration
    *
    */
   public void startControlLoop(long tickMillis) {
-    Thread t = new Thread(() -> {
-      try {
-        while (running) {
-          try {
-            node.updateAllSensors();
-            String alert = node.applyActuatorEffects(); // må finnes i Node
-            if (alert != null) {
-              JsonObject al = new JsonObject();
-              al.addProperty("messageType", "ALERT");
-              al.addProperty("nodeID", node.getNodeID());
-              al.addProperty("alert", alert);
-              out.println(al.toString());
-              out.flush();
-              log("NodeClient", "Sent ALERT: %s", alert);
-            }
-            sendCurrentNode();
-          } catch (Exception e) {
-            log("NodeClient", "Control loop error: %s", e.getMessage());
-          }
-          Thread.sleep(tickMillis);
-        }
-      } catch (InterruptedException ie) {
-        Thread.currentThread().interrupt();
+    startControlLoop(TickScheduler.shared(), tickMillis);
+  }
+
+  /**
+   * Start the control loop on the given scheduler.
+   * @param scheduler  scheduler that runs the ticks
+   * @param tickMillis the interval in milliseconds between each control loop iteration
+   */
+  public void startControlLoop(TickScheduler scheduler, long tickMillis) {
+    controlLoop = scheduler.schedule("node " + node.getNodeID(), this::tick, tickMillis);
+  }
+
+  /**
+   * One control-loop iteration: update the sensors, apply actuator effects and publish.
+   */
+  private void tick() {
+    if (!running) {
+      stopControlLoop();
+      return;
+    }
+    try {
+      node.updateAllSensors();
+      for (String alert : node.applyActuatorEffects()) {
+        JsonObject al = new JsonObject();
+        al.addProperty("messageType", "ALERT");
+        al.addProperty("nodeID", node.getNodeID());
+        al.addProperty("alert", alert);
+        sendMessage(al.toString());
+        log("NodeClient", "Sent ALERT: %s", alert);
       }
-    }, "NodeClient-ControlLoop");
-    t.setDaemon(true);
-    t.start();
+      sendNodeUpdate();
+    } catch (Exception e) {
+      Log.warn("NodeClient", "Control loop error: %s", e.getMessage());
+    }
+  }
+
+  private void stopControlLoop() {
+    ScheduledFuture<?> loop = controlLoop;
+    if (loop != null) {
+      loop.cancel(false);
+    }
   }
 
 
   /**
-   * Send the current {@link entity.Node} state to the server.
+   * Send the current {@link entity.Node} state to the server as a full snapshot.
    *
    * <p>If the internal node model is {@code null} this method does nothing.
    */
@@ -136,7 +235,88 @@ public class NodeClient {
   }
 
   /**
-   * Serialize and send the provided {@link entity.Node} to the server as JSON.
+   * Send what changed since the last update as a {@link NodeDelta} message, or a full snapshot
+   * if sensors or actuators were added or removed. Sends nothing if nothing changed.
+   *
+   * <p>If the internal node model is {@code null} this method does nothing.
+   */
+  public void sendNodeUpdate() {
+    if (node == null) {
+      return;
+    }
+    // Held until the message is queued so sequence numbers go out in order
+    sendLock.lock();
+    try {
+      if (deltas.needsSnapshot(node)) {
+        sendNode(node);
+        return;
+      }
+      JsonObject delta = deltas.nextDelta(node);
+      if (delta != null) {
+        String json = delta.toString();
+        sendMessage(json);
+        if (sampleEcho()) {
+          log("NodeClient", "Sent #%d: %s", sentUpdates, json);
+        }
+      }
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  /**
+   * Queue one JSON message for the server, as a line or as a text frame.
+   *
+   * @param json the message to send
+   */
+  private void sendMessage(String json) {
+    if (frameOut == null) {
+      queue(json);
+      return;
+    }
+    sendLock.lock();
+    try {
+      frameOut.writeText(json);
+      queue(takeFrames());
+    } catch (IOException e) {
+      Log.warn("NodeClient", "Send failed: %s", e.getMessage());
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  /**
+   * Take the frames encoded since the last call. Caller holds {@code sendLock}.
+   */
+  private byte[] takeFrames() {
+    byte[] frames = frameBytes.toByteArray();
+    frameBytes.reset();
+    return frames;
+  }
+
+  /**
+   * Hand an encoded message to the writer thread. If the server has stopped reading for so long
+   * that the queue is full, the client disconnects; the node is resynced when it reconnects.
+   *
+   * @param message a JSON line or, on a binary connection, encoded frames
+   */
+  private void queue(Object message) {
+    if (!outbox.offer(message)) {
+      Log.warn("NodeClient", "Server is not reading, disconnecting");
+      running = false;
+      outbox.close();
+      close();
+    }
+  }
+
+  /**
+   * Serialize and send the provided {@link entity.Node} to the server as a full snapshot, as
+   * JSON or, on a binary connection, as a snapshot frame. The snapshot starts a new baseline for
+   * the deltas sent by {@link #sendNodeUpdate()}.
+   *
+   * <p>The JSON line is written in one pass into a buffer that is reused for every snapshot: the
+   * envelope fields first, then the node's fields from {@link Gson}, and the buffer is copied once
+   * into the queued line. No JSON tree or intermediate strings are built.
    *
    * @param n the node to send; must not be {@code null}
    * @throws IllegalArgumentException when {@code n} is {@code null}
@@ -145,11 +325,213 @@ public class NodeClient {
     if (n == null) {
       throw new IllegalArgumentException("Node cannot be null");
     }
-    JsonObject obj = JsonParser.parseString(gson.toJson(n)).getAsJsonObject();
-    obj.addProperty("messageType", "SENSOR_DATA_FROM_NODE");
-    out.println(obj.toString());
-    out.flush();
-    System.out.println("\n Node -> Server: " + obj.toString());
+    sendLock.lock();
+    try {
+      long seq = deltas.recordSnapshot(n);
+      if (frameOut != null) {
+        try {
+          frameOut.writeSnapshot(n, seq);
+          queue(takeFrames());
+        } catch (IOException e) {
+          Log.warn("NodeClient", "Send failed: %s", e.getMessage());
+        }
+        if (sampleEcho()) {
+          log("NodeClient", "Sent #%d: snapshot of %s (binary)", sentUpdates, n.getNodeID());
+        }
+        return;
+      }
+      try {
+        snapshotBuffer.writeSnapshot(gson, n, seq);
+      } catch (IOException e) {
+        Log.warn("NodeClient", "Send failed: %s", e.getMessage());
+        return;
+      }
+      String line = snapshotBuffer.toString();
+      queue(line);
+      if (sampleEcho()) {
+        log("NodeClient", "Sent #%d: %s", sentUpdates, line);
+      }
+    } finally {
+      sendLock.unlock();
+    }
+  }
+
+  /**
+   * Reusable character buffer that holds one {@code SENSOR_DATA_FROM_NODE} line.
+   */
+  static final class SnapshotBuffer extends CharArrayWriter {
+
+    private static final String PREFIX = "{\"messageType\":\"SENSOR_DATA_FROM_NODE\",\"seq\":";
+
+    SnapshotBuffer() {
+      super(1024);
+    }
+
+    /**
+     * Replace the contents with a snapshot message for the node.
+     *
+     * <p>The node object is written right after the envelope, and its opening brace is turned
+     * into the comma that joins the two, so both end up in one object.
+     *
+     * @param gson gson that serializes the node
+     * @param node node to write
+     * @param seq  sequence number of the snapshot
+     * @throws IOException if the node cannot be serialized
+     */
+    void writeSnapshot(Gson gson, Node node, long seq) throws IOException {
+      reset();
+      write(PREFIX);
+      write(Long.toString(seq));
+      int brace = count;
+      try {
+        gson.toJson(node, Node.class, gson.newJsonWriter(this));
+      } catch (JsonIOException e) {
+        throw new IOException(e);
+      }
+      if (count < brace + 2 || buf[brace] != '{') {
+        throw new IOException("Node did not serialize to an object");
+      }
+      if (buf[brace + 1] == '}') {
+        // Node without fields: drop the brace instead of leaving a trailing comma
+        System.arraycopy(buf, brace + 1, buf, brace, count - brace - 1);
+        count--;
+      } else {
+        buf[brace] = ',';
+      }
+    }
+  }
+
+  /**
+   * Outbound queue of one client, drained by a virtual thread that is the only code writing to
+   * the connection. Whatever is queued when the writer wakes up is written with one flush.
+   * Bounded like {@link ConnectionWriter}, but the client disconnects instead of dropping
+   * messages: a lost frame could define a string the server would then never know.
+   */
+  private static final class Outbox {
+
+    private static final int MAX_BATCH = 256;
+
+    // Exactly one of them is set: lines for JSON, frames for binary framing
+    private final PrintWriter lines;
+    private final OutputStream frames;
+    // Guarded by lock; JSON lines as String, encoded frames as byte[]
+    private final ArrayDeque<Object> queue = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Thread writer;
+    private boolean endOfStream = false;
+    private volatile boolean closed = false;
+
+    Outbox(PrintWriter lines, OutputStream frames) {
+      this.lines = lines;
+      this.frames = frames;
+      this.writer = Thread.ofVirtual().name("NodeClient-Writer").start(this::drain);
+    }
+
+    /**
+     * Queue a message. Never blocks; messages queued after the outbox was closed are discarded.
+     *
+     * @param message JSON line or encoded frames
+     * @return false if the queue is full
+     */
+    boolean offer(Object message) {
+      lock.lock();
+      try {
+        if (closed || endOfStream) {
+          return true;
+        }
+        if (queue.size() >= ConnectionWriter.DEFAULT_CAPACITY) {
+          return false;
+        }
+        queue.addLast(message);
+        notEmpty.signal();
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    /**
+     * Write everything queued so far, then stop the writer. Waits at most
+     * {@code timeoutMillis}.
+     *
+     * @param timeoutMillis maximum time to wait for queued messages to be written
+     */
+    void closeGracefully(long timeoutMillis) {
+      if (closed) {
+        return;
+      }
+      lock.lock();
+      try {
+        endOfStream = true;
+        notEmpty.signal();
+      } finally {
+        lock.unlock();
+      }
+      try {
+        writer.join(timeoutMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      close();
+    }
+
+    /**
+     * Stop the writer immediately, discarding queued messages.
+     */
+    void close() {
+      closed = true;
+      lock.lock();
+      try {
+        queue.clear();
+      } finally {
+        lock.unlock();
+      }
+      writer.interrupt();
+    }
+
+    private void drain() {
+      List<Object> batch = new ArrayList<>(MAX_BATCH);
+      try {
+        while (!closed) {
+          boolean last;
+          lock.lock();
+          try {
+            while (queue.isEmpty() && !endOfStream) {
+              notEmpty.await();
+            }
+            while (!queue.isEmpty() && batch.size() < MAX_BATCH) {
+              batch.add(queue.pollFirst());
+            }
+            last = endOfStream && queue.isEmpty();
+          } finally {
+            lock.unlock();
+          }
+          for (Object message : batch) {
+            if (lines != null) {
+              lines.println((String) message);
+            } else {
+              frames.write((byte[]) message);
+            }
+          }
+          if (lines != null) {
+            lines.flush();
+          } else {
+            frames.flush();
+          }
+          batch.clear();
+          if (last) {
+            return;
+          }
+        }
+      } catch (InterruptedException e) {
+        // closed
+      } catch (IOException e) {
+        Log.warn("NodeClient", "Send failed: %s", e.getMessage());
+      } finally {
+        closed = true;
+      }
+    }
   }
 
   /**
@@ -161,8 +543,10 @@ public class NodeClient {
   private void listenForCommands() {
     try {
       String incoming;
-      while (running && (incoming = in.readLine()) != null) {
-        System.out.println("Command received: " + incoming);
+      while (running && (incoming = readMessage()) != null) {
+        if (echoEvery > 0) {
+          log("NodeClient", "Command received: %s", incoming);
+        }
         String trimmed = incoming.trim();
         if (trimmed.startsWith("{")) {
           try {
@@ -182,12 +566,12 @@ public class NodeClient {
               handleRemoveSensor(obj);
             }
           } catch (Exception e) {
-            System.out.println("Error processing command: " + e.getMessage());
+            Log.warn("NodeClient", "Error processing command: %s", e.getMessage());
           }
         }
       }
     } catch (IOException e) {
-      System.out.println("Error reading from server: " + e.getMessage());
+      Log.warn("NodeClient", "Error reading from server: %s", e.getMessage());
     } finally {
       // Server likely disconnected or we hit an IO error. Ensure we stop the client.
       running = false;
@@ -195,6 +579,16 @@ public class NodeClient {
     }
   }
 
+  /**
+   * Read the next message from the server, whatever the connection's framing.
+   *
+   * @return the next JSON message, or {@code null} when the server disconnected
+   * @throws IOException if reading fails
+   */
+  private String readMessage() throws IOException {
+    return frameIn != null ? frameIn.readLine() : in.readLine();
+  }
+
   /**
    * Handle an actuator command received from the server.
    * @param obj the JSON object containing the actuator command
@@ -207,84 +601,25 @@ public class NodeClient {
       boolean on = "TURN_ON".equals(command);
 
       // Finn target-aktuator først
-      entity.actuator.Actuator target = node.getActuators().stream()
-          .filter(a -> a.getActuatorId().equals(actuatorId))
-          .findFirst()
-          .orElse(null);
+      entity.actuator.Actuator target = node.getActuator(actuatorId);
 
       if (target != null) {
-        String targetType =
-            target.getActuatorType() != null ? target.getActuatorType().toUpperCase() : "";
-
-        // Hvis vi slår på en aktuator, slå av konfliktende aktuatorer
-        if (on) {
-          for (entity.actuator.Actuator a : node.getActuators()) {
-            if (a == null) {
-              continue;
-            }
-            if (a.getActuatorId().equals(actuatorId)) {
-              continue;
-            }
-            String t = a.getActuatorType() != null ? a.getActuatorType().toUpperCase() : "";
-            if (isConflict(targetType, t)) {
-              a.setOn(false);
-              log("NodeClient", "Actuator %s (type=%s) turned OFF due to conflict with %s",
-                  a.getActuatorId(), a.getActuatorType(), actuatorId);
-            }
-          }
-
+        // Slå av konfliktende aktuatorer i samme gruppe, atomisk med påslaget
+        for (entity.actuator.Actuator a : node.switchActuator(target, on)) {
+          log("NodeClient", "Actuator %s (type=%s) turned OFF due to conflict with %s",
+              a.getActuatorId(), a.getActuatorType(), actuatorId);
+        }
+        if (echoEvery > 0) {
+          log("NodeClient", "Actuator %s set to %s", actuatorId, on);
         }
-
-        target.setOn(on);
-        log("NodeClient", "Actuator %s set to %s", actuatorId, on);
       } else {
         log("NodeClient", "Actuator not found: %s", actuatorId);
       }
 
-      sendCurrentNode();
-    }
-  }
-
-  // Hjelpemetode for konfliktregler (legg til flere par ved behov)
-  private boolean isConflict(String typeA, String typeB) {
-    if (typeA == null || typeB == null) {
-      return false;
-    }
-    if (typeA.equals(typeB)) {
-      return false; // samme type - ikke konflikt her
-    }
-
-    // Heater vs AirCondition
-    if ((typeA.equals("HEATER") && (typeB.equals("AIRCON") || typeB.equals("AIRCONDITION")))
-        || (typeB.equals("HEATER") && (typeA.equals("AIRCON") || typeA.equals("AIRCONDITION")))) {
-      return true;
-    }
-
-    // Humidifier vs DeHumidifier
-    if ((typeA.equals("HUMIDIFIER") && typeB.equals("DEHUMIDIFIER"))
-        || (typeB.equals("HUMIDIFIER") && typeA.equals("DEHUMIDIFIER"))) {
-      return true;
-    }
-    // add lamp conflict: Brightening vs Dimming
-    if ((typeA.equals("BRIGHT") && typeB.equals("DIM")) || (typeB.equals("BRIGHT") && typeA.equals(
-        "DIM"))) {
-      return true;
-    }
-
-    // add humidity conflicts if not present...
-    if ((typeA.equals("HUMIDIFIER") && typeB.equals("DEHUMIDIFIER")) || (typeB.equals("HUMIDIFIER")
-        && typeA.equals("DEHUMIDIFIER"))) {
-      return true;
+      sendNodeUpdate();
     }
-    if ((typeA.contains("BRIGHT") && typeB.contains("DIM")) || (typeB.contains("BRIGHT")
-        && typeA.contains("DIM"))) {
-      return true;
-    }
-
-    return false;
   }
 
-
   /**
    * Handle a request to remove a sensor from the node.
    * @param obj the JSON object containing the sensor removal request
@@ -296,17 +631,12 @@ public class NodeClient {
       if (sensorId == null) {
         return;
       }
-      // Remove sensors with matching id
-      node.getSensors().removeIf(s -> sensorId.equals(s.getSensorId()));
-      // Remove actuators that were created for the sensor (use prefix matching)
-      String prefix = sensorId + "_";
-
-      node.getActuators()
-          .removeIf(a -> a.getActuatorId() != null && a.getActuatorId().startsWith(prefix));
+      // Remove the sensor and the actuators that were created for it
+      node.removeSensor(sensorId);
       log("NodeClient", "Removed sensor %s and associated actuators", sensorId);
       sendCurrentNode();
     } catch (Exception e) {
-      System.out.println("Failed to remove sensor: " + e.getMessage());
+      Log.warn("NodeClient", "Failed to remove sensor: %s", e.getMessage());
     }
   }
 
@@ -321,43 +651,127 @@ public class NodeClient {
         return;
       }
 
-      if ("TEMPERATURE".equalsIgnoreCase(sensorType)) {
+      if (!addSensorWithActuators(node, sensorType, sensorId, min, max)) {
+        Log.warn("NodeClient", "Unsupported sensor type: %s", sensorType);
+        return;
+      }
+
+      log("NodeClient", "Added sensor %s of type %s with actuators", sensorId, sensorType);
+      sendCurrentNode();
+
+    } catch (Exception e) {
+      Log.warn("NodeClient", "Failed to add sensor: %s", e.getMessage());
+    }
+  }
+
+  /**
+   * Add a sensor of the given type to a node together with the actuators that control it.
+   *
+   * @param node       node to add to
+   * @param sensorType TEMPERATURE, HUMIDITY, CO2 or LIGHT (LUMINANCE), case-insensitive
+   * @param sensorId   id of the new sensor; actuator ids are derived from it
+   * @param min        minimum threshold
+   * @param max        maximum threshold
+   * @return false if the sensor type is not supported
+   * @throws IllegalArgumentException if the id or thresholds are invalid
+   */
+  static boolean addSensorWithActuators(Node node, String sensorType, String sensorId,
+      double min, double max) {
+    SensorKind kind = SensorKind.of(sensorType);
+    if (kind == null) {
+      return false;
+    }
+    switch (kind) {
+      case TEMPERATURE -> {
         node.addSensor(new TemperatureSensor(sensorId, min, max));
         node.addActuator(new Heater(sensorId + "_heater"));
         node.addActuator(new AirCondition(sensorId + "_ac"));
-
-      } else if ("HUMIDITY".equalsIgnoreCase(sensorType)) {
+      }
+      case HUMIDITY -> {
         node.addSensor(new HumiditySensor(sensorId, min, max));
         node.addActuator(new Humidifier(sensorId + "_humidifier"));
         node.addActuator(new DeHumidifier(sensorId + "_dehumidifier"));
-
-      } else if ("CO2".equalsIgnoreCase(sensorType)) {
+      }
+      case CO2 -> {
         node.addSensor(new CO2Sensor(sensorId, min, max));
         node.addActuator(new Ventilation(sensorId + "_ventilation"));
         node.addActuator(new CO2Supply(sensorId + "_co2_supply"));
-
-      } else if ("LIGHT".equalsIgnoreCase(sensorType) || "LUMINANCE".equalsIgnoreCase(sensorType)) {
+      }
+      case LIGHT -> {
         node.addSensor(new LightSensor(sensorId, min, max));
         node.addActuator(new LampDimming(sensorId + "_lamp_dimming"));
         node.addActuator(new LampBrightning(sensorId + "_lamp_brightning"));
-
-      } else {
-        System.out.println("Unsupported sensor type: " + sensorType);
-        return;
       }
+    }
+    return true;
+  }
 
-      System.out.println("Added sensor " + sensorId + " of type " + sensorType + " with actuators.");
-      sendCurrentNode();
-
-    } catch (Exception e) {
-      System.out.println("Failed to add sensor: " + e.getMessage());
+  /**
+   * Connect a node to a server: register its id, select the framing and start listening for
+   * commands. The caller starts the control loop and sends the first snapshot.
+   *
+   * @param host   server host
+   * @param port   server port
+   * @param node   node to connect
+   * @param binary true to ask for binary framing (JSON is used if the server declines)
+   * @param gson   Gson instance for the node's messages
+   * @return the running client, or {@code null} if the server rejected the node id
+   * @throws IOException if connecting fails
+   */
+  public static NodeClient connect(String host, int port, Node node, boolean binary, Gson gson)
+      throws IOException {
+    Socket socket = new Socket(host, port);
+    try {
+      OutputStream rawOut = new BufferedOutputStream(socket.getOutputStream());
+      InputStream rawIn = new BufferedInputStream(socket.getInputStream());
+      rawOut.write(("SENSOR_NODE_CONNECTED " + node.getNodeID() + (binary ? " BINARY" : "")
+          + "\n").getBytes(StandardCharsets.UTF_8));
+      rawOut.flush();
+      // Read the reply without buffering past it: binary frames may follow directly
+      String serverResponse = BinaryFrameReader.readHandshakeLine(rawIn);
+      boolean framed = "NODE_ID_ACCEPTED BINARY".equals(serverResponse);
+      if (!framed && !"NODE_ID_ACCEPTED".equals(serverResponse)) {
+        socket.close();
+        return null;
+      }
+      if (binary && !framed) {
+        log("NodeClient", "Server does not support binary framing, using JSON");
+      }
+      NodeClient nodeClient = framed
+          ? new NodeClient(node, socket, rawOut, new BinaryFrameReader(rawIn), gson)
+          : new NodeClient(node, socket, new PrintWriter(rawOut, true),
+              new BufferedReader(new InputStreamReader(rawIn, StandardCharsets.UTF_8)), gson);
+      nodeClient.start();
+      return nodeClient;
+    } catch (IOException | RuntimeException e) {
+      socket.close();
+      throw e;
     }
   }
 
   /**
-   * Close the client's IO resources and stop the listener thread.
+   * Check whether the client is still connected and running.
+   *
+   * @return false once the server disconnected or the client was closed
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * Close the client's IO resources and stop the listener and writer threads. Messages already
+   * queued are written first, waiting at most a second for a server that is not reading.
    */
   public void close() {
+    stopControlLoop();
+    outbox.closeGracefully(CLOSE_TIMEOUT_MILLIS);
+    // Socket first: it wakes a listener blocked in readLine, which holds the reader's lock
+    try {
+      if (socket != null && !socket.isClosed()) {
+        socket.close();
+      }
+    } catch (IOException ignored) {
+    }
     try {
       if (in != null) {
         in.close();
@@ -367,12 +781,6 @@ public class NodeClient {
     if (out != null) {
       out.close();
     }
-    try {
-      if (socket != null && !socket.isClosed()) {
-        socket.close();
-      }
-    } catch (IOException ignored) {
-    }
     if (listener != null && listener.isAlive()) {
       listener.interrupt();
     }
@@ -381,51 +789,38 @@ public class NodeClient {
   /**
    * Command line entry point for starting a standalone NodeClient.
    *
-   * <p>Usage: {@code NodeClient <ID> <Location>}.
+   * <p>Usage: {@code NodeClient <ID> <Location> [--binary]}.
    *
-   * @param args program arguments: node id and location
+   * @param args program arguments: node id and location, optionally {@code --binary}
    */
   public static void main(String[] args) {
     if (args.length < 2) {
-      log("NodeClient", "Usage: NodeClient <ID> <Location>");
+      log("NodeClient", "Usage: NodeClient <ID> <Location> [--binary]");
       return;
     }
 
     String nodeId = args[0];
     String location = args[1];
+    boolean binary = args.length > 2 && "--binary".equalsIgnoreCase(args[2]);
 
     final String SERVER_IP = "127.0.0.1";
     final int SERVER_PORT = 5000;
 
-    Gson gson = new GsonBuilder()
-        .registerTypeAdapter(LocalDateTime.class,
-            (JsonSerializer<LocalDateTime>) (src, typeOfSrc, context) ->
-                new JsonPrimitive(src.toString()))
-        .registerTypeAdapter(LocalDateTime.class,
-            (JsonDeserializer<LocalDateTime>) (json, type, context) ->
-                LocalDateTime.parse(json.getAsString()))
-        .create();
+    Gson gson = JsonCodec.gson();
 
     try {
-      Socket socket = new Socket(SERVER_IP, SERVER_PORT);
-      PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
-      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-      log("NodeClient", "Node %s connected to server", nodeId);
-
-      out.println("SENSOR_NODE_CONNECTED " + nodeId);
-      String serverResponse = in.readLine();
-      if (serverResponse == null || !serverResponse.equals("NODE_ID_ACCEPTED")) {
-        log("NodeClient", "Node ID rejected or unexpected response. Exiting.");
-        return;
-      }
-
       List<Sensor> sensors = new ArrayList<>();
       List<Actuator> actuators = new ArrayList<>();
       Node nodeObj = new Node(nodeId, location, sensors, actuators);
+      nodeObj.setPublishPolicy(PublishPolicy.fromSystemProperties());
+      nodeObj.setConflictGroups(ConflictGroups.fromSystemProperties());
 
-      NodeClient nodeClient = new NodeClient(nodeObj, socket, out, in, gson);
-      nodeClient.start();
+      NodeClient nodeClient = connect(SERVER_IP, SERVER_PORT, nodeObj, binary, gson);
+      if (nodeClient == null) {
+        log("NodeClient", "Node ID rejected or unexpected response. Exiting.");
+        return;
+      }
+      log("NodeClient", "Node %s connected to server", nodeId);
       nodeClient.startControlLoop(3000); // 3s tick
       nodeClient.sendCurrentNode();
 
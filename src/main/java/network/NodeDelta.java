@@ -0,0 +1,239 @@
+package network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import entity.Node;
+import entity.PublishPolicy;
+import entity.actuator.Actuator;
+import entity.sensor.Sensor;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delta-encoded node updates.
+ *
+ * <p>A node sends a full snapshot when it connects, when it is asked for its state and whenever
+ * sensors or actuators are added or removed. In between it only sends {@code NODE_DELTA}
+ * messages with the sensor readings and actuator states that changed since the previous message:
+ *
+ * <pre>
+ * {"messageType":"NODE_DELTA","nodeID":"01","seq":42,"timestamp":"...",
+ *  "sensors":[{"sensorId":"t1","value":21.5,"timestamp":"..."}],
+ *  "actuators":[{"actuatorId":"t1_heater","on":true}]}
+ * </pre>
+ *
+ * <p>Snapshots and deltas share one sequence counter. A receiver applies a delta only if its
+ * {@code seq} directly follows the last one it applied; any gap means it missed an update and
+ * must resync from a full snapshot.
+ *
+ * <p>Which readings count as changed is decided by the node's {@link PublishPolicy}: a reading
+ * inside its deadband is held back until it moves further, crosses a threshold or its heartbeat
+ * expires, so a stable node sends little more than the heartbeats.
+ *
+ * <p>An instance is the node-side encoder and remembers what was last sent. The servers keep
+ * their cached snapshots current with the static {@link #apply(Map, Map, String, long, String)}.
+ */
+public class NodeDelta {
+
+  /**
+   * Message type of a delta update.
+   */
+  public static final String MESSAGE_TYPE = "NODE_DELTA";
+
+  /**
+   * Outcome of applying a delta to a cached snapshot.
+   */
+  public enum Result {
+    /** The delta followed the cached state and was applied. */
+    APPLIED,
+    /** The cached state is already newer than the delta; nothing to do. */
+    STALE,
+    /** Updates are missing (or there is no cached state); the node must resend a snapshot. */
+    GAP
+  }
+
+  private long seq = -1;
+  // Last sent reading (and when it was sent) per sensor id and state per actuator id
+  private final Map<String, Double> sentValues = new HashMap<>();
+  private final Map<String, Long> sentAt = new HashMap<>();
+  private final Map<String, Boolean> sentStates = new HashMap<>();
+
+  /**
+   * Check whether the next update must be a full snapshot: nothing was sent yet, or sensors or
+   * actuators were added or removed since the last snapshot.
+   *
+   * @param node current node state
+   * @return true if a snapshot is needed
+   */
+  public synchronized boolean needsSnapshot(Node node) {
+    if (seq < 0) {
+      return true;
+    }
+    List<Sensor> sensors = node.getSensors();
+    List<Actuator> actuators = node.getActuators();
+    if (sensors.size() != sentValues.size() || actuators.size() != sentStates.size()) {
+      return true;
+    }
+    for (Sensor s : sensors) {
+      if (!sentValues.containsKey(s.getSensorId())) {
+        return true;
+      }
+    }
+    for (Actuator a : actuators) {
+      if (!sentStates.containsKey(a.getActuatorId())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Record that a full snapshot of the node is being sent.
+   *
+   * @param node node being sent
+   * @return sequence number to send with the snapshot
+   */
+  public long recordSnapshot(Node node) {
+    return recordSnapshot(node, System.currentTimeMillis());
+  }
+
+  /**
+   * Record that a full snapshot of the node is being sent.
+   *
+   * @param node      node being sent
+   * @param nowMillis current time in milliseconds
+   * @return sequence number to send with the snapshot
+   */
+  public synchronized long recordSnapshot(Node node, long nowMillis) {
+    sentValues.clear();
+    sentAt.clear();
+    sentStates.clear();
+    for (Sensor s : node.getSensors()) {
+      sentValues.put(s.getSensorId(), s.getValue());
+      sentAt.put(s.getSensorId(), nowMillis);
+    }
+    for (Actuator a : node.getActuators()) {
+      sentStates.put(a.getActuatorId(), a.isOn());
+    }
+    return ++seq;
+  }
+
+  /**
+   * Build the delta from the last sent state to the current one and record it as sent. Call
+   * only when {@link #needsSnapshot(Node)} is false.
+   *
+   * @param node current node state
+   * @return the {@code NODE_DELTA} message, or {@code null} if nothing is due
+   */
+  public JsonObject nextDelta(Node node) {
+    return nextDelta(node, System.currentTimeMillis());
+  }
+
+  /**
+   * Build the delta from the last sent state to the current one and record it as sent. A
+   * reading is included if the node's {@link PublishPolicy} says it is due; actuator changes are
+   * always included.
+   *
+   * @param node      current node state
+   * @param nowMillis current time in milliseconds
+   * @return the {@code NODE_DELTA} message, or {@code null} if nothing is due
+   */
+  public synchronized JsonObject nextDelta(Node node, long nowMillis) {
+    PublishPolicy policy = node.getPublishPolicy();
+    JsonArray sensors = new JsonArray();
+    for (Sensor s : node.getSensors()) {
+      double value = s.getValue();
+      Double sent = sentValues.get(s.getSensorId());
+      Long sentMillis = sentAt.get(s.getSensorId());
+      if (sent == null || sentMillis == null
+          || policy.shouldPublish(s, value, sent, nowMillis - sentMillis)) {
+        JsonObject reading = new JsonObject();
+        reading.addProperty("sensorId", s.getSensorId());
+        reading.addProperty("value", value);
+        if (s.getTimestamp() != null) {
+          reading.addProperty("timestamp", s.getTimestamp().toString());
+        }
+        sensors.add(reading);
+        sentValues.put(s.getSensorId(), value);
+        sentAt.put(s.getSensorId(), nowMillis);
+      }
+    }
+    JsonArray actuators = new JsonArray();
+    for (Actuator a : node.getActuators()) {
+      boolean on = a.isOn();
+      Boolean sent = sentStates.get(a.getActuatorId());
+      if (sent == null || sent != on) {
+        JsonObject state = new JsonObject();
+        state.addProperty("actuatorId", a.getActuatorId());
+        state.addProperty("on", on);
+        actuators.add(state);
+        sentStates.put(a.getActuatorId(), on);
+      }
+    }
+    if (sensors.size() == 0 && actuators.size() == 0) {
+      return null;
+    }
+    JsonObject delta = new JsonObject();
+    delta.addProperty("messageType", MESSAGE_TYPE);
+    delta.addProperty("nodeID", node.getNodeID());
+    delta.addProperty("seq", ++seq);
+    if (node.getTimestamp() != null) {
+      delta.addProperty("timestamp", node.getTimestamp().toString());
+    }
+    if (sensors.size() > 0) {
+      delta.add("sensors", sensors);
+    }
+    if (actuators.size() > 0) {
+      delta.add("actuators", actuators);
+    }
+    return delta;
+  }
+
+  /**
+   * Apply a delta to the cached snapshot of its node, if its sequence number directly follows
+   * the cached one.
+   *
+   * @param snapshots cached snapshot per node id; patched in place on success
+   * @param seqs      sequence number of each cached snapshot; updated on success
+   * @param nodeId    node the delta belongs to
+   * @param seq       sequence number of the delta
+   * @param deltaLine the {@code NODE_DELTA} line
+   * @return what happened
+   */
+  static Result apply(Map<String, CachedSnapshot> snapshots, Map<String, Long> seqs,
+      String nodeId, long seq, String deltaLine) {
+    Long last = seqs.get(nodeId);
+    CachedSnapshot cached = snapshots.get(nodeId);
+    if (last != null && seq >= 0 && seq <= last) {
+      return Result.STALE;
+    }
+    if (last == null || cached == null || seq != last + 1) {
+      return Result.GAP;
+    }
+    try {
+      if (!cached.patch(JsonParser.parseString(deltaLine).getAsJsonObject())) {
+        return Result.GAP;
+      }
+    } catch (RuntimeException e) {
+      // malformed delta or cache: only a fresh snapshot can repair it
+      return Result.GAP;
+    }
+    seqs.put(nodeId, seq);
+    return Result.APPLIED;
+  }
+
+  /**
+   * Parse the timestamp of a delta element, if present.
+   *
+   * @param element sensor reading or delta message
+   * @return timestamp, or {@code null}
+   */
+  public static LocalDateTime timestampOf(JsonObject element) {
+    return element.has("timestamp") && !element.get("timestamp").isJsonNull()
+        ? LocalDateTime.parse(element.get("timestamp").getAsString())
+        : null;
+  }
+}
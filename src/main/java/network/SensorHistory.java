@@ -0,0 +1,284 @@
+package network;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import logging.Log;
+import storage.TimeSeriesStore;
+
+/**
+ * Feeds sensor readings into the server's {@link TimeSeriesStore} and answers history queries.
+ *
+ * <p>Every reading of a {@code SENSOR_DATA_FROM_NODE} snapshot or applied {@code NODE_DELTA} is
+ * appended to the series of its node and sensor. A control panel asks for a time range with
+ *
+ * <pre>
+ * {"messageType":"QUERY_HISTORY","nodeID":"01","sensorId":"t1",
+ *  "from":"2025-11-20T10:00:00","to":"2025-11-20T11:00:00","limit":500}
+ * </pre>
+ *
+ * <p>and gets the points back in columns, oldest first:
+ *
+ * <pre>
+ * {"messageType":"HISTORY","nodeID":"01","sensorId":"t1","from":"...","to":"...",
+ *  "timestamps":["2025-11-20T10:00:01", ...],"values":[21.5, ...],"truncated":false}
+ * </pre>
+ *
+ * <p>Timestamps are the nodes' local date-times, stored as milliseconds with a UTC offset like
+ * the binary framing does. Without {@code -Dserver.history.dir} the history lives in memory only.
+ */
+public final class SensorHistory {
+
+  /**
+   * Message type of a history query.
+   */
+  public static final String QUERY_TYPE = "QUERY_HISTORY";
+
+  /**
+   * Message type of the answer to a history query.
+   */
+  public static final String RESPONSE_TYPE = "HISTORY";
+
+  /**
+   * Largest number of points one answer carries; also the default limit.
+   */
+  public static final int MAX_POINTS = 10000;
+
+  private SensorHistory() {
+  }
+
+  /**
+   * Open the store configured by system properties:
+   *
+   * <ul>
+   *   <li>{@code server.history.dir}: directory of the segment files; unset keeps history in
+   *   memory</li>
+   *   <li>{@code server.history.segmentMiB}: size of each segment file (default 16)</li>
+   *   <li>{@code server.history.retentionHours}: history older than this, counted back from the
+   *   newest reading, is dropped (default 0: keep everything)</li>
+   * </ul>
+   *
+   * <p>If the directory cannot be opened the history is kept in memory. A file-backed store is
+   * closed on shutdown so the open chunks are written.
+   *
+   * @return the store
+   */
+  static TimeSeriesStore openStore() {
+    String dir = System.getProperty("server.history.dir");
+    long retentionMillis = Math.max(0, Long.getLong("server.history.retentionHours", 0))
+        * 3_600_000L;
+    long segmentBytes = Long.getLong("server.history.segmentMiB",
+        TimeSeriesStore.DEFAULT_SEGMENT_BYTES >> 20) << 20;
+    if (dir == null || dir.isBlank()) {
+      return TimeSeriesStore.inMemory(TimeSeriesStore.DEFAULT_CHUNK_POINTS, retentionMillis);
+    }
+    try {
+      TimeSeriesStore store = TimeSeriesStore.open(Path.of(dir),
+          TimeSeriesStore.DEFAULT_CHUNK_POINTS, segmentBytes, retentionMillis);
+      Runtime.getRuntime().addShutdownHook(new Thread(store::close, "history-close"));
+      Log.info("Storage", "Sensor history in %s (%d series)", dir, store.seriesCount());
+      return store;
+    } catch (IOException | RuntimeException e) {
+      Log.warn("Storage", "Could not open sensor history in %s, keeping it in memory: %s", dir,
+          e.getMessage());
+      return TimeSeriesStore.inMemory(TimeSeriesStore.DEFAULT_CHUNK_POINTS, retentionMillis);
+    }
+  }
+
+  /**
+   * Append the sensor readings of a snapshot or delta line to the store. A reading without a
+   * timestamp gets the message's, or the current time if that is missing as well.
+   *
+   * @param store  store to append to
+   * @param nodeId node that sent the line
+   * @param line   {@code SENSOR_DATA_FROM_NODE} or {@code NODE_DELTA} JSON
+   * @return number of readings stored
+   */
+  public static int record(TimeSeriesStore store, String nodeId, String line) {
+    long messageTime = Long.MIN_VALUE;
+    String[] ids = new String[8];
+    double[] values = new double[8];
+    long[] times = new long[8];
+    int n = 0;
+    try (JsonReader reader = new JsonReader(new StringReader(line))) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if ("timestamp".equals(name)) {
+          messageTime = readTime(reader);
+        } else if ("sensors".equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+              reader.skipValue();
+              continue;
+            }
+            String sensorId = null;
+            double value = Double.NaN;
+            long time = Long.MIN_VALUE;
+            reader.beginObject();
+            while (reader.hasNext()) {
+              switch (reader.nextName()) {
+                case "sensorId" -> sensorId = reader.peek() == JsonToken.STRING
+                    ? reader.nextString() : skip(reader);
+                case "value" -> value = reader.peek() == JsonToken.NUMBER
+                    ? reader.nextDouble() : skipNumber(reader);
+                case "timestamp" -> time = readTime(reader);
+                default -> reader.skipValue();
+              }
+            }
+            reader.endObject();
+            if (sensorId == null || Double.isNaN(value)) {
+              continue;
+            }
+            if (n == ids.length) {
+              ids = Arrays.copyOf(ids, n * 2);
+              values = Arrays.copyOf(values, n * 2);
+              times = Arrays.copyOf(times, n * 2);
+            }
+            ids[n] = sensorId;
+            values[n] = value;
+            times[n] = time;
+            n++;
+          }
+          reader.endArray();
+        } else {
+          reader.skipValue();
+        }
+      }
+    } catch (IOException | IllegalStateException | NumberFormatException e) {
+      Log.debug("Storage", "Readings of %s not recorded: %s", nodeId, e.getMessage());
+      return 0;
+    }
+    if (messageTime == Long.MIN_VALUE) {
+      messageTime = System.currentTimeMillis();
+    }
+    int stored = 0;
+    for (int i = 0; i < n; i++) {
+      long time = times[i] != Long.MIN_VALUE ? times[i] : messageTime;
+      if (store.append(nodeId, ids[i], time, values[i])) {
+        stored++;
+      }
+    }
+    return stored;
+  }
+
+  /**
+   * Answer a {@code QUERY_HISTORY} request.
+   *
+   * @param store   store to read from
+   * @param request the query
+   * @return the {@code HISTORY} message; it has an {@code error} member if the query was invalid
+   */
+  public static String answer(TimeSeriesStore store, JsonObject request) {
+    JsonObject out = new JsonObject();
+    out.addProperty("messageType", RESPONSE_TYPE);
+    String nodeId = stringOrNull(request, "nodeID");
+    String sensorId = stringOrNull(request, "sensorId");
+    out.addProperty("nodeID", nodeId);
+    out.addProperty("sensorId", sensorId);
+    if (nodeId == null || sensorId == null) {
+      out.addProperty("error", "nodeID and sensorId are required");
+      return out.toString();
+    }
+    LocalDateTime from;
+    LocalDateTime to;
+    long fromMillis;
+    long toMillis;
+    int limit;
+    try {
+      String f = stringOrNull(request, "from");
+      String t = stringOrNull(request, "to");
+      from = f != null ? LocalDateTime.parse(f) : LocalDateTime.MIN;
+      to = t != null ? LocalDateTime.parse(t) : LocalDateTime.MAX;
+      fromMillis = toMillis(from);
+      toMillis = toMillis(to);
+      limit = request.has("limit") && !request.get("limit").isJsonNull()
+          ? Math.min(request.get("limit").getAsInt(), MAX_POINTS) : MAX_POINTS;
+    } catch (DateTimeParseException | ArithmeticException | NumberFormatException
+        | UnsupportedOperationException | IllegalStateException e) {
+      out.addProperty("error", "Invalid from, to or limit: " + e.getMessage());
+      return out.toString();
+    }
+    if (limit < 0) {
+      out.addProperty("error", "limit cannot be negative");
+      return out.toString();
+    }
+    out.addProperty("from", from.toString());
+    out.addProperty("to", to.toString());
+    TimeSeriesStore.Points points = store.query(nodeId, sensorId, fromMillis, toMillis, limit);
+    JsonArray timestamps = new JsonArray(points.size());
+    JsonArray values = new JsonArray(points.size());
+    for (int i = 0; i < points.size(); i++) {
+      timestamps.add(toDateTime(points.times()[i]).toString());
+      values.add(points.values()[i]);
+    }
+    out.add("timestamps", timestamps);
+    out.add("values", values);
+    out.addProperty("truncated", points.truncated());
+    return out.toString();
+  }
+
+  /**
+   * Convert a node date-time to stored milliseconds, clamping the extremes used for open ranges.
+   *
+   * @param time date-time
+   * @return milliseconds since the epoch at UTC
+   */
+  static long toMillis(LocalDateTime time) {
+    if (time.equals(LocalDateTime.MIN)) {
+      return Long.MIN_VALUE;
+    }
+    if (time.equals(LocalDateTime.MAX)) {
+      return Long.MAX_VALUE;
+    }
+    return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+  }
+
+  /**
+   * Convert stored milliseconds back to a node date-time.
+   *
+   * @param millis milliseconds since the epoch at UTC
+   * @return date-time
+   */
+  static LocalDateTime toDateTime(long millis) {
+    return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+        Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+  }
+
+  private static long readTime(JsonReader reader) throws IOException {
+    if (reader.peek() != JsonToken.STRING) {
+      reader.skipValue();
+      return Long.MIN_VALUE;
+    }
+    try {
+      return toMillis(LocalDateTime.parse(reader.nextString()));
+    } catch (DateTimeParseException | ArithmeticException e) {
+      return Long.MIN_VALUE;
+    }
+  }
+
+  private static String skip(JsonReader reader) throws IOException {
+    reader.skipValue();
+    return null;
+  }
+
+  private static double skipNumber(JsonReader reader) throws IOException {
+    reader.skipValue();
+    return Double.NaN;
+  }
+
+  private static String stringOrNull(JsonObject obj, String key) {
+    JsonElement e = obj.get(key);
+    return e != null && e.isJsonPrimitive() ? e.getAsString() : null;
+  }
+}
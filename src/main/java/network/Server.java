@@ -1,63 +1,390 @@
 package network;
 
-import com.google.gson.Gson;
+import codec.BinaryFrameReader;
+import codec.JsonCodec;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 import java.io.*;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.nio.charset.StandardCharsets;
+import logging.Log;
+import storage.TimeSeriesStore;
 
 /**
  * Server class to handle connections from sensor nodes and control panels. 
+ *
+ * <p>Each connection is served by a {@link ClientHandler} submitted to an
+ * {@link ExecutorService}. By default every handler gets its own platform thread; start the
+ * server with {@code --virtual} to run the handlers on virtual threads instead.
+ *
+ * <p>Clients choose line-delimited JSON or binary framing at handshake time. Inside the server
+ * every message is a JSON line; binary connections are translated at the edges (by a
+ * {@link BinaryFrameReader} on the way in and their {@link ConnectionWriter} on the way out), so
+ * JSON and binary nodes and control panels can be mixed freely.
  */
 public class Server {
 
   private static final int PORT = 5000;
-  private static final DateTimeFormatter LOG_TIME = DateTimeFormatter.ofPattern(
-      "yyyy-MM-dd HH:mm:ss");
-
   /**
-   * Log a message with timestamp and role.
+   * Log a message at INFO through the asynchronous {@link Log}.
    * @param role "Server", "ControlPanel", or "Node"
    * @param fmt format string
    * @param args format arguments
    */
   private static void log(String role, String fmt, Object... args) {
-    String msg = String.format(fmt, args);
-    System.out.printf("\n[%s] %s: %s%n", LOG_TIME.format(LocalDateTime.now()), role, msg);
+    Log.info(role, fmt, args);
   }
 
   /**
    * List of connected control panel sockets.
    *
+   * <p>Copy-on-write so broadcasts can iterate without holding a monitor (a
+   * {@code synchronized} block would pin virtual threads to their carrier while writing).
    */
-  private static List<Socket> controlPanels = Collections.synchronizedList(new ArrayList<>());
+  private static List<Socket> controlPanels = new CopyOnWriteArrayList<>();
   // Map socket -> controlPanelId (if provided during registration) for nicer disconnect logs
   private static Map<Socket, String> controlPanelIds = new ConcurrentHashMap<>();
-  // Store last-known node JSON per nodeID so REQUEST_NODE can be answered immediately
-  private static Map<String, String> lastKnownNodeJson = new ConcurrentHashMap<>();
+  // Store last-known node snapshot per nodeID so REQUEST_NODE can be answered immediately
+  private static Map<String, CachedSnapshot> lastKnownNodeJson = new ConcurrentHashMap<>();
+  // Sequence number of each cached node JSON, so NODE_DELTA messages can be applied in order
+  private static Map<String, Long> lastKnownNodeSeq = new ConcurrentHashMap<>();
   // Map nodeId -> socket for sensor nodes to prevent duplicate node IDs
   private static Map<String, Socket> sensorNodes = new ConcurrentHashMap<>();
+  // One outbound queue + writer per socket; all writes to a socket go through it
+  private static Map<Socket, ConnectionWriter> writers = new ConcurrentHashMap<>();
+
+  // Topic every unfiltered control panel is subscribed to; panels leave it on their first SUBSCRIBE
+  private static final String ALL_TOPICS = "*";
+  // Map control panel socket -> topics it subscribed to (e.g. "nodeID=01", "sensorType=CO2")
+  private static Map<Socket, Set<String>> controlPanelSubscriptions = new ConcurrentHashMap<>();
+  // Routing index: topic -> subscribed control panels, so an update only visits interested panels
+  private static Map<String, Set<Socket>> topicSubscribers = new ConcurrentHashMap<>();
+  // Map nodeId -> topics the node's messages are published under, taken from its last snapshot
+  private static Map<String, List<String>> nodeTopics = new ConcurrentHashMap<>();
+
+  // Handshake token that selects binary framing: "SENSOR_NODE_CONNECTED <id> BINARY" for nodes,
+  // "framing":"binary" in REGISTER_CONTROL_PANEL for control panels
+  static final String BINARY_FRAMING = "BINARY";
+  // Reply to a control panel whose binary framing request was accepted; frames follow it
+  static final String FRAMING_ACCEPTED = "{\"messageType\":\"FRAMING_ACCEPTED\","
+      + "\"framing\":\"binary\"}";
+
+  // Slow-consumer handling for control panel buffers, configured through system properties
+  private static final SlowConsumerPolicy PANEL_POLICY = SlowConsumerPolicy.parse(
+      System.getProperty("server.slowConsumer.policy"), SlowConsumerPolicy.COALESCE_LATEST);
+  private static final int PANEL_BUFFER_CAPACITY = Integer.getInteger(
+      "server.slowConsumer.capacity", 256);
+  private static final long PANEL_MAX_LAG_MILLIS = Long.getLong(
+      "server.slowConsumer.maxLagMillis", 5000);
+  private static final SlowConsumerStats slowConsumerStats = new SlowConsumerStats();
+
+  // Sensor readings of every node, kept for QUERY_HISTORY; on disk if server.history.dir is set
+  static final TimeSeriesStore history = SensorHistory.openStore();
+  // Journal of the last-known cache and undelivered commands if server.journal.dir is set;
+  // declared after the caches, which opening it replays into
+  static final StateJournal journal = StateJournal.open(lastKnownNodeJson, lastKnownNodeSeq);
+
+  /**
+   * Get the counters for how often the slow-consumer policy fired on control panel buffers.
+   *
+   * @return shared slow-consumer statistics
+   */
+  public static SlowConsumerStats getSlowConsumerStats() {
+    return slowConsumerStats;
+  }
 
   /**
    * Main method to start the server.
    *
+   * <p>Pass {@code --virtual} to run client handlers on virtual threads.
+   *
    * @param args command line arguments
    */
   public static void main(String[] args) {
-    try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-      log("Server", "Started on port %d", PORT);
+    boolean virtual = args.length > 0 && "--virtual".equalsIgnoreCase(args[0]);
+    try (ServerSocket serverSocket = new ServerSocket(PORT);
+        ExecutorService executor = virtual ? Executors.newVirtualThreadPerTaskExecutor()
+            : Executors.newThreadPerTaskExecutor(
+                Thread.ofPlatform().name("ClientHandler-", 0).factory())) {
+      log("Server", "Started on port %d (%s threads)", PORT, virtual ? "virtual" : "platform");
+      serve(serverSocket, executor);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
 
-      while (true) {
+  /**
+   * Accept connections until the server socket is closed, running one {@link ClientHandler} per
+   * connection on the given executor.
+   *
+   * @param serverSocket bound server socket
+   * @param executor     executor that runs the client handlers
+   */
+  static void serve(ServerSocket serverSocket, ExecutorService executor) {
+    try {
+      while (!serverSocket.isClosed()) {
         Socket clientSocket = serverSocket.accept();
         log("Server", "New client connected: %s", clientSocket.getInetAddress());
-        new Thread(new ClientHandler(clientSocket)).start();
+        executor.execute(new ClientHandler(clientSocket));
       }
     } catch (IOException e) {
-      e.printStackTrace();
+      if (!serverSocket.isClosed()) {
+        Log.warn("Server", "Accept failed: %s", e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Queue one line on a socket's {@link ConnectionWriter}, creating the writer on first use.
+   *
+   * <p>The caller never blocks on the network: the line is written by the socket's own writer
+   * thread, whole and batched with whatever else is queued. If the queue is full the line is
+   * dropped and logged.
+   *
+   * @param socket target socket
+   * @param line   line to write (without trailing newline)
+   * @throws IOException if the socket is closed or its output stream cannot be opened
+   */
+  static void sendLine(Socket socket, String line) throws IOException {
+    if (socket.isClosed()) {
+      throw new IOException("Socket closed");
+    }
+    ConnectionWriter writer = writers.get(socket);
+    if (writer == null) {
+      ConnectionWriter created = new ConnectionWriter(socket, ConnectionWriter.DEFAULT_CAPACITY);
+      writer = writers.putIfAbsent(socket, created);
+      if (writer == null) {
+        writer = created;
+      } else {
+        created.close();
+      }
+    }
+    if (!writer.send(line)) {
+      if (writer.isClosed()) {
+        throw new IOException("Writer closed");
+      }
+      Log.warn("Server", "Outbound queue full for %s, dropping line", socket.getInetAddress());
+    }
+  }
+
+  /**
+   * Register a control panel socket and give it a bounded, policy-managed outbound buffer so a
+   * stalled panel can never hold up the handlers that broadcast to it.
+   *
+   * @param socket control panel socket
+   * @param cpId   control panel id used in logs
+   * @throws IOException if the socket's output stream cannot be opened
+   */
+  static void registerControlPanel(Socket socket, String cpId) throws IOException {
+    registerControlPanel(socket, cpId, false);
+  }
+
+  /**
+   * Register a control panel socket, optionally switching its output to binary framing. The
+   * {@link #FRAMING_ACCEPTED} reply is queued before the panel becomes visible to broadcasts, so
+   * it is always the last line the panel reads before the frames start.
+   *
+   * @param socket control panel socket
+   * @param cpId   control panel id used in logs
+   * @param binary true if the panel asked for binary framing
+   * @throws IOException if the socket's output stream cannot be opened
+   */
+  static void registerControlPanel(Socket socket, String cpId, boolean binary)
+      throws IOException {
+    ConnectionWriter writer = new ConnectionWriter(socket, PANEL_BUFFER_CAPACITY, PANEL_POLICY,
+        PANEL_MAX_LAG_MILLIS, slowConsumerStats, Server::cachedSnapshotLine);
+    if (binary) {
+      writer.send(FRAMING_ACCEPTED);
+      writer.startBinaryFraming();
+    }
+    ConnectionWriter previous = writers.put(socket, writer);
+    if (previous != null) {
+      previous.close();
+    }
+    controlPanelIds.put(socket, cpId);
+    controlPanels.add(socket);
+    topicSubscribers.computeIfAbsent(ALL_TOPICS, t -> ConcurrentHashMap.newKeySet()).add(socket);
+  }
+
+  /**
+   * Get the last-known snapshot of a node with every delta applied so far. Panel writers queue it
+   * in place of deltas they have no room for.
+   *
+   * @param nodeId node id
+   * @return the snapshot JSON, or null if the node has none
+   */
+  private static String cachedSnapshotLine(String nodeId) {
+    CachedSnapshot cached = lastKnownNodeJson.get(nodeId);
+    return cached != null ? cached.line() : null;
+  }
+
+  /**
+   * Build the routing topic for a subscription key and value.
+   *
+   * @param key   {@code nodeID}, {@code location} or {@code sensorType}
+   * @param value value to match; sensor types are matched case-insensitively
+   * @return topic string, e.g. {@code sensorType=TEMPERATURE}
+   */
+  static String topic(String key, String value) {
+    return "sensorType".equals(key)
+        ? key + "=" + value.toUpperCase(Locale.ROOT)
+        : key + "=" + value;
+  }
+
+  /**
+   * Subscribe a control panel to a topic. A panel with at least one subscription only receives
+   * node messages matching one of its topics; a panel without subscriptions receives everything.
+   *
+   * @param socket control panel socket
+   * @param topic  topic built with {@link #topic(String, String)}
+   */
+  static void subscribe(Socket socket, String topic) {
+    controlPanelSubscriptions.computeIfAbsent(socket, s -> ConcurrentHashMap.newKeySet())
+        .add(topic);
+    topicSubscribers.computeIfAbsent(topic, t -> ConcurrentHashMap.newKeySet()).add(socket);
+    Set<Socket> all = topicSubscribers.get(ALL_TOPICS);
+    if (all != null) {
+      all.remove(socket);
+    }
+  }
+
+  /**
+   * Unsubscribe a control panel from a topic. A panel that drops its last subscription goes back
+   * to receiving everything.
+   *
+   * @param socket control panel socket
+   * @param topic  topic built with {@link #topic(String, String)}
+   */
+  static void unsubscribe(Socket socket, String topic) {
+    Set<Socket> subscribers = topicSubscribers.get(topic);
+    if (subscribers != null) {
+      subscribers.remove(socket);
+    }
+    Set<String> topics = controlPanelSubscriptions.get(socket);
+    if (topics != null) {
+      topics.remove(topic);
+      if (topics.isEmpty() && controlPanelSubscriptions.remove(socket, topics)
+          && controlPanels.contains(socket)) {
+        topicSubscribers.computeIfAbsent(ALL_TOPICS, t -> ConcurrentHashMap.newKeySet())
+            .add(socket);
+      }
+    }
+  }
+
+  /**
+   * Remove a control panel from the routing index.
+   *
+   * @param socket control panel socket
+   */
+  static void unsubscribeAll(Socket socket) {
+    Set<String> topics = controlPanelSubscriptions.remove(socket);
+    if (topics != null) {
+      for (String topic : topics) {
+        Set<Socket> subscribers = topicSubscribers.get(topic);
+        if (subscribers != null) {
+          subscribers.remove(socket);
+        }
+      }
+    }
+    Set<Socket> all = topicSubscribers.get(ALL_TOPICS);
+    if (all != null) {
+      all.remove(socket);
+    }
+  }
+
+  /**
+   * Collect the topics a node snapshot is published under: its node id, its location and the
+   * type of each of its sensors.
+   *
+   * @param header routing fields of the node snapshot
+   * @return topics of the snapshot
+   */
+  static List<String> topicsOf(MessageHeader header) {
+    List<String> topics = new ArrayList<>();
+    if (header.getNodeId() != null) {
+      topics.add(topic("nodeID", header.getNodeId()));
+    }
+    if (header.getLocation() != null) {
+      topics.add(topic("location", header.getLocation()));
+    }
+    for (String sensorType : header.getSensorTypes()) {
+      String t = topic("sensorType", sensorType);
+      if (!topics.contains(t)) {
+        topics.add(t);
+      }
+    }
+    return topics;
+  }
+
+  /**
+   * Remember the topics of a node's latest snapshot, which its later messages are routed by.
+   *
+   * @param nodeId node the snapshot belongs to
+   * @param header routing fields of the snapshot
+   */
+  static void recordTopics(String nodeId, MessageHeader header) {
+    nodeTopics.put(nodeId, topicsOf(header));
+  }
+
+  /**
+   * Find the control panels interested in a message about a node: every unfiltered panel plus
+   * the subscribers of each of the node's topics.
+   *
+   * @param nodeId node the message is about (if null, all panels)
+   * @return panels to deliver to
+   */
+  static Collection<Socket> subscribersFor(String nodeId) {
+    if (nodeId == null) {
+      return controlPanels;
+    }
+    List<String> topics = nodeTopics.get(nodeId);
+    if (topics == null) {
+      topics = List.of(topic("nodeID", nodeId));
+    }
+    Set<Socket> recipients = new LinkedHashSet<>();
+    Set<Socket> all = topicSubscribers.get(ALL_TOPICS);
+    if (all != null) {
+      recipients.addAll(all);
+    }
+    for (String topic : topics) {
+      Set<Socket> subscribers = topicSubscribers.get(topic);
+      if (subscribers != null) {
+        recipients.addAll(subscribers);
+      }
+    }
+    return recipients;
+  }
+
+  /**
+   * Flush what is queued for a socket and close it.
+   *
+   * @param socket socket to close
+   */
+  static void flushAndClose(Socket socket) throws IOException {
+    ConnectionWriter writer = writers.remove(socket);
+    if (writer != null) {
+      writer.closeGracefully(1000);
+    }
+    socket.close();
+  }
+
+  /**
+   * Send a node the commands that arrived for it while it was not connected, oldest first.
+   *
+   * @param nodeId node that has just connected
+   * @param socket the node's socket
+   */
+  static void deliverPendingCommands(String nodeId, Socket socket) throws IOException {
+    for (StateJournal.Command command : journal.pendingFor(nodeId)) {
+      if (journal.delivered(command.id())) {
+        sendLine(socket, command.line());
+        log("Server", "Delivered kept command to node %s", nodeId);
+      }
     }
   }
 
@@ -68,9 +395,12 @@ public class Server {
 
     private Socket socket;
     private BufferedReader in;
-    private PrintWriter out;
+    // Set instead of in when the client negotiated binary framing
+    private BinaryFrameReader frames;
     private boolean isControlPanel = false;
     private String nodeId = null;
+    // Set after asking this node for a snapshot to repair a delta gap, until the snapshot arrives
+    private boolean resyncRequested = false;
 
     public ClientHandler(Socket socket) {
       this.socket = socket;
@@ -83,54 +413,67 @@ public class Server {
     @Override
     public void run() {
       try {
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-        out = new PrintWriter(socket.getOutputStream(), true);
-
-        String initialMessage = in.readLine();
+        // The handshake line is read byte by byte so nothing after it is buffered as text
+        InputStream rawIn = new BufferedInputStream(socket.getInputStream());
+        String initialMessage = BinaryFrameReader.readHandshakeLine(rawIn);
         if (initialMessage != null) {
           String trimmed = initialMessage.trim();
           // Old plain-text protocol
           if (trimmed.equals("CONTROL_PANEL_CONNECTED")) {
             isControlPanel = true;
-            controlPanels.add(socket);
             // No id provided in legacy protocol; record address for later
-            controlPanelIds.put(socket, socket.getInetAddress().toString());
+            registerControlPanel(socket, socket.getInetAddress().toString());
             log("Server", "Control panel connected: %s", socket.getInetAddress());
           } else if (trimmed.startsWith("SENSOR_NODE_CONNECTED")) {
-            // Expect format: SENSOR_NODE_CONNECTED <nodeId>
+            // Expect format: SENSOR_NODE_CONNECTED <nodeId> [BINARY]
             String[] parts = trimmed.split(" ", 2);
             if (parts.length < 2) {
-              out.println("NODE_ID_REJECTED");
-              socket.close();
+              sendLine(socket, "NODE_ID_REJECTED");
+              flushAndClose(socket);
               return;
             }
             nodeId = parts[1].trim();
-            // Check for duplicate nodeId
-            if (sensorNodes.containsKey(nodeId)) {
-              out.println("NODE_ID_REJECTED");
+            boolean binary = nodeId.endsWith(" " + BINARY_FRAMING);
+            if (binary) {
+              nodeId = nodeId.substring(0, nodeId.length() - BINARY_FRAMING.length()).trim();
+            }
+            // Check for duplicate nodeId (atomically, handlers run concurrently)
+            if (sensorNodes.putIfAbsent(nodeId, socket) != null) {
+              sendLine(socket, "NODE_ID_REJECTED");
               log("Server", "Rejected duplicate nodeId '%s' from %s", nodeId,
                   socket.getInetAddress());
-              socket.close();
+              flushAndClose(socket);
               return;
             } else {
-              sensorNodes.put(nodeId, socket);
-              out.println("NODE_ID_ACCEPTED");
-              log("Server", "Node connected: %s (id=%s)", socket.getInetAddress(), nodeId);
+              if (binary) {
+                // Confirm the framing mode as the last text line, then switch both directions
+                sendLine(socket, "NODE_ID_ACCEPTED " + BINARY_FRAMING);
+                writers.get(socket).startBinaryFraming();
+                frames = new BinaryFrameReader(rawIn);
+              } else {
+                sendLine(socket, "NODE_ID_ACCEPTED");
+              }
+              log("Server", "Node connected: %s (id=%s%s)", socket.getInetAddress(), nodeId,
+                  binary ? ", binary" : "");
+              deliverPendingCommands(nodeId, socket);
             }
           } else if (trimmed.startsWith("{")) {
             // Fallback: try JSON registration for control panel (newer protocol)
             try {
-              Gson gson = new Gson();
-              JsonObject obj = gson.fromJson(trimmed, JsonObject.class);
+              JsonObject obj = JsonCodec.gson().fromJson(trimmed, JsonObject.class);
               if (obj != null && obj.has("messageType") && "REGISTER_CONTROL_PANEL".equals(
                   obj.get("messageType").getAsString())) {
                 isControlPanel = true;
-                controlPanels.add(socket);
                 String cpId = obj.has("controlPanelId") ? obj.get("controlPanelId").getAsString()
                     : socket.getInetAddress().toString();
-                controlPanelIds.put(socket, cpId);
-                log("Server", "Control panel registered: %s (id=%s)", socket.getInetAddress(),
-                    cpId);
+                boolean binary = obj.has("framing") && !obj.get("framing").isJsonNull()
+                    && BINARY_FRAMING.equalsIgnoreCase(obj.get("framing").getAsString());
+                registerControlPanel(socket, cpId, binary);
+                if (binary) {
+                  frames = new BinaryFrameReader(rawIn);
+                }
+                log("Server", "Control panel registered: %s (id=%s%s)", socket.getInetAddress(),
+                    cpId, binary ? ", binary" : "");
               }
             } catch (JsonSyntaxException ignored) {
               // Not JSON or malformed - fall through to generic fallback
@@ -138,30 +481,38 @@ public class Server {
           }
         }
 
+        if (frames == null) {
+          in = new BufferedReader(new InputStreamReader(rawIn, StandardCharsets.UTF_8));
+        }
         String inputLine;
-        while ((inputLine = in.readLine()) != null) {
+        while ((inputLine = readLine()) != null) {
           if (isControlPanel) {
-            log("ControlPanel", "Received -> %s", inputLine);
+            Log.debug("ControlPanel", "Received -> %s", inputLine);
             // Expect control panel to send JSON commands (ACTUATOR_COMMAND, TARGET_UPDATE)
             if (inputLine.trim().startsWith("{")) {
               try {
-                Gson gson = new Gson();
-                JsonObject obj = gson.fromJson(inputLine, JsonObject.class);
+                JsonObject obj = JsonCodec.gson().fromJson(inputLine, JsonObject.class);
                 String mt = obj.has("messageType") && !obj.get("messageType").isJsonNull()
                     ? obj.get("messageType").getAsString()
                     : null;
                 if ("ACTUATOR_COMMAND".equals(mt) || "TARGET_UPDATE".equals(mt)) {
                   if (obj.has("nodeID") && !obj.get("nodeID").isJsonNull()) {
                     String targetNode = obj.get("nodeID").getAsString();
+                    // Journaled first, so a command for an absent node survives a restart
+                    long commandId = journal.command(targetNode, inputLine);
                     Socket nodeSocket = sensorNodes.get(targetNode);
                     if (nodeSocket != null && !nodeSocket.isClosed()) {
-                      try {
-                        PrintWriter nodeOut = new PrintWriter(nodeSocket.getOutputStream(), true);
-                        nodeOut.println(inputLine);
-                        log("Server", "Forwarded command to node %s", targetNode);
-                      } catch (IOException e) {
-                        log("Server", "Error forwarding to node: %s", e.getMessage());
+                      if (journal.delivered(commandId)) {
+                        try {
+                          sendLine(nodeSocket, inputLine);
+                          log("Server", "Forwarded command to node %s", targetNode);
+                        } catch (IOException e) {
+                          Log.warn("Server", "Error forwarding to node: %s", e.getMessage());
+                        }
                       }
+                    } else if (commandId >= 0) {
+                      log("Server", "Target node not connected, command kept for %s",
+                          targetNode);
                     } else {
                       log("Server", "Target node not connected: %s", targetNode);
                     }
@@ -169,12 +520,32 @@ public class Server {
                     log("Server", "No nodeID in control panel message: %s", inputLine);
                   }
 
+                } else if ("SUBSCRIBE".equals(mt) || "UNSUBSCRIBE".equals(mt)) {
+                  String topic = null;
+                  for (String key : new String[] {"nodeID", "location", "sensorType"}) {
+                    if (obj.has(key) && !obj.get(key).isJsonNull()) {
+                      topic = topic(key, obj.get(key).getAsString());
+                      break;
+                    }
+                  }
+                  if (topic == null) {
+                    log("ControlPanel", "%s without nodeID, location or sensorType: %s", mt,
+                        inputLine);
+                  } else if ("SUBSCRIBE".equals(mt)) {
+                    subscribe(socket, topic);
+                    log("Server", "Control panel %s subscribed to %s",
+                        controlPanelIds.get(socket), topic);
+                  } else {
+                    unsubscribe(socket, topic);
+                    log("Server", "Control panel %s unsubscribed from %s",
+                        controlPanelIds.get(socket), topic);
+                  }
                 } else if ("REQUEST_NODE".equals(mt)) {
                   String targetNode = obj.get("nodeID").getAsString();
 
-                  String lastJson = lastKnownNodeJson.get(targetNode);
-                  if (lastJson != null) {
-                    out.println(lastJson);
+                  CachedSnapshot cached = lastKnownNodeJson.get(targetNode);
+                  if (cached != null) {
+                    sendLine(socket, cached.line());
                     log("Server", "Served cached state of %s to control panel", targetNode);
                     // keep the control panel connection open so it can send further commands
                     continue;
@@ -182,11 +553,9 @@ public class Server {
 
                   Socket nodeSocket = sensorNodes.get(targetNode);
                   if (nodeSocket != null && !nodeSocket.isClosed()) {
-                    PrintWriter nodeOut = new PrintWriter(nodeSocket.getOutputStream(), true);
-
                     JsonObject requestObj = new JsonObject();
                     requestObj.addProperty("messageType", "REQUEST_STATE");
-                    nodeOut.println(requestObj.toString());
+                    sendLine(nodeSocket, requestObj.toString());
                     log("Server", "Requested state of %s from node", targetNode);
                   } else {
                     log("Server", "Requested node not connected: %s", targetNode);
@@ -196,8 +565,7 @@ public class Server {
 
                   Socket nodeSocket = sensorNodes.get(targetNode);
                   if (nodeSocket != null && !nodeSocket.isClosed()) {
-                    PrintWriter nodeOut = new PrintWriter(nodeSocket.getOutputStream(), true);
-                    nodeOut.println(inputLine);
+                    sendLine(nodeSocket, inputLine);
                     log("Server", "Forwarded ADD_SENSOR to node %s", targetNode);
                   } else {
                     log("Server", "Target node not connected: %s", targetNode);
@@ -207,51 +575,76 @@ public class Server {
 
                   Socket nodeSocket = sensorNodes.get(targetNode);
                   if (nodeSocket != null && !nodeSocket.isClosed()) {
-                    PrintWriter nodeOut = new PrintWriter(nodeSocket.getOutputStream(), true);
-                    nodeOut.println(inputLine);
+                    sendLine(nodeSocket, inputLine);
                     log("Server", "Forwarded REMOVE_SENSOR to node %s", targetNode);
                   } else {
                     log("Server", "Target node not connected: %s", targetNode);
                   }
+                } else if (SensorHistory.QUERY_TYPE.equals(mt)) {
+                  sendLine(socket, SensorHistory.answer(history, obj));
+                  log("Server", "Answered history query of %s for %s/%s",
+                      controlPanelIds.get(socket), obj.get("nodeID"), obj.get("sensorId"));
                 } else {
                   // Unknown control-panel message type; ignore or log
                   log("ControlPanel", "Unknown messageType: %s", mt);
                 }
               } catch (JsonSyntaxException e) {
-                log("ControlPanel", "Malformed JSON: %s", inputLine);
+                Log.warn("ControlPanel", "Malformed JSON: %s", inputLine);
               }
             } else {
               log("ControlPanel", "Non-JSON message ignored: %s", inputLine);
             }
           } else {
 
-            log("Node", "Received -> %s", inputLine);
+            Log.debug("Node", "Received -> %s", inputLine);
 
-            // Ensure control panels receive a messageType so they can handle it;
-            // add messageType if missing (merge into top-level JSON)
+            // Read only the routing fields in one streaming pass and forward the line as is;
+            // control panels need a messageType, so splice one in if it is missing
             String toSend = inputLine;
             String nodeIdForMsg = null;
-            if (inputLine.trim().startsWith("{")) {
-              try {
-                Gson gson = new Gson();
-                JsonObject obj = gson.fromJson(inputLine, JsonObject.class);
-                // Store last-known JSON for this node
-                if (obj != null && obj.has("nodeID") && !obj.get("nodeID").isJsonNull()) {
-                  String nid = obj.get("nodeID").getAsString();
-                  lastKnownNodeJson.put(nid, inputLine);
-                }
-                if (obj != null && !obj.has("messageType")) {
-                  obj.addProperty("messageType", "SENSOR_DATA_FROM_NODE");
-                }
-                if (obj != null && obj.has("nodeID") && !obj.get("nodeID").isJsonNull()) {
-                  nodeIdForMsg = obj.get("nodeID").getAsString();
+            String messageType = null;
+            MessageHeader header = inputLine.trim().startsWith("{")
+                ? MessageHeader.parse(inputLine) : null;
+            // header is null for non-JSON or malformed lines: keep the original message
+            if (header != null) {
+              messageType = header.getMessageType();
+              if (messageType == null) {
+                messageType = "SENSOR_DATA_FROM_NODE";
+                toSend = MessageHeader.withMessageType(inputLine, messageType);
+              }
+              if (header.getNodeId() != null) {
+                nodeIdForMsg = header.getNodeId();
+                if (NodeDelta.MESSAGE_TYPE.equals(messageType)) {
+                  // Patch the cached snapshot; deltas that do not follow it are not forwarded
+                  NodeDelta.Result result = NodeDelta.apply(lastKnownNodeJson, lastKnownNodeSeq,
+                      nodeIdForMsg, header.getSeq(), inputLine);
+                  if (result == NodeDelta.Result.GAP) {
+                    requestResync(nodeIdForMsg);
+                  }
+                  if (result != NodeDelta.Result.APPLIED) {
+                    continue;
+                  }
+                  journal.delta(nodeIdForMsg, header.getSeq(), inputLine);
+                  SensorHistory.record(history, nodeIdForMsg, inputLine);
+                } else if ("SENSOR_DATA_FROM_NODE".equals(messageType)) {
+                  // Store last-known JSON for this node; alerts and other messages are not
+                  // its state and would break the deltas patched onto it
+                  lastKnownNodeJson.put(nodeIdForMsg, new CachedSnapshot(inputLine));
+                  // Alerts and other messages from this node are routed like its last snapshot
+                  recordTopics(nodeIdForMsg, header);
+                  if (header.getSeq() >= 0) {
+                    lastKnownNodeSeq.put(nodeIdForMsg, header.getSeq());
+                  } else {
+                    lastKnownNodeSeq.remove(nodeIdForMsg);
+                  }
+                  resyncRequested = false;
+                  SensorHistory.record(history, nodeIdForMsg, inputLine);
+                  journal.snapshot(nodeIdForMsg,
+                      lastKnownNodeSeq.getOrDefault(nodeIdForMsg, -1L), inputLine);
                 }
-                toSend = gson.toJson(obj);
-              } catch (JsonSyntaxException ignored) {
-                // keep original message if not valid JSON
               }
             }
-            broadcastToControlPanels(toSend, nodeIdForMsg);
+            broadcastToControlPanels(toSend, nodeIdForMsg, messageType);
           }
         }
       } catch (IOException e) {
@@ -263,22 +656,84 @@ public class Server {
 
 
     /**
-     * Broadcast a message to all connected control panels, optionally filtering by nodeId
-     * subscription.
+     * Ask this node for a full snapshot after a gap in its delta sequence. Only asks once until
+     * the snapshot arrives.
+     *
+     * @param deltaNodeId node whose deltas could not be applied
+     */
+    private void requestResync(String deltaNodeId) {
+      if (resyncRequested) {
+        return;
+      }
+      resyncRequested = true;
+      JsonObject requestObj = new JsonObject();
+      requestObj.addProperty("messageType", "REQUEST_STATE");
+      try {
+        sendLine(socket, requestObj.toString());
+        Log.warn("Server", "Delta gap from node %s, requested a snapshot", deltaNodeId);
+      } catch (IOException e) {
+        Log.warn("Server", "Error requesting snapshot from node: %s", e.getMessage());
+      }
+    }
+
+    /**
+     * Read the next message from the client as a JSON line, whatever its framing.
+     *
+     * @return the next line, or null when the client disconnected
+     * @throws IOException if reading fails or a binary frame is invalid
+     */
+    private String readLine() throws IOException {
+      return frames != null ? frames.readLine() : in.readLine();
+    }
+
+    /**
+     * Broadcast a message to every connected control panel, regardless of subscriptions.
+     *
+     * @param message the message to broadcast
+     */
+    private void broadcastToControlPanels(String message) {
+      broadcastToControlPanels(message, null, null);
+    }
+
+    /**
+     * Broadcast a message about a node to the control panels subscribed to it.
      *
      * @param message the message to broadcast
-     * @param nodeId  the nodeId to filter subscriptions (if null, send to all)
+     * @param nodeId  the node the message is about (if null, send to all)
      */
     private void broadcastToControlPanels(String message, String nodeId) {
-      synchronized (controlPanels) {
-        for (Socket cpSocket : controlPanels) {
-          try {
-            // Broadcast node updates to all control panels (no subscription model in UI)
-            PrintWriter cpOut = new PrintWriter(cpSocket.getOutputStream(), true);
-            cpOut.println(message);
-          } catch (IOException e) {
-            log("Server", "Error sending to control panel: %s", cpSocket.getInetAddress());
+      broadcastToControlPanels(message, nodeId, null);
+    }
+
+    /**
+     * Broadcast a message about a node to the control panels subscribed to one of the node's
+     * topics (node id, location or sensor type) and to every panel without subscriptions.
+     *
+     * <p>Each panel only has the line queued on its own bounded buffer, so a stalled panel never
+     * blocks the calling handler; if the buffer is full the configured
+     * {@link SlowConsumerPolicy} decides what happens.
+     *
+     * @param message     the message to broadcast
+     * @param nodeId      the node the message is about (may be null)
+     * @param messageType the message's type; node snapshots and deltas are queued by node so the
+     *                    policy may drop or merge them (may be null)
+     */
+    private void broadcastToControlPanels(String message, String nodeId, String messageType) {
+      boolean snapshot = nodeId != null && "SENSOR_DATA_FROM_NODE".equals(messageType);
+      boolean delta = nodeId != null && NodeDelta.MESSAGE_TYPE.equals(messageType);
+      // Recipients come from the routing index, so uninterested panels are never visited
+      for (Socket cpSocket : subscribersFor(nodeId)) {
+        try {
+          ConnectionWriter writer = writers.get(cpSocket);
+          if (snapshot && writer != null) {
+            writer.sendSnapshot(nodeId, message);
+          } else if (delta && writer != null) {
+            writer.sendDelta(nodeId, message);
+          } else {
+            sendLine(cpSocket, message);
           }
+        } catch (IOException e) {
+          Log.warn("Server", "Error sending to control panel: %s", cpSocket.getInetAddress());
         }
       }
     }
@@ -290,11 +745,16 @@ public class Server {
       try {
         socket.close();
       } catch (IOException e) {
-        log("Server", "Error closing socket with %s", socket.getInetAddress());
+        Log.warn("Server", "Error closing socket with %s", socket.getInetAddress());
+      }
+      ConnectionWriter writer = writers.remove(socket);
+      if (writer != null) {
+        writer.close();
       }
       if (isControlPanel) {
         String cpId = controlPanelIds.remove(socket);
         controlPanels.remove(socket);
+        unsubscribeAll(socket);
         log("Server", "Control Panel removed: %s", cpId != null ? cpId : socket.getInetAddress());
         return;
       }
@@ -305,15 +765,18 @@ public class Server {
         // Clear any cached last-known JSON for this node so control panels
         // won't receive stale data after the node disconnects.
         lastKnownNodeJson.remove(nodeId);
+        lastKnownNodeSeq.remove(nodeId);
+        journal.removed(nodeId);
         log("Server", "Node removed: %s", nodeId);
         // Notify control panels that this node disconnected so they can update their cache/UI
         try {
-          com.google.gson.JsonObject outObj = new com.google.gson.JsonObject();
+          JsonObject outObj = new JsonObject();
           outObj.addProperty("messageType", "SENSOR_NODE_DISCONNECTED");
           outObj.addProperty("nodeID", nodeId);
-          String payload = new com.google.gson.Gson().toJson(outObj);
+          String payload = JsonCodec.gson().toJson(outObj);
           broadcastToControlPanels(payload, nodeId);
         } catch (Exception ignored) {}
+        nodeTopics.remove(nodeId);
       }
     }
 
@@ -0,0 +1,51 @@
+package network;
+
+/**
+ * What the server does when a control panel cannot keep up with the broadcast stream and its
+ * outbound buffer is full.
+ *
+ * <p>Selected with the system property {@code server.slowConsumer.policy}. Only control panel
+ * connections are subject to a policy; node connections keep the plain bounded queue.
+ */
+public enum SlowConsumerPolicy {
+
+  /**
+   * Make room by replacing queued deltas with the current snapshot of their node, then by dropping
+   * the oldest queued snapshot of the same node (or the oldest snapshot of any node if that node
+   * has none queued). A newer snapshot of a node drops the node's queued deltas.
+   */
+  DROP_OLDEST,
+
+  /**
+   * Keep at most one queued snapshot per node: a newer snapshot overwrites the pending one as soon
+   * as it arrives, so the panel only ever sees the latest state of a node it is behind on. When the
+   * queue is full, queued deltas are replaced by snapshots as with {@link #DROP_OLDEST}, and then
+   * the oldest snapshot of any node is dropped.
+   */
+  COALESCE_LATEST,
+
+  /**
+   * Disconnect the panel once its oldest queued line has waited longer than the configured lag
+   * limit. Until then, new lines that do not fit are dropped.
+   */
+  DISCONNECT;
+
+  /**
+   * Parse a policy name, falling back to a default for {@code null} or unknown values.
+   *
+   * @param name     policy name (case-insensitive)
+   * @param fallback policy to use if {@code name} is not recognised
+   * @return the matching policy or {@code fallback}
+   */
+  public static SlowConsumerPolicy parse(String name, SlowConsumerPolicy fallback) {
+    if (name == null) {
+      return fallback;
+    }
+    for (SlowConsumerPolicy p : values()) {
+      if (p.name().equalsIgnoreCase(name.trim())) {
+        return p;
+      }
+    }
+    return fallback;
+  }
+}
@@ -0,0 +1,75 @@
+package network;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for how often each {@link SlowConsumerPolicy} action fired.
+ *
+ * <p>One instance is shared by all control panel connections of a server; the counters are
+ * cumulative since server start.
+ */
+public class SlowConsumerStats {
+
+  private final AtomicLong droppedOldest = new AtomicLong();
+  private final AtomicLong coalesced = new AtomicLong();
+  private final AtomicLong disconnected = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+
+  void recordDroppedOldest() {
+    droppedOldest.incrementAndGet();
+  }
+
+  void recordCoalesced() {
+    coalesced.incrementAndGet();
+  }
+
+  void recordDisconnected() {
+    disconnected.incrementAndGet();
+  }
+
+  void recordRejected() {
+    rejected.incrementAndGet();
+  }
+
+  /**
+   * Get the number of queued snapshots dropped to make room for newer lines.
+   *
+   * @return drop-oldest count
+   */
+  public long getDroppedOldest() {
+    return droppedOldest.get();
+  }
+
+  /**
+   * Get the number of queued snapshots overwritten by a newer snapshot of the same node.
+   *
+   * @return coalesce count
+   */
+  public long getCoalesced() {
+    return coalesced.get();
+  }
+
+  /**
+   * Get the number of control panels disconnected for lagging too far behind.
+   *
+   * @return disconnect count
+   */
+  public long getDisconnected() {
+    return disconnected.get();
+  }
+
+  /**
+   * Get the number of new lines dropped because the buffer was full and nothing could be evicted.
+   *
+   * @return rejected line count
+   */
+  public long getRejected() {
+    return rejected.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("droppedOldest=%d coalesced=%d disconnected=%d rejected=%d",
+        getDroppedOldest(), getCoalesced(), getDisconnected(), getRejected());
+  }
+}
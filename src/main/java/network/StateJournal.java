@@ -0,0 +1,391 @@
+package network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import logging.Log;
+import storage.WriteAheadLog;
+
+/**
+ * Journal of the server's routing state: the last-known snapshot of every node and the control
+ * panel commands that were not delivered yet.
+ *
+ * <p>Every snapshot, applied delta and node removal is logged to a {@link WriteAheadLog}, as is
+ * every {@code ACTUATOR_COMMAND} and {@code TARGET_UPDATE} when it arrives and again when it was
+ * handed to its node. After a restart, replay rebuilds the last-known cache, so control panels get
+ * immediate {@code REQUEST_NODE} answers, and commands that never reached their node are sent to
+ * it when it reconnects, unless they are older than the command time-to-live.
+ *
+ * <p>Configured with system properties:
+ *
+ * <ul>
+ *   <li>{@code server.journal.dir}: directory of the log; unset disables the journal</li>
+ *   <li>{@code server.journal.syncMillis}: group commit interval (default 50)</li>
+ *   <li>{@code server.journal.compactBytes}: log size after which it is compacted to a
+ *   checkpoint of the current state (default 8 MiB)</li>
+ *   <li>{@code server.journal.commandTtlMillis}: how long an undelivered command is kept
+ *   (default 60000)</li>
+ * </ul>
+ *
+ * <p>A disabled journal logs nothing and keeps no commands, which is the server's behaviour
+ * without it.
+ */
+public final class StateJournal {
+
+  /**
+   * A command waiting to be delivered to its node.
+   *
+   * @param id         journal id of the command
+   * @param nodeId     target node
+   * @param timeMillis when the command arrived
+   * @param line       the command as received
+   */
+  public record Command(long id, String nodeId, long timeMillis, String line) {
+  }
+
+  private static final byte SNAPSHOT = 1;
+  private static final byte DELTA = 2;
+  private static final byte REMOVE = 3;
+  private static final byte COMMAND = 4;
+  private static final byte DELIVERED = 5;
+
+  private final Map<String, CachedSnapshot> snapshots;
+  private final Map<String, Long> seqs;
+  // Undelivered commands by id, which is also arrival order
+  private final Map<Long, Command> pending = new ConcurrentSkipListMap<>();
+  private final AtomicLong nextCommandId = new AtomicLong(1);
+  private final long commandTtlMillis;
+  private WriteAheadLog wal;
+  private volatile boolean closed;
+
+  private StateJournal(Map<String, CachedSnapshot> snapshots, Map<String, Long> seqs,
+      long commandTtlMillis) {
+    this.snapshots = snapshots;
+    this.seqs = seqs;
+    this.commandTtlMillis = commandTtlMillis;
+  }
+
+  /**
+   * Create a journal that logs nothing.
+   *
+   * @return disabled journal
+   */
+  static StateJournal disabled() {
+    return new StateJournal(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), 0);
+  }
+
+  /**
+   * Open the journal configured by the {@code server.journal.*} properties and replay it into
+   * the given caches. Returns a disabled journal if no directory is configured or it cannot be
+   * opened.
+   *
+   * @param snapshots last-known node snapshot by node id
+   * @param seqs      sequence number of each cached snapshot
+   * @return the journal
+   */
+  static StateJournal open(Map<String, CachedSnapshot> snapshots, Map<String, Long> seqs) {
+    String dir = System.getProperty("server.journal.dir");
+    if (dir == null || dir.isBlank()) {
+      return disabled();
+    }
+    try {
+      StateJournal journal = open(Path.of(dir), snapshots, seqs,
+          Long.getLong("server.journal.syncMillis", 50),
+          Long.getLong("server.journal.compactBytes", 8L * 1024 * 1024),
+          Long.getLong("server.journal.commandTtlMillis", 60_000));
+      Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "journal-close"));
+      return journal;
+    } catch (IOException | RuntimeException e) {
+      Log.warn("Server", "Could not open journal in %s, running without it: %s", dir,
+          e.getMessage());
+      return disabled();
+    }
+  }
+
+  /**
+   * Open a journal in a directory and replay it into the given caches.
+   *
+   * @param dir              directory of the log
+   * @param snapshots        last-known node snapshot by node id
+   * @param seqs             sequence number of each cached snapshot
+   * @param syncMillis       group commit interval; 0 syncs every record
+   * @param compactBytes     log size after which it is compacted; 0 never
+   * @param commandTtlMillis how long an undelivered command is kept
+   * @return the journal
+   * @throws IOException if the log cannot be read
+   */
+  static StateJournal open(Path dir, Map<String, CachedSnapshot> snapshots, Map<String, Long> seqs,
+      long syncMillis, long compactBytes, long commandTtlMillis) throws IOException {
+    StateJournal journal = new StateJournal(snapshots, seqs, commandTtlMillis);
+    journal.wal = WriteAheadLog.open(dir, syncMillis, compactBytes, journal::replay,
+        journal::writeState);
+    Log.info("Server", "Journal replayed: %d node snapshot(s), %d undelivered command(s)",
+        snapshots.size(), journal.pending.size());
+    return journal;
+  }
+
+  /**
+   * Log a full snapshot that replaced the cached state of a node.
+   *
+   * @param nodeId node id
+   * @param seq    snapshot sequence number, or -1 if it has none
+   * @param line   the snapshot as cached
+   */
+  void snapshot(String nodeId, long seq, String line) {
+    if (wal != null) {
+      append(SNAPSHOT, out -> {
+        writeString(out, nodeId);
+        out.writeLong(seq);
+        writeString(out, line);
+      });
+    }
+  }
+
+  /**
+   * Log a delta that was applied to the cached state of a node.
+   *
+   * @param nodeId node id
+   * @param seq    delta sequence number
+   * @param line   the delta as received
+   */
+  void delta(String nodeId, long seq, String line) {
+    if (wal != null) {
+      append(DELTA, out -> {
+        writeString(out, nodeId);
+        out.writeLong(seq);
+        writeString(out, line);
+      });
+    }
+  }
+
+  /**
+   * Log that a node's cached state was removed.
+   *
+   * @param nodeId node id
+   */
+  void removed(String nodeId) {
+    if (wal != null) {
+      append(REMOVE, out -> writeString(out, nodeId));
+    }
+  }
+
+  /**
+   * Log a command from a control panel and keep it until {@link #delivered(long)}.
+   *
+   * @param nodeId target node
+   * @param line   the command as received
+   * @return journal id of the command, or -1 if the journal is disabled
+   */
+  long command(String nodeId, String line) {
+    if (wal == null) {
+      return -1;
+    }
+    Command c = new Command(nextCommandId.getAndIncrement(), nodeId, System.currentTimeMillis(),
+        line);
+    pending.put(c.id(), c);
+    append(COMMAND, out -> writeCommand(out, c));
+    return c.id();
+  }
+
+  /**
+   * Claim a command for delivery to its node and log that it was delivered. Only the caller
+   * that gets true sends it, so a command is not sent twice when its node connects while the
+   * command is being forwarded.
+   *
+   * @param id journal id of the command, or -1 for a command that was not journaled
+   * @return true if the caller should send the command
+   */
+  boolean delivered(long id) {
+    if (id < 0) {
+      return true;
+    }
+    if (pending.remove(id) == null) {
+      return false;
+    }
+    append(DELIVERED, out -> out.writeLong(id));
+    return true;
+  }
+
+  /**
+   * Get the undelivered commands for a node, oldest first. Commands past their time-to-live are
+   * dropped.
+   *
+   * @param nodeId target node
+   * @return commands to send, each to be confirmed with {@link #delivered(long)}
+   */
+  List<Command> pendingFor(String nodeId) {
+    List<Command> result = new ArrayList<>();
+    long expired = System.currentTimeMillis() - commandTtlMillis;
+    for (Iterator<Command> it = pending.values().iterator(); it.hasNext(); ) {
+      Command c = it.next();
+      if (c.timeMillis() < expired) {
+        it.remove();
+        // Logged like a delivery so replay drops it as well
+        append(DELIVERED, out -> out.writeLong(c.id()));
+      } else if (c.nodeId().equals(nodeId)) {
+        result.add(c);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Get the bytes not yet synced by group commit.
+   *
+   * @return unsynced bytes, 0 for a disabled journal
+   */
+  long unsynced() {
+    return wal != null ? wal.unsynced() : 0;
+  }
+
+  /**
+   * Sync every logged record.
+   *
+   * @throws IOException if syncing fails
+   */
+  void sync() throws IOException {
+    if (wal != null) {
+      wal.sync();
+    }
+  }
+
+  /**
+   * Compact the log to a checkpoint of the current state.
+   *
+   * @throws IOException if writing the checkpoint fails
+   */
+  void checkpoint() throws IOException {
+    if (wal != null) {
+      wal.checkpoint();
+    }
+  }
+
+  /**
+   * Sync and close the log. Later records are not logged.
+   */
+  void close() {
+    if (wal != null && !closed) {
+      closed = true;
+      try {
+        wal.close();
+      } catch (IOException e) {
+        Log.warn("Server", "Could not close journal: %s", e.getMessage());
+      }
+    }
+  }
+
+  private interface RecordWriter {
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  private void append(byte type, RecordWriter body) {
+    if (closed) {
+      // Shutting down: nodes disconnecting now must not erase the journaled state
+      return;
+    }
+    try {
+      wal.append(encode(type, body));
+    } catch (IOException e) {
+      Log.warn("Server", "Journal write failed: %s", e.getMessage());
+    }
+  }
+
+  private static byte[] encode(byte type, RecordWriter body) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(type);
+    body.write(out);
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Write the cached snapshots and undelivered commands; replaying them alone gives the current
+   * state.
+   */
+  private void writeState(Consumer<byte[]> out) {
+    try {
+      for (Map.Entry<String, CachedSnapshot> e : snapshots.entrySet()) {
+        long seq = seqs.getOrDefault(e.getKey(), -1L);
+        out.accept(encode(SNAPSHOT, o -> {
+          writeString(o, e.getKey());
+          o.writeLong(seq);
+          writeString(o, e.getValue().line());
+        }));
+      }
+      for (Command c : pending.values()) {
+        out.accept(encode(COMMAND, o -> writeCommand(o, c)));
+      }
+    } catch (IOException e) {
+      // Writing to a byte array does not fail
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void replay(ByteBuffer record) {
+    try {
+      switch (record.get()) {
+        case SNAPSHOT -> {
+          String nodeId = readString(record);
+          long seq = record.getLong();
+          snapshots.put(nodeId, new CachedSnapshot(readString(record)));
+          if (seq >= 0) {
+            seqs.put(nodeId, seq);
+          } else {
+            seqs.remove(nodeId);
+          }
+        }
+        case DELTA -> {
+          String nodeId = readString(record);
+          long seq = record.getLong();
+          NodeDelta.apply(snapshots, seqs, nodeId, seq, readString(record));
+        }
+        case REMOVE -> {
+          String nodeId = readString(record);
+          snapshots.remove(nodeId);
+          seqs.remove(nodeId);
+        }
+        case COMMAND -> {
+          Command c = new Command(record.getLong(), readString(record), record.getLong(),
+              readString(record));
+          pending.put(c.id(), c);
+          nextCommandId.accumulateAndGet(c.id() + 1, Math::max);
+        }
+        case DELIVERED -> pending.remove(record.getLong());
+        default -> Log.warn("Server", "Unknown journal record skipped");
+      }
+    } catch (RuntimeException e) {
+      Log.warn("Server", "Damaged journal record skipped: %s", e.getMessage());
+    }
+  }
+
+  private static void writeCommand(DataOutputStream out, Command c) throws IOException {
+    out.writeLong(c.id());
+    writeString(out, c.nodeId());
+    out.writeLong(c.timeMillis());
+    writeString(out, c.line());
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
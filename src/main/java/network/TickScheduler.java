@@ -0,0 +1,88 @@
+package network;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import logging.Log;
+
+/**
+ * Runs the periodic control-loop ticks of many nodes on a few shared threads.
+ *
+ * <p>Each node used to sleep in its own thread between ticks; hosting hundreds of simulated nodes
+ * in one process then costs hundreds of idle threads. Here every node's tick is a fixed-rate task
+ * on one {@link ScheduledThreadPoolExecutor} sized to the number of cores. The first tick of each
+ * node is delayed by a random offset within one period, so the nodes spread over the period
+ * instead of all firing on the same millisecond.
+ *
+ * <p>A tick must not block: ticks of other nodes wait while a pool thread is busy.
+ */
+public class TickScheduler {
+
+  private static final TickScheduler SHARED =
+      new TickScheduler(Runtime.getRuntime().availableProcessors());
+
+  private final ScheduledThreadPoolExecutor executor;
+
+  /**
+   * Create a scheduler with its own daemon threads.
+   *
+   * @param threads number of threads running ticks
+   * @throws IllegalArgumentException if {@code threads} is less than 1
+   */
+  public TickScheduler(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Tick scheduler needs at least one thread");
+    }
+    AtomicInteger count = new AtomicInteger();
+    this.executor = new ScheduledThreadPoolExecutor(threads, r -> {
+      Thread t = new Thread(r, "NodeClient-Tick-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+    // Cancelled nodes should not linger in the queue until their next tick was due
+    executor.setRemoveOnCancelPolicy(true);
+  }
+
+  /**
+   * Get the scheduler shared by all nodes in this JVM.
+   *
+   * @return shared scheduler, one thread per core
+   */
+  public static TickScheduler shared() {
+    return SHARED;
+  }
+
+  /**
+   * Run a tick every {@code periodMillis}, starting after a random delay within one period.
+   *
+   * <p>Exceptions thrown by the tick are caught and logged so they do not cancel later ticks.
+   *
+   * @param name         name used when logging a failed tick
+   * @param tick         task to run on every tick
+   * @param periodMillis interval between ticks in milliseconds
+   * @return handle to cancel the ticks with
+   * @throws IllegalArgumentException if {@code periodMillis} is not positive
+   */
+  public ScheduledFuture<?> schedule(String name, Runnable tick, long periodMillis) {
+    if (periodMillis <= 0) {
+      throw new IllegalArgumentException("Tick period must be positive");
+    }
+    long jitter = ThreadLocalRandom.current().nextLong(periodMillis);
+    return executor.scheduleAtFixedRate(() -> {
+      try {
+        tick.run();
+      } catch (RuntimeException e) {
+        Log.warn("TickScheduler", "Tick of %s failed: %s", name, e.getMessage());
+      }
+    }, jitter, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop running ticks. Ticks already running are allowed to finish.
+   */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
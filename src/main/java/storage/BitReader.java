@@ -0,0 +1,58 @@
+package storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads bits most significant bit first from a region of a {@link ByteBuffer}, as written by
+ * {@link BitWriter}. Uses absolute reads, so the buffer's position is left alone and one buffer
+ * can be read by several readers at once.
+ */
+final class BitReader {
+
+  private final ByteBuffer buffer;
+  private final int offset;
+  private long position;
+
+  /**
+   * Read from {@code buffer} starting at byte {@code offset}.
+   *
+   * @param buffer bytes to read
+   * @param offset index of the first byte
+   */
+  BitReader(ByteBuffer buffer, int offset) {
+    this.buffer = buffer;
+    this.offset = offset;
+  }
+
+  /**
+   * Read one bit.
+   *
+   * @return true for a 1 bit
+   */
+  boolean readBit() {
+    int b = buffer.get(offset + (int) (position >>> 3));
+    boolean set = (b & (0x80 >>> (position & 7))) != 0;
+    position++;
+    return set;
+  }
+
+  /**
+   * Read {@code count} bits.
+   *
+   * @param count number of bits, 0 to 64
+   * @return the bits, right-aligned
+   */
+  long read(int count) {
+    long result = 0;
+    while (count > 0) {
+      int b = buffer.get(offset + (int) (position >>> 3)) & 0xFF;
+      int available = 8 - (int) (position & 7);
+      int take = Math.min(available, count);
+      long chunk = (b >>> (available - take)) & ((1 << take) - 1);
+      result = (result << take) | chunk;
+      position += take;
+      count -= take;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,62 @@
+package storage;
+
+import java.util.Arrays;
+
+/**
+ * Growable bit buffer that writes values most significant bit first.
+ */
+final class BitWriter {
+
+  private long[] words = new long[8];
+  private long bits;
+
+  /**
+   * Append the lowest {@code count} bits of {@code value}.
+   *
+   * @param value bits to write, right-aligned
+   * @param count number of bits, 0 to 64
+   */
+  void write(long value, int count) {
+    if (count == 0) {
+      return;
+    }
+    if (count < 64) {
+      value &= (1L << count) - 1;
+    }
+    int index = (int) (bits >>> 6);
+    int free = 64 - (int) (bits & 63);
+    if (index + 1 >= words.length) {
+      words = Arrays.copyOf(words, words.length * 2);
+    }
+    if (count <= free) {
+      words[index] |= value << (free - count);
+    } else {
+      int rest = count - free;
+      words[index] |= value >>> rest;
+      words[index + 1] |= value << (64 - rest);
+    }
+    bits += count;
+  }
+
+  /**
+   * Get the number of bits written.
+   *
+   * @return length in bits
+   */
+  long bitLength() {
+    return bits;
+  }
+
+  /**
+   * Copy the bits written so far, padded with zero bits to whole bytes.
+   *
+   * @return the bits, big-endian
+   */
+  byte[] toByteArray() {
+    byte[] out = new byte[(int) ((bits + 7) >>> 3)];
+    for (int i = 0; i < out.length; i++) {
+      out[i] = (byte) (words[i >>> 3] >>> (56 - 8 * (i & 7)));
+    }
+    return out;
+  }
+}
@@ -0,0 +1,88 @@
+package storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compressed, immutable run of points of one series, as produced by {@link ChunkEncoder}.
+ *
+ * <p>The buffers are read with absolute gets only, so they may be slices of a larger buffer and
+ * may be decoded by several threads at once.
+ *
+ * @param firstTime timestamp of the first point in milliseconds
+ * @param lastTime  timestamp of the last point in milliseconds
+ * @param count     number of points
+ * @param times     delta-of-delta encoded timestamps
+ * @param values    XOR encoded values
+ */
+record Chunk(long firstTime, long lastTime, int count, ByteBuffer times, ByteBuffer values) {
+
+  /**
+   * Check whether the chunk may hold points in a time range.
+   *
+   * @param from start of the range in milliseconds, inclusive
+   * @param to   end of the range in milliseconds, inclusive
+   * @return true if the chunk's span overlaps the range
+   */
+  boolean overlaps(long from, long to) {
+    return count > 0 && firstTime <= to && lastTime >= from;
+  }
+
+  /**
+   * Decode the points within a time range into {@code out}.
+   *
+   * @param from start of the range in milliseconds, inclusive
+   * @param to   end of the range in milliseconds, inclusive
+   * @param out  receives the points in time order
+   * @return false if {@code out} filled up before the chunk was done
+   */
+  boolean decode(long from, long to, PointBuffer out) {
+    if (!overlaps(from, to)) {
+      return true;
+    }
+    BitReader t = new BitReader(times, times.position());
+    BitReader v = new BitReader(values, values.position());
+    long time = t.read(64);
+    long bits = v.read(64);
+    long delta = 0;
+    int leading = 0;
+    int trailing = 0;
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        delta += readDeltaOfDelta(t);
+        time += delta;
+        if (v.readBit()) {
+          if (v.readBit()) {
+            leading = (int) v.read(6);
+            int length = (int) v.read(6) + 1;
+            trailing = 64 - leading - length;
+          }
+          bits ^= v.read(64 - leading - trailing) << trailing;
+        }
+      }
+      if (time > to) {
+        return true;
+      }
+      if (time >= from && !out.add(time, Double.longBitsToDouble(bits))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long readDeltaOfDelta(BitReader in) {
+    int width;
+    if (!in.readBit()) {
+      return 0;
+    } else if (!in.readBit()) {
+      width = 8;
+    } else if (!in.readBit()) {
+      width = 12;
+    } else if (!in.readBit()) {
+      width = 20;
+    } else {
+      width = 64;
+    }
+    long z = in.read(width);
+    return (z >>> 1) ^ -(z & 1);
+  }
+}
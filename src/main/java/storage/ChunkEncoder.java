@@ -0,0 +1,116 @@
+package storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses the points of one series into the open chunk, Gorilla style, with timestamps and
+ * values in separate columns.
+ *
+ * <p>Timestamps: the first is stored in 64 bits; every later one as the zigzag-encoded change of
+ * the gap to its predecessor (delta-of-delta), in 1 bit when the gap is unchanged and in 10, 15,
+ * 24 or 68 bits otherwise. Readings that arrive on a steady tick therefore take a bit or two.
+ *
+ * <p>Values: the first is stored as its 64 IEEE bits; every later one as the XOR with its
+ * predecessor: 1 bit if equal, otherwise the meaningful (non-zero) bits of the XOR, reusing the
+ * previous leading/trailing-zero window when they fit in it. Slowly changing readings share most
+ * of their bits, so they compress to a fraction of 8 bytes.
+ */
+final class ChunkEncoder {
+
+  private final BitWriter times = new BitWriter();
+  private final BitWriter values = new BitWriter();
+  private int count;
+  private long firstTime;
+  private long lastTime;
+  private long lastDelta;
+  private long lastValueBits;
+  private int leading = -1;
+  private int trailing;
+
+  /**
+   * Append a point.
+   *
+   * @param time  timestamp in milliseconds; must not be before the previous point's
+   * @param value reading
+   * @return false if {@code time} is before the previous point's and nothing was added
+   */
+  boolean append(long time, double value) {
+    long bits = Double.doubleToRawLongBits(value);
+    if (count == 0) {
+      times.write(time, 64);
+      values.write(bits, 64);
+      firstTime = time;
+    } else {
+      if (time < lastTime) {
+        return false;
+      }
+      long delta = time - lastTime;
+      writeDeltaOfDelta(delta - lastDelta);
+      lastDelta = delta;
+      writeXor(bits ^ lastValueBits);
+    }
+    lastTime = time;
+    lastValueBits = bits;
+    count++;
+    return true;
+  }
+
+  private void writeDeltaOfDelta(long dod) {
+    long z = (dod << 1) ^ (dod >> 63);
+    if (z == 0) {
+      times.write(0b0, 1);
+    } else if (z < 1L << 8) {
+      times.write(0b10, 2);
+      times.write(z, 8);
+    } else if (z < 1L << 12) {
+      times.write(0b110, 3);
+      times.write(z, 12);
+    } else if (z < 1L << 20) {
+      times.write(0b1110, 4);
+      times.write(z, 20);
+    } else {
+      times.write(0b1111, 4);
+      times.write(z, 64);
+    }
+  }
+
+  private void writeXor(long xor) {
+    if (xor == 0) {
+      values.write(0b0, 1);
+      return;
+    }
+    int lead = Long.numberOfLeadingZeros(xor);
+    int trail = Long.numberOfTrailingZeros(xor);
+    if (leading >= 0 && lead >= leading && trail >= trailing) {
+      values.write(0b10, 2);
+      values.write(xor >>> trailing, 64 - leading - trailing);
+    } else {
+      int length = 64 - lead - trail;
+      values.write(0b11, 2);
+      values.write(lead, 6);
+      values.write(length - 1, 6);
+      values.write(xor >>> trail, length);
+      leading = lead;
+      trailing = trail;
+    }
+  }
+
+  /**
+   * Get the number of points in the chunk.
+   *
+   * @return point count
+   */
+  int count() {
+    return count;
+  }
+
+  /**
+   * Copy the points so far into an immutable chunk. The encoder can keep appending afterwards.
+   *
+   * @return chunk with the current points
+   */
+  Chunk toChunk() {
+    return new Chunk(firstTime, lastTime, count, ByteBuffer.wrap(times.toByteArray()),
+        ByteBuffer.wrap(values.toByteArray()));
+  }
+}
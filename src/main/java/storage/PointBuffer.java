@@ -0,0 +1,57 @@
+package storage;
+
+import java.util.Arrays;
+
+/**
+ * Collects decoded points up to a limit.
+ */
+final class PointBuffer {
+
+  private final int limit;
+  private long[] times = new long[16];
+  private double[] values = new double[16];
+  private int size;
+  private boolean truncated;
+
+  /**
+   * Create a buffer that holds at most {@code limit} points.
+   *
+   * @param limit maximum number of points
+   */
+  PointBuffer(int limit) {
+    this.limit = limit;
+  }
+
+  /**
+   * Add a point.
+   *
+   * @param time  timestamp in milliseconds
+   * @param value reading
+   * @return false if the buffer is full; the point was not added
+   */
+  boolean add(long time, double value) {
+    if (size == limit) {
+      truncated = true;
+      return false;
+    }
+    if (size == times.length) {
+      int grown = (int) Math.min(limit, times.length * 2L);
+      times = Arrays.copyOf(times, grown);
+      values = Arrays.copyOf(values, grown);
+    }
+    times[size] = time;
+    values[size] = value;
+    size++;
+    return true;
+  }
+
+  /**
+   * Get the collected points.
+   *
+   * @return points in the order added
+   */
+  TimeSeriesStore.Points toPoints() {
+    return new TimeSeriesStore.Points(Arrays.copyOf(times, size), Arrays.copyOf(values, size),
+        truncated);
+  }
+}
@@ -0,0 +1,241 @@
+package storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import logging.Log;
+
+/**
+ * One fixed-size segment file, memory-mapped for its whole length.
+ *
+ * <p>The file starts with an index header that is rewritten after every append:
+ *
+ * <pre>
+ * int  magic "TSDB"     int  version
+ * int  bytes used       int  record count
+ * long first timestamp  long last timestamp   (over all points in the segment)
+ * </pre>
+ *
+ * <p>followed by one record per chunk, each with its own series header:
+ *
+ * <pre>
+ * int    body length
+ * int    CRC-32 of the body
+ * body:  nodeId (u16 length + UTF-8), sensorId (u16 length + UTF-8),
+ *        int count, long firstTime, long lastTime,
+ *        int timesLength, times bytes, int valuesLength, values bytes
+ * </pre>
+ *
+ * <p>Chunks handed out by {@link #append} and {@link #open} are slices of the mapping, so queries
+ * decode straight from the page cache without copying. Not thread-safe; {@link SegmentLog}
+ * serializes access.
+ */
+final class Segment {
+
+  static final int HEADER_BYTES = 32;
+  private static final int MAGIC = 0x54534442; // "TSDB"
+  private static final int VERSION = 2;
+  private static final int USED = 8;
+  private static final int RECORDS = 12;
+  private static final int MIN_TIME = 16;
+  private static final int MAX_TIME = 24;
+
+  private final Path path;
+  private final MappedByteBuffer map;
+  private final CRC32 crc = new CRC32();
+  private int used;
+  private int records;
+  private long minTime = Long.MAX_VALUE;
+  private long maxTime = Long.MIN_VALUE;
+
+  private Segment(Path path, MappedByteBuffer map) {
+    this.path = path;
+    this.map = map;
+  }
+
+  /**
+   * Create and map a new, empty segment file.
+   *
+   * @param path  file to create; must not exist
+   * @param bytes file size
+   * @return the segment
+   * @throws IOException if the file cannot be created or mapped
+   */
+  static Segment create(Path path, int bytes) throws IOException {
+    try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+      Segment segment = new Segment(path, map);
+      segment.map.putInt(0, MAGIC).putInt(4, VERSION);
+      segment.used = HEADER_BYTES;
+      segment.writeHeader();
+      return segment;
+    }
+  }
+
+  /**
+   * Map an existing segment file and hand every intact chunk to {@code loader}. Records after the
+   * first damaged one are the tail of a write cut short; they are dropped and overwritten by the
+   * next append.
+   *
+   * @param path   segment file
+   * @param loader receives the chunks, in the order they were written
+   * @return the segment
+   * @throws IOException if the file cannot be mapped or is not a segment file
+   */
+  static Segment open(Path path, SegmentLog.Loader loader) throws IOException {
+    MappedByteBuffer map;
+    try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ,
+        StandardOpenOption.WRITE)) {
+      long size = ch.size();
+      if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+        throw new IOException("Not a segment file: " + path);
+      }
+      map = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+    if (map.getInt(0) != MAGIC || map.getInt(4) != VERSION) {
+      throw new IOException("Not a segment file: " + path);
+    }
+    Segment segment = new Segment(path, map);
+    int end = Math.min(Math.max(map.getInt(USED), HEADER_BYTES), map.capacity());
+    int position = HEADER_BYTES;
+    while (position + 8 <= end) {
+      int bodyLength = map.getInt(position);
+      if (bodyLength <= 0 || bodyLength > end - position - 8) {
+        break;
+      }
+      segment.crc.reset();
+      segment.crc.update(map.slice(position + 8, bodyLength));
+      if ((int) segment.crc.getValue() != map.getInt(position + 4)) {
+        break;
+      }
+      segment.load(position + 8, bodyLength, loader);
+      position += 8 + bodyLength;
+    }
+    segment.used = position;
+    if (position != map.getInt(USED)) {
+      Log.warn("Storage", "Dropping records of %s after byte %d: damaged or incomplete", path,
+          position);
+    }
+    segment.writeHeader();
+    return segment;
+  }
+
+  private void load(int position, int length, SegmentLog.Loader loader) {
+    ByteBuffer body = map.slice(position, length);
+    String nodeId = readString(body);
+    String sensorId = readString(body);
+    int count = body.getInt();
+    long first = body.getLong();
+    long last = body.getLong();
+    ByteBuffer times = slice(body, body.getInt());
+    ByteBuffer values = slice(body, body.getInt());
+    Chunk chunk = new Chunk(first, last, count, times, values);
+    include(chunk);
+    records++;
+    loader.chunk(nodeId, sensorId, chunk);
+  }
+
+  /**
+   * Append a chunk if it fits.
+   *
+   * @param nodeId   node of the series
+   * @param sensorId sensor of the series
+   * @param chunk    chunk to store
+   * @return the stored chunk, backed by the mapping, or {@code null} if the segment is too full
+   */
+  Chunk append(String nodeId, String sensorId, Chunk chunk) {
+    byte[] node = nodeId.getBytes(StandardCharsets.UTF_8);
+    byte[] sensor = sensorId.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer times = chunk.times().duplicate();
+    ByteBuffer values = chunk.values().duplicate();
+    int bodyLength = 2 + node.length + 2 + sensor.length + 4 + 8 + 8
+        + 4 + times.remaining() + 4 + values.remaining();
+    if (8L + bodyLength > map.capacity() - used) {
+      return null;
+    }
+    ByteBuffer record = map.slice(used, 8 + bodyLength);
+    record.position(8);
+    record.putShort((short) node.length).put(node);
+    record.putShort((short) sensor.length).put(sensor);
+    record.putInt(chunk.count()).putLong(chunk.firstTime()).putLong(chunk.lastTime());
+    record.putInt(times.remaining());
+    ByteBuffer storedTimes = record.slice(record.position(), times.remaining());
+    record.put(times);
+    record.putInt(values.remaining());
+    ByteBuffer storedValues = record.slice(record.position(), values.remaining());
+    record.put(values);
+    crc.reset();
+    crc.update(record.slice(8, bodyLength));
+    record.putInt(0, bodyLength).putInt(4, (int) crc.getValue());
+
+    Chunk stored = new Chunk(chunk.firstTime(), chunk.lastTime(), chunk.count(), storedTimes,
+        storedValues);
+    used += 8 + bodyLength;
+    records++;
+    include(stored);
+    // The header is the commit point: a record past "used" is ignored on open
+    writeHeader();
+    return stored;
+  }
+
+  private void include(Chunk chunk) {
+    if (chunk.count() > 0) {
+      minTime = Math.min(minTime, chunk.firstTime());
+      maxTime = Math.max(maxTime, chunk.lastTime());
+    }
+  }
+
+  private void writeHeader() {
+    map.putInt(USED, used).putInt(RECORDS, records).putLong(MIN_TIME, minTime)
+        .putLong(MAX_TIME, maxTime);
+  }
+
+  /**
+   * Write the mapped pages to the storage device.
+   */
+  void force() {
+    map.force();
+  }
+
+  /**
+   * Delete the file. The mapping, and with it any chunk still referring to it, stays readable
+   * until it is garbage collected.
+   *
+   * @throws IOException if the file cannot be deleted
+   */
+  void delete() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  Path path() {
+    return path;
+  }
+
+  /**
+   * Get the newest timestamp in the segment.
+   *
+   * @return last timestamp, or {@link Long#MIN_VALUE} if the segment is empty
+   */
+  long maxTime() {
+    return maxTime;
+  }
+
+  private static String readString(ByteBuffer data) {
+    byte[] bytes = new byte[data.getShort() & 0xFFFF];
+    data.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static ByteBuffer slice(ByteBuffer data, int length) {
+    ByteBuffer slice = data.slice(data.position(), length);
+    data.position(data.position() + length);
+    return slice;
+  }
+}
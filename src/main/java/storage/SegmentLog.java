@@ -0,0 +1,181 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import logging.Log;
+
+/**
+ * Append-only log of sealed chunks in fixed-size, memory-mapped {@link Segment} files.
+ *
+ * <p>A directory holds {@code segment-00000001.tsdb}, {@code segment-00000002.tsdb} and so on,
+ * each exactly {@code segmentBytes} long. Chunks are only ever appended; when one does not fit
+ * into the current segment a new one is started. Whole segments are retired once every point in
+ * them is older than the retention cutoff.
+ */
+final class SegmentLog implements Closeable {
+
+  /**
+   * Receives the chunks read back when a log is opened.
+   */
+  interface Loader {
+    /**
+     * Take one chunk read from disk.
+     *
+     * @param nodeId   node of the series
+     * @param sensorId sensor of the series
+     * @param chunk    the chunk, backed by the segment's mapping
+     */
+    void chunk(String nodeId, String sensorId, Chunk chunk);
+  }
+
+  private static final String PREFIX = "segment-";
+  private static final String SUFFIX = ".tsdb";
+
+  private final Path dir;
+  private final int segmentBytes;
+  private final List<Segment> segments = new ArrayList<>();
+  private Segment current;
+  private int lastIndex;
+  private boolean closed;
+
+  private SegmentLog(Path dir, int segmentBytes) {
+    this.dir = dir;
+    this.segmentBytes = segmentBytes;
+  }
+
+  /**
+   * Open the segment files in a directory, creating it if needed, and read back every chunk.
+   *
+   * @param dir          directory of the segment files
+   * @param segmentBytes size of each segment file
+   * @param loader       receives the stored chunks, oldest segment first
+   * @return the log, ready to append to
+   * @throws IOException if the directory or a segment cannot be read
+   * @throws IllegalArgumentException if {@code segmentBytes} is too small or above 2 GiB
+   */
+  static SegmentLog open(Path dir, long segmentBytes, Loader loader) throws IOException {
+    if (segmentBytes <= Segment.HEADER_BYTES || segmentBytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid segment size: " + segmentBytes);
+    }
+    Files.createDirectories(dir);
+    SegmentLog log = new SegmentLog(dir, (int) segmentBytes);
+    for (Path file : segmentFiles(dir)) {
+      log.segments.add(Segment.open(file, loader));
+      log.lastIndex = indexOf(file);
+    }
+    if (!log.segments.isEmpty()) {
+      log.current = log.segments.get(log.segments.size() - 1);
+    }
+    return log;
+  }
+
+  /**
+   * Append a sealed chunk, starting a new segment if it does not fit into the current one.
+   *
+   * @param nodeId   node of the series
+   * @param sensorId sensor of the series
+   * @param chunk    chunk to store
+   * @return the stored chunk, backed by the segment's mapping
+   * @throws IOException if a segment cannot be created, the chunk is larger than a segment or
+   *     the log is closed
+   */
+  synchronized Chunk append(String nodeId, String sensorId, Chunk chunk) throws IOException {
+    if (closed) {
+      throw new IOException("Segment log is closed");
+    }
+    Chunk stored = current != null ? current.append(nodeId, sensorId, chunk) : null;
+    if (stored == null) {
+      roll();
+      stored = current.append(nodeId, sensorId, chunk);
+      if (stored == null) {
+        throw new IOException("Chunk of " + nodeId + "/" + sensorId + " does not fit into a "
+            + segmentBytes + " byte segment");
+      }
+    }
+    return stored;
+  }
+
+  private void roll() throws IOException {
+    if (current != null) {
+      current.force();
+    }
+    lastIndex++;
+    Path file = dir.resolve(String.format("%s%08d%s", PREFIX, lastIndex, SUFFIX));
+    current = Segment.create(file, segmentBytes);
+    segments.add(current);
+  }
+
+  /**
+   * Delete the segments whose newest point is older than {@code cutoffMillis}. The segment being
+   * appended to is kept.
+   *
+   * @param cutoffMillis oldest timestamp to keep
+   * @return number of segments deleted
+   */
+  synchronized int retire(long cutoffMillis) {
+    int retired = 0;
+    for (Iterator<Segment> it = segments.iterator(); it.hasNext(); ) {
+      Segment segment = it.next();
+      if (segment == current || segment.maxTime() >= cutoffMillis) {
+        continue;
+      }
+      try {
+        segment.delete();
+        it.remove();
+        retired++;
+      } catch (IOException e) {
+        Log.warn("Storage", "Could not delete %s: %s", segment.path(), e.getMessage());
+      }
+    }
+    return retired;
+  }
+
+  /**
+   * Get the number of segment files.
+   *
+   * @return segment count
+   */
+  synchronized int segmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Write the current segment's pages to the storage device.
+   */
+  synchronized void force() {
+    if (current != null) {
+      current.force();
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    if (current != null) {
+      current.force();
+    }
+    current = null;
+    closed = true;
+  }
+
+  private static List<Path> segmentFiles(Path dir) throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (Stream<Path> list = Files.list(dir)) {
+      list.filter(p -> {
+        String name = p.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+      }).sorted().forEach(files::add);
+    }
+    return files;
+  }
+
+  private static int indexOf(Path file) {
+    String name = file.getFileName().toString();
+    return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+  }
+}
@@ -0,0 +1,351 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import logging.Log;
+
+/**
+ * Embedded time-series store for sensor readings, one series per (node id, sensor id).
+ *
+ * <p>Each series appends to an open chunk that compresses timestamps and values in separate
+ * columns ({@link ChunkEncoder}). After {@code chunkPoints} points the chunk is sealed: it becomes
+ * immutable and, for a store opened on a directory, is appended to the current memory-mapped
+ * segment file ({@link SegmentLog}) and from then on read from the mapping, so sealed history
+ * lives in the page cache rather than on the heap. Opening a directory maps the segments back,
+ * so history survives a restart; the points of open chunks are written when the store is closed.
+ *
+ * <p>With a retention period, chunks whose newest point is more than that period older than the
+ * newest point in the store are dropped, and segment files holding only such chunks are deleted.
+ * Retention is measured against the data rather than the wall clock, so a store fed with old
+ * timestamps is not emptied.
+ *
+ * <p>Thread-safe: appends and queries of one series are serialized on that series, different
+ * series proceed in parallel.
+ */
+public final class TimeSeriesStore implements Closeable {
+
+  /**
+   * Points of a chunk before it is sealed.
+   */
+  public static final int DEFAULT_CHUNK_POINTS = 512;
+
+  /**
+   * Size of each segment file.
+   */
+  public static final long DEFAULT_SEGMENT_BYTES = 16L * 1024 * 1024;
+
+  /**
+   * Result of a query: timestamps and values in time order.
+   *
+   * @param times     timestamps in milliseconds
+   * @param values    readings, one per timestamp
+   * @param truncated true if more points matched than the query's limit
+   */
+  public record Points(long[] times, double[] values, boolean truncated) {
+
+    /**
+     * Get the number of points.
+     *
+     * @return point count
+     */
+    public int size() {
+      return times.length;
+    }
+  }
+
+  private record Key(String nodeId, String sensorId) {
+  }
+
+  /**
+   * Sealed chunks, oldest first, and the open chunk of one series.
+   */
+  private static final class Series {
+    final List<Chunk> sealed = new ArrayList<>();
+    ChunkEncoder open;
+    long lastTime = Long.MIN_VALUE;
+  }
+
+  private final Map<Key, Series> series = new ConcurrentHashMap<>();
+  private final SegmentLog segments;
+  private final int chunkPoints;
+  private final long retentionMillis;
+  private final AtomicLong newestTime = new AtomicLong(Long.MIN_VALUE);
+  private final AtomicLong retiredBefore = new AtomicLong(Long.MIN_VALUE);
+
+  private TimeSeriesStore(SegmentLog segments, int chunkPoints, long retentionMillis) {
+    this.segments = segments;
+    this.chunkPoints = chunkPoints;
+    this.retentionMillis = retentionMillis;
+  }
+
+  /**
+   * Create a store that keeps everything in memory.
+   *
+   * @return empty store
+   */
+  public static TimeSeriesStore inMemory() {
+    return inMemory(DEFAULT_CHUNK_POINTS, 0);
+  }
+
+  /**
+   * Create a store that keeps everything in memory.
+   *
+   * @param chunkPoints     points per sealed chunk
+   * @param retentionMillis how far back from the newest point to keep history; 0 keeps all
+   * @return empty store
+   * @throws IllegalArgumentException if {@code chunkPoints} or {@code retentionMillis} is invalid
+   */
+  public static TimeSeriesStore inMemory(int chunkPoints, long retentionMillis) {
+    checkArguments(chunkPoints, retentionMillis);
+    return new TimeSeriesStore(null, chunkPoints, retentionMillis);
+  }
+
+  /**
+   * Open a store on a directory of segment files with the default sizes, keeping all history.
+   *
+   * @param dir directory; created if missing
+   * @return store with the history found in {@code dir}
+   * @throws IOException if the directory or a segment file cannot be read
+   */
+  public static TimeSeriesStore open(Path dir) throws IOException {
+    return open(dir, DEFAULT_CHUNK_POINTS, DEFAULT_SEGMENT_BYTES, 0);
+  }
+
+  /**
+   * Open a store on a directory of segment files.
+   *
+   * @param dir             directory; created if missing
+   * @param chunkPoints     points per sealed chunk
+   * @param segmentBytes    size of each segment file
+   * @param retentionMillis how far back from the newest point to keep history; 0 keeps all
+   * @return store with the history found in {@code dir}
+   * @throws IOException if the directory or a segment file cannot be read
+   * @throws IllegalArgumentException if a size is too small or the retention is negative
+   */
+  public static TimeSeriesStore open(Path dir, int chunkPoints, long segmentBytes,
+      long retentionMillis) throws IOException {
+    checkArguments(chunkPoints, retentionMillis);
+    Map<Key, List<Chunk>> loaded = new ConcurrentHashMap<>();
+    SegmentLog log = SegmentLog.open(dir, segmentBytes, (nodeId, sensorId, chunk) ->
+        loaded.computeIfAbsent(new Key(nodeId, sensorId), k -> new ArrayList<>()).add(chunk));
+    TimeSeriesStore store = new TimeSeriesStore(log, chunkPoints, retentionMillis);
+    for (Map.Entry<Key, List<Chunk>> e : loaded.entrySet()) {
+      List<Chunk> chunks = e.getValue();
+      chunks.sort((a, b) -> Long.compare(a.firstTime(), b.firstTime()));
+      Series s = new Series();
+      s.sealed.addAll(chunks);
+      s.lastTime = chunks.get(chunks.size() - 1).lastTime();
+      store.series.put(e.getKey(), s);
+      store.newestTime.accumulateAndGet(s.lastTime, Math::max);
+    }
+    store.maybeRetire();
+    return store;
+  }
+
+  private static void checkArguments(int chunkPoints, long retentionMillis) {
+    if (chunkPoints < 1) {
+      throw new IllegalArgumentException("Chunks need at least one point: " + chunkPoints);
+    }
+    if (retentionMillis < 0) {
+      throw new IllegalArgumentException("Retention cannot be negative: " + retentionMillis);
+    }
+  }
+
+  /**
+   * Append a reading to its series.
+   *
+   * @param nodeId     node the sensor belongs to
+   * @param sensorId   sensor id
+   * @param timeMillis time of the reading in milliseconds
+   * @param value      reading
+   * @return false if the reading is not newer than the series' latest point and was not stored;
+   *     a snapshot repeats unchanged readings with their original timestamp
+   */
+  public boolean append(String nodeId, String sensorId, long timeMillis, double value) {
+    Series s = series.computeIfAbsent(new Key(nodeId, sensorId), k -> new Series());
+    boolean sealed = false;
+    synchronized (s) {
+      if (timeMillis <= s.lastTime) {
+        return false;
+      }
+      if (s.open == null) {
+        s.open = new ChunkEncoder();
+      }
+      s.open.append(timeMillis, value);
+      s.lastTime = timeMillis;
+      if (s.open.count() >= chunkPoints) {
+        seal(nodeId, sensorId, s);
+        sealed = true;
+      }
+    }
+    if (timeMillis > newestTime.get()) {
+      newestTime.accumulateAndGet(timeMillis, Math::max);
+    }
+    // Outside the series lock: retiring visits every series
+    if (sealed) {
+      maybeRetire();
+    }
+    return true;
+  }
+
+  /**
+   * Get the readings of a series within a time range, oldest first. Sealed chunks are decoded
+   * straight from their (possibly memory-mapped) buffers.
+   *
+   * @param nodeId     node the sensor belongs to
+   * @param sensorId   sensor id
+   * @param fromMillis start of the range in milliseconds, inclusive
+   * @param toMillis   end of the range in milliseconds, inclusive
+   * @param limit      maximum number of points to return
+   * @return the matching points; empty if the series is unknown
+   * @throws IllegalArgumentException if {@code limit} is negative
+   */
+  public Points query(String nodeId, String sensorId, long fromMillis, long toMillis, int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Limit cannot be negative: " + limit);
+    }
+    PointBuffer out = new PointBuffer(limit);
+    Series s = series.get(new Key(nodeId, sensorId));
+    if (s == null || fromMillis > toMillis) {
+      return out.toPoints();
+    }
+    List<Chunk> chunks = new ArrayList<>();
+    synchronized (s) {
+      for (int i = firstEndingAtOrAfter(s.sealed, fromMillis); i < s.sealed.size(); i++) {
+        Chunk c = s.sealed.get(i);
+        if (c.firstTime() > toMillis) {
+          break;
+        }
+        chunks.add(c);
+      }
+      if (s.open != null) {
+        chunks.add(s.open.toChunk());
+      }
+    }
+    // Sealed chunks are immutable, so they are decoded without holding the series
+    for (Chunk c : chunks) {
+      if (!c.decode(fromMillis, toMillis, out)) {
+        break;
+      }
+    }
+    return out.toPoints();
+  }
+
+  /**
+   * Find the first chunk whose last point is at or after {@code time}; chunks are in time order.
+   */
+  private static int firstEndingAtOrAfter(List<Chunk> chunks, long time) {
+    int low = 0;
+    int high = chunks.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (chunks.get(mid).lastTime() < time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Get the number of series in the store.
+   *
+   * @return series count
+   */
+  public int seriesCount() {
+    return series.size();
+  }
+
+  /**
+   * Get the number of segment files.
+   *
+   * @return segment count, 0 for an in-memory store
+   */
+  int segmentCount() {
+    return segments != null ? segments.segmentCount() : 0;
+  }
+
+  /**
+   * Seal every open chunk, write it to the segment files and close them. Appends after closing
+   * are kept in memory only.
+   */
+  @Override
+  public void close() {
+    for (Map.Entry<Key, Series> e : series.entrySet()) {
+      Series s = e.getValue();
+      synchronized (s) {
+        if (s.open != null) {
+          seal(e.getKey().nodeId(), e.getKey().sensorId(), s);
+        }
+      }
+    }
+    if (segments != null) {
+      segments.close();
+    }
+  }
+
+  private void seal(String nodeId, String sensorId, Series s) {
+    Chunk chunk = s.open.toChunk();
+    s.open = null;
+    if (segments != null) {
+      try {
+        chunk = segments.append(nodeId, sensorId, chunk);
+      } catch (IOException e) {
+        Log.warn("Storage", "Could not write chunk of %s/%s: %s", nodeId, sensorId,
+            e.getMessage());
+      }
+    }
+    s.sealed.add(chunk);
+  }
+
+  /**
+   * Retire history once the retention cutoff has moved on by an eighth of the retention period,
+   * so the series are not scanned on every sealed chunk.
+   */
+  private void maybeRetire() {
+    if (retentionMillis == 0 || newestTime.get() == Long.MIN_VALUE) {
+      return;
+    }
+    long cutoff = newestTime.get() - retentionMillis;
+    long previous = retiredBefore.get();
+    if (previous != Long.MIN_VALUE && cutoff - previous < Math.max(1, retentionMillis / 8)) {
+      return;
+    }
+    if (retiredBefore.compareAndSet(previous, cutoff)) {
+      retire(cutoff);
+    }
+  }
+
+  /**
+   * Drop the sealed chunks whose newest point is before {@code cutoffMillis} and delete the
+   * segment files that hold only such chunks.
+   *
+   * @param cutoffMillis oldest timestamp to keep
+   * @return number of chunks dropped
+   */
+  int retire(long cutoffMillis) {
+    int dropped = 0;
+    for (Series s : series.values()) {
+      synchronized (s) {
+        int n = firstEndingAtOrAfter(s.sealed, cutoffMillis);
+        s.sealed.subList(0, n).clear();
+        dropped += n;
+      }
+    }
+    if (segments != null) {
+      int deleted = segments.retire(cutoffMillis);
+      if (deleted > 0) {
+        Log.info("Storage", "Retired %d segment file(s) of history before %d", deleted,
+            cutoffMillis);
+      }
+    }
+    return dropped;
+  }
+}
@@ -0,0 +1,358 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import logging.Log;
+
+/**
+ * Append-only write-ahead log of opaque records with group commit.
+ *
+ * <p>{@link #append(byte[])} only copies the record into a buffer. A background thread writes
+ * the buffer and syncs it to the storage device every {@code syncIntervalMillis}, so one
+ * {@code fsync} covers every record appended in that interval and appenders never wait for the
+ * disk. A crash loses at most the last interval. With an interval of 0 every append is written
+ * and synced before it returns.
+ *
+ * <p>Records are framed as {@code int length, int CRC-32, bytes} in files
+ * {@code wal-00000001.log}, {@code wal-00000002.log}, ... On open every intact record is handed
+ * to the {@link Replayer}; a damaged record ends its file (the tail of a write cut short).
+ *
+ * <p>Once more than {@code compactBytes} were logged since the last checkpoint, the flusher
+ * starts a new file, asks the {@link Checkpointer} to append the current state as records and
+ * deletes the older files, so replay time is bounded by the size of the state rather than the
+ * length of the history.
+ */
+public final class WriteAheadLog implements Closeable {
+
+  /**
+   * Receives the records read back when a log is opened.
+   */
+  public interface Replayer {
+    /**
+     * Apply one record.
+     *
+     * @param record the record's bytes
+     */
+    void record(ByteBuffer record);
+  }
+
+  /**
+   * Writes the current state as records, replacing the history before it.
+   */
+  public interface Checkpointer {
+    /**
+     * Append records that rebuild the current state when replayed on their own. Called with
+     * appends blocked, so every record logged before the checkpoint is reflected in it.
+     *
+     * @param out takes the records
+     */
+    void writeState(Consumer<byte[]> out);
+  }
+
+  private static final String PREFIX = "wal-";
+  private static final String SUFFIX = ".log";
+
+  private final Path dir;
+  private final long syncIntervalMillis;
+  private final long compactBytes;
+  private final Checkpointer checkpointer;
+  private final CRC32 crc = new CRC32();
+  // Guards the append buffer and the counters; never held during I/O
+  private final Object appendLock = new Object();
+  // Guards the file; held while writing and syncing
+  private final Object ioLock = new Object();
+  private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+  private ByteBuffer writing = ByteBuffer.allocate(64 * 1024);
+  private long appended;
+  private long durable;
+  private long sinceCheckpoint;
+  private FileChannel channel;
+  private int fileIndex;
+  private volatile boolean closed;
+  private final Thread flusher;
+
+  private WriteAheadLog(Path dir, long syncIntervalMillis, long compactBytes,
+      Checkpointer checkpointer) {
+    this.dir = dir;
+    this.syncIntervalMillis = syncIntervalMillis;
+    this.compactBytes = compactBytes;
+    this.checkpointer = checkpointer;
+    this.flusher = syncIntervalMillis > 0
+        ? Thread.ofPlatform().daemon().name("wal-flusher").unstarted(this::runFlusher) : null;
+  }
+
+  /**
+   * Open the log in a directory, creating it if needed, and replay every record in it.
+   *
+   * @param dir                directory of the log files
+   * @param syncIntervalMillis how often appended records are synced; 0 syncs every append
+   * @param compactBytes       bytes logged after which a checkpoint is written; 0 never
+   * @param replayer           receives the stored records, oldest first
+   * @param checkpointer       writes the state at a checkpoint; may be null if
+   *                           {@code compactBytes} is 0
+   * @return the log, ready to append to
+   * @throws IOException if the directory or a log file cannot be read
+   * @throws IllegalArgumentException if an interval or size is negative
+   */
+  public static WriteAheadLog open(Path dir, long syncIntervalMillis, long compactBytes,
+      Replayer replayer, Checkpointer checkpointer) throws IOException {
+    if (syncIntervalMillis < 0 || compactBytes < 0) {
+      throw new IllegalArgumentException("Sync interval and compaction size cannot be negative");
+    }
+    if (compactBytes > 0 && checkpointer == null) {
+      throw new IllegalArgumentException("Compaction needs a checkpointer");
+    }
+    Files.createDirectories(dir);
+    WriteAheadLog log = new WriteAheadLog(dir, syncIntervalMillis, compactBytes, checkpointer);
+    List<Path> files = logFiles(dir);
+    for (Path file : files) {
+      long valid = replay(file, replayer);
+      log.sinceCheckpoint += valid;
+      log.fileIndex = indexOf(file);
+      if (valid < Files.size(file)) {
+        Log.warn("Storage", "Truncating %s to %d bytes after a damaged record", file, valid);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+          ch.truncate(valid);
+        }
+      }
+    }
+    if (files.isEmpty()) {
+      log.roll();
+    } else {
+      log.channel = FileChannel.open(files.get(files.size() - 1), StandardOpenOption.WRITE,
+          StandardOpenOption.APPEND);
+    }
+    if (log.flusher != null) {
+      log.flusher.start();
+    }
+    return log;
+  }
+
+  /**
+   * Append a record. With a sync interval the record is durable once the next group commit
+   * ran; see {@link #sync()}.
+   *
+   * @param record the record's bytes
+   * @throws IOException if the log is closed or, without a sync interval, writing fails
+   */
+  public void append(byte[] record) throws IOException {
+    if (closed) {
+      throw new IOException("Write-ahead log is closed");
+    }
+    synchronized (appendLock) {
+      appendLocked(record);
+    }
+    if (flusher == null) {
+      flush();
+    }
+  }
+
+  private void appendLocked(byte[] record) {
+    int size = 8 + record.length;
+    if (pending.remaining() < size) {
+      ByteBuffer grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+          pending.position() + size));
+      pending.flip();
+      pending = grown.put(pending);
+    }
+    crc.reset();
+    crc.update(record);
+    pending.putInt(record.length).putInt((int) crc.getValue()).put(record);
+    appended += size;
+    sinceCheckpoint += size;
+  }
+
+  /**
+   * Wait until every record appended so far is on the storage device.
+   *
+   * @throws IOException if writing or syncing fails
+   */
+  public void sync() throws IOException {
+    flush();
+  }
+
+  /**
+   * Write the appended records and sync them.
+   */
+  private void flush() throws IOException {
+    synchronized (ioLock) {
+      long target;
+      synchronized (appendLock) {
+        target = appended;
+        ByteBuffer swap = writing;
+        writing = pending;
+        pending = swap;
+        pending.clear();
+      }
+      if (channel == null) {
+        writing.clear();
+        return;
+      }
+      if (writing.position() > 0) {
+        writing.flip();
+        while (writing.hasRemaining()) {
+          channel.write(writing);
+        }
+        writing.clear();
+        channel.force(false);
+      }
+      synchronized (appendLock) {
+        durable = target;
+      }
+    }
+  }
+
+  /**
+   * Start a new log file holding only the current state and delete the older files.
+   *
+   * @throws IOException if writing fails; the older files are then kept
+   */
+  public void checkpoint() throws IOException {
+    synchronized (ioLock) {
+      flush();
+      List<Path> old = logFiles(dir);
+      synchronized (appendLock) {
+        roll();
+        checkpointer.writeState(this::appendLocked);
+        // The state itself does not count, or a large state would be compacted over and over
+        sinceCheckpoint = 0;
+      }
+      flush();
+      for (Path file : old) {
+        Files.deleteIfExists(file);
+      }
+      Log.info("Storage", "Checkpointed write-ahead log into %s%08d%s (%d old file(s) removed)",
+          PREFIX, fileIndex, SUFFIX, old.size());
+    }
+  }
+
+  private void roll() throws IOException {
+    if (channel != null) {
+      channel.close();
+    }
+    fileIndex++;
+    channel = FileChannel.open(dir.resolve(String.format("%s%08d%s", PREFIX, fileIndex, SUFFIX)),
+        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Get the bytes logged since the last checkpoint, not counting the checkpoint itself. After
+   * opening this is the size of every replayed file.
+   *
+   * @return bytes since the last checkpoint
+   */
+  public long sinceCheckpoint() {
+    synchronized (appendLock) {
+      return sinceCheckpoint;
+    }
+  }
+
+  /**
+   * Get how many appended bytes are not yet synced.
+   *
+   * @return bytes waiting for the next group commit
+   */
+  public long unsynced() {
+    synchronized (appendLock) {
+      return appended - durable;
+    }
+  }
+
+  private void runFlusher() {
+    while (!closed) {
+      try {
+        Thread.sleep(syncIntervalMillis);
+        flush();
+        if (compactBytes > 0 && sinceCheckpoint() > compactBytes) {
+          checkpoint();
+        }
+      } catch (InterruptedException e) {
+        return;
+      } catch (IOException e) {
+        Log.warn("Storage", "Write-ahead log flush failed: %s", e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Sync the remaining records, stop the flusher and close the file.
+   *
+   * @throws IOException if the last sync fails
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (flusher != null) {
+      flusher.interrupt();
+      try {
+        flusher.join(1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized (ioLock) {
+      try {
+        flush();
+      } finally {
+        channel.close();
+        channel = null;
+      }
+    }
+  }
+
+  /**
+   * Replay the records of one log file.
+   *
+   * @return number of bytes up to the end of the last intact record
+   */
+  private static long replay(Path file, Replayer replayer) throws IOException {
+    ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+    CRC32 crc = new CRC32();
+    while (data.remaining() >= 8) {
+      int start = data.position();
+      int length = data.getInt();
+      int checksum = data.getInt();
+      if (length < 0 || length > data.remaining()) {
+        return start;
+      }
+      ByteBuffer record = data.slice(data.position(), length);
+      crc.reset();
+      crc.update(record.duplicate());
+      if ((int) crc.getValue() != checksum) {
+        return start;
+      }
+      replayer.record(record);
+      data.position(data.position() + length);
+    }
+    return data.position();
+  }
+
+  private static List<Path> logFiles(Path dir) throws IOException {
+    List<Path> files = new ArrayList<>();
+    try (Stream<Path> list = Files.list(dir)) {
+      list.filter(p -> {
+        String name = p.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+      }).sorted().forEach(files::add);
+    }
+    return files;
+  }
+
+  private static int indexOf(Path file) {
+    String name = file.getFileName().toString();
+    return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+  }
+}
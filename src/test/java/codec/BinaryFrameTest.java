@@ -0,0 +1,152 @@
+package codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entity.Node;
+import entity.SampleNodes;
+import entity.sensor.CO2Sensor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for BinaryFrameWriter and BinaryFrameReader.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>snapshotRoundTripMatchesJson: verifies that a snapshot frame reads back as the same JSON the node would send, with messageType set.</li>
+ *   <li>stringsAreSentOncePerConnection: verifies that ids are interned, so a repeated snapshot is much smaller than the first and than its JSON.</li>
+ *   <li>textFramesAndHandshakeLine: verifies that text frames pass through unchanged and that the handshake line is read without consuming the frames after it.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>invalidFramesAreRejected: verifies that truncated frames, oversized lengths and undefined string references raise IOException.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-26
+ */
+public class BinaryFrameTest {
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test that a snapshot frame decodes to the JSON the node would have sent.
+   *
+   * <p>Expected outcome: the decoded line has messageType SENSOR_DATA_FROM_NODE and decodes to a
+   * node equal in JSON form to the original.</p>
+   */
+  @Test
+  public void snapshotRoundTripMatchesJson() throws IOException {
+    Node node = SampleNodes.node();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BinaryFrameWriter writer = new BinaryFrameWriter(bytes);
+    writer.writeSnapshot(node);
+
+    BinaryFrameReader reader = new BinaryFrameReader(new ByteArrayInputStream(bytes.toByteArray()));
+    String line = reader.readLine();
+    assertTrue(line.startsWith("{\"messageType\":\"SENSOR_DATA_FROM_NODE\","));
+    Node decoded = Node.nodeFromJson(line);
+    assertEquals(JsonCodec.gson().toJson(node), JsonCodec.gson().toJson(decoded));
+    assertInstanceOf(CO2Sensor.class, decoded.getSensors().get(1));
+    assertTrue(decoded.getActuators().get(0).isOn());
+    assertNull(reader.readLine());
+  }
+
+  /**
+   * Test that ids and types are only sent once per connection.
+   *
+   * <p>Expected outcome: the second snapshot of the same node is smaller than the first and less
+   * than half the size of its JSON line.</p>
+   */
+  @Test
+  public void stringsAreSentOncePerConnection() throws IOException {
+    Node node = SampleNodes.node();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BinaryFrameWriter writer = new BinaryFrameWriter(bytes);
+    writer.writeSnapshot(node);
+    int first = bytes.size();
+    writer.writeSnapshot(node);
+    int second = bytes.size() - first;
+
+    int json = JsonCodec.gson().toJson(node).getBytes(StandardCharsets.UTF_8).length;
+    assertTrue(second < first, "repeated snapshot should reuse the string table");
+    assertTrue(second * 2 < json, "snapshot frame " + second + " B vs JSON " + json + " B");
+
+    BinaryFrameReader reader = new BinaryFrameReader(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals(reader.readLine(), reader.readLine());
+  }
+
+  /**
+   * Test text frames and reading the handshake line in front of frames.
+   *
+   * <p>Expected outcome: the handshake line is returned without its terminator and the frames
+   * after it are read intact, including a JSON snapshot bridged to a snapshot frame with its
+   * sequence number.</p>
+   */
+  @Test
+  public void textFramesAndHandshakeLine() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write("NODE_ID_ACCEPTED BINARY\r\n".getBytes(StandardCharsets.UTF_8));
+    BinaryFrameWriter writer = new BinaryFrameWriter(bytes);
+    writer.writeText("{\"messageType\":\"REQUEST_STATE\"}");
+    writer.writeSnapshot("{\"nodeID\":\"n2\",\"sensors\":[],\"actuators\":[]}", 7);
+    writer.writeSnapshot("not json", -1);
+
+    ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+    assertEquals("NODE_ID_ACCEPTED BINARY", BinaryFrameReader.readHandshakeLine(in));
+    BinaryFrameReader reader = new BinaryFrameReader(in);
+    assertEquals("{\"messageType\":\"REQUEST_STATE\"}", reader.readLine());
+    String bridged = reader.readLine();
+    assertEquals("n2", Node.nodeFromJson(bridged).getNodeID());
+    assertTrue(bridged.contains("\"seq\":7"), bridged);
+    assertEquals("not json", reader.readLine());
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test that malformed framing is rejected.
+   *
+   * <p>Expected outcome: IOException for a truncated frame, a length above the limit and a
+   * reference to a string that was never defined.</p>
+   */
+  @Test
+  public void invalidFramesAreRejected() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new BinaryFrameWriter(bytes).writeSnapshot(SampleNodes.node());
+    byte[] full = bytes.toByteArray();
+
+    byte[] truncated = Arrays.copyOf(full, full.length - 3);
+    assertThrows(EOFException.class,
+        () -> drain(new BinaryFrameReader(new ByteArrayInputStream(truncated))));
+
+    byte[] oversized = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x7F};
+    assertThrows(IOException.class,
+        () -> new BinaryFrameReader(new ByteArrayInputStream(oversized)).readLine());
+
+    // A snapshot whose node id refers to table entry 0 without a definition
+    byte[] undefined = {3, BinaryFrameWriter.SNAPSHOT, BinaryFrameWriter.FIRST_TABLE_REF, 0};
+    assertThrows(IOException.class,
+        () -> new BinaryFrameReader(new ByteArrayInputStream(undefined)).readLine());
+  }
+
+  private static void drain(BinaryFrameReader reader) throws IOException {
+    while (reader.readLine() != null) {
+      // keep reading
+    }
+  }
+}
@@ -0,0 +1,178 @@
+package codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import entity.Node;
+import entity.SampleNodes;
+import entity.actuator.AirCondition;
+import entity.actuator.Heater;
+import entity.actuator.Ventilation;
+import entity.sensor.CO2Sensor;
+import entity.sensor.HumiditySensor;
+import entity.sensor.LightSensor;
+import entity.sensor.Sensor;
+import entity.sensor.TemperatureSensor;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for JsonCodec.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>nodeRoundTripKeepsConcreteTypesAndValues: verifies that a node survives encode/decode with its sensor and actuator subclasses, values and timestamps.</li>
+ *   <li>encodingMatchesReflectiveFormat: verifies that the wire format is the same as the plain reflective Gson used before.</li>
+ *   <li>typeFieldMayComeLast: verifies that sensors and actuators decode when the type field follows the other fields.</li>
+ *   <li>sharedInstanceIsReused: verifies that every caller gets the same Gson instance.</li>
+ *   <li>sensorTypesResolveLikeSensorKind: verifies that sensor types decode regardless of case and through the SensorKind aliases.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>unknownOrMissingTypesAreHandled: verifies the fallbacks for unknown actuator types and sensors without a type.</li>
+ *   <li>nodeWithoutIdIsRejected: verifies that a snapshot without nodeID is a parse error.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-25
+ */
+public class JsonCodecTest {
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test that a node can be encoded and decoded without losing type information.
+   *
+   * <p>Expected outcome: the decoded node has the same ids, subclasses, values and timestamps.</p>
+   */
+  @Test
+  public void nodeRoundTripKeepsConcreteTypesAndValues() {
+    Node node = SampleNodes.node();
+    Node decoded = Node.nodeFromJson(JsonCodec.gson().toJson(node));
+
+    assertEquals("n1", decoded.getNodeID());
+    assertEquals("greenhouse1", decoded.getLocation());
+    assertEquals(node.getTimestamp(), decoded.getTimestamp());
+    assertInstanceOf(TemperatureSensor.class, decoded.getSensors().get(0));
+    assertInstanceOf(CO2Sensor.class, decoded.getSensors().get(1));
+    assertEquals(23.25, decoded.getSensors().get(0).getValue());
+    assertEquals(node.getSensors().get(0).getTimestamp(),
+        decoded.getSensors().get(0).getTimestamp());
+    assertInstanceOf(Heater.class, decoded.getActuators().get(0));
+    assertInstanceOf(AirCondition.class, decoded.getActuators().get(1));
+    assertTrue(decoded.getActuators().get(0).isOn());
+  }
+
+  /**
+   * Test that the codec writes the same JSON as the reflective Gson the nodes used before.
+   *
+   * <p>Expected outcome: both encodings are identical.</p>
+   */
+  @Test
+  public void encodingMatchesReflectiveFormat() {
+    Gson reflective = new GsonBuilder()
+        .registerTypeAdapter(LocalDateTime.class,
+            (JsonSerializer<LocalDateTime>) (src, t, c) -> new JsonPrimitive(src.toString()))
+        .registerTypeAdapter(LocalDateTime.class,
+            (JsonDeserializer<LocalDateTime>) (json, t, c) -> LocalDateTime.parse(json.getAsString()))
+        .create();
+    Node node = SampleNodes.node();
+    assertEquals(reflective.toJson(node), JsonCodec.gson().toJson(node));
+  }
+
+  /**
+   * Test that the discriminator does not have to be the first field.
+   *
+   * <p>Expected outcome: the concrete subclasses are created with the values read before the
+   * type field.</p>
+   */
+  @Test
+  public void typeFieldMayComeLast() {
+    Node decoded = Node.nodeFromJson("{\"sensors\":[{\"value\":612.5,\"sensorId\":\"c9\","
+        + "\"minThreshold\":800.0,\"maxThreshold\":1500.0,"
+        + "\"timestamp\":\"2025-11-20T10:15:30\",\"sensorType\":\"CO2\"}],"
+        + "\"actuators\":[{\"on\":true,\"co2Delta\":8.0,\"actuatorId\":\"c9_vent\","
+        + "\"actuatorType\":\"VENTILATION\"}],"
+        + "\"nodeID\":\"n2\",\"location\":\"loc\"}");
+    Sensor sensor = decoded.getSensors().get(0);
+    assertInstanceOf(CO2Sensor.class, sensor);
+    assertEquals("c9", sensor.getSensorId());
+    assertEquals(612.5, sensor.getValue());
+    assertEquals(1500.0, sensor.getMaxThreshold());
+    assertEquals(LocalDateTime.parse("2025-11-20T10:15:30"), sensor.getTimestamp());
+    assertInstanceOf(Ventilation.class, decoded.getActuators().get(0));
+    assertTrue(decoded.getActuators().get(0).isOn());
+  }
+
+  /**
+   * Test that the codec hands out one shared instance.
+   *
+   * <p>Expected outcome: repeated calls return the same object.</p>
+   */
+  @Test
+  public void sharedInstanceIsReused() {
+    assertSame(JsonCodec.gson(), JsonCodec.gson());
+  }
+
+  /**
+   * Test that sensor types are resolved like SensorKind resolves them.
+   *
+   * <p>Expected outcome: "humidity" decodes to a HumiditySensor and the "LUMINANCE" alias to a
+   * LightSensor.</p>
+   */
+  @Test
+  public void sensorTypesResolveLikeSensorKind() {
+    Node decoded = Node.nodeFromJson("{\"nodeID\":\"n1\",\"location\":\"loc\","
+        + "\"sensors\":[{\"sensorId\":\"h1\",\"sensorType\":\"humidity\"},"
+        + "{\"sensorId\":\"l1\",\"sensorType\":\"LUMINANCE\"}]}");
+    assertInstanceOf(HumiditySensor.class, decoded.getSensors().get(0));
+    assertInstanceOf(LightSensor.class, decoded.getSensors().get(1));
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test the fallbacks for element types the codec does not know.
+   *
+   * <p>Expected outcome: an unknown actuator type becomes a Ventilation with the same id, and a
+   * sensor without sensorType is left out.</p>
+   */
+  @Test
+  public void unknownOrMissingTypesAreHandled() {
+    Node decoded = Node.nodeFromJson("{\"nodeID\":\"n1\",\"location\":\"loc\","
+        + "\"sensors\":[{\"sensorId\":\"x\"}],"
+        + "\"actuators\":[{\"actuatorId\":\"a1\",\"actuatorType\":\"SPRINKLER\"}]}");
+    assertTrue(decoded.getSensors().isEmpty());
+    assertInstanceOf(Ventilation.class, decoded.getActuators().get(0));
+    assertEquals("a1", decoded.getActuators().get(0).getActuatorId());
+
+    Node partial = Node.nodeFromJson("{\"messageType\":\"ACTUATOR_STATUS\",\"nodeID\":\"n1\"}");
+    assertNull(partial.getLocation());
+  }
+
+  /**
+   * Test that a snapshot without a node id cannot be decoded.
+   *
+   * <p>Expected outcome: JsonParseException.</p>
+   */
+  @Test
+  public void nodeWithoutIdIsRejected() {
+    assertThrows(JsonParseException.class,
+        () -> Node.nodeFromJson("{\"location\":\"loc\",\"sensors\":[]}"));
+  }
+}
@@ -5,10 +5,22 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
+import entity.actuator.Actuator;
+import entity.actuator.ActuatorKind;
+import entity.actuator.AirCondition;
+import entity.actuator.ConflictGroups;
+import entity.actuator.Ventilation;
+import entity.actuator.CO2Supply;
 import entity.actuator.Heater;
+import entity.sensor.CO2Sensor;
+import entity.sensor.HumiditySensor;
+import entity.sensor.Sensor;
+import entity.sensor.SensorKind;
 import entity.sensor.TemperatureSensor;
 
 /**
@@ -22,10 +34,17 @@ import entity.sensor.TemperatureSensor;
  *   <li>constructorInitializesLists: verifies that the Node holds the provided sensor and actuator lists after construction.</li>
  *   <li>sensorsListIsMutable: verifies sensors can be added and removed via getSensors().</li>
  *   <li>actuatorsListIsMutable: verifies actuators can be added and removed via getActuators().</li>
+ *   <li>everyBreachIsReported: verifies that applyActuatorEffects reports one alert for each sensor outside its thresholds, not only the first.</li>
+ *   <li>safetyLimitSwitchesOffActuators: verifies that a sensor reaching a safety limit switches off the actuators driving it there, leaves the others on and is reported once.</li>
+ *   <li>limitRulesFollowSensorChanges: verifies that sensors added through getSensors() are checked on the next tick and removed ones are not.</li>
+ *   <li>actuatorsDriveOnlyTheirSensorKind: verifies that a tick hands each actuator only the sensors of the kind it affects, and that getSensorsOfKind follows added sensors.</li>
+ *   <li>switchOnTurnsOffGroupPeersOfSameSensor: verifies that switching an actuator on switches off the conflicting actuators of its own sensor only, and follows configured conflict groups.</li>
+ *   <li>lookupsFollowAddAndRemove: verifies that sensors and actuators are found by id, by sensor and by kind after adding and removing them, including changes made through getActuators().</li>
+ *   <li>lookupsFollowReplacedElements: verifies that elements replaced through getSensors().set(...) or removed and re-added through getActuators() are found and can be switched.</li>
  * </ul>
  *
  * @author Group 1
- * @version 2025-11-19
+ * @version 2025-11-30
  */
 public class NodeTest {
     
@@ -87,4 +106,232 @@ public void constructorInitializesLists() {
     boolean stillPresent = node.getActuators().stream().anyMatch(a -> "heater-1".equals(a.getActuatorId()));
     assertFalse(stillPresent, "Heater should be removable from node.getActuators()");
   }
-}
\ No newline at end of file
+
+  /**
+   * Test that every sensor outside its thresholds is reported in one tick.
+   *
+   * <p>Expected outcome: one alert for the temperature and one for the humidity sensor, in sensor
+   * order, and none for the CO2 sensor within its thresholds.</p>
+   */
+  @Test
+  public void everyBreachIsReported() {
+    Node node = new Node("n-alert", "loc", new ArrayList<>(), new ArrayList<>());
+    TemperatureSensor temp = new TemperatureSensor("t1", 15, 30);
+    temp.updateValue(35.0);
+    HumiditySensor hum = new HumiditySensor("h1", 40, 80);
+    hum.updateValue(90.0);
+    CO2Sensor co2 = new CO2Sensor("c1", 800, 1200);
+    co2.updateValue(1000.0);
+    node.addSensor(temp);
+    node.addSensor(co2);
+    node.addSensor(hum);
+
+    List<String> alerts = node.applyActuatorEffects();
+
+    assertEquals(2, alerts.size());
+    assertTrue(alerts.get(0).startsWith("TEMP_OVER_MAX node=n-alert sensor=t1 "));
+    assertTrue(alerts.get(1).startsWith("HUMIDITY_OVER_MAX node=n-alert sensor=h1 "));
+  }
+
+  /**
+   * Test the auto-off of actuators at a safety limit.
+   *
+   * <p>Expected outcome: at 45 degrees the heater is switched off and the air condition stays
+   * on, and only the limit alert is sent for the sensor.</p>
+   */
+  @Test
+  public void safetyLimitSwitchesOffActuators() {
+    Node node = new Node("n-limit", "loc", new ArrayList<>(), new ArrayList<>());
+    TemperatureSensor temp = new TemperatureSensor("t1", 15, 30);
+    temp.updateValue(45.0);
+    node.addSensor(temp);
+    Heater heater = new Heater("t1_heater");
+    heater.setOn(true);
+    AirCondition aircon = new AirCondition("t1_aircon");
+    aircon.setOn(true);
+    node.addActuator(heater);
+    node.addActuator(aircon);
+
+    List<String> alerts = node.applyActuatorEffects();
+
+    assertEquals(1, alerts.size());
+    assertTrue(alerts.get(0).startsWith("REACHING_WARM_LIMIT node=n-limit sensor=t1 "));
+    assertFalse(heater.isOn());
+    assertTrue(aircon.isOn());
+  }
+
+  /**
+   * Test that the compiled limit rules follow changes made through the node's lists.
+   *
+   * <p>Expected outcome: no alerts without sensors, an alert once a breaching sensor is added
+   * and none after it is removed again.</p>
+   */
+  @Test
+  public void limitRulesFollowSensorChanges() {
+    Node node = new Node("n-rules", "loc", new ArrayList<>(), new ArrayList<>());
+    assertTrue(node.applyActuatorEffects().isEmpty());
+
+    TemperatureSensor temp = new TemperatureSensor("t1", 15, 30);
+    temp.updateValue(12.0);
+    node.getSensors().add(temp);
+    List<String> alerts = node.applyActuatorEffects();
+    assertEquals(1, alerts.size());
+    assertTrue(alerts.get(0).startsWith("TEMP_BELOW_MIN node=n-rules sensor=t1 "));
+
+    node.getSensors().remove(temp);
+    assertTrue(node.applyActuatorEffects().isEmpty());
+  }
+
+  /**
+   * Test that actuator effects are dispatched through the node's sensor index.
+   *
+   * <p>Expected outcome: the heater is handed both temperature sensors and nothing else, an
+   * actuator of unknown type is handed every sensor, and a sensor added later is indexed.</p>
+   */
+  @Test
+  public void actuatorsDriveOnlyTheirSensorKind() {
+    Node node = new Node("n-index", "loc", new ArrayList<>(), new ArrayList<>());
+    TemperatureSensor t1 = new TemperatureSensor("t1", 15, 30);
+    t1.updateValue(20.0);
+    HumiditySensor h1 = new HumiditySensor("h1", 40, 80);
+    h1.updateValue(60.0);
+    TemperatureSensor t2 = new TemperatureSensor("t2", 15, 30);
+    t2.updateValue(22.0);
+    node.addSensor(t1);
+    node.addSensor(h1);
+    node.addSensor(t2);
+    List<List<Sensor>> handed = new ArrayList<>();
+    Heater heater = new Heater("heater") {
+      @Override
+      public void applyEffect(List<Sensor> sensors) {
+        handed.add(List.copyOf(sensors));
+        super.applyEffect(sensors);
+      }
+    };
+    heater.setOn(true);
+    Actuator unknown = new Actuator("sprinkler", "SPRINKLER") {
+      @Override
+      public void applyEffect(List<Sensor> sensors) {
+        handed.add(List.copyOf(sensors));
+      }
+    };
+    unknown.setOn(true);
+    node.addActuator(heater);
+    node.addActuator(unknown);
+
+    node.applyActuatorEffects();
+
+    assertEquals(List.of(List.of(t1, t2), List.of(t1, h1, t2)), handed);
+    assertEquals(21.0, t1.getValue());
+    assertEquals(60.0, h1.getValue());
+
+    HumiditySensor h2 = new HumiditySensor("h2", 40, 80);
+    node.addSensor(h2);
+    assertEquals(List.of(h1, h2), node.getSensorsOfKind(SensorKind.HUMIDITY));
+  }
+
+  /**
+   * Test that the node's id lookups stay consistent with its lists.
+   *
+   * <p>Expected outcome: sensors and actuators are found by id, a sensor's actuators are those
+   * named after it, removing the sensor removes them too, and an actuator added through
+   * getActuators() is still found.</p>
+   */
+  @Test
+  public void lookupsFollowAddAndRemove() {
+    Node node = new Node("n-lookup", "loc", new ArrayList<>(), new ArrayList<>());
+    TemperatureSensor t1 = new TemperatureSensor("t1", 15, 30);
+    TemperatureSensor t10 = new TemperatureSensor("t10", 15, 30);
+    Heater heater = new Heater("t1_heater");
+    AirCondition ac = new AirCondition("t1_ac");
+    Heater otherHeater = new Heater("t10_heater");
+    node.addSensor(t1);
+    node.addSensor(t10);
+    node.addActuator(heater);
+    node.addActuator(ac);
+    node.addActuator(otherHeater);
+
+    assertSame(t10, node.getSensor("t10"));
+    assertSame(ac, node.getActuator("t1_ac"));
+    assertEquals(List.of(heater, ac), node.getActuatorsOfSensor("t1"));
+    assertEquals(List.of(heater, otherHeater), node.getActuatorsOfKind(ActuatorKind.HEATER));
+
+    assertTrue(node.removeSensor("t1"));
+    assertNull(node.getSensor("t1"));
+    assertNull(node.getActuator("t1_heater"));
+    assertEquals(List.of(t10), node.getSensors());
+    assertEquals(List.of(otherHeater), node.getActuators());
+    assertEquals(List.of(otherHeater), node.getActuatorsOfKind(ActuatorKind.HEATER));
+    assertFalse(node.removeSensor("t1"));
+
+    AirCondition lateAc = new AirCondition("t10_ac");
+    node.getActuators().add(lateAc);
+    assertSame(lateAc, node.getActuator("t10_ac"));
+    assertTrue(node.removeActuator("t10_ac"));
+    assertEquals(List.of(otherHeater), node.getActuatorsOfSensor("t10"));
+  }
+
+  /**
+   * Test that switching an actuator on resolves conflicts within its sensor.
+   *
+   * <p>Expected outcome: turning on t1's heater switches off t1's air condition but not t2's,
+   * and ventilation and CO2 supply only conflict once a group says so.</p>
+   */
+  @Test
+  public void switchOnTurnsOffGroupPeersOfSameSensor() {
+    Node node = new Node("n-conflict", "loc", new ArrayList<>(), new ArrayList<>());
+    node.addSensor(new TemperatureSensor("t1", 15, 30));
+    node.addSensor(new TemperatureSensor("t2", 15, 30));
+    node.addSensor(new CO2Sensor("c1", 800, 1500));
+    Heater heater1 = new Heater("t1_heater");
+    AirCondition ac1 = new AirCondition("t1_ac");
+    AirCondition ac2 = new AirCondition("t2_ac");
+    Ventilation vent = new Ventilation("c1_ventilation");
+    CO2Supply supply = new CO2Supply("c1_co2_supply");
+    for (Actuator a : List.of(heater1, ac1, ac2, vent, supply)) {
+      node.addActuator(a);
+    }
+    ac1.setOn(true);
+    ac2.setOn(true);
+    vent.setOn(true);
+
+    assertEquals(List.of(ac1), node.switchActuator(heater1, true));
+    assertTrue(heater1.isOn());
+    assertFalse(ac1.isOn());
+    assertTrue(ac2.isOn());
+
+    assertEquals(List.of(), node.switchActuator(supply, true));
+    assertTrue(vent.isOn());
+    node.setConflictGroups(ConflictGroups.parse("VENTILATION,CO2_SUPPLY"));
+    assertEquals(List.of(supply), node.switchActuator(vent, true));
+    assertFalse(supply.isOn());
+    assertEquals(List.of(), node.switchActuator(ac1, true));
+    assertTrue(heater1.isOn());
+  }
+
+  /**
+   * Test that the node's id lookups notice elements replaced in place.
+   *
+   * <p>Expected outcome: after set(...) the new sensor is found and the old one is not, and an
+   * actuator swapped for another of the same count can be switched on.</p>
+   */
+  @Test
+  public void lookupsFollowReplacedElements() {
+    Node node = new Node("n-replace", "loc", new ArrayList<>(), new ArrayList<>());
+    node.addSensor(new TemperatureSensor("t1", 15, 30));
+    node.addActuator(new Heater("t1_heater"));
+    assertEquals("t1", node.getSensor("t1").getSensorId());
+
+    TemperatureSensor t2 = new TemperatureSensor("t2", 15, 30);
+    node.getSensors().set(0, t2);
+    assertNull(node.getSensor("t1"));
+    assertSame(t2, node.getSensor("t2"));
+
+    Heater replacement = new Heater("t2_heater");
+    node.getActuators().remove(0);
+    node.getActuators().add(replacement);
+    assertNull(node.getActuator("t1_heater"));
+    assertEquals(List.of(), node.switchActuator(replacement, true));
+    assertTrue(replacement.isOn());
+  }
+}
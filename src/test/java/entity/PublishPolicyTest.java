@@ -0,0 +1,95 @@
+package entity;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import entity.sensor.CO2Sensor;
+import entity.sensor.TemperatureSensor;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for PublishPolicy.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>absoluteAndPercentDeadbands: verifies that readings inside the deadband are held back and readings past it are published.</li>
+ *   <li>thresholdCrossingAndHeartbeatPublish: verifies that crossing a threshold or an expired heartbeat publishes even inside the deadband.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>invalidConfigurationIsRejected: verifies that negative or malformed deadbands and a negative heartbeat throw IllegalArgumentException.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-27
+ */
+public class PublishPolicyTest {
+
+  private final PublishPolicy policy = new PublishPolicy(
+      Map.of("temperature", "0.1", "CO2", "2%"), 30_000);
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test absolute and percentage deadbands.
+   *
+   * <p>Expected outcome: sensor noise of 0.01 degrees is filtered, 0.2 degrees is published; for
+   * CO2 the band is 2% of the last published value.</p>
+   */
+  @Test
+  public void absoluteAndPercentDeadbands() {
+    TemperatureSensor temp = new TemperatureSensor("t1", 15, 30);
+    assertFalse(policy.shouldPublish(temp, 20.01, 20.0, 3000));
+    assertFalse(policy.shouldPublish(temp, 20.0, 20.0, 3000));
+    assertTrue(policy.shouldPublish(temp, 20.2, 20.0, 3000));
+    assertTrue(policy.shouldPublish(temp, 19.8, 20.0, 3000));
+
+    CO2Sensor co2 = new CO2Sensor("c1", 400, 1500);
+    assertFalse(policy.shouldPublish(co2, 1015, 1000, 3000));
+    assertTrue(policy.shouldPublish(co2, 1025, 1000, 3000));
+
+    // A type without a deadband publishes every change
+    assertTrue(PublishPolicy.EVERY_CHANGE.shouldPublish(temp, 20.01, 20.0, 3000));
+  }
+
+  /**
+   * Test that threshold crossings and the heartbeat override the deadband.
+   *
+   * <p>Expected outcome: a move of 0.05 across the max threshold is published, as is an unchanged
+   * reading once the heartbeat interval has passed.</p>
+   */
+  @Test
+  public void thresholdCrossingAndHeartbeatPublish() {
+    TemperatureSensor temp = new TemperatureSensor("t1", 15, 30);
+    assertTrue(policy.shouldPublish(temp, 30.02, 29.97, 3000));
+    assertTrue(policy.shouldPublish(temp, 29.97, 30.02, 3000));
+    assertTrue(policy.shouldPublish(temp, 20.0, 20.0, 30_000));
+    assertTrue(policy.shouldPublish(temp, 20.01, 20.0, 31_000));
+    assertFalse(PublishPolicy.EVERY_CHANGE.shouldPublish(temp, 20.0, 20.0, Long.MAX_VALUE));
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test that invalid settings are rejected.
+   *
+   * <p>Expected outcome: IllegalArgumentException for a negative band, a non-numeric band and a
+   * negative heartbeat interval.</p>
+   */
+  @Test
+  public void invalidConfigurationIsRejected() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new PublishPolicy(Map.of("TEMPERATURE", "-1"), 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PublishPolicy(Map.of("TEMPERATURE", "abc%"), 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PublishPolicy(Map.of(), -5));
+  }
+}
@@ -0,0 +1,39 @@
+package entity;
+
+import entity.actuator.AirCondition;
+import entity.actuator.Heater;
+import entity.sensor.CO2Sensor;
+import entity.sensor.TemperatureSensor;
+import java.util.ArrayList;
+
+/**
+ * Node fixtures shared by the tests.
+ *
+ * @author Group 1
+ * @version 2025-11-26
+ */
+public final class SampleNodes {
+
+  private SampleNodes() {
+  }
+
+  /**
+   * Build a small node: node {@code n1} in {@code greenhouse1} with temperature sensor
+   * {@code t1} (15-30, reading 23.25) and CO2 sensor {@code c1} (800-1500), heater
+   * {@code t1_heater} switched on and air condition {@code t1_ac} switched off.
+   *
+   * @return a new node; tests change what they need
+   */
+  public static Node node() {
+    Node node = new Node("n1", "greenhouse1", new ArrayList<>(), new ArrayList<>());
+    TemperatureSensor temp = new TemperatureSensor("t1", 15, 30);
+    temp.updateValue(23.25);
+    node.addSensor(temp);
+    node.addSensor(new CO2Sensor("c1", 800, 1500));
+    Heater heater = new Heater("t1_heater");
+    heater.setOn(true);
+    node.addActuator(heater);
+    node.addActuator(new AirCondition("t1_ac"));
+    return node;
+  }
+}
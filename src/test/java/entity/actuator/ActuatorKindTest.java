@@ -0,0 +1,120 @@
+package entity.actuator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codec.JsonCodec;
+import entity.sensor.LightSensor;
+import entity.sensor.Sensor;
+import entity.sensor.SensorKind;
+import entity.sensor.TemperatureSensor;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for ActuatorKind and SensorKind.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ * <ul>
+ *   <li>typesResolveToKinds: verifies that wire type strings, in any case and including the older aliases, resolve to their kinds and that every actuator class has its kind.</li>
+ *   <li>metadataDescribesKinds: verifies the affected sensor kind, direction and conflict partners of the actuator kinds.</li>
+ *   <li>kindsStayOffTheWire: verifies that a sensor and an actuator serialize without their kind and get it back when read.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ * <ul>
+ *   <li>unknownTypesHaveNoKind: verifies that null and unknown type strings resolve to null.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-30
+ */
+public class ActuatorKindTest {
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test the mapping from type strings to kinds.
+   *
+   * <p>Expected outcome: names, lower case names and aliases map to the same kind.</p>
+   */
+  @Test
+  public void typesResolveToKinds() {
+    assertSame(SensorKind.TEMPERATURE, SensorKind.of("temperature"));
+    assertSame(SensorKind.LIGHT, SensorKind.of("LUMINANCE"));
+    assertSame(ActuatorKind.AIRCON, ActuatorKind.of("AirCondition"));
+    assertSame(ActuatorKind.LAMP_BRIGHTNING, ActuatorKind.of("lamp_brightening"));
+    assertSame(ActuatorKind.VENTILATION, ActuatorKind.of("FAN"));
+
+    assertSame(ActuatorKind.HEATER, new Heater("h").getKind());
+    assertSame(ActuatorKind.AIRCON, new AirCondition("a").getKind());
+    assertSame(ActuatorKind.HUMIDIFIER, new Humidifier("h").getKind());
+    assertSame(ActuatorKind.DEHUMIDIFIER, new DeHumidifier("d").getKind());
+    assertSame(ActuatorKind.LAMP_BRIGHTNING, new LampBrightning("b").getKind());
+    assertSame(ActuatorKind.LAMP_DIMMING, new LampDimming("d").getKind());
+    assertSame(ActuatorKind.CO2_SUPPLY, new CO2Supply("c").getKind());
+    assertSame(ActuatorKind.VENTILATION, new Ventilation("v").getKind());
+    assertSame(SensorKind.LIGHT, new LightSensor("l", 600, 1000).getKind());
+  }
+
+  /**
+   * Test the declared metadata of the kinds.
+   *
+   * <p>Expected outcome: heater and air condition drive temperature in opposite directions and
+   * conflict both ways; ventilation and CO2 supply do not conflict.</p>
+   */
+  @Test
+  public void metadataDescribesKinds() {
+    assertSame(SensorKind.TEMPERATURE, ActuatorKind.HEATER.getAffects());
+    assertTrue(ActuatorKind.HEATER.raises());
+    assertFalse(ActuatorKind.AIRCON.raises());
+    assertEquals("ppm", SensorKind.CO2.getUnit());
+    assertEquals(40.0, SensorKind.TEMPERATURE.getMaxLimit());
+
+    assertTrue(ActuatorKind.HEATER.conflictsWith(ActuatorKind.AIRCON));
+    assertTrue(ActuatorKind.AIRCON.conflictsWith(ActuatorKind.HEATER));
+    assertTrue(ActuatorKind.LAMP_DIMMING.conflictsWith(ActuatorKind.LAMP_BRIGHTNING));
+    assertTrue(ActuatorKind.DEHUMIDIFIER.conflictsWith(ActuatorKind.HUMIDIFIER));
+    assertFalse(ActuatorKind.HEATER.conflictsWith(ActuatorKind.HEATER));
+    assertFalse(ActuatorKind.VENTILATION.conflictsWith(ActuatorKind.CO2_SUPPLY));
+    assertFalse(ActuatorKind.HEATER.conflictsWith(null));
+  }
+
+  /**
+   * Test that the kind is not part of the JSON format.
+   *
+   * <p>Expected outcome: no "kind" member in the JSON, and the decoded objects have their
+   * kind.</p>
+   */
+  @Test
+  public void kindsStayOffTheWire() {
+    String sensorJson = JsonCodec.gson().toJson(new TemperatureSensor("t1", 15, 30), Sensor.class);
+    String actuatorJson = JsonCodec.gson().toJson(new Heater("t1_heater"), Actuator.class);
+    assertFalse(sensorJson.contains("kind"));
+    assertFalse(actuatorJson.contains("kind"));
+
+    assertSame(SensorKind.TEMPERATURE,
+        JsonCodec.gson().fromJson(sensorJson, Sensor.class).getKind());
+    assertSame(ActuatorKind.HEATER,
+        JsonCodec.gson().fromJson(actuatorJson, Actuator.class).getKind());
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test type strings that name no kind.
+   *
+   * <p>Expected outcome: null for a null or unknown type.</p>
+   */
+  @Test
+  public void unknownTypesHaveNoKind() {
+    assertNull(SensorKind.of(null));
+    assertNull(SensorKind.of("PRESSURE"));
+    assertNull(ActuatorKind.of(null));
+    assertNull(ActuatorKind.of("SPRINKLER"));
+  }
+}
@@ -0,0 +1,92 @@
+package entity.actuator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for ConflictGroups.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ * <ul>
+ *   <li>defaultGroupsPairOpposites: verifies that the default groups pair heating with cooling, humidifying with dehumidifying and brightening with dimming, and leave ventilation and CO2 supply free.</li>
+ *   <li>groupsParseFromConfiguration: verifies that groups are parsed from a configuration string with aliases, spacing and several kinds per group.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ * <ul>
+ *   <li>invalidGroupsAreRejected: verifies that unknown kinds and kinds named in two groups are rejected, and that an invalid system property keeps the defaults.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-30
+ */
+public class ConflictGroupsTest {
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test the default conflict groups.
+   *
+   * <p>Expected outcome: each default pair conflicts both ways, a kind does not conflict with
+   * itself, and ventilation has no peers.</p>
+   */
+  @Test
+  public void defaultGroupsPairOpposites() {
+    ConflictGroups groups = ConflictGroups.DEFAULT;
+    assertTrue(groups.conflict(ActuatorKind.HEATER, ActuatorKind.AIRCON));
+    assertTrue(groups.conflict(ActuatorKind.DEHUMIDIFIER, ActuatorKind.HUMIDIFIER));
+    assertTrue(groups.conflict(ActuatorKind.LAMP_BRIGHTNING, ActuatorKind.LAMP_DIMMING));
+    assertFalse(groups.conflict(ActuatorKind.HEATER, ActuatorKind.HEATER));
+    assertFalse(groups.conflict(ActuatorKind.HEATER, ActuatorKind.HUMIDIFIER));
+    assertFalse(groups.conflict(ActuatorKind.VENTILATION, ActuatorKind.CO2_SUPPLY));
+    assertArrayEquals(new ActuatorKind[] {ActuatorKind.AIRCON},
+        groups.peersOf(ActuatorKind.HEATER));
+    assertEquals(0, groups.peersOf(ActuatorKind.VENTILATION).length);
+  }
+
+  /**
+   * Test parsing groups from configuration.
+   *
+   * <p>Expected outcome: all kinds of a group conflict with each other, kinds outside the
+   * groups conflict with nothing, and the groups print back in canonical form.</p>
+   */
+  @Test
+  public void groupsParseFromConfiguration() {
+    ConflictGroups groups = ConflictGroups.parse(" fan , co2 ; Heater,AirCondition,HEATER ");
+    assertTrue(groups.conflict(ActuatorKind.VENTILATION, ActuatorKind.CO2_SUPPLY));
+    assertTrue(groups.conflict(ActuatorKind.AIRCON, ActuatorKind.HEATER));
+    assertFalse(groups.conflict(ActuatorKind.HUMIDIFIER, ActuatorKind.DEHUMIDIFIER));
+    assertEquals("VENTILATION,CO2_SUPPLY;HEATER,AIRCON", groups.toString());
+    assertEquals("", ConflictGroups.parse("").toString());
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test invalid group configurations.
+   *
+   * <p>Expected outcome: IllegalArgumentException for an unknown kind and for a kind in two
+   * groups; an invalid node.conflictGroups property falls back to the defaults.</p>
+   */
+  @Test
+  public void invalidGroupsAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> ConflictGroups.parse("HEATER,SPRINKLER"));
+    assertThrows(IllegalArgumentException.class,
+        () -> ConflictGroups.parse("HEATER,AIRCON;HEATER,HUMIDIFIER"));
+
+    System.setProperty("node.conflictGroups", "HEATER,SPRINKLER");
+    try {
+      assertSame(ConflictGroups.DEFAULT, ConflictGroups.fromSystemProperties());
+    } finally {
+      System.clearProperty("node.conflictGroups");
+    }
+  }
+}
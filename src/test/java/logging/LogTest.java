@@ -0,0 +1,190 @@
+package logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for the asynchronous log: {@link LogRing}, {@link RateLimiter} and {@link Log}.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>concurrentProducersKeepPerThreadOrder: verifies that messages from several threads are all written, each thread's in the order it logged them.</li>
+ *   <li>disabledLevelIsNotFormatted: verifies that messages below the level are dropped without formatting their arguments, and enabled ones are formatted once.</li>
+ *   <li>rateLimiterAllowsLimitPerWindow: verifies that a limiter lets through its limit per second, counts the rest and refills in the next second.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>fullRingDropsAndReports: verifies that messages offered to a full ring are dropped without blocking and that the drop is reported.</li>
+ *   <li>invalidArgumentsAreRejected: verifies that a too small ring, a zero rate and a negative rate limit throw IllegalArgumentException.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-28
+ */
+public class LogTest {
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test logging from several threads into a small ring.
+   *
+   * <p>Expected outcome: after a flush all 4 x 500 messages were written and the messages of each
+   * thread appear in increasing order.</p>
+   */
+  @Test
+  public void concurrentProducersKeepPerThreadOrder() throws InterruptedException {
+    StringBuilder out = new StringBuilder();
+    LogRing ring = new LogRing(64, out::append, "Test-Appender");
+    int threads = 4;
+    int perThread = 500;
+    List<Thread> producers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      String category = "T" + t;
+      producers.add(Thread.ofPlatform().start(() -> {
+        for (int i = 0; i < perThread; i++) {
+          while (!ring.offer(0, Level.INFO, category, "%d", new Object[] {i})) {
+            Thread.onSpinWait();
+          }
+        }
+      }));
+    }
+    for (Thread p : producers) {
+      p.join();
+    }
+    assertTrue(ring.flush(5000));
+
+    int[] next = new int[threads];
+    for (String line : out.toString().split("\\R")) {
+      if (line.isEmpty() || line.contains("messages dropped")) {
+        // Producers retry when the ring is full; the appender reports those attempts
+        continue;
+      }
+      String message = line.substring(line.indexOf("] ") + 2);
+      int thread = message.charAt(1) - '0';
+      assertEquals(next[thread]++, Integer.parseInt(message.substring(message.indexOf(": ") + 2)));
+    }
+    for (int count : next) {
+      assertEquals(perThread, count);
+    }
+  }
+
+  /**
+   * Test that level filtering happens before formatting.
+   *
+   * <p>Expected outcome: at WARN a DEBUG message never calls the argument's toString(); at DEBUG
+   * it is called exactly once, on the appender.</p>
+   */
+  @Test
+  public void disabledLevelIsNotFormatted() {
+    AtomicInteger formatted = new AtomicInteger();
+    Object arg = new Object() {
+      @Override
+      public String toString() {
+        formatted.incrementAndGet();
+        return "x";
+      }
+    };
+    Level before = Log.getLevel();
+    try {
+      Log.setLevel(Level.WARN);
+      assertFalse(Log.isEnabled(Level.DEBUG));
+      Log.debug("LogTest", "value %s", arg);
+      assertTrue(Log.flush(5000));
+      assertEquals(0, formatted.get());
+
+      Log.setLevel(Level.DEBUG);
+      Log.debug("LogTest", "value %s", arg);
+      assertTrue(Log.flush(5000));
+      assertEquals(1, formatted.get());
+    } finally {
+      Log.setLevel(before);
+    }
+  }
+
+  /**
+   * Test the per-category rate limiter.
+   *
+   * <p>Expected outcome: with a limit of 3, three of five messages in one second pass and two are
+   * counted as suppressed; a second later messages pass again.</p>
+   */
+  @Test
+  public void rateLimiterAllowsLimitPerWindow() {
+    RateLimiter limiter = new RateLimiter(3);
+    int passed = 0;
+    for (int i = 0; i < 5; i++) {
+      if (limiter.tryAcquire(10_000 + i)) {
+        passed++;
+      }
+    }
+    assertEquals(3, passed);
+    assertEquals(2, limiter.takeSuppressed());
+    assertEquals(0, limiter.takeSuppressed());
+    assertTrue(limiter.tryAcquire(11_000));
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test a ring whose appender is stuck in the sink.
+   *
+   * <p>Expected outcome: offering more messages than the ring holds returns false instead of
+   * blocking, and once the sink continues the number of dropped messages is written.</p>
+   */
+  @Test
+  public void fullRingDropsAndReports() throws InterruptedException {
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    StringBuilder out = new StringBuilder();
+    LogRing ring = new LogRing(4, text -> {
+      entered.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      out.append(text);
+    }, "Test-Appender");
+
+    assertTrue(ring.offer(0, Level.INFO, "T", "first", null));
+    assertTrue(entered.await(5, TimeUnit.SECONDS));
+    int accepted = 0;
+    for (int i = 0; i < 10; i++) {
+      if (ring.offer(0, Level.INFO, "T", "m", null)) {
+        accepted++;
+      }
+    }
+    assertEquals(ring.capacity(), accepted);
+    assertEquals(10 - accepted, ring.dropped());
+
+    release.countDown();
+    assertTrue(ring.flush(5000));
+    assertTrue(out.toString().contains((10 - accepted) + " messages dropped"), out.toString());
+  }
+
+  /**
+   * Test that invalid settings are rejected.
+   *
+   * <p>Expected outcome: IllegalArgumentException for a ring of one slot, a limiter of zero
+   * messages per second and a negative rate limit.</p>
+   */
+  @Test
+  public void invalidArgumentsAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> new LogRing(1, s -> { }, "Test"));
+    assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0));
+    assertThrows(IllegalArgumentException.class, () -> Log.setRateLimit("LogTest", -1));
+  }
+}
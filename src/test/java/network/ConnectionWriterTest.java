@@ -0,0 +1,325 @@
+package network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for ConnectionWriter.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>concurrentSendersProduceWholeLines: verifies that lines queued from several threads arrive whole and complete.</li>
+ *   <li>coalescePolicyKeepsLatestSnapshotPerNode: verifies that COALESCE_LATEST overwrites the queued snapshot of the same node.</li>
+ *   <li>coalescePolicyBoundsBacklogByNodeCount: verifies that a stalled panel holds at most one snapshot per node, even with room to spare.</li>
+ *   <li>deltaFloodIsReplacedBySnapshots: verifies that a stalled panel flooded with deltas holds at most one line per node, still accepts alerts and gets the latest state of every node.</li>
+ *   <li>newerSnapshotDropsQueuedDeltas: verifies that a snapshot of a node drops the node's queued deltas.</li>
+ *   <li>dropOldestPolicyEvictsOldestSnapshot: verifies that DROP_OLDEST evicts the oldest queued snapshot to make room.</li>
+ *   <li>disconnectPolicyClosesLaggingConsumer: verifies that DISCONNECT closes a connection whose oldest line is too old.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>sendAfterCloseIsRejected: verifies that send returns false once the writer is closed.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-24
+ */
+public class ConnectionWriterTest {
+
+  private static final String BIG_LINE = "b".repeat(2 * 1024 * 1024);
+
+  /**
+   * Queue a line far larger than the socket buffers and wait until the writer has picked it up,
+   * so the writer is stuck in a blocking write and everything queued afterwards stays queued.
+   */
+  private static void stallWriter(ConnectionWriter writer) throws InterruptedException {
+    assertTrue(writer.send(BIG_LINE));
+    long deadline = System.currentTimeMillis() + 2000;
+    while (writer.pending() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(0, writer.pending(), "Writer should have taken the big line");
+  }
+
+  private static Socket smallBufferClient(ServerSocket ss) throws IOException {
+    Socket client = new Socket();
+    client.setReceiveBufferSize(4096);
+    client.connect(ss.getLocalSocketAddress());
+    return client;
+  }
+
+  private static BufferedReader readerAfterBigLine(Socket client) throws IOException {
+    client.setSoTimeout(5000);
+    BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+    assertEquals(BIG_LINE.length(), in.readLine().length());
+    return in;
+  }
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test that concurrent senders never produce interleaved partial lines.
+   *
+   * <p>Expected outcome: the peer reads every line exactly once and each line is intact.</p>
+   */
+  @Test
+  public void concurrentSendersProduceWholeLines() throws Exception {
+    try (ServerSocket ss = new ServerSocket(0);
+        Socket client = new Socket("localhost", ss.getLocalPort());
+        Socket serverSide = ss.accept()) {
+      ConnectionWriter writer = new ConnectionWriter(serverSide, 10_000);
+      String payload = "x".repeat(500);
+      int threads = 4;
+      int perThread = 500;
+      Thread[] senders = new Thread[threads];
+      for (int t = 0; t < threads; t++) {
+        int id = t;
+        senders[t] = new Thread(() -> {
+          for (int i = 0; i < perThread; i++) {
+            assertTrue(writer.send("{\"t\":" + id + ",\"i\":" + i + ",\"p\":\"" + payload + "\"}"));
+          }
+        });
+        senders[t].start();
+      }
+      for (Thread t : senders) {
+        t.join();
+      }
+
+      client.setSoTimeout(5000);
+      BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+      Set<String> seen = new HashSet<>();
+      for (int n = 0; n < threads * perThread; n++) {
+        String line = in.readLine();
+        assertTrue(line.startsWith("{\"t\":") && line.endsWith(payload + "\"}"),
+            "Line should be intact: " + line);
+        seen.add(line.substring(0, line.indexOf(",\"p\"")));
+      }
+      assertEquals(threads * perThread, seen.size(), "Every line should arrive exactly once");
+      writer.close();
+    }
+  }
+
+  /**
+   * Test that COALESCE_LATEST overwrites the queued snapshot of the same node when full.
+   *
+   * <p>Expected outcome: the stale snapshot is never written and the coalesce counter is 1.</p>
+   */
+  @Test
+  public void coalescePolicyKeepsLatestSnapshotPerNode() throws Exception {
+    try (ServerSocket ss = new ServerSocket(0); Socket client = smallBufferClient(ss);
+        Socket serverSide = ss.accept()) {
+      serverSide.setSendBufferSize(4096);
+      SlowConsumerStats stats = new SlowConsumerStats();
+      ConnectionWriter writer = new ConnectionWriter(serverSide, 2,
+          SlowConsumerPolicy.COALESCE_LATEST, 5000, stats);
+      stallWriter(writer);
+      assertTrue(writer.sendSnapshot("n1", "a1"));
+      assertTrue(writer.sendSnapshot("n2", "b1"));
+      assertTrue(writer.sendSnapshot("n1", "a2"));
+      assertEquals(1, stats.getCoalesced());
+
+      BufferedReader in = readerAfterBigLine(client);
+      assertEquals("a2", in.readLine());
+      assertEquals("b1", in.readLine());
+      writer.close();
+    }
+  }
+
+  /**
+   * Test that COALESCE_LATEST keeps only the latest pending snapshot per node while the queue
+   * still has room.
+   *
+   * <p>Expected outcome: the backlog is one line per node and the peer receives only the latest
+   * snapshot of each node.</p>
+   */
+  @Test
+  public void coalescePolicyBoundsBacklogByNodeCount() throws Exception {
+    try (ServerSocket ss = new ServerSocket(0); Socket client = smallBufferClient(ss);
+        Socket serverSide = ss.accept()) {
+      serverSide.setSendBufferSize(4096);
+      SlowConsumerStats stats = new SlowConsumerStats();
+      ConnectionWriter writer = new ConnectionWriter(serverSide, 1000,
+          SlowConsumerPolicy.COALESCE_LATEST, 5000, stats);
+      stallWriter(writer);
+      for (int tick = 0; tick < 50; tick++) {
+        assertTrue(writer.sendSnapshot("n1", "n1-" + tick));
+        assertTrue(writer.sendSnapshot("n2", "n2-" + tick));
+      }
+      assertEquals(2, writer.pending(), "Only one snapshot per node should be pending");
+      assertEquals(98, stats.getCoalesced());
+
+      BufferedReader in = readerAfterBigLine(client);
+      assertEquals("n1-49", in.readLine());
+      assertEquals("n2-49", in.readLine());
+
+      // Once drained, the next snapshot is queued again rather than merged into a sent one
+      assertTrue(writer.sendSnapshot("n1", "n1-50"));
+      assertEquals("n1-50", in.readLine());
+      writer.close();
+    }
+  }
+
+  /**
+   * Test that a stalled panel flooded with deltas of two nodes does not fill up with them: once
+   * the queue is full the deltas are replaced by the current snapshot of their node.
+   *
+   * <p>Expected outcome: nothing is rejected, an alert sent after the flood is queued, and the
+   * peer receives the last state of both nodes and the alert.</p>
+   */
+  @Test
+  public void deltaFloodIsReplacedBySnapshots() throws Exception {
+    try (ServerSocket ss = new ServerSocket(0); Socket client = smallBufferClient(ss);
+        Socket serverSide = ss.accept()) {
+      serverSide.setSendBufferSize(4096);
+      SlowConsumerStats stats = new SlowConsumerStats();
+      Map<String, String> current = new ConcurrentHashMap<>();
+      ConnectionWriter writer = new ConnectionWriter(serverSide, 4,
+          SlowConsumerPolicy.COALESCE_LATEST, 5000, stats, current::get);
+      stallWriter(writer);
+      for (int tick = 0; tick < 100; tick++) {
+        for (String node : List.of("n1", "n2")) {
+          // The server patches its cached snapshot before it broadcasts the delta
+          current.put(node, node + "-state-" + tick);
+          assertTrue(writer.sendDelta(node, node + "-delta-" + tick));
+        }
+      }
+      assertTrue(writer.send("alert"), "Deltas must not crowd out other lines");
+      assertEquals(0, stats.getRejected());
+      assertEquals(0, stats.getDroppedOldest());
+      int backlog = writer.pending();
+      assertTrue(backlog <= 3, "Expected one line per node plus the alert, got " + backlog);
+
+      BufferedReader in = readerAfterBigLine(client);
+      Map<String, String> last = new HashMap<>();
+      for (int i = 0; i < backlog; i++) {
+        String line = in.readLine();
+        last.put(line.substring(0, 2), line);
+      }
+      assertEquals("alert", last.get("al"));
+      assertTrue(Set.of("n1-state-99", "n1-delta-99").contains(last.get("n1")), last.get("n1"));
+      assertTrue(Set.of("n2-state-99", "n2-delta-99").contains(last.get("n2")), last.get("n2"));
+      writer.close();
+    }
+  }
+
+  /**
+   * Test that a snapshot makes the queued deltas of its node obsolete.
+   *
+   * <p>Expected outcome: the node's deltas are dropped, other nodes' deltas are kept and the
+   * peer receives the other delta and the snapshot.</p>
+   */
+  @Test
+  public void newerSnapshotDropsQueuedDeltas() throws Exception {
+    try (ServerSocket ss = new ServerSocket(0); Socket client = smallBufferClient(ss);
+        Socket serverSide = ss.accept()) {
+      serverSide.setSendBufferSize(4096);
+      SlowConsumerStats stats = new SlowConsumerStats();
+      ConnectionWriter writer = new ConnectionWriter(serverSide, 10,
+          SlowConsumerPolicy.DROP_OLDEST, 5000, stats);
+      stallWriter(writer);
+      assertTrue(writer.sendDelta("n1", "n1-delta-1"));
+      assertTrue(writer.sendDelta("n2", "n2-delta-1"));
+      assertTrue(writer.sendDelta("n1", "n1-delta-2"));
+      assertTrue(writer.sendSnapshot("n1", "n1-snapshot"));
+      assertEquals(2, writer.pending());
+      assertEquals(2, stats.getCoalesced());
+
+      BufferedReader in = readerAfterBigLine(client);
+      assertEquals("n2-delta-1", in.readLine());
+      assertEquals("n1-snapshot", in.readLine());
+      writer.close();
+    }
+  }
+
+  /**
+   * Test that DROP_OLDEST evicts the oldest queued snapshot when full.
+   *
+   * <p>Expected outcome: the oldest snapshot is dropped, the new line is written and the
+   * drop counter is 1.</p>
+   */
+  @Test
+  public void dropOldestPolicyEvictsOldestSnapshot() throws Exception {
+    try (ServerSocket ss = new ServerSocket(0); Socket client = smallBufferClient(ss);
+        Socket serverSide = ss.accept()) {
+      serverSide.setSendBufferSize(4096);
+      SlowConsumerStats stats = new SlowConsumerStats();
+      ConnectionWriter writer = new ConnectionWriter(serverSide, 2,
+          SlowConsumerPolicy.DROP_OLDEST, 5000, stats);
+      stallWriter(writer);
+      assertTrue(writer.sendSnapshot("n1", "a1"));
+      assertTrue(writer.sendSnapshot("n2", "b1"));
+      assertTrue(writer.send("alert"));
+      assertEquals(1, stats.getDroppedOldest());
+
+      BufferedReader in = readerAfterBigLine(client);
+      assertEquals("b1", in.readLine());
+      assertEquals("alert", in.readLine());
+      writer.close();
+    }
+  }
+
+  /**
+   * Test that DISCONNECT closes a connection that has been behind for too long.
+   *
+   * <p>Expected outcome: the next send fails, the socket is closed and the disconnect counter
+   * is 1.</p>
+   */
+  @Test
+  public void disconnectPolicyClosesLaggingConsumer() throws Exception {
+    try (ServerSocket ss = new ServerSocket(0); Socket client = smallBufferClient(ss);
+        Socket serverSide = ss.accept()) {
+      serverSide.setSendBufferSize(4096);
+      SlowConsumerStats stats = new SlowConsumerStats();
+      ConnectionWriter writer = new ConnectionWriter(serverSide, 8,
+          SlowConsumerPolicy.DISCONNECT, 50, stats);
+      stallWriter(writer);
+      assertTrue(writer.sendSnapshot("n1", "a1"));
+      Thread.sleep(150);
+      assertFalse(writer.sendSnapshot("n1", "a2"));
+      assertEquals(1, stats.getDisconnected());
+      assertTrue(serverSide.isClosed(), "Lagging connection should be closed");
+      assertTrue(client != null);
+    }
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test that a closed writer rejects new lines.
+   *
+   * <p>Expected outcome: send returns false after close.</p>
+   */
+  @Test
+  public void sendAfterCloseIsRejected() throws Exception {
+    try (ServerSocket ss = new ServerSocket(0)) {
+      Socket client = new Socket("localhost", ss.getLocalPort());
+      try (Socket serverSide = ss.accept()) {
+        ConnectionWriter writer = new ConnectionWriter(serverSide, 4);
+        writer.close();
+        assertTrue(writer.isClosed());
+        assertFalse(writer.send("{}"), "Closed writer should not accept lines");
+      } finally {
+        client.close();
+      }
+    }
+  }
+}
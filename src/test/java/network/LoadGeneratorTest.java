@@ -0,0 +1,90 @@
+package network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for LoadGenerator.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>smallRunAgainstEmbeddedServer: verifies that a short run connects every node and that panels receive node updates with measured latency.</li>
+ *   <li>histogramPercentilesWithinPrecision: verifies that percentiles are reported within the histogram's bucket precision.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>invalidArgumentsAreRejected: verifies that malformed, unknown and out-of-range arguments throw IllegalArgumentException.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-27
+ */
+public class LoadGeneratorTest {
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Run a few nodes and panels against an embedded server for one second.
+   *
+   * <p>Expected outcome: all nodes are accepted, commands are sent and every panel receives
+   * node updates, each with a recorded latency.</p>
+   */
+  @Test
+  public void smallRunAgainstEmbeddedServer() throws Exception {
+    LoadGenerator.Config config = LoadGenerator.Config.parse(new String[] {
+        "nodes=5", "panels=2", "tick=50", "commands=20", "duration=1",
+        "sensors=TEMPERATURE:2,CO2:1"});
+    LoadGenerator.Report report = new LoadGenerator(config).run(false);
+
+    assertEquals(5, report.nodesConnected());
+    assertTrue(report.messages() > 0, "panels should receive node updates");
+    assertEquals(report.messages(), report.latency().count());
+    assertTrue(report.commands() > 0, "commands should be sent");
+  }
+
+  /**
+   * Test the latency histogram.
+   *
+   * <p>Expected outcome: for the values 1..10000 µs the median and p99 are within 4% of the
+   * exact values and the maximum is exact.</p>
+   */
+  @Test
+  public void histogramPercentilesWithinPrecision() {
+    LoadGenerator.LatencyHistogram h = new LoadGenerator.LatencyHistogram();
+    for (int i = 1; i <= 10_000; i++) {
+      h.record(i);
+    }
+    assertEquals(10_000, h.count());
+    assertEquals(10_000, h.max());
+    assertEquals(5000, h.percentile(50), 5000 * 0.04);
+    assertEquals(9900, h.percentile(99), 9900 * 0.04);
+    assertEquals(7, LoadGenerator.LatencyHistogram.lowerBound(
+        LoadGenerator.LatencyHistogram.bucket(7)));
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test that bad arguments are rejected.
+   *
+   * <p>Expected outcome: IllegalArgumentException for an argument without '=', an unknown key
+   * and zero nodes.</p>
+   */
+  @Test
+  public void invalidArgumentsAreRejected() {
+    assertThrows(IllegalArgumentException.class,
+        () -> LoadGenerator.Config.parse(new String[] {"nodes"}));
+    assertThrows(IllegalArgumentException.class,
+        () -> LoadGenerator.Config.parse(new String[] {"speed=3"}));
+    assertThrows(IllegalArgumentException.class,
+        () -> LoadGenerator.Config.parse(new String[] {"nodes=0"}));
+  }
+}
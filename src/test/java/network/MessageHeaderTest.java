@@ -0,0 +1,103 @@
+package network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for MessageHeader.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>parseReadsRoutingFields: verifies that messageType, nodeID, location, seq and sensor types are read while other fields are skipped.</li>
+ *   <li>withMessageTypeKeepsRestOfLine: verifies that messageType is spliced in and the original members are kept byte-for-byte.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>parseRejectsMalformedLines: verifies that non-objects, broken JSON and trailing data give no header.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-25
+ */
+public class MessageHeaderTest {
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test that the routing fields are extracted from a node snapshot.
+   *
+   * <p>Expected outcome: the header holds the top-level ids and the sensor types in order, and
+   * nested fields with the same names are ignored.</p>
+   */
+  @Test
+  public void parseReadsRoutingFields() {
+    String line = "{\"nodeID\":\"01\",\"location\":\"greenhouse1\",\"timestamp\":{\"y\":2025},"
+        + "\"sensors\":[{\"sensorId\":\"t1\",\"sensorType\":\"TEMPERATURE\",\"value\":21.5,"
+        + "\"nodeID\":\"nested\"},{\"sensorType\":\"CO2\"}],"
+        + "\"actuators\":[{\"actuatorId\":\"t1_heater\",\"on\":false}],"
+        + "\"messageType\":\"SENSOR_DATA_FROM_NODE\"}";
+    MessageHeader header = MessageHeader.parse(line);
+    assertEquals("SENSOR_DATA_FROM_NODE", header.getMessageType());
+    assertEquals("01", header.getNodeId());
+    assertEquals("greenhouse1", header.getLocation());
+    assertEquals(List.of("TEMPERATURE", "CO2"), header.getSensorTypes());
+    assertEquals(-1, header.getSeq());
+
+    MessageHeader delta = MessageHeader.parse("{\"messageType\":\"NODE_DELTA\",\"nodeID\":\"01\","
+        + "\"seq\":42,\"sensors\":[{\"sensorId\":\"t1\",\"value\":21.5}]}");
+    assertEquals(42, delta.getSeq());
+
+    MessageHeader alert = MessageHeader.parse("{\"messageType\":\"ALERT\",\"nodeID\":\"02\"}");
+    assertEquals("ALERT", alert.getMessageType());
+    assertNull(alert.getLocation());
+    assertTrue(alert.getSensorTypes().isEmpty());
+  }
+
+  /**
+   * Test that a missing messageType is added without re-serializing the line.
+   *
+   * <p>Expected outcome: the result is valid JSON with the new messageType and all original
+   * members, and the original text follows the spliced member unchanged.</p>
+   */
+  @Test
+  public void withMessageTypeKeepsRestOfLine() {
+    String line = "{\"nodeID\":\"01\",\"value\":1.50}";
+    String spliced = MessageHeader.withMessageType(line, "SENSOR_DATA_FROM_NODE");
+    assertEquals("{\"messageType\":\"SENSOR_DATA_FROM_NODE\",\"nodeID\":\"01\",\"value\":1.50}",
+        spliced);
+    JsonObject obj = new Gson().fromJson(spliced, JsonObject.class);
+    assertEquals("01", obj.get("nodeID").getAsString());
+
+    assertEquals("{\"messageType\":\"X\"}", MessageHeader.withMessageType("{}", "X"));
+    assertEquals("SENSOR_DATA_FROM_NODE",
+        MessageHeader.parse(MessageHeader.withMessageType("{ }", "SENSOR_DATA_FROM_NODE"))
+            .getMessageType());
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test that lines that are not a single well-formed JSON object give no header.
+   *
+   * <p>Expected outcome: parse returns null.</p>
+   */
+  @Test
+  public void parseRejectsMalformedLines() {
+    assertNull(MessageHeader.parse(null));
+    assertNull(MessageHeader.parse("NODE_ID_ACCEPTED"));
+    assertNull(MessageHeader.parse("[1,2]"));
+    assertNull(MessageHeader.parse("{\"nodeID\":\"01\""));
+    assertNull(MessageHeader.parse("{\"nodeID\":\"01\"} {\"nodeID\":\"02\"}"));
+  }
+}
@@ -0,0 +1,282 @@
+package network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codec.JsonCodec;
+import com.google.gson.JsonObject;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for NioServer.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>nodeHandshakeIsAccepted: verifies that SENSOR_NODE_CONNECTED is answered with NODE_ID_ACCEPTED.</li>
+ *   <li>nodeSnapshotIsBroadcastWithMessageType: verifies that a node line without messageType reaches the control panel as SENSOR_DATA_FROM_NODE.</li>
+ *   <li>requestNodeIsServedFromCache: verifies that REQUEST_NODE is answered from the last-known snapshot.</li>
+ *   <li>actuatorCommandIsForwardedToNode: verifies that ACTUATOR_COMMAND from a control panel reaches the target node.</li>
+ *   <li>historyQueryReturnsStoredReadings: verifies that readings of snapshots and deltas are answered to QUERY_HISTORY in time order.</li>
+ *   <li>alertBetweenDeltasKeepsCachedSnapshot: verifies that an ALERT between two deltas does not replace the cached snapshot, so both deltas are applied.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>duplicateNodeIdIsRejected: verifies that a second node with the same id gets NODE_ID_REJECTED.</li>
+ *   <li>malformedFieldDoesNotStopEventLoop: verifies that a control panel line with a non-string messageType is ignored and every event loop keeps serving clients.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-24
+ */
+public class NioServerTest {
+
+  private NioServer server;
+  private int port;
+
+  @BeforeEach
+  public void startServer() throws IOException {
+    server = new NioServer(2);
+    server.start(0);
+    port = server.getLocalPort();
+  }
+
+  @AfterEach
+  public void stopServer() {
+    server.close();
+  }
+
+  /**
+   * Small blocking test client.
+   */
+  private static final class Client implements AutoCloseable {
+    final Socket socket;
+    final PrintWriter out;
+    final BufferedReader in;
+
+    Client(int port) throws IOException {
+      socket = new Socket("localhost", port);
+      socket.setSoTimeout(2000);
+      out = new PrintWriter(socket.getOutputStream(), true);
+      in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+    }
+
+    String readLine() throws IOException {
+      try {
+        return in.readLine();
+      } catch (SocketTimeoutException e) {
+        return null;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      socket.close();
+    }
+  }
+
+  private Client connectNode(String nodeId) throws IOException {
+    Client node = new Client(port);
+    node.out.println("SENSOR_NODE_CONNECTED " + nodeId);
+    assertEquals("NODE_ID_ACCEPTED", node.readLine());
+    return node;
+  }
+
+  private Client connectPanel(String cpId) throws Exception {
+    Client panel = new Client(port);
+    panel.out.println("{\"messageType\":\"REGISTER_CONTROL_PANEL\",\"controlPanelId\":\"" + cpId
+        + "\"}");
+    // registration has no reply; give the event loop a moment to process it
+    Thread.sleep(100);
+    return panel;
+  }
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test that a node handshake is accepted.
+   *
+   * <p>Expected outcome: the server replies NODE_ID_ACCEPTED.</p>
+   */
+  @Test
+  public void nodeHandshakeIsAccepted() throws Exception {
+    try (Client node = connectNode("n1")) {
+      assertNotNull(node);
+    }
+  }
+
+  /**
+   * Test that a node snapshot is broadcast to control panels with a messageType added.
+   *
+   * <p>Expected outcome: the panel receives the snapshot tagged SENSOR_DATA_FROM_NODE.</p>
+   */
+  @Test
+  public void nodeSnapshotIsBroadcastWithMessageType() throws Exception {
+    try (Client panel = connectPanel("cp1"); Client node = connectNode("n2")) {
+      node.out.println("{\"nodeID\":\"n2\",\"sensors\":[],\"actuators\":[]}");
+      String received = panel.readLine();
+      assertNotNull(received, "Panel should receive the node snapshot");
+      assertTrue(received.contains("\"messageType\":\"SENSOR_DATA_FROM_NODE\""));
+      assertTrue(received.contains("\"nodeID\":\"n2\""));
+    }
+  }
+
+  /**
+   * Test that REQUEST_NODE is served from the cached snapshot.
+   *
+   * <p>Expected outcome: the panel receives the last line the node sent.</p>
+   */
+  @Test
+  public void requestNodeIsServedFromCache() throws Exception {
+    try (Client node = connectNode("n3"); Client panel = connectPanel("cp1")) {
+      String snapshot = "{\"messageType\":\"SENSOR_DATA_FROM_NODE\",\"nodeID\":\"n3\"}";
+      node.out.println(snapshot);
+      assertEquals(snapshot, panel.readLine());
+
+      panel.out.println("{\"messageType\":\"REQUEST_NODE\",\"nodeID\":\"n3\"}");
+      assertEquals(snapshot, panel.readLine());
+    }
+  }
+
+  /**
+   * Test that ACTUATOR_COMMAND is forwarded to the node.
+   *
+   * <p>Expected outcome: the node receives the original command line.</p>
+   */
+  @Test
+  public void actuatorCommandIsForwardedToNode() throws Exception {
+    try (Client node = connectNode("n4"); Client panel = connectPanel("cp1")) {
+      String cmd = "{\"messageType\":\"ACTUATOR_COMMAND\",\"nodeID\":\"n4\","
+          + "\"actuatorId\":\"s1_heater\",\"command\":\"TURN_ON\"}";
+      panel.out.println(cmd);
+      assertEquals(cmd, node.readLine());
+    }
+  }
+
+  /**
+   * Test that QUERY_HISTORY is answered with the readings the node sent.
+   *
+   * <p>Expected outcome: the snapshot reading and the delta reading come back oldest first; the
+   * snapshot repeated with an unchanged reading does not add a point.</p>
+   */
+  @Test
+  public void historyQueryReturnsStoredReadings() throws Exception {
+    try (Client node = connectNode("n5"); Client panel = connectPanel("cp1")) {
+      String snapshot = "{\"messageType\":\"SENSOR_DATA_FROM_NODE\",\"nodeID\":\"n5\","
+          + "\"seq\":0,"
+          + "\"sensors\":[{\"sensorId\":\"t1\",\"value\":20.5,"
+          + "\"timestamp\":\"2025-11-20T10:00:00\"}],\"actuators\":[]}";
+      node.out.println(snapshot);
+      assertNotNull(panel.readLine());
+      node.out.println("{\"messageType\":\"NODE_DELTA\",\"nodeID\":\"n5\",\"seq\":1,"
+          + "\"sensors\":[{\"sensorId\":\"t1\",\"value\":21.0,"
+          + "\"timestamp\":\"2025-11-20T10:00:05\"}]}");
+      assertNotNull(panel.readLine());
+      node.out.println(snapshot.replace("\"seq\":0", "\"seq\":2"));
+      assertNotNull(panel.readLine());
+
+      panel.out.println("{\"messageType\":\"QUERY_HISTORY\",\"nodeID\":\"n5\","
+          + "\"sensorId\":\"t1\","
+          + "\"from\":\"2025-11-20T09:00:00\",\"to\":\"2025-11-20T11:00:00\"}");
+      JsonObject history = JsonCodec.gson().fromJson(panel.readLine(), JsonObject.class);
+      assertEquals("HISTORY", history.get("messageType").getAsString());
+      assertEquals(2, history.getAsJsonArray("values").size());
+      assertEquals("2025-11-20T10:00", history.getAsJsonArray("timestamps").get(0).getAsString());
+      assertEquals(20.5, history.getAsJsonArray("values").get(0).getAsDouble());
+      assertEquals(21.0, history.getAsJsonArray("values").get(1).getAsDouble());
+      assertFalse(history.get("truncated").getAsBoolean());
+    }
+  }
+
+  /**
+   * Test that an ALERT between two deltas is not cached as the node's state.
+   *
+   * <p>Expected outcome: both deltas and the alert reach the panel, the node is not asked for a
+   * resync, and REQUEST_NODE returns the snapshot with both deltas applied.</p>
+   */
+  @Test
+  public void alertBetweenDeltasKeepsCachedSnapshot() throws Exception {
+    try (Client node = connectNode("n6"); Client panel = connectPanel("cp1")) {
+      node.out.println("{\"messageType\":\"SENSOR_DATA_FROM_NODE\",\"nodeID\":\"n6\","
+          + "\"seq\":0,\"sensors\":[{\"sensorId\":\"t1\",\"value\":20.0},"
+          + "{\"sensorId\":\"t2\",\"value\":30.0}]}");
+      assertNotNull(panel.readLine());
+      String first = "{\"messageType\":\"NODE_DELTA\",\"nodeID\":\"n6\",\"seq\":1,"
+          + "\"sensors\":[{\"sensorId\":\"t1\",\"value\":21.0}]}";
+      String alert = "{\"messageType\":\"ALERT\",\"nodeID\":\"n6\",\"alert\":\"t2 high\"}";
+      String second = "{\"messageType\":\"NODE_DELTA\",\"nodeID\":\"n6\",\"seq\":2,"
+          + "\"sensors\":[{\"sensorId\":\"t2\",\"value\":31.0}]}";
+      node.out.println(first);
+      node.out.println(alert);
+      node.out.println(second);
+      assertEquals(first, panel.readLine());
+      assertEquals(alert, panel.readLine());
+      assertEquals(second, panel.readLine());
+
+      panel.out.println("{\"messageType\":\"REQUEST_NODE\",\"nodeID\":\"n6\"}");
+      JsonObject cached = JsonCodec.gson().fromJson(panel.readLine(), JsonObject.class);
+      assertEquals(2, cached.get("seq").getAsLong());
+      assertEquals(21.0, cached.getAsJsonArray("sensors").get(0).getAsJsonObject()
+          .get("value").getAsDouble());
+      assertEquals(31.0, cached.getAsJsonArray("sensors").get(1).getAsJsonObject()
+          .get("value").getAsDouble());
+      node.socket.setSoTimeout(200);
+      assertNull(node.readLine(), "Node should not be asked to resync");
+    }
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test that a duplicate node id is rejected.
+   *
+   * <p>Expected outcome: the second node gets NODE_ID_REJECTED and the connection is closed.</p>
+   */
+  @Test
+  public void duplicateNodeIdIsRejected() throws Exception {
+    try (Client first = connectNode("dup"); Client second = new Client(port)) {
+      second.out.println("SENSOR_NODE_CONNECTED dup");
+      assertEquals("NODE_ID_REJECTED", second.readLine());
+      assertNull(second.readLine(), "Rejected connection should be closed");
+      assertNotNull(first);
+    }
+  }
+
+  /**
+   * Test that a control panel line with an object as messageType does not stop the event loop.
+   *
+   * <p>Expected outcome: the line is ignored, and two more nodes (so one lands on every event
+   * loop) are accepted and their snapshots reach the same panel.</p>
+   */
+  @Test
+  public void malformedFieldDoesNotStopEventLoop() throws Exception {
+    try (Client panel = connectPanel("cp1")) {
+      panel.out.println("{\"messageType\":{},\"nodeID\":[]}");
+      try (Client first = connectNode("m1"); Client second = connectNode("m2")) {
+        first.out.println("{\"nodeID\":\"m1\"}");
+        second.out.println("{\"nodeID\":\"m2\"}");
+        String one = panel.readLine();
+        String two = panel.readLine();
+        assertNotNull(one, "Panel should still receive snapshots");
+        assertNotNull(two, "Panel should still receive snapshots");
+        assertTrue(one.contains("m1") || two.contains("m1"));
+        assertTrue(one.contains("m2") || two.contains("m2"));
+      }
+    }
+  }
+}
@@ -1,26 +1,40 @@
 package network;
 
 import java.io.BufferedReader;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PipedReader;
+import java.io.PipedWriter;
 import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializer;
 
 import entity.Node;
 import entity.actuator.AirCondition;
 import entity.actuator.Heater;
+import entity.sensor.TemperatureSensor;
 
 /**
  * Test class for NodeClient.
@@ -33,6 +47,14 @@ import entity.actuator.Heater;
  *   <li>sendNodeWritesSensorDataMessage: verifies that the node client writes a SENSOR_DATA_FROM_NODE message and includes a node id field.</li>
  *   <li>actuatorCommandTurnsOnAndResolvesConflict: verifies that an ACTUATOR_COMMAND turns on the specified heater and that conflicting actuators (AC) are turned off to resolve the conflict.</li>
  *   <li>addAndRemoveSensorCommandsModifyNode: verifies that ADD_SENSOR adds a sensor to the node and that REMOVE_SENSOR removes it afterwards.</li>
+ *   <li>snapshotLinesAreCompleteAndIndependent: verifies that consecutive snapshots written through the reused buffer are each one JSON object with the envelope and all node fields.</li>
+ *   <li>sendsDoNotWaitForTheConnection: verifies that sending returns while the connection is blocked and that the queued messages are written in order once it is not.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>negativeEchoSamplingIsRejected: verifies that a negative echo sampling rate throws IllegalArgumentException.</li>
  * </ul>
  * @author Group 1
  * @version 2025-11-18
@@ -64,6 +86,8 @@ public class NodeClientTest {
 
     NodeClient nc = new NodeClient(node, null, out, in, gson);
     nc.sendCurrentNode();
+    // Writes what is still queued
+    nc.close();
 
     String written = sw.toString();
     assertTrue(written.contains("\"messageType\":\"SENSOR_DATA_FROM_NODE\""), "Must include SENSOR_DATA_FROM_NODE");
@@ -138,7 +162,11 @@ public class NodeClientTest {
         + "\"messageType\":\"REMOVE_SENSOR\","
         + "\"sensorId\":\"temp1\""
         + "}\n";
-    BufferedReader in = new BufferedReader(new StringReader(add + remove));
+    // REMOVE_SENSOR is only written once the add has been observed, so the check cannot miss it
+    PipedWriter commands = new PipedWriter();
+    BufferedReader in = new BufferedReader(new PipedReader(commands));
+    commands.write(add);
+    commands.flush();
 
     Gson gson = buildGson();
     List<entity.sensor.Sensor> sensors = new ArrayList<>();
@@ -159,6 +187,8 @@ public class NodeClientTest {
       Thread.sleep(50);
     }
     assertTrue(addedSensor, "Sensor temp1 should be added");
+    commands.write(remove);
+    commands.flush();
 
     // wait until sensor is removed (timeout 5000 ms)
     start = System.currentTimeMillis();
@@ -173,4 +203,100 @@ public class NodeClientTest {
     assertTrue(removed, "Sensor temp1 should be removed after REMOVE_SENSOR");
     nc.close();
   }
+
+  /**
+   * Test that snapshots written through the reused buffer are complete lines.
+   *
+   * <p>Expected outcome: two snapshots give two lines; each parses as one object with the
+   * messageType, consecutive seq numbers and the same node fields Gson writes for the node, and the
+   * second reflects the changed reading rather than leftovers of the first.</p>
+   */
+  @Test
+  public void snapshotLinesAreCompleteAndIndependent() {
+    StringWriter sw = new StringWriter();
+    PrintWriter out = new PrintWriter(sw, true);
+    Gson gson = buildGson();
+    Node node = new Node("n1", "loc", new ArrayList<>(), new ArrayList<>());
+    TemperatureSensor sensor = new TemperatureSensor("t1", 10, 30);
+    node.addSensor(sensor);
+    node.addActuator(new Heater("h1"));
+
+    NodeClient nc = new NodeClient(node, null, out, new BufferedReader(new StringReader("")), gson);
+    nc.setEcho(false);
+    nc.sendNode(node);
+    sensor.updateValue(sensor.getValue() + 1);
+    nc.sendNode(node);
+    nc.close();
+
+    String[] lines = sw.toString().split("\\R");
+    assertEquals(2, lines.length);
+    JsonObject expected = JsonParser.parseString(gson.toJson(node)).getAsJsonObject();
+    JsonObject first = JsonParser.parseString(lines[0]).getAsJsonObject();
+    JsonObject second = JsonParser.parseString(lines[1]).getAsJsonObject();
+    assertEquals("SENSOR_DATA_FROM_NODE", first.remove("messageType").getAsString());
+    assertEquals("SENSOR_DATA_FROM_NODE", second.remove("messageType").getAsString());
+    assertEquals(first.remove("seq").getAsLong() + 1, second.remove("seq").getAsLong());
+    assertEquals("n1", first.get("nodeID").getAsString());
+    assertEquals(expected, second);
+  }
+
+  /**
+   * Test that sending only queues: a connection that does not accept writes does not hold up
+   * the sender.
+   *
+   * <p>Expected outcome: a snapshot and a delta are sent while the connection is blocked; once
+   * it is released both lines are written, the snapshot first.</p>
+   */
+  @Test
+  public void sendsDoNotWaitForTheConnection() throws Exception {
+    CountDownLatch released = new CountDownLatch(1);
+    StringWriter sw = new StringWriter();
+    Writer blocked = new FilterWriter(sw) {
+      @Override
+      public void write(String str, int off, int len) throws IOException {
+        try {
+          released.await();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+        super.write(str, off, len);
+      }
+    };
+    Node node = new Node("n1", "loc", new ArrayList<>(), new ArrayList<>());
+    TemperatureSensor sensor = new TemperatureSensor("t1", 10, 30);
+    node.addSensor(sensor);
+    NodeClient nc = new NodeClient(node, null, new PrintWriter(blocked),
+        new BufferedReader(new StringReader("")), buildGson());
+    nc.setEcho(false);
+
+    assertTimeoutPreemptively(Duration.ofSeconds(2), () -> {
+      nc.sendNodeUpdate();
+      sensor.updateValue(sensor.getValue() + 5);
+      nc.sendNodeUpdate();
+    });
+    released.countDown();
+    nc.close();
+
+    String[] lines = sw.toString().split("\\R");
+    assertEquals(2, lines.length);
+    assertEquals(0, JsonParser.parseString(lines[0]).getAsJsonObject().get("seq").getAsLong());
+    JsonObject delta = JsonParser.parseString(lines[1]).getAsJsonObject();
+    assertEquals(NodeDelta.MESSAGE_TYPE, delta.get("messageType").getAsString());
+    assertEquals(1, delta.get("seq").getAsLong());
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test that a negative echo sampling rate is rejected.
+   *
+   * <p>Expected outcome: IllegalArgumentException.</p>
+   */
+  @Test
+  public void negativeEchoSamplingIsRejected() {
+    NodeClient nc = new NodeClient(new Node("n1", "loc", new ArrayList<>(), new ArrayList<>()),
+        null, new PrintWriter(new StringWriter()), new BufferedReader(new StringReader("")),
+        buildGson());
+    assertThrows(IllegalArgumentException.class, () -> nc.setEchoEvery(-1));
+  }
 }
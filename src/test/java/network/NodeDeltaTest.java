@@ -0,0 +1,210 @@
+package network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codec.JsonCodec;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import entity.Node;
+import entity.PublishPolicy;
+import entity.SampleNodes;
+import entity.sensor.TemperatureSensor;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for NodeDelta.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>deltaContainsOnlyChanges: verifies that a delta lists only the changed readings and actuator states and that snapshots and deltas share one sequence.</li>
+ *   <li>deadbandHoldsBackNoiseUntilHeartbeat: verifies that readings inside the node's deadband are not sent until the heartbeat expires.</li>
+ *   <li>applyPatchesCachedSnapshot: verifies that a delta following the cached sequence updates the cached snapshot and its seq.</li>
+ *   <li>cachedSnapshotIsWrittenWhenRead: verifies that a cached snapshot is served as received until patched, reflects every applied delta when read, and is not partly patched by a delta it rejects.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>structuralChangeNeedsSnapshot: verifies that adding a sensor requires a full snapshot instead of a delta.</li>
+ *   <li>applyDetectsStaleAndGaps: verifies that old deltas are ignored and that missing updates, unknown ids and a missing cache are reported as gaps.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-26
+ */
+public class NodeDeltaTest {
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test that a delta carries only what changed since the last message.
+   *
+   * <p>Expected outcome: no delta while nothing changed, then one sensor and one actuator entry
+   * with the sequence number following the snapshot's.</p>
+   */
+  @Test
+  public void deltaContainsOnlyChanges() {
+    Node node = SampleNodes.node();
+    NodeDelta deltas = new NodeDelta();
+    assertTrue(deltas.needsSnapshot(node));
+    assertEquals(0, deltas.recordSnapshot(node));
+    assertFalse(deltas.needsSnapshot(node));
+    assertNull(deltas.nextDelta(node));
+
+    node.getSensors().get(0).updateValue(21.5);
+    node.getActuators().get(0).setOn(false);
+    JsonObject delta = deltas.nextDelta(node);
+    assertEquals(NodeDelta.MESSAGE_TYPE, delta.get("messageType").getAsString());
+    assertEquals(1, delta.get("seq").getAsLong());
+    assertEquals(1, delta.getAsJsonArray("sensors").size());
+    JsonObject reading = delta.getAsJsonArray("sensors").get(0).getAsJsonObject();
+    assertEquals("t1", reading.get("sensorId").getAsString());
+    assertEquals(21.5, reading.get("value").getAsDouble());
+    assertFalse(delta.getAsJsonArray("actuators").get(0).getAsJsonObject().get("on")
+        .getAsBoolean());
+    assertNull(deltas.nextDelta(node));
+  }
+
+  /**
+   * Test that the node's publish policy filters small changes.
+   *
+   * <p>Expected outcome: no delta for a change inside the deadband, a delta once the heartbeat
+   * has expired, and a delta right away for a change past the deadband.</p>
+   */
+  @Test
+  public void deadbandHoldsBackNoiseUntilHeartbeat() {
+    Node node = SampleNodes.node();
+    node.setPublishPolicy(new PublishPolicy(Map.of("TEMPERATURE", "0.1"), 10_000));
+    node.getSensors().get(0).updateValue(20.0);
+    NodeDelta deltas = new NodeDelta();
+    deltas.recordSnapshot(node, 0);
+
+    node.getSensors().get(0).updateValue(20.01);
+    assertNull(deltas.nextDelta(node, 3_000));
+    JsonObject heartbeat = deltas.nextDelta(node, 10_000);
+    assertEquals(20.01, heartbeat.getAsJsonArray("sensors").get(0).getAsJsonObject()
+        .get("value").getAsDouble());
+    // the unchanged CO2 sensor is due for its heartbeat too
+    assertEquals(2, heartbeat.getAsJsonArray("sensors").size());
+
+    node.getSensors().get(0).updateValue(20.5);
+    assertEquals(1, deltas.nextDelta(node, 11_000).getAsJsonArray("sensors").size());
+  }
+
+  /**
+   * Test that a delta is applied onto a cached snapshot.
+   *
+   * <p>Expected outcome: APPLIED, the cached snapshot has the new reading and actuator state,
+   * the unchanged sensor is kept and the cached seq is advanced.</p>
+   */
+  @Test
+  public void applyPatchesCachedSnapshot() {
+    Node node = SampleNodes.node();
+    NodeDelta deltas = new NodeDelta();
+    deltas.recordSnapshot(node);
+    Map<String, CachedSnapshot> snapshots = new HashMap<>();
+    Map<String, Long> seqs = new HashMap<>();
+    snapshots.put("n1", new CachedSnapshot(JsonCodec.gson().toJson(node)));
+    seqs.put("n1", 0L);
+
+    node.getSensors().get(0).updateValue(25.0);
+    node.getActuators().get(1).setOn(true);
+    String line = deltas.nextDelta(node).toString();
+    assertEquals(NodeDelta.Result.APPLIED, NodeDelta.apply(snapshots, seqs, "n1", 1, line));
+
+    assertEquals(1L, seqs.get("n1"));
+    Node cached = Node.nodeFromJson(snapshots.get("n1").line());
+    assertEquals(25.0, cached.getSensors().get(0).getValue());
+    assertEquals(node.getSensors().get(1).getValue(), cached.getSensors().get(1).getValue());
+    assertTrue(cached.getActuators().get(1).isOn());
+    assertEquals(1, JsonParser.parseString(snapshots.get("n1").line()).getAsJsonObject().get("seq")
+        .getAsLong());
+  }
+
+  /**
+   * Test that deltas are patched onto the parsed snapshot and written out when it is read.
+   *
+   * <p>Expected outcome: the received line until a delta arrives; after two deltas one line with
+   * both readings, written once; a delta naming an unknown sensor leaves the known one as it
+   * was.</p>
+   */
+  @Test
+  public void cachedSnapshotIsWrittenWhenRead() {
+    String line = JsonCodec.gson().toJson(SampleNodes.node());
+    CachedSnapshot cached = new CachedSnapshot(line);
+    assertSame(line, cached.line());
+
+    String delta = "{\"messageType\":\"NODE_DELTA\",\"nodeID\":\"n1\",\"seq\":%d,"
+        + "\"sensors\":[%s]}";
+    assertTrue(cached.patch(JsonParser.parseString(
+        String.format(delta, 1, "{\"sensorId\":\"t1\",\"value\":21.0}")).getAsJsonObject()));
+    assertTrue(cached.patch(JsonParser.parseString(
+        String.format(delta, 2, "{\"sensorId\":\"c1\",\"value\":900.0}")).getAsJsonObject()));
+    String patched = cached.line();
+    assertSame(patched, cached.line());
+    Node node = Node.nodeFromJson(patched);
+    assertEquals(21.0, node.getSensor("t1").getValue());
+    assertEquals(900.0, node.getSensor("c1").getValue());
+
+    assertFalse(cached.patch(JsonParser.parseString(String.format(delta, 3,
+        "{\"sensorId\":\"t1\",\"value\":99.0},{\"sensorId\":\"x9\",\"value\":1.0}"))
+        .getAsJsonObject()));
+    assertEquals(patched, cached.line());
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test that sensors added after the last snapshot force a new snapshot.
+   *
+   * <p>Expected outcome: needsSnapshot is true after a sensor is added.</p>
+   */
+  @Test
+  public void structuralChangeNeedsSnapshot() {
+    Node node = SampleNodes.node();
+    NodeDelta deltas = new NodeDelta();
+    deltas.recordSnapshot(node);
+    node.addSensor(new TemperatureSensor("t2", 15, 30));
+    assertTrue(deltas.needsSnapshot(node));
+    assertEquals(1, deltas.recordSnapshot(node));
+    assertFalse(deltas.needsSnapshot(node));
+  }
+
+  /**
+   * Test that deltas which cannot be applied are detected.
+   *
+   * <p>Expected outcome: STALE for an old seq, GAP for a skipped seq, an unknown sensor id and a
+   * node without a cached snapshot; the cache is left untouched in every case.</p>
+   */
+  @Test
+  public void applyDetectsStaleAndGaps() {
+    Node node = SampleNodes.node();
+    String snapshot = JsonCodec.gson().toJson(node);
+    Map<String, CachedSnapshot> snapshots = new HashMap<>();
+    Map<String, Long> seqs = new HashMap<>();
+    snapshots.put("n1", new CachedSnapshot(snapshot));
+    seqs.put("n1", 5L);
+    String delta = "{\"messageType\":\"NODE_DELTA\",\"nodeID\":\"n1\",\"seq\":%d,"
+        + "\"sensors\":[{\"sensorId\":\"%s\",\"value\":1.0}]}";
+
+    assertEquals(NodeDelta.Result.STALE,
+        NodeDelta.apply(snapshots, seqs, "n1", 5, String.format(delta, 5, "t1")));
+    assertEquals(NodeDelta.Result.GAP,
+        NodeDelta.apply(snapshots, seqs, "n1", 7, String.format(delta, 7, "t1")));
+    assertEquals(NodeDelta.Result.GAP,
+        NodeDelta.apply(snapshots, seqs, "n1", 6, String.format(delta, 6, "unknown")));
+    assertEquals(NodeDelta.Result.GAP,
+        NodeDelta.apply(snapshots, seqs, "n2", 0, String.format(delta, 0, "t1")));
+    assertEquals(snapshot, snapshots.get("n1").line());
+    assertEquals(5L, seqs.get("n1"));
+  }
+}
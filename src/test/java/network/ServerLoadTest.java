@@ -0,0 +1,103 @@
+package network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Load test comparing platform-thread and virtual-thread execution of {@code Server.ClientHandler}.
+ *
+ * <p>Connects a number of simulated nodes that stay connected at the same time, once per
+ * execution mode, and prints how many were accepted, how long it took and how many platform
+ * threads the JVM needed. The default node count keeps the regular build fast; raise it with
+ * {@code -Dserver.loadtest.nodes=10000} to find where platform threads give out (virtual threads
+ * are not counted as platform threads, which is where the difference shows).</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>platformAndVirtualThreadsSustainConcurrentNodes: verifies that every simulated node is accepted in both modes.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-24
+ */
+public class ServerLoadTest {
+
+  private static final int NODES = Integer.getInteger("server.loadtest.nodes", 200);
+
+  /**
+   * Result of one load run.
+   */
+  private record LoadResult(String mode, int accepted, long elapsedMillis, int peakThreads) {
+  }
+
+  private LoadResult run(String mode, ExecutorService executor) throws Exception {
+    List<Socket> clients = new ArrayList<>();
+    int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+    int peakThreads = 0;
+    int accepted = 0;
+    long start = System.nanoTime();
+    try (ServerSocket serverSocket = new ServerSocket(0, NODES)) {
+      Thread acceptor = new Thread(() -> Server.serve(serverSocket, executor),
+          "load-test-acceptor");
+      acceptor.setDaemon(true);
+      acceptor.start();
+
+      for (int i = 0; i < NODES; i++) {
+        Socket socket;
+        try {
+          socket = new Socket("localhost", serverSocket.getLocalPort());
+        } catch (Exception e) {
+          System.out.printf("[%s] connect failed after %d nodes: %s%n", mode, i, e.getMessage());
+          break;
+        }
+        clients.add(socket);
+        socket.setSoTimeout(5000);
+        PrintWriter out = new PrintWriter(socket.getOutputStream(), true);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        out.println("SENSOR_NODE_CONNECTED " + mode + "-" + i);
+        if ("NODE_ID_ACCEPTED".equals(in.readLine())) {
+          accepted++;
+        }
+        peakThreads = Math.max(peakThreads, ManagementFactory.getThreadMXBean().getThreadCount());
+      }
+    } finally {
+      for (Socket s : clients) {
+        s.close();
+      }
+      executor.shutdown();
+    }
+    long elapsed = (System.nanoTime() - start) / 1_000_000;
+    return new LoadResult(mode, accepted, elapsed, Math.max(0, peakThreads - threadsBefore));
+  }
+
+  /**
+   * Run the same load against both execution modes and report the numbers side by side.
+   *
+   * <p>Expected outcome: all nodes are accepted with platform threads and with virtual threads.</p>
+   */
+  @Test
+  public void platformAndVirtualThreadsSustainConcurrentNodes() throws Exception {
+    LoadResult platform = run("platform", Executors.newThreadPerTaskExecutor(
+        Thread.ofPlatform().name("ClientHandler-", 0).factory()));
+    LoadResult virtual = run("virtual", Executors.newVirtualThreadPerTaskExecutor());
+
+    for (LoadResult r : List.of(platform, virtual)) {
+      System.out.printf("[load] %-8s nodes=%d accepted=%d elapsed=%dms extraPlatformThreads=%d%n",
+          r.mode(), NODES, r.accepted(), r.elapsedMillis(), r.peakThreads());
+    }
+    assertEquals(NODES, platform.accepted(), "All nodes should be accepted on platform threads");
+    assertEquals(NODES, virtual.accepted(), "All nodes should be accepted on virtual threads");
+  }
+}
@@ -5,17 +5,33 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import codec.BinaryFrameReader;
+import codec.BinaryFrameWriter;
+import codec.JsonCodec;
+import com.google.gson.JsonObject;
+import entity.Node;
+import entity.sensor.TemperatureSensor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Tests for Server broadcast behavior.
@@ -87,6 +103,183 @@ public class ServerTest {
     }
   }
 
+  @Test
+  public void subscribedPanelOnlyReceivesMatchingNodes() throws Exception {
+    ServerSocket ss = new ServerSocket(0);
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    executor.execute(() -> Server.serve(ss, executor));
+    try (Socket filtered = new Socket("localhost", ss.getLocalPort());
+        Socket unfiltered = new Socket("localhost", ss.getLocalPort());
+        Socket node = new Socket("localhost", ss.getLocalPort())) {
+      PrintWriter filteredOut = new PrintWriter(filtered.getOutputStream(), true);
+      PrintWriter unfilteredOut = new PrintWriter(unfiltered.getOutputStream(), true);
+      PrintWriter nodeOut = new PrintWriter(node.getOutputStream(), true);
+      filteredOut.println("{\"messageType\":\"REGISTER_CONTROL_PANEL\",\"controlPanelId\":\"cpA\"}");
+      filteredOut.println("{\"messageType\":\"SUBSCRIBE\",\"location\":\"gh-a\"}");
+      unfilteredOut.println("{\"messageType\":\"REGISTER_CONTROL_PANEL\",\"controlPanelId\":\"cpAll\"}");
+
+      // wait until the server has processed the subscription
+      Field subsField = Server.class.getDeclaredField("controlPanelSubscriptions");
+      subsField.setAccessible(true);
+      Field cpField = Server.class.getDeclaredField("controlPanels");
+      cpField.setAccessible(true);
+      long deadline = System.currentTimeMillis() + 2000;
+      while ((((Map<?, ?>) subsField.get(null)).isEmpty()
+          || ((List<?>) cpField.get(null)).size() < 2)
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+
+      nodeOut.println("SENSOR_NODE_CONNECTED n1");
+      BufferedReader nodeIn = new BufferedReader(new InputStreamReader(node.getInputStream()));
+      node.setSoTimeout(2000);
+      assertEquals("NODE_ID_ACCEPTED", nodeIn.readLine());
+      // Sent in order on one connection: the first snapshot does not match the subscription
+      nodeOut.println("{\"nodeID\":\"other\",\"location\":\"gh-b\",\"sensors\":[]}");
+      nodeOut.println("{\"nodeID\":\"n1\",\"location\":\"gh-a\",\"sensors\":[]}");
+
+      filtered.setSoTimeout(2000);
+      unfiltered.setSoTimeout(2000);
+      BufferedReader filteredIn = new BufferedReader(new InputStreamReader(filtered.getInputStream()));
+      BufferedReader unfilteredIn = new BufferedReader(
+          new InputStreamReader(unfiltered.getInputStream()));
+      assertTrue(filteredIn.readLine().contains("\"nodeID\":\"n1\""),
+          "Subscribed panel should only receive the matching node");
+      assertTrue(unfilteredIn.readLine().contains("\"nodeID\":\"other\""),
+          "Panel without subscriptions should receive every node");
+      assertTrue(unfilteredIn.readLine().contains("\"nodeID\":\"n1\""));
+    } finally {
+      ss.close();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void alertBetweenDeltasKeepsCachedSnapshot() throws Exception {
+    ServerSocket ss = new ServerSocket(0);
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    executor.execute(() -> Server.serve(ss, executor));
+    try (Socket panel = new Socket("localhost", ss.getLocalPort());
+        Socket node = new Socket("localhost", ss.getLocalPort())) {
+      panel.setSoTimeout(2000);
+      node.setSoTimeout(2000);
+      PrintWriter panelOut = new PrintWriter(panel.getOutputStream(), true);
+      panelOut.println("{\"messageType\":\"REGISTER_CONTROL_PANEL\",\"controlPanelId\":\"cpD\"}");
+      Field cpField = Server.class.getDeclaredField("controlPanels");
+      cpField.setAccessible(true);
+      long deadline = System.currentTimeMillis() + 2000;
+      while (((List<?>) cpField.get(null)).isEmpty() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+
+      PrintWriter nodeOut = new PrintWriter(node.getOutputStream(), true);
+      BufferedReader nodeIn = new BufferedReader(new InputStreamReader(node.getInputStream()));
+      nodeOut.println("SENSOR_NODE_CONNECTED nd");
+      assertEquals("NODE_ID_ACCEPTED", nodeIn.readLine());
+      nodeOut.println("{\"messageType\":\"SENSOR_DATA_FROM_NODE\",\"nodeID\":\"nd\",\"seq\":0,"
+          + "\"sensors\":[{\"sensorId\":\"t1\",\"value\":20.0},"
+          + "{\"sensorId\":\"t2\",\"value\":30.0}]}");
+      String first = "{\"messageType\":\"NODE_DELTA\",\"nodeID\":\"nd\",\"seq\":1,"
+          + "\"sensors\":[{\"sensorId\":\"t1\",\"value\":21.0}]}";
+      String alert = "{\"messageType\":\"ALERT\",\"nodeID\":\"nd\",\"alert\":\"t2 high\"}";
+      String second = "{\"messageType\":\"NODE_DELTA\",\"nodeID\":\"nd\",\"seq\":2,"
+          + "\"sensors\":[{\"sensorId\":\"t2\",\"value\":31.0}]}";
+      nodeOut.println(first);
+      nodeOut.println(alert);
+      nodeOut.println(second);
+      BufferedReader panelIn = new BufferedReader(new InputStreamReader(panel.getInputStream()));
+      assertTrue(readFromNode(panelIn, "nd").contains("\"seq\":0"));
+      assertEquals(first, readFromNode(panelIn, "nd"));
+      assertEquals(alert, readFromNode(panelIn, "nd"));
+      assertEquals(second, readFromNode(panelIn, "nd"), "Delta after an alert should be applied");
+
+      panelOut.println("{\"messageType\":\"REQUEST_NODE\",\"nodeID\":\"nd\"}");
+      JsonObject cached = JsonCodec.gson().fromJson(readFromNode(panelIn, "nd"), JsonObject.class);
+      assertEquals(2, cached.get("seq").getAsLong());
+      assertEquals(21.0, cached.getAsJsonArray("sensors").get(0).getAsJsonObject()
+          .get("value").getAsDouble());
+      assertEquals(31.0, cached.getAsJsonArray("sensors").get(1).getAsJsonObject()
+          .get("value").getAsDouble());
+      node.setSoTimeout(200);
+      assertThrows(SocketTimeoutException.class, nodeIn::readLine,
+          "Node should not be asked to resync");
+    } finally {
+      ss.close();
+      executor.shutdownNow();
+    }
+  }
+
+  // Skip lines about other nodes, such as disconnects of nodes from earlier tests
+  private static String readFromNode(BufferedReader in, String nodeId) throws IOException {
+    String line = in.readLine();
+    while (line != null && !line.contains("\"nodeID\":\"" + nodeId + "\"")) {
+      line = in.readLine();
+    }
+    return line;
+  }
+
+  @Test
+  public void binaryAndJsonClientsAreBridged() throws Exception {
+    ServerSocket ss = new ServerSocket(0);
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    executor.execute(() -> Server.serve(ss, executor));
+    try (Socket binaryPanel = new Socket("localhost", ss.getLocalPort());
+        Socket jsonPanel = new Socket("localhost", ss.getLocalPort());
+        Socket binaryNode = new Socket("localhost", ss.getLocalPort());
+        Socket jsonNode = new Socket("localhost", ss.getLocalPort())) {
+      binaryPanel.setSoTimeout(2000);
+      jsonPanel.setSoTimeout(2000);
+      binaryNode.setSoTimeout(2000);
+      jsonNode.setSoTimeout(2000);
+      new PrintWriter(binaryPanel.getOutputStream(), true).println(
+          "{\"messageType\":\"REGISTER_CONTROL_PANEL\",\"controlPanelId\":\"cpBin\","
+              + "\"framing\":\"binary\"}");
+      new PrintWriter(jsonPanel.getOutputStream(), true).println(
+          "{\"messageType\":\"REGISTER_CONTROL_PANEL\",\"controlPanelId\":\"cpJson\"}");
+      InputStream binaryPanelIn = new BufferedInputStream(binaryPanel.getInputStream());
+      assertEquals(Server.FRAMING_ACCEPTED, BinaryFrameReader.readHandshakeLine(binaryPanelIn));
+      BinaryFrameReader binaryPanelFrames = new BinaryFrameReader(binaryPanelIn);
+
+      Field cpField = Server.class.getDeclaredField("controlPanels");
+      cpField.setAccessible(true);
+      long deadline = System.currentTimeMillis() + 2000;
+      while (((List<?>) cpField.get(null)).size() < 2 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(10);
+      }
+
+      // Binary node -> JSON panel and binary panel
+      OutputStream binaryNodeOut = new BufferedOutputStream(binaryNode.getOutputStream());
+      binaryNodeOut.write("SENSOR_NODE_CONNECTED nb BINARY\n".getBytes(StandardCharsets.UTF_8));
+      binaryNodeOut.flush();
+      InputStream binaryNodeIn = new BufferedInputStream(binaryNode.getInputStream());
+      assertEquals("NODE_ID_ACCEPTED BINARY", BinaryFrameReader.readHandshakeLine(binaryNodeIn));
+      Node node = new Node("nb", "gh-bin", new ArrayList<>(), new ArrayList<>());
+      node.addSensor(new TemperatureSensor("t1", 15, 30));
+      BinaryFrameWriter frames = new BinaryFrameWriter(binaryNodeOut);
+      frames.writeSnapshot(node);
+      frames.flush();
+
+      BufferedReader jsonPanelIn = new BufferedReader(
+          new InputStreamReader(jsonPanel.getInputStream()));
+      String bridged = jsonPanelIn.readLine();
+      assertTrue(bridged.contains("\"messageType\":\"SENSOR_DATA_FROM_NODE\""), bridged);
+      assertEquals("t1", Node.nodeFromJson(bridged).getSensors().get(0).getSensorId());
+      assertEquals("nb", Node.nodeFromJson(binaryPanelFrames.readLine()).getNodeID());
+
+      // JSON node -> binary panel
+      PrintWriter jsonNodeOut = new PrintWriter(jsonNode.getOutputStream(), true);
+      jsonNodeOut.println("SENSOR_NODE_CONNECTED nj");
+      assertEquals("NODE_ID_ACCEPTED",
+          new BufferedReader(new InputStreamReader(jsonNode.getInputStream())).readLine());
+      jsonNodeOut.println("{\"nodeID\":\"nj\",\"location\":\"gh-json\",\"sensors\":[]}");
+      String fromFrame = binaryPanelFrames.readLine();
+      assertEquals("gh-json", Node.nodeFromJson(fromFrame).getLocation());
+    } finally {
+      ss.close();
+      executor.shutdownNow();
+    }
+  }
+
   // ----- NEGATIVE TESTS -----
   @Test
   public void broadcast_handlesClosedSocketGracefully() throws Exception {
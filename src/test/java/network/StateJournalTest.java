@@ -0,0 +1,149 @@
+package network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import codec.JsonCodec;
+import entity.Node;
+import entity.actuator.Heater;
+import entity.sensor.TemperatureSensor;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for StateJournal.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>replayRebuildsLastKnownCache: verifies that snapshots, applied deltas and removals are replayed into the cache after a restart, also from a checkpoint.</li>
+ *   <li>undeliveredCommandsSurviveRestart: verifies that a command for an absent node is kept across a restart and handed out once.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>disabledJournalKeepsNothing: verifies that without a directory commands are not kept and may always be sent.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-30
+ */
+public class StateJournalTest {
+
+  private static StateJournal open(Path dir, Map<String, CachedSnapshot> snapshots,
+      Map<String, Long> seqs) throws IOException {
+    return StateJournal.open(dir, snapshots, seqs, 0, 0, 60_000);
+  }
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test that the last-known cache is rebuilt from the journal.
+   *
+   * <p>Expected outcome: the patched snapshot of the remaining node with its seq, both when
+   * replaying the history and when replaying a checkpoint.</p>
+   */
+  @Test
+  public void replayRebuildsLastKnownCache(@TempDir Path dir) throws IOException {
+    Node node = new Node("n1", "greenhouse1", new ArrayList<>(), new ArrayList<>());
+    TemperatureSensor temp = new TemperatureSensor("t1", 15, 30);
+    temp.updateValue(20.0);
+    node.addSensor(temp);
+    node.addActuator(new Heater("t1_heater"));
+    NodeDelta deltas = new NodeDelta();
+    deltas.recordSnapshot(node);
+
+    Map<String, CachedSnapshot> snapshots = new ConcurrentHashMap<>();
+    Map<String, Long> seqs = new ConcurrentHashMap<>();
+    StateJournal journal = open(dir, snapshots, seqs);
+    // The server updates its cache first and then journals what it did
+    snapshots.put("n1", new CachedSnapshot(JsonCodec.gson().toJson(node)));
+    seqs.put("n1", 0L);
+    journal.snapshot("n1", 0, snapshots.get("n1").line());
+    node.getSensors().get(0).updateValue(25.0);
+    String delta = deltas.nextDelta(node).toString();
+    NodeDelta.apply(snapshots, seqs, "n1", 1, delta);
+    journal.delta("n1", 1, delta);
+    snapshots.put("n2", new CachedSnapshot("{\"nodeID\":\"n2\"}"));
+    journal.snapshot("n2", -1, snapshots.get("n2").line());
+    snapshots.remove("n2");
+    journal.removed("n2");
+    journal.close();
+
+    Map<String, CachedSnapshot> replayed = new ConcurrentHashMap<>();
+    Map<String, Long> replayedSeqs = new ConcurrentHashMap<>();
+    StateJournal reopened = open(dir, replayed, replayedSeqs);
+    assertEquals(snapshots, replayed);
+    assertEquals(Map.of("n1", 1L), replayedSeqs);
+    assertEquals(25.0, Node.nodeFromJson(replayed.get("n1").line()).getSensors().get(0).getValue());
+
+    reopened.checkpoint();
+    reopened.close();
+    Map<String, CachedSnapshot> fromCheckpoint = new ConcurrentHashMap<>();
+    Map<String, Long> checkpointSeqs = new ConcurrentHashMap<>();
+    open(dir, fromCheckpoint, checkpointSeqs).close();
+    assertEquals(snapshots, fromCheckpoint);
+    assertEquals(Map.of("n1", 1L), checkpointSeqs);
+  }
+
+  /**
+   * Test that a command for a node that is not connected is kept until it is delivered.
+   *
+   * <p>Expected outcome: the command is pending after a restart, is claimed once, and is gone
+   * after the next restart.</p>
+   */
+  @Test
+  public void undeliveredCommandsSurviveRestart(@TempDir Path dir) throws IOException {
+    String command = "{\"messageType\":\"ACTUATOR_COMMAND\",\"nodeID\":\"n1\"}";
+    StateJournal journal = open(dir, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    long delivered = journal.command("n2", "{\"nodeID\":\"n2\"}");
+    assertTrue(journal.delivered(delivered));
+    journal.command("n1", command);
+    journal.close();
+
+    StateJournal reopened = open(dir, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    assertTrue(reopened.pendingFor("n2").isEmpty());
+    List<StateJournal.Command> pending = reopened.pendingFor("n1");
+    assertEquals(1, pending.size());
+    assertEquals(command, pending.get(0).line());
+    assertTrue(pending.get(0).id() > delivered);
+    assertTrue(reopened.delivered(pending.get(0).id()));
+    assertFalse(reopened.delivered(pending.get(0).id()));
+    reopened.close();
+
+    StateJournal third = open(dir, new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+    assertTrue(third.pendingFor("n1").isEmpty());
+    // Ids keep counting after replay
+    assertTrue(third.command("n1", command) > pending.get(0).id());
+    third.close();
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test the journal used when no directory is configured.
+   *
+   * <p>Expected outcome: commands get no id, nothing is pending and sending is always
+   * allowed.</p>
+   */
+  @Test
+  public void disabledJournalKeepsNothing() {
+    StateJournal journal = StateJournal.disabled();
+    long id = journal.command("n1", "{}");
+    assertEquals(-1, id);
+    assertTrue(journal.delivered(id));
+    assertTrue(journal.pendingFor("n1").isEmpty());
+    assertEquals(0, journal.unsynced());
+    journal.close();
+  }
+}
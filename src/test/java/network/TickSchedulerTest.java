@@ -0,0 +1,116 @@
+package network;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for TickScheduler.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>manyNodesShareFewThreads: verifies that ticks of many nodes all run, on no more threads than the scheduler was created with.</li>
+ *   <li>failingTickKeepsRunningAndCancelStops: verifies that an exception does not stop later ticks and that cancelling does.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>invalidArgumentsAreRejected: verifies that zero threads and a non-positive period throw IllegalArgumentException.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-27
+ */
+public class TickSchedulerTest {
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test that many periodic ticks are served by a small pool.
+   *
+   * <p>Expected outcome: each of 200 nodes ticks at least twice within a few periods, and all
+   * ticks ran on at most two threads.</p>
+   */
+  @Test
+  public void manyNodesShareFewThreads() throws InterruptedException {
+    TickScheduler scheduler = new TickScheduler(2);
+    int nodes = 200;
+    CountDownLatch ticked = new CountDownLatch(nodes * 2);
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    List<ScheduledFuture<?>> loops = new ArrayList<>();
+    try {
+      for (int i = 0; i < nodes; i++) {
+        AtomicInteger count = new AtomicInteger();
+        loops.add(scheduler.schedule("n" + i, () -> {
+          threads.add(Thread.currentThread().getName());
+          if (count.incrementAndGet() <= 2) {
+            ticked.countDown();
+          }
+        }, 20));
+      }
+      assertTrue(ticked.await(5, TimeUnit.SECONDS), "all nodes should tick twice");
+      assertTrue(threads.size() <= 2, "ticks ran on " + threads);
+    } finally {
+      loops.forEach(l -> l.cancel(false));
+      scheduler.shutdown();
+    }
+  }
+
+  /**
+   * Test that a failing tick does not cancel the node's ticks, and cancelling does.
+   *
+   * <p>Expected outcome: ticks continue after exceptions; after cancel the count stops
+   * growing.</p>
+   */
+  @Test
+  public void failingTickKeepsRunningAndCancelStops() throws InterruptedException {
+    TickScheduler scheduler = new TickScheduler(1);
+    AtomicInteger count = new AtomicInteger();
+    CountDownLatch three = new CountDownLatch(3);
+    try {
+      ScheduledFuture<?> loop = scheduler.schedule("failing", () -> {
+        count.incrementAndGet();
+        three.countDown();
+        throw new IllegalStateException("tick failed");
+      }, 10);
+      assertTrue(three.await(5, TimeUnit.SECONDS));
+      loop.cancel(false);
+      int after = count.get();
+      Thread.sleep(60);
+      assertTrue(count.get() <= after + 1, "ticks should stop after cancel");
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test that invalid arguments are rejected.
+   *
+   * <p>Expected outcome: IllegalArgumentException for zero threads and for a zero period.</p>
+   */
+  @Test
+  public void invalidArgumentsAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> new TickScheduler(0));
+    TickScheduler scheduler = new TickScheduler(1);
+    try {
+      assertThrows(IllegalArgumentException.class, () -> scheduler.schedule("n", () -> { }, 0));
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+}
@@ -0,0 +1,315 @@
+package storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for the time-series store: {@link ChunkEncoder}, {@link Chunk}, {@link SegmentLog}
+ * and {@link TimeSeriesStore}.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>chunkRoundTripsIrregularPoints: verifies that timestamps with every gap size and values including NaN, infinities and -0.0 decode bit for bit.</li>
+ *   <li>steadySeriesCompressesWell: verifies that a series on a fixed tick with slowly changing values takes far less than 16 bytes per point.</li>
+ *   <li>queryHonoursRangeAndLimit: verifies that a query spanning sealed and open chunks returns only points in the range, oldest first, and flags a cut at the limit.</li>
+ *   <li>historySurvivesReopen: verifies that points written to fixed-size segment files, rolled over several files, are read back after the store is reopened.</li>
+ *   <li>retentionRetiresOldHistory: verifies that chunks older than the retention period are dropped and segment files holding only such chunks are deleted, also on reopen.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>outOfOrderAndRepeatedPointsAreRejected: verifies that a point not newer than the latest is not stored, also across a sealed chunk and a reopen.</li>
+ *   <li>damagedTailIsTruncated: verifies that a torn or corrupted last record is dropped on open and appending continues after the intact records.</li>
+ *   <li>invalidArgumentsAreRejected: verifies that a negative limit, a chunk size below one, a too small segment size and a negative retention throw IllegalArgumentException.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-30
+ */
+public class TimeSeriesStoreTest {
+
+  private static final long T0 = 1_732_096_800_000L; // 2024-11-20T10:00:00Z
+
+  private static List<Path> segments(Path dir) throws IOException {
+    try (Stream<Path> list = Files.list(dir)) {
+      return list.filter(p -> p.getFileName().toString().endsWith(".tsdb")).sorted().toList();
+    }
+  }
+
+  private static int headerInt(Path file, int offset) throws IOException {
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+      ByteBuffer b = ByteBuffer.allocate(4);
+      ch.read(b, offset);
+      return b.getInt(0);
+    }
+  }
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test encoding and decoding a chunk with irregular timestamps and special values.
+   *
+   * <p>Expected outcome: every timestamp and every value's bit pattern comes back unchanged.</p>
+   */
+  @Test
+  public void chunkRoundTripsIrregularPoints() {
+    long[] gaps = {0, 1000, 1000, 1000, 1, 5000, 70_000, 3_000_000, 86_400_000L * 400, 7, 0};
+    double[] specials = {21.5, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+        -0.0, 0.0, Double.MIN_VALUE, Double.MAX_VALUE, -1e-300, 1e300, 21.5};
+    Random random = new Random(42);
+    int n = 2000;
+    long[] times = new long[n];
+    double[] values = new double[n];
+    ChunkEncoder encoder = new ChunkEncoder();
+    long t = -T0; // negative timestamps work too
+    for (int i = 0; i < n; i++) {
+      t += i < gaps.length ? gaps[i] : random.nextInt(3) * 500 + (random.nextInt(50) == 0
+          ? random.nextInt(1 << 30) : 0);
+      times[i] = t;
+      values[i] = i < specials.length ? specials[i] : 20 + random.nextGaussian();
+      assertTrue(encoder.append(times[i], values[i]));
+    }
+
+    PointBuffer out = new PointBuffer(n);
+    Chunk chunk = encoder.toChunk();
+    assertTrue(chunk.decode(Long.MIN_VALUE, Long.MAX_VALUE, out));
+    TimeSeriesStore.Points points = out.toPoints();
+    assertArrayEquals(times, points.times());
+    for (int i = 0; i < n; i++) {
+      assertEquals(Double.doubleToRawLongBits(values[i]),
+          Double.doubleToRawLongBits(points.values()[i]), "value " + i);
+    }
+    assertFalse(points.truncated());
+  }
+
+  /**
+   * Test the size of a chunk for a typical sensor series.
+   *
+   * <p>Expected outcome: 512 points on a 1 s tick with values changing in steps of 0.1 take
+   * under 4 bytes per point instead of 16.</p>
+   */
+  @Test
+  public void steadySeriesCompressesWell() {
+    ChunkEncoder encoder = new ChunkEncoder();
+    double value = 21.0;
+    for (int i = 0; i < 512; i++) {
+      if (i % 10 == 0) {
+        value = Math.round((value + 0.1) * 10) / 10.0;
+      }
+      encoder.append(T0 + i * 1000L, value);
+    }
+    Chunk chunk = encoder.toChunk();
+    int bytes = chunk.times().remaining() + chunk.values().remaining();
+    assertTrue(bytes < 512 * 4, "Chunk took " + bytes + " bytes");
+    assertTrue(chunk.times().remaining() < 100, "Timestamps took " + chunk.times().remaining());
+  }
+
+  /**
+   * Test range and limit queries over sealed and open chunks.
+   *
+   * <p>Expected outcome: exactly the points in the inclusive range come back; with a limit the
+   * first points are returned and the result is marked truncated.</p>
+   */
+  @Test
+  public void queryHonoursRangeAndLimit() {
+    TimeSeriesStore store = TimeSeriesStore.inMemory();
+    for (int i = 0; i < 1200; i++) {
+      assertTrue(store.append("01", "t1", T0 + i * 1000L, i));
+    }
+    store.append("01", "h1", T0, 55.0);
+
+    TimeSeriesStore.Points range = store.query("01", "t1", T0 + 500_000, T0 + 1_100_000, 10_000);
+    assertEquals(601, range.size());
+    assertEquals(T0 + 500_000, range.times()[0]);
+    assertEquals(500.0, range.values()[0]);
+    assertEquals(1100.0, range.values()[600]);
+    assertFalse(range.truncated());
+
+    TimeSeriesStore.Points limited = store.query("01", "t1", T0, Long.MAX_VALUE, 50);
+    assertEquals(50, limited.size());
+    assertEquals(49.0, limited.values()[49]);
+    assertTrue(limited.truncated());
+
+    assertEquals(1, store.query("01", "h1", T0, T0, 10).size());
+    assertEquals(0, store.query("01", "t1", T0 + 2_000_000, T0 + 3_000_000, 10).size());
+    assertEquals(0, store.query("02", "t1", T0, T0 + 1000, 10).size());
+  }
+
+  /**
+   * Test that history is kept across closing and reopening a store on a directory.
+   *
+   * <p>Expected outcome: with small chunks and segments several segment files are written, and
+   * the reopened store returns every point, including those of the chunk open at close.</p>
+   */
+  @Test
+  public void historySurvivesReopen(@TempDir Path dir) throws IOException {
+    try (TimeSeriesStore store = TimeSeriesStore.open(dir, 64, 2048, 0)) {
+      for (int i = 0; i < 1000; i++) {
+        store.append("01", "t1", T0 + i * 1000L, 20 + (i % 7) * 0.25);
+        store.append("02", "c1", T0 + i * 2000L, 400 + i);
+      }
+    }
+    assertTrue(segments(dir).size() > 1, "Expected several segment files");
+    for (Path file : segments(dir)) {
+      assertEquals(2048, Files.size(file));
+    }
+
+    try (TimeSeriesStore store = TimeSeriesStore.open(dir, 64, 2048, 0)) {
+      assertEquals(2, store.seriesCount());
+      TimeSeriesStore.Points t1 = store.query("01", "t1", Long.MIN_VALUE, Long.MAX_VALUE, 10_000);
+      assertEquals(1000, t1.size());
+      assertEquals(20 + (999 % 7) * 0.25, t1.values()[999]);
+      TimeSeriesStore.Points c1 = store.query("02", "c1", T0, T0 + 9_998, 10_000);
+      assertArrayEquals(new double[] {400, 401, 402, 403, 404}, c1.values());
+      // Appending continues where the history ends
+      assertTrue(store.append("01", "t1", T0 + 1_000_000, 30));
+    }
+  }
+
+  /**
+   * Test retention of a file-backed store.
+   *
+   * <p>Expected outcome: with a retention of 100 s, a series of 1000 points one second apart
+   * keeps roughly the last 100 s of sealed chunks, the first segment files are deleted, and
+   * reopening with the same retention gives the same result.</p>
+   */
+  @Test
+  public void retentionRetiresOldHistory(@TempDir Path dir) throws IOException {
+    long retention = 100_000;
+    int filesBefore;
+    try (TimeSeriesStore store = TimeSeriesStore.open(dir, 20, 1024, retention)) {
+      for (int i = 0; i < 1000; i++) {
+        store.append("01", "t1", T0 + i * 1000L, i);
+      }
+      TimeSeriesStore.Points points = store.query("01", "t1", Long.MIN_VALUE, Long.MAX_VALUE,
+          10_000);
+      // Retirement runs every retention / 8, in whole chunks of 20 points
+      assertTrue(points.size() >= 100 && points.size() <= 100 + 20 + 12 + 20,
+          "Kept " + points.size() + " points");
+      assertEquals(999.0, points.values()[points.size() - 1]);
+      filesBefore = store.segmentCount();
+      assertEquals(filesBefore, segments(dir).size());
+      assertTrue(segments(dir).get(0).getFileName().toString().compareTo(
+          "segment-00000001.tsdb") > 0, "First segment should be retired");
+    }
+
+    try (TimeSeriesStore store = TimeSeriesStore.open(dir, 20, 1024, retention)) {
+      TimeSeriesStore.Points points = store.query("01", "t1", Long.MIN_VALUE, Long.MAX_VALUE,
+          10_000);
+      assertTrue(points.times()[0] >= T0 + 999_000 - retention - 20_000);
+      assertEquals(999.0, points.values()[points.size() - 1]);
+      assertTrue(store.segmentCount() <= filesBefore);
+    }
+
+    // The in-memory store retires the same way
+    TimeSeriesStore memory = TimeSeriesStore.inMemory(20, retention);
+    for (int i = 0; i < 1000; i++) {
+      memory.append("01", "t1", T0 + i * 1000L, i);
+    }
+    assertEquals(0, memory.query("01", "t1", T0, T0 + 500_000, 10_000).size());
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test appending points that are not newer than the latest point of their series.
+   *
+   * <p>Expected outcome: older and equal timestamps are rejected, right after sealing a chunk
+   * and after reopening, and the stored points are unchanged.</p>
+   */
+  @Test
+  public void outOfOrderAndRepeatedPointsAreRejected(@TempDir Path dir) throws IOException {
+    try (TimeSeriesStore store = TimeSeriesStore.open(dir, 4, 1 << 20, 0)) {
+      for (int i = 0; i < 4; i++) {
+        assertTrue(store.append("01", "t1", T0 + i, i));
+      }
+      // The chunk was sealed by the fourth point
+      assertFalse(store.append("01", "t1", T0 + 3, 99));
+      assertFalse(store.append("01", "t1", T0, 99));
+      assertTrue(store.append("01", "t1", T0 + 10, 10));
+      assertFalse(store.append("01", "t1", T0 + 9, 99));
+    }
+    try (TimeSeriesStore store = TimeSeriesStore.open(dir, 4, 1 << 20, 0)) {
+      assertFalse(store.append("01", "t1", T0 + 10, 99));
+      assertArrayEquals(new double[] {0, 1, 2, 3, 10},
+          store.query("01", "t1", T0, T0 + 100, 100).values());
+    }
+  }
+
+  /**
+   * Test opening a segment file whose last record is incomplete or corrupted.
+   *
+   * <p>Expected outcome: only the intact records are loaded, the header's used length is cut
+   * back to them and later chunks are appended after them.</p>
+   */
+  @Test
+  public void damagedTailIsTruncated(@TempDir Path dir) throws IOException {
+    try (TimeSeriesStore store = TimeSeriesStore.open(dir, 10, 1 << 16, 0)) {
+      for (int i = 0; i < 30; i++) {
+        store.append("01", "t1", T0 + i * 1000L, i);
+      }
+    }
+    Path file = segments(dir).get(0);
+    int used = headerInt(file, 8);
+    assertEquals(3, headerInt(file, 12));
+
+    // A torn write: the header already counts a record that never fully reached the file
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      ch.write(ByteBuffer.allocate(12).putInt(40).putInt(12345).putInt(7).flip(), used);
+      ch.write(ByteBuffer.allocate(4).putInt(used + 48).flip(), 8);
+    }
+    try (TimeSeriesStore store = TimeSeriesStore.open(dir, 10, 1 << 16, 0)) {
+      assertEquals(30, store.query("01", "t1", T0, Long.MAX_VALUE, 100).size());
+    }
+    assertEquals(used, headerInt(file, 8));
+
+    // A flipped byte inside the last record fails its CRC: that record's 10 points are lost
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      ch.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), used - 3);
+    }
+    try (TimeSeriesStore store = TimeSeriesStore.open(dir, 10, 1 << 16, 0)) {
+      assertEquals(20, store.query("01", "t1", T0, Long.MAX_VALUE, 100).size());
+      for (int i = 20; i < 30; i++) {
+        assertTrue(store.append("01", "t1", T0 + i * 1000L, -i));
+      }
+    }
+    try (TimeSeriesStore store = TimeSeriesStore.open(dir, 10, 1 << 16, 0)) {
+      TimeSeriesStore.Points points = store.query("01", "t1", T0, Long.MAX_VALUE, 100);
+      assertEquals(30, points.size());
+      assertEquals(-29.0, points.values()[29]);
+    }
+  }
+
+  /**
+   * Test invalid query and store parameters.
+   *
+   * <p>Expected outcome: IllegalArgumentException is thrown for each.</p>
+   */
+  @Test
+  public void invalidArgumentsAreRejected(@TempDir Path dir) {
+    TimeSeriesStore store = TimeSeriesStore.inMemory();
+    assertThrows(IllegalArgumentException.class, () -> store.query("01", "t1", 0, 1, -1));
+    assertThrows(IllegalArgumentException.class, () -> TimeSeriesStore.open(dir, 0, 1 << 20, 0));
+    assertThrows(IllegalArgumentException.class, () -> TimeSeriesStore.open(dir, 10, 32, 0));
+    assertThrows(IllegalArgumentException.class, () -> TimeSeriesStore.inMemory(10, -1));
+  }
+}
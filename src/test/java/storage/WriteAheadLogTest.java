@@ -0,0 +1,180 @@
+package storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test class for WriteAheadLog.
+ *
+ * <p>The following is tested:</p>
+ *
+ * <b>Positive tests:</b>
+ *
+ * <ul>
+ *   <li>recordsAreReplayedInOrder: verifies that records appended with synchronous flushing are handed back in order after reopening.</li>
+ *   <li>groupCommitSyncsBatchedRecords: verifies that with a sync interval appends wait for the flusher and sync makes every record durable.</li>
+ *   <li>checkpointBoundsReplay: verifies that a checkpoint replaces the history with the current state and deletes the older files.</li>
+ * </ul>
+ *
+ * <b>Negative tests:</b>
+ *
+ * <ul>
+ *   <li>tornTailIsTruncated: verifies that a half-written last record is dropped on open and appending continues after the intact records.</li>
+ *   <li>closedLogRejectsAppendsAndBadArguments: verifies that appending to a closed log throws IOException and negative settings throw IllegalArgumentException.</li>
+ * </ul>
+ *
+ * @author Group 1
+ * @version 2025-11-30
+ */
+public class WriteAheadLogTest {
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static List<String> replay(Path dir) throws IOException {
+    List<String> records = new ArrayList<>();
+    WriteAheadLog log = WriteAheadLog.open(dir, 0, 0, r -> {
+      byte[] b = new byte[r.remaining()];
+      r.get(b);
+      records.add(new String(b, StandardCharsets.UTF_8));
+    }, null);
+    log.close();
+    return records;
+  }
+
+  private static List<Path> logFiles(Path dir) throws IOException {
+    try (Stream<Path> list = Files.list(dir)) {
+      return list.filter(p -> p.getFileName().toString().endsWith(".log")).sorted().toList();
+    }
+  }
+
+  // ----- POSITIVE TESTS -----
+
+  /**
+   * Test that records come back in the order they were appended.
+   *
+   * <p>Expected outcome: every record, including an empty one, is replayed after reopening.</p>
+   */
+  @Test
+  public void recordsAreReplayedInOrder(@TempDir Path dir) throws IOException {
+    try (WriteAheadLog log = WriteAheadLog.open(dir, 0, 0, r -> { }, null)) {
+      log.append(bytes("first"));
+      log.append(bytes(""));
+      log.append(bytes("third"));
+      assertEquals(0, log.unsynced());
+    }
+    assertEquals(List.of("first", "", "third"), replay(dir));
+  }
+
+  /**
+   * Test group commit: appends are buffered until the flusher or an explicit sync writes them.
+   *
+   * <p>Expected outcome: records are unsynced right after appending and all replayed after
+   * sync.</p>
+   */
+  @Test
+  public void groupCommitSyncsBatchedRecords(@TempDir Path dir) throws IOException {
+    try (WriteAheadLog log = WriteAheadLog.open(dir, 60_000, 0, r -> { }, null)) {
+      for (int i = 0; i < 100; i++) {
+        log.append(bytes("record " + i));
+      }
+      assertTrue(log.unsynced() > 0);
+      log.sync();
+      assertEquals(0, log.unsynced());
+      assertEquals(100, replay(dir).size());
+    }
+  }
+
+  /**
+   * Test that a checkpoint replaces the history by the state it produced.
+   *
+   * <p>Expected outcome: after many updates of a few keys, one file with one record per key
+   * remains and replaying it gives the latest value of each key.</p>
+   */
+  @Test
+  public void checkpointBoundsReplay(@TempDir Path dir) throws IOException {
+    Map<String, String> state = new TreeMap<>();
+    WriteAheadLog.Checkpointer checkpointer = out ->
+        state.forEach((k, v) -> out.accept(bytes(k + "=" + v)));
+    try (WriteAheadLog log = WriteAheadLog.open(dir, 0, 1024, r -> { }, checkpointer)) {
+      for (int i = 0; i < 200; i++) {
+        String key = "k" + (i % 3);
+        state.put(key, Integer.toString(i));
+        log.append(bytes(key + "=" + i));
+      }
+      assertTrue(log.sinceCheckpoint() > 1024);
+      log.checkpoint();
+      assertEquals(0, log.sinceCheckpoint());
+    }
+    assertEquals(1, logFiles(dir).size());
+    assertEquals(List.of("k0=198", "k1=199", "k2=197"), replay(dir));
+  }
+
+  // ----- NEGATIVE TESTS -----
+
+  /**
+   * Test that a record cut short by a crash is dropped.
+   *
+   * <p>Expected outcome: the intact records are replayed, the file is truncated after them and a
+   * new record follows them.</p>
+   */
+  @Test
+  public void tornTailIsTruncated(@TempDir Path dir) throws IOException {
+    try (WriteAheadLog log = WriteAheadLog.open(dir, 0, 0, r -> { }, null)) {
+      log.append(bytes("kept"));
+      log.append(bytes("torn record"));
+    }
+    Path file = logFiles(dir).get(0);
+    long intact = 8 + 4;
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      ch.truncate(Files.size(file) - 3);
+    }
+    assertEquals(List.of("kept"), replay(dir));
+    assertEquals(intact, Files.size(file));
+
+    try (WriteAheadLog log = WriteAheadLog.open(dir, 0, 0, r -> { }, null)) {
+      log.append(bytes("after"));
+    }
+    // Flip a payload byte: the checksum no longer matches and the record is dropped
+    try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      ch.write(ByteBuffer.wrap(new byte[] {'X'}), intact + 8);
+    }
+    assertEquals(List.of("kept"), replay(dir));
+  }
+
+  /**
+   * Test the rejected uses of the log.
+   *
+   * <p>Expected outcome: IOException after closing, IllegalArgumentException for a negative
+   * interval or size and for compaction without a checkpointer.</p>
+   */
+  @Test
+  public void closedLogRejectsAppendsAndBadArguments(@TempDir Path dir) throws IOException {
+    WriteAheadLog log = WriteAheadLog.open(dir, 0, 0, r -> { }, null);
+    log.close();
+    assertThrows(IOException.class, () -> log.append(bytes("late")));
+    assertThrows(IllegalArgumentException.class,
+        () -> WriteAheadLog.open(dir, -1, 0, r -> { }, null));
+    assertThrows(IllegalArgumentException.class,
+        () -> WriteAheadLog.open(dir, 0, -1, r -> { }, null));
+    assertThrows(IllegalArgumentException.class,
+        () -> WriteAheadLog.open(dir, 0, 1024, r -> { }, null));
+  }
+}